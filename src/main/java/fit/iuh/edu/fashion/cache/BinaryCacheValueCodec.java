@@ -0,0 +1,273 @@
+package fit.iuh.edu.fashion.cache;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Codec nhị phân gọn cho giá trị cache Redis, thay cho JSON có default typing (ghi tên class vào mọi object).
+ * Chỉ các kiểu DTO đã đăng ký mới được mã hóa nhị phân (Smile, không tên class); kiểu lạ dùng JSON dự phòng.
+ *
+ * Định dạng: [magic][version][flags][fingerprint 4 byte][payload]
+ * - fingerprint = CRC32 của tên class + cấu trúc field (đệ quy các DTO lồng nhau): đổi DTO khi deploy thì
+ *   entry cũ có fingerprint không còn đăng ký và bị coi là cache miss thay vì lỗi deserialize.
+ * - payload lớn hơn ngưỡng được nén Deflate.
+ */
+@Slf4j
+public class BinaryCacheValueCodec implements RedisSerializer<Object> {
+
+    private static final byte MAGIC = (byte) 0xB1;
+    private static final byte FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 7;
+
+    private static final int FLAG_COMPRESSED = 0x01;
+    private static final int FLAG_LIST = 0x02;
+    private static final int FLAG_FALLBACK = 0x04;
+
+    private final ObjectMapper smileMapper;
+    private final RedisSerializer<Object> fallbackSerializer;
+    private final int compressionThreshold;
+
+    private final Map<Class<?>, Integer> fingerprints = new HashMap<>();
+    private final Map<Integer, ObjectReader> singleReaders = new HashMap<>();
+    private final Map<Integer, ObjectReader> listReaders = new HashMap<>();
+    private final Map<Integer, ObjectWriter> writers = new HashMap<>();
+
+    /**
+     * @param registeredTypes      các kiểu giá trị (hoặc kiểu phần tử của List) được mã hóa nhị phân
+     * @param fallbackSerializer   serializer cho kiểu chưa đăng ký
+     * @param compressionThreshold nén payload từ bao nhiêu byte trở lên (<= 0 để tắt nén)
+     */
+    public BinaryCacheValueCodec(Collection<Class<?>> registeredTypes, RedisSerializer<Object> fallbackSerializer,
+                                 int compressionThreshold) {
+        // Smile header (4 byte) bắt buộc khi bật back-reference cho chuỗi lặp lại (tên màu, size, brand...)
+        SmileFactory smileFactory = SmileFactory.builder()
+                .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                .build();
+        this.smileMapper = new ObjectMapper(smileFactory);
+        this.smileMapper.registerModule(new JavaTimeModule());
+        this.smileMapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        this.fallbackSerializer = fallbackSerializer;
+        this.compressionThreshold = compressionThreshold;
+
+        for (Class<?> type : registeredTypes) {
+            int fingerprint = fingerprint(type);
+            if (singleReaders.containsKey(fingerprint)) {
+                throw new IllegalArgumentException("Duplicate cache codec fingerprint for " + type.getName());
+            }
+            fingerprints.put(type, fingerprint);
+            JavaType listType = smileMapper.getTypeFactory().constructCollectionType(List.class, type);
+            singleReaders.put(fingerprint, smileMapper.readerFor(type));
+            listReaders.put(fingerprint, smileMapper.readerFor(listType));
+            writers.put(fingerprint, smileMapper.writerFor(type));
+        }
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        try {
+            int flags = 0;
+            int fingerprint = 0;
+            byte[] payload;
+
+            if (value instanceof List<?> list && isHomogeneousRegisteredList(list)) {
+                flags |= FLAG_LIST;
+                if (list.isEmpty()) {
+                    payload = new byte[0];
+                } else {
+                    fingerprint = fingerprints.get(list.get(0).getClass());
+                    payload = smileMapper.writeValueAsBytes(list);
+                }
+            } else if (fingerprints.containsKey(value.getClass())) {
+                fingerprint = fingerprints.get(value.getClass());
+                payload = writers.get(fingerprint).writeValueAsBytes(value);
+            } else {
+                flags |= FLAG_FALLBACK;
+                payload = fallbackSerializer.serialize(value);
+            }
+
+            if (compressionThreshold > 0 && payload.length >= compressionThreshold) {
+                byte[] compressed = deflate(payload);
+                if (compressed.length < payload.length) {
+                    payload = compressed;
+                    flags |= FLAG_COMPRESSED;
+                }
+            }
+
+            return ByteBuffer.allocate(HEADER_SIZE + payload.length)
+                    .put(MAGIC)
+                    .put(FORMAT_VERSION)
+                    .put((byte) flags)
+                    .putInt(fingerprint)
+                    .put(payload)
+                    .array();
+        } catch (SerializationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SerializationException("Could not encode cache value of type " + value.getClass().getName(), e);
+        }
+    }
+
+    /**
+     * Trả về null (Spring coi là cache miss) khi entry do phiên bản/định dạng khác ghi
+     */
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes.length < HEADER_SIZE || bytes[0] != MAGIC || bytes[1] != FORMAT_VERSION) {
+            log.debug("Ignoring cache entry written by another codec version");
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.position(2);
+        int flags = buffer.get();
+        int fingerprint = buffer.getInt();
+        byte[] payload = Arrays.copyOfRange(bytes, HEADER_SIZE, bytes.length);
+
+        try {
+            if ((flags & FLAG_COMPRESSED) != 0) {
+                payload = inflate(payload);
+            }
+            if ((flags & FLAG_FALLBACK) != 0) {
+                return fallbackSerializer.deserialize(payload);
+            }
+            if ((flags & FLAG_LIST) != 0 && payload.length == 0) {
+                return new ArrayList<>();
+            }
+            ObjectReader reader = (flags & FLAG_LIST) != 0 ? listReaders.get(fingerprint) : singleReaders.get(fingerprint);
+            if (reader == null) {
+                // Cấu trúc DTO đã đổi từ lúc ghi -> bỏ qua entry cũ
+                log.debug("Ignoring cache entry with unknown schema fingerprint {}", fingerprint);
+                return null;
+            }
+            return reader.readValue(payload);
+        } catch (Exception e) {
+            throw new SerializationException("Could not decode cache value", e);
+        }
+    }
+
+    private boolean isHomogeneousRegisteredList(List<?> list) {
+        if (list.isEmpty()) {
+            return true;
+        }
+        Class<?> elementType = list.get(0) != null ? list.get(0).getClass() : null;
+        if (elementType == null || !fingerprints.containsKey(elementType)) {
+            return false;
+        }
+        for (Object element : list) {
+            if (element == null || element.getClass() != elementType) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2);
+            byte[] chunk = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 3);
+            byte[] chunk = new byte[4096];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(chunk);
+                if (count == 0 && inflater.needsInput()) {
+                    throw new DataFormatException("Truncated compressed cache value");
+                }
+                out.write(chunk, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * CRC32 của tên class và danh sách field (tên + kiểu), đệ quy vào các class của ứng dụng
+     */
+    static int fingerprint(Class<?> type) {
+        StringBuilder schema = new StringBuilder();
+        describe(type, schema, new HashSet<>());
+        CRC32 crc = new CRC32();
+        crc.update(schema.toString().getBytes(StandardCharsets.UTF_8));
+        return (int) crc.getValue();
+    }
+
+    private static void describe(Type type, StringBuilder schema, Set<Class<?>> visited) {
+        if (type instanceof ParameterizedType parameterized) {
+            describe(parameterized.getRawType(), schema, visited);
+            schema.append('<');
+            for (Type argument : parameterized.getActualTypeArguments()) {
+                describe(argument, schema, visited);
+                schema.append(',');
+            }
+            schema.append('>');
+            return;
+        }
+        if (!(type instanceof Class<?> clazz)) {
+            schema.append(type.getTypeName());
+            return;
+        }
+        schema.append(clazz.getName());
+        if (!clazz.getName().startsWith("fit.iuh.edu.fashion.") || clazz.isEnum() || !visited.add(clazz)) {
+            return;
+        }
+        List<Field> fields = new ArrayList<>();
+        for (Class<?> current = clazz; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isTransient(field.getModifiers())) {
+                    fields.add(field);
+                }
+            }
+        }
+        fields.sort(Comparator.comparing(Field::getName));
+        schema.append('{');
+        for (Field field : fields) {
+            schema.append(field.getName()).append(':');
+            describe(field.getGenericType(), schema, visited);
+            schema.append(';');
+        }
+        schema.append('}');
+    }
+}
@@ -0,0 +1,242 @@
+package fit.iuh.edu.fashion.cache;
+
+import fit.iuh.edu.fashion.dto.ProductCatalogDTO;
+import fit.iuh.edu.fashion.dto.response.*;
+import fit.iuh.edu.fashion.utils.TransactionUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Theo dõi cache key nào phụ thuộc vào product/variant/brand/category nào để xóa đúng key thay vì allEntries.
+ * Mỗi lần ghi cache, các tag phụ thuộc được suy ra từ tên cache, key và giá trị rồi lưu vào Redis set
+ * "cache:deps:{tag}" (dùng chung giữa các node). Khi dữ liệu đổi, chỉ các key trong set của tag bị evict.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class CacheDependencyTracker {
+
+    private static final String DEPENDENCY_PREFIX = "cache:deps:";
+    private static final String MEMBER_SEPARATOR = "|";
+    // Dài hơn TTL lớn nhất của các cache được theo dõi (1 giờ)
+    private static final Duration DEPENDENCY_TTL = Duration.ofHours(2);
+
+    // Tag cho các cache phụ thuộc vào "toàn bộ catalog" (danh sách, thống kê, tìm kiếm)
+    public static final String CATALOG = "catalog";
+    public static final String BRAND_LIST = "brands";
+    public static final String CATEGORY_LIST = "categories";
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectProvider<CacheManager> cacheManager;
+
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong evictedKeys = new AtomicLong();
+
+    public static String product(Long id) {
+        return id != null ? "product:" + id : null;
+    }
+
+    public static String variant(Long id) {
+        return id != null ? "variant:" + id : null;
+    }
+
+    public static String brand(Long id) {
+        return id != null ? "brand:" + id : null;
+    }
+
+    public static String category(Long id) {
+        return id != null ? "category:" + id : null;
+    }
+
+    /**
+     * Danh sách sản phẩm theo brand (thêm/bớt sản phẩm của brand) - khác với dữ liệu của chính brand
+     */
+    public static String brandProducts(Long brandId) {
+        return brandId != null ? "brand-products:" + brandId : null;
+    }
+
+    public static String categoryProducts(Long categoryId) {
+        return categoryId != null ? "category-products:" + categoryId : null;
+    }
+
+    /**
+     * Ghi nhận phụ thuộc của một entry sắp được ghi vào cache, trả về các tag đã ghi
+     * (rỗng nếu entry không phụ thuộc gì hoặc không ghi được)
+     */
+    public Set<String> track(String cacheName, Object key, Object value) {
+        Set<String> tags = resolveTags(cacheName, String.valueOf(key), value);
+        if (tags.isEmpty()) {
+            return tags;
+        }
+        String member = cacheName + MEMBER_SEPARATOR + key;
+        try {
+            for (String tag : tags) {
+                redisTemplate.opsForSet().add(DEPENDENCY_PREFIX + tag, member);
+                redisTemplate.expire(DEPENDENCY_PREFIX + tag, DEPENDENCY_TTL);
+            }
+            return tags;
+        } catch (Exception e) {
+            // Không ghi được phụ thuộc thì entry chỉ còn hết hạn theo TTL
+            log.warn("Failed to track cache dependencies for {}: {}", member, e.getMessage());
+            return Set.of();
+        }
+    }
+
+    /**
+     * Entry còn trong set của mọi tag đã track - false nếu một lần invalidate đã xóa set
+     * trong lúc entry đang được ghi (khi đó entry vừa ghi có thể là dữ liệu cũ)
+     */
+    public boolean isTracked(String cacheName, Object key, Set<String> tags) {
+        String member = cacheName + MEMBER_SEPARATOR + key;
+        try {
+            for (String tag : tags) {
+                if (!Boolean.TRUE.equals(redisTemplate.opsForSet().isMember(DEPENDENCY_PREFIX + tag, member))) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (Exception e) {
+            log.warn("Failed to check cache dependencies for {}: {}", member, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Evict mọi key phụ thuộc vào các tag - chạy sau khi transaction hiện tại commit
+     */
+    public void invalidate(String... tags) {
+        invalidate(Arrays.asList(tags));
+    }
+
+    public void invalidate(Collection<String> tags) {
+        Set<String> distinctTags = new LinkedHashSet<>(tags);
+        distinctTags.remove(null);
+        TransactionUtil.afterCommit(() -> evictTags(distinctTags));
+    }
+
+    public long getInvalidationCount() {
+        return invalidations.get();
+    }
+
+    public long getEvictedKeyCount() {
+        return evictedKeys.get();
+    }
+
+    private void evictTags(Set<String> tags) {
+        CacheManager manager = cacheManager.getObject();
+        for (String tag : tags) {
+            String dependencyKey = DEPENDENCY_PREFIX + tag;
+            try {
+                Set<String> members = redisTemplate.opsForSet().members(dependencyKey);
+                redisTemplate.delete(dependencyKey);
+                invalidations.incrementAndGet();
+                if (members == null) {
+                    continue;
+                }
+                for (String member : members) {
+                    int separator = member.indexOf(MEMBER_SEPARATOR);
+                    Cache cache = manager.getCache(member.substring(0, separator));
+                    if (cache != null) {
+                        cache.evict(member.substring(separator + 1));
+                        evictedKeys.incrementAndGet();
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("Failed to invalidate cache dependency {}: {}", tag, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Suy ra tag phụ thuộc từ key (phần id trong key) và từ giá trị (id của các entity chứa bên trong)
+     */
+    Set<String> resolveTags(String cacheName, String key, Object value) {
+        Set<String> tags = new LinkedHashSet<>();
+        switch (cacheName) {
+            case "products" -> {
+                if (key.startsWith("stock_")) {
+                    tags.add(variant(parseId(key.substring("stock_".length()))));
+                }
+            }
+            case "productVariants", "productReviews" -> {
+                if (key.startsWith("product_")) {
+                    tags.add(product(parseId(key.substring("product_".length()))));
+                }
+            }
+            case "productsByBrand" -> tags.add(brandProducts(parseId(key)));
+            case "productsByCategory" -> tags.add(categoryProducts(parseId(key)));
+            case "topProducts", "productSearch", "catalogData" -> tags.add(CATALOG);
+            case "brands" -> {
+                if (value instanceof List<?>) {
+                    tags.add(BRAND_LIST);
+                }
+            }
+            case "categories" -> {
+                if (value instanceof List<?>) {
+                    tags.add(CATEGORY_LIST);
+                }
+            }
+            default -> {
+                // aiResponses và các cache khác: chỉ hết hạn theo TTL
+                return tags;
+            }
+        }
+
+        if (value instanceof List<?> list) {
+            for (Object element : list) {
+                addValueTags(tags, element);
+            }
+        } else {
+            addValueTags(tags, value);
+        }
+        tags.remove(null);
+        return tags;
+    }
+
+    private static void addValueTags(Set<String> tags, Object value) {
+        if (value instanceof ProductResponse product) {
+            tags.add(product(product.getId()));
+            if (product.getBrand() != null) {
+                tags.add(brand(product.getBrand().getId()));
+            }
+            if (product.getCategories() != null) {
+                product.getCategories().forEach(category -> tags.add(category(category.getId())));
+            }
+            if (product.getVariants() != null) {
+                product.getVariants().forEach(variant -> tags.add(variant(variant.getId())));
+            }
+        } else if (value instanceof ProductVariantResponse variant) {
+            tags.add(variant(variant.getId()));
+        } else if (value instanceof StockCheckResponse stock) {
+            tags.add(variant(stock.getVariantId()));
+        } else if (value instanceof ProductCatalogDTO product) {
+            tags.add(product(product.getId()));
+        } else if (value instanceof BrandResponse brand) {
+            tags.add(brand(brand.getId()));
+        } else if (value instanceof CategoryResponse category) {
+            tags.add(category(category.getId()));
+            if (category.getParentId() != null) {
+                tags.add(category(category.getParentId()));
+            }
+        }
+    }
+
+    // "12_20" -> 12, "12" -> 12
+    private static Long parseId(String keyPart) {
+        int end = keyPart.indexOf('_');
+        try {
+            return Long.parseLong(end >= 0 ? keyPart.substring(0, end) : keyPart);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
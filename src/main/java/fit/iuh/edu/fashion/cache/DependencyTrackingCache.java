@@ -0,0 +1,111 @@
+package fit.iuh.edu.fashion.cache;
+
+import org.springframework.cache.Cache;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Bọc một cache để mỗi lần ghi đều báo cho CacheDependencyTracker (key nào phụ thuộc entity nào)
+ */
+public class DependencyTrackingCache implements Cache {
+
+    private final Cache delegate;
+    private final CacheDependencyTracker dependencyTracker;
+
+    DependencyTrackingCache(Cache delegate, CacheDependencyTracker dependencyTracker) {
+        this.delegate = delegate;
+        this.dependencyTracker = dependencyTracker;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        return delegate.get(key);
+    }
+
+    @Override
+    public <T> T get(Object key, Class<T> type) {
+        return delegate.get(key, type);
+    }
+
+    @Override
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        // sync = true: loader chạy bên trong delegate, ghi nhận phụ thuộc trước khi delegate ghi giá trị
+        AtomicReference<Set<String>> tracked = new AtomicReference<>();
+        T value = delegate.get(key, () -> {
+            T loaded = valueLoader.call();
+            if (loaded != null) {
+                tracked.set(dependencyTracker.track(getName(), key, loaded));
+            }
+            return loaded;
+        });
+        evictIfInvalidated(key, tracked.get());
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        if (value == null) {
+            delegate.put(key, null);
+            return;
+        }
+        // Ghi phụ thuộc trước: invalidate chạy sau đó luôn thấy key này
+        Set<String> tags = dependencyTracker.track(getName(), key, value);
+        delegate.put(key, value);
+        evictIfInvalidated(key, tags);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        if (value == null) {
+            return delegate.putIfAbsent(key, null);
+        }
+        Set<String> tags = dependencyTracker.track(getName(), key, value);
+        ValueWrapper existing = delegate.putIfAbsent(key, value);
+        if (existing == null) {
+            evictIfInvalidated(key, tags);
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        delegate.evict(key);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        return delegate.evictIfPresent(key);
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+    }
+
+    @Override
+    public boolean invalidate() {
+        return delegate.invalidate();
+    }
+
+    /**
+     * Một invalidate chạy giữa lúc track và lúc ghi đã xóa set phụ thuộc nhưng chưa thấy entry
+     * (giá trị có thể đọc từ dữ liệu cũ) - bỏ entry thay vì để nó nằm tới hết TTL
+     */
+    private void evictIfInvalidated(Object key, Set<String> tags) {
+        if (tags != null && !tags.isEmpty() && !dependencyTracker.isTracked(getName(), key, tags)) {
+            delegate.evict(key);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package fit.iuh.edu.fashion.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Lớp refresh-ahead cho các loader đắt (catalogData, topProducts) đặt trên cache hiện có (L1 + Redis).
+ * - Mỗi key chỉ có MỘT lần load đang chạy trên node: các request đồng thời khi cache miss chờ chung kết quả
+ *   (coalesced) thay vì cùng build lại catalog.
+ * - Entry đã quá refreshAfter vẫn được trả về ngay (stale-while-revalidate) và một lần refresh chạy nền,
+ *   ghi đè entry trước khi hết TTL.
+ * - Thời gian dữ liệu cũ được phục vụ bị chặn bởi TTL của cache: quá TTL là miss và phải chờ load mới.
+ */
+@Slf4j
+public class RefreshAheadCache {
+
+    private final CacheManager cacheManager;
+    private final Executor executor;
+    private final Map<String, Duration> refreshAfter;
+    private final Clock clock;
+
+    // Thời điểm node này load / thấy entry lần đầu, để biết khi nào cần refresh
+    private final ConcurrentMap<String, Long> loadedAt = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, RefreshStatistics> statistics = new ConcurrentHashMap<>();
+
+    /**
+     * @param refreshAfter tên cache -> tuổi entry bắt đầu refresh nền (nhỏ hơn TTL của cache đó)
+     */
+    public RefreshAheadCache(CacheManager cacheManager, Executor executor, Map<String, Duration> refreshAfter) {
+        this(cacheManager, executor, refreshAfter, Clock.systemUTC());
+    }
+
+    RefreshAheadCache(CacheManager cacheManager, Executor executor, Map<String, Duration> refreshAfter, Clock clock) {
+        this.cacheManager = cacheManager;
+        this.executor = executor;
+        this.refreshAfter = Map.copyOf(refreshAfter);
+        this.clock = clock;
+        this.refreshAfter.keySet().forEach(name -> statistics.put(name, new RefreshStatistics()));
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(String cacheName, Object key, Supplier<T> loader) {
+        Cache cache = cacheManager.getCache(cacheName);
+        Duration refreshThreshold = refreshAfter.get(cacheName);
+        if (cache == null || refreshThreshold == null) {
+            return loader.get();
+        }
+        RefreshStatistics stats = statistics.get(cacheName);
+        stats.requests.incrementAndGet();
+        String id = cacheName + "|" + key;
+
+        Cache.ValueWrapper cached = cache.get(key);
+        if (cached != null && cached.get() != null) {
+            long now = clock.millis();
+            long age = now - loadedAt.computeIfAbsent(id, k -> now);
+            if (age >= refreshThreshold.toMillis()) {
+                stats.staleServed.incrementAndGet();
+                refreshAsync(cache, key, id, loader, stats);
+            }
+            return (T) cached.get();
+        }
+        return (T) loadCoalesced(cache, key, id, loader, stats);
+    }
+
+    /**
+     * Thống kê theo tên cache (request, load đồng bộ, refresh nền, caller được gộp, lần trả dữ liệu cũ)
+     */
+    public Map<String, RefreshStatistics> getStatistics() {
+        return Map.copyOf(statistics);
+    }
+
+    private Object loadCoalesced(Cache cache, Object key, String id, Supplier<?> loader, RefreshStatistics stats) {
+        CompletableFuture<Object> created = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(id, created);
+        if (existing != null) {
+            stats.coalesced.incrementAndGet();
+            Object value;
+            try {
+                value = existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+            // null khi lượt refresh nền bị executor từ chối - tự load
+            return value != null ? value : loader.get();
+        }
+        stats.loads.incrementAndGet();
+        return load(cache, key, id, loader, stats, created);
+    }
+
+    private void refreshAsync(Cache cache, Object key, String id, Supplier<?> loader, RefreshStatistics stats) {
+        CompletableFuture<Object> created = new CompletableFuture<>();
+        if (inFlight.putIfAbsent(id, created) != null) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    stats.refreshes.incrementAndGet();
+                    load(cache, key, id, loader, stats, created);
+                } catch (RuntimeException e) {
+                    log.warn("Background refresh of {} failed: {}", id, e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Executor đầy: bỏ lượt refresh này, request sau sẽ thử lại
+            inFlight.remove(id, created);
+            created.complete(null);
+        }
+    }
+
+    private Object load(Cache cache, Object key, String id, Supplier<?> loader, RefreshStatistics stats,
+                        CompletableFuture<Object> future) {
+        try {
+            Object value = loader.get();
+            if (value != null) {
+                cache.put(key, value);
+                loadedAt.put(id, clock.millis());
+            }
+            future.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            stats.failures.incrementAndGet();
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(id, future);
+        }
+    }
+
+    public static class RefreshStatistics {
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong loads = new AtomicLong();
+        private final AtomicLong refreshes = new AtomicLong();
+        private final AtomicLong coalesced = new AtomicLong();
+        private final AtomicLong staleServed = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+
+        public long getRequests() {
+            return requests.get();
+        }
+
+        public long getLoads() {
+            return loads.get();
+        }
+
+        public long getRefreshes() {
+            return refreshes.get();
+        }
+
+        public long getCoalesced() {
+            return coalesced.get();
+        }
+
+        public long getStaleServed() {
+            return staleServed.get();
+        }
+
+        public long getFailures() {
+            return failures.get();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package fit.iuh.edu.fashion.cache;
+
+import fit.iuh.edu.fashion.utils.VietnameseTextUtil;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Index vector cục bộ (trên heap) để tìm câu gần giống nhất với một câu đã lưu.
+ * Mỗi câu được tách từ (VietnameseTextUtil.tokenize: lowercase, bỏ dấu) rồi biểu diễn bằng vector thưa:
+ * từ đơn, cặp từ liền nhau và trigram ký tự của từng từ, băm vào không gian 2^20 chiều, chuẩn hóa L2 -
+ * độ giống là cosine.
+ * Entry thuộc một "scope" (vd. system prompt đã dùng), chỉ so với entry cùng scope.
+ * Số entry bị chặn (bỏ entry cũ nhất khi đầy) và entry hết hạn sau TTL; tra cứu quét tuyến tính các entry.
+ */
+public class SimilarityIndex<V> {
+
+    private static final int DIMENSION_MASK = (1 << 20) - 1;
+    private static final float WORD_WEIGHT = 1.0f;
+    private static final float BIGRAM_WEIGHT = 1.0f;
+    private static final float TRIGRAM_WEIGHT = 0.5f;
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final Clock clock;
+
+    private final ArrayDeque<Entry<V>> entries = new ArrayDeque<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public SimilarityIndex(int maxEntries, Duration ttl) {
+        this(maxEntries, ttl, Clock.systemUTC());
+    }
+
+    SimilarityIndex(int maxEntries, Duration ttl, Clock clock) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttl.toMillis();
+        this.clock = clock;
+    }
+
+    /**
+     * Kết quả tra cứu: giá trị của câu gần nhất và độ giống (cosine, 0..1)
+     */
+    public record Match<V>(V value, String text, double similarity) {
+    }
+
+    public void put(int scope, String text, V value) {
+        SparseVector vector = vectorize(text);
+        if (vector.isEmpty()) {
+            return;
+        }
+        long now = clock.millis();
+        lock.writeLock().lock();
+        try {
+            entries.removeIf(entry -> entry.expiresAt <= now || (entry.scope == scope && entry.text.equals(text)));
+            while (entries.size() >= maxEntries) {
+                entries.pollFirst();
+            }
+            entries.addLast(new Entry<>(scope, text, vector, value, now + ttlMillis));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Câu cùng scope giống nhất với text, null nếu không có câu nào đạt threshold
+     */
+    public Match<V> nearest(int scope, String text, double threshold) {
+        SparseVector vector = vectorize(text);
+        if (vector.isEmpty()) {
+            return null;
+        }
+        long now = clock.millis();
+        Entry<V> best = null;
+        double bestSimilarity = threshold;
+        lock.readLock().lock();
+        try {
+            for (Entry<V> entry : entries) {
+                if (entry.scope != scope || entry.expiresAt <= now) {
+                    continue;
+                }
+                double similarity = vector.dot(entry.vector);
+                if (similarity >= bestSimilarity) {
+                    best = entry;
+                    bestSimilarity = similarity;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return best != null ? new Match<>(best.value, best.text, bestSimilarity) : null;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            entries.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Cosine giữa hai câu, cùng cách biểu diễn với index
+     */
+    public static double similarity(String a, String b) {
+        return vectorize(a).dot(vectorize(b));
+    }
+
+    static SparseVector vectorize(String text) {
+        List<String> words = VietnameseTextUtil.tokenize(text);
+        Map<Integer, Float> weights = new HashMap<>();
+        for (int i = 0; i < words.size(); i++) {
+            String word = words.get(i);
+            weights.merge(hash("w:" + word), WORD_WEIGHT, Float::sum);
+            if (i > 0) {
+                weights.merge(hash("b:" + words.get(i - 1) + " " + word), BIGRAM_WEIGHT, Float::sum);
+            }
+            String padded = " " + word + " ";
+            for (int j = 0; j + 3 <= padded.length(); j++) {
+                weights.merge(hash("t:" + padded.substring(j, j + 3)), TRIGRAM_WEIGHT, Float::sum);
+            }
+        }
+        return SparseVector.of(weights);
+    }
+
+    private static int hash(String feature) {
+        int h = feature.hashCode();
+        return (h ^ (h >>> 16)) & DIMENSION_MASK;
+    }
+
+    private record Entry<V>(int scope, String text, SparseVector vector, V value, long expiresAt) {
+    }
+
+    /**
+     * Vector thưa đã chuẩn hóa L2: chỉ số tăng dần và trọng số tương ứng
+     */
+    record SparseVector(int[] indices, float[] values) {
+
+        static SparseVector of(Map<Integer, Float> weights) {
+            int[] indices = weights.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+            float[] values = new float[indices.length];
+            double norm = 0;
+            for (int i = 0; i < indices.length; i++) {
+                values[i] = weights.get(indices[i]);
+                norm += values[i] * values[i];
+            }
+            norm = Math.sqrt(norm);
+            for (int i = 0; i < values.length; i++) {
+                values[i] /= (float) norm;
+            }
+            return new SparseVector(indices, values);
+        }
+
+        boolean isEmpty() {
+            return indices.length == 0;
+        }
+
+        double dot(SparseVector other) {
+            double sum = 0;
+            int i = 0;
+            int j = 0;
+            while (i < indices.length && j < other.indices.length) {
+                if (indices[i] == other.indices[j]) {
+                    sum += values[i++] * other.values[j++];
+                } else if (indices[i] < other.indices[j]) {
+                    i++;
+                } else {
+                    j++;
+                }
+            }
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package fit.iuh.edu.fashion.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Cache 2 tầng: L1 trên heap (Caffeine, giới hạn size/TTL) đứng trước L2 Redis.
+ * Đọc: L1 -> L2 -> loader. Ghi/xóa: cập nhật L2 rồi báo các node khác bỏ bản L1 của key đó.
+ * Key L1 dùng String.valueOf(key), giống cách RedisCache chuyển key thành chuỗi.
+ * - Có localCodec thì L1 giữ bản mã hóa, mỗi lần đọc giải mã ra bản mới: người gọi sửa DTO nhận được
+ *   không làm hỏng bản trong cache của người khác.
+ * - Mỗi lần key bị ghi/xóa (trên node này hoặc node khác) tăng bộ đếm của stripe chứa key; giá trị đọc từ L2
+ *   chỉ được chép vào L1 nếu bộ đếm không đổi trong lúc đọc, để bản cũ đọc dở không quay lại L1 sau khi bị xóa.
+ */
+public class TwoLevelCache implements Cache {
+
+    private static final int INVALIDATION_STRIPES = 64;
+
+    private final String name;
+    private final com.github.benmanes.caffeine.cache.Cache<String, Object> local;
+    private final Cache remote;
+    private final TwoLevelCacheManager cacheManager;
+    private final RedisSerializer<Object> localCodec;
+    private final AtomicLongArray invalidations = new AtomicLongArray(INVALIDATION_STRIPES);
+
+    TwoLevelCache(String name, com.github.benmanes.caffeine.cache.Cache<String, Object> local,
+                  Cache remote, TwoLevelCacheManager cacheManager, RedisSerializer<Object> localCodec) {
+        this.name = name;
+        this.local = local;
+        this.remote = remote;
+        this.cacheManager = cacheManager;
+        this.localCodec = localCodec;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return remote.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        String localKey = String.valueOf(key);
+        Object value = getLocal(localKey);
+        if (value != null) {
+            return new SimpleValueWrapper(value);
+        }
+        long stamp = invalidations.get(stripe(localKey));
+        ValueWrapper wrapper = remote.get(key);
+        if (wrapper != null && wrapper.get() != null) {
+            putLocalIfUnchanged(localKey, wrapper.get(), stamp);
+        }
+        return wrapper;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        String localKey = String.valueOf(key);
+        Object value = getLocal(localKey);
+        if (value != null) {
+            return (T) value;
+        }
+        long stamp = invalidations.get(stripe(localKey));
+        T loaded = remote.get(key, valueLoader);
+        if (loaded != null) {
+            putLocalIfUnchanged(localKey, loaded, stamp);
+        }
+        return loaded;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        remote.put(key, value);
+        String localKey = String.valueOf(key);
+        invalidations.incrementAndGet(stripe(localKey));
+        if (value != null) {
+            local.put(localKey, encode(value));
+        } else {
+            local.invalidate(localKey);
+        }
+        cacheManager.publishEvict(name, localKey);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = remote.putIfAbsent(key, value);
+        // Không biết chắc giá trị nào thắng trên L2 -> bỏ L1, lần đọc sau lấy lại từ Redis
+        evictLocal(String.valueOf(key));
+        if (existing == null) {
+            cacheManager.publishEvict(name, String.valueOf(key));
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        remote.evict(key);
+        evictLocal(String.valueOf(key));
+        cacheManager.publishEvict(name, String.valueOf(key));
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        boolean evicted = remote.evictIfPresent(key);
+        evictLocal(String.valueOf(key));
+        cacheManager.publishEvict(name, String.valueOf(key));
+        return evicted;
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        clearLocal();
+        cacheManager.publishClear(name);
+    }
+
+    @Override
+    public boolean invalidate() {
+        boolean invalidated = remote.invalidate();
+        clearLocal();
+        cacheManager.publishClear(name);
+        return invalidated;
+    }
+
+    /**
+     * Node khác vừa ghi/xóa key này - chỉ bỏ bản L1, không đụng tới Redis
+     */
+    void evictLocal(String key) {
+        invalidations.incrementAndGet(stripe(key));
+        local.invalidate(key);
+    }
+
+    void clearLocal() {
+        for (int i = 0; i < INVALIDATION_STRIPES; i++) {
+            invalidations.incrementAndGet(i);
+        }
+        local.invalidateAll();
+    }
+
+    private Object getLocal(String localKey) {
+        Object stored = local.getIfPresent(localKey);
+        if (stored == null || localCodec == null) {
+            return stored;
+        }
+        return localCodec.deserialize((byte[]) stored);
+    }
+
+    /**
+     * Chép giá trị đọc từ L2 vào L1, trừ khi key bị ghi/xóa sau khi bắt đầu đọc (bộ đếm khác stamp).
+     * Kiểm tra trong compute để không lọt vào giữa lúc evictLocal tăng bộ đếm và bỏ L1.
+     */
+    private void putLocalIfUnchanged(String localKey, Object value, long stamp) {
+        Object encoded = encode(value);
+        local.asMap().compute(localKey, (k, current) ->
+                invalidations.get(stripe(k)) == stamp ? encoded : current);
+    }
+
+    private Object encode(Object value) {
+        return localCodec != null ? localCodec.serialize(value) : value;
+    }
+
+    private static int stripe(String key) {
+        return key.hashCode() & (INVALIDATION_STRIPES - 1);
+    }
+
+    com.github.benmanes.caffeine.cache.Cache<String, Object> getLocalCache() {
+        return local;
+    }
+}
@@ -0,0 +1,166 @@
+package fit.iuh.edu.fashion.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * CacheManager 2 tầng: cache nào có cấu hình near-cache thì được bọc bởi TwoLevelCache (L1 Caffeine + L2 Redis),
+ * còn lại đi thẳng xuống Redis như cũ. Xóa/ghi trên một node được phát qua Redis pub/sub
+ * để các node khác bỏ bản L1 tương ứng.
+ */
+@Slf4j
+public class TwoLevelCacheManager implements CacheManager {
+
+    public static final String INVALIDATION_CHANNEL = "cache:invalidation";
+
+    private static final String EVICT = "E";
+    private static final String CLEAR = "C";
+    private static final String SEPARATOR = "|";
+
+    private final CacheManager remoteCacheManager;
+    private final StringRedisTemplate redisTemplate;
+    private final Map<String, NearCacheSpec> nearCacheSpecs;
+    private final CacheDependencyTracker dependencyTracker;
+    private final RedisSerializer<Object> localCodec;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final ConcurrentMap<String, Cache> caches = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, TwoLevelCache> nearCaches = new ConcurrentHashMap<>();
+
+    public TwoLevelCacheManager(CacheManager remoteCacheManager, StringRedisTemplate redisTemplate,
+                                Map<String, NearCacheSpec> nearCacheSpecs) {
+        this(remoteCacheManager, redisTemplate, nearCacheSpecs, null, null);
+    }
+
+    /**
+     * @param dependencyTracker nếu khác null, mọi lần ghi cache được ghi nhận để xóa theo key (không allEntries)
+     */
+    public TwoLevelCacheManager(CacheManager remoteCacheManager, StringRedisTemplate redisTemplate,
+                                Map<String, NearCacheSpec> nearCacheSpecs, CacheDependencyTracker dependencyTracker) {
+        this(remoteCacheManager, redisTemplate, nearCacheSpecs, dependencyTracker, null);
+    }
+
+    /**
+     * @param localCodec        nếu khác null, L1 giữ giá trị đã mã hóa và trả bản giải mã mới cho mỗi lần đọc
+     *                          (dùng cùng codec với Redis); null thì L1 giữ nguyên instance (giá trị bất biến)
+     */
+    public TwoLevelCacheManager(CacheManager remoteCacheManager, StringRedisTemplate redisTemplate,
+                                Map<String, NearCacheSpec> nearCacheSpecs, CacheDependencyTracker dependencyTracker,
+                                RedisSerializer<Object> localCodec) {
+        this.remoteCacheManager = remoteCacheManager;
+        this.redisTemplate = redisTemplate;
+        this.nearCacheSpecs = nearCacheSpecs;
+        this.dependencyTracker = dependencyTracker;
+        this.localCodec = localCodec;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        Cache cache = caches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        Cache remote = remoteCacheManager.getCache(name);
+        if (remote == null) {
+            return null;
+        }
+        return caches.computeIfAbsent(name, n -> {
+            Cache created = remote;
+            NearCacheSpec spec = nearCacheSpecs.get(n);
+            if (spec != null) {
+                com.github.benmanes.caffeine.cache.Cache<String, Object> local = Caffeine.newBuilder()
+                        .maximumSize(spec.getMaximumSize())
+                        .expireAfterWrite(spec.getTimeToLive())
+                        .recordStats()
+                        .build();
+                TwoLevelCache twoLevelCache = new TwoLevelCache(n, local, remote, this, localCodec);
+                nearCaches.put(n, twoLevelCache);
+                created = twoLevelCache;
+            }
+            return dependencyTracker != null ? new DependencyTrackingCache(created, dependencyTracker) : created;
+        });
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        Set<String> names = new LinkedHashSet<>(remoteCacheManager.getCacheNames());
+        names.addAll(caches.keySet());
+        return Collections.unmodifiableSet(names);
+    }
+
+    /**
+     * Thống kê L1 của từng cache có near-cache (hit/miss/eviction, số entry hiện tại)
+     */
+    public Map<String, NearCacheStatistics> getNearCacheStatistics() {
+        Map<String, NearCacheStatistics> statistics = new TreeMap<>();
+        for (TwoLevelCache cache : nearCaches.values()) {
+            com.github.benmanes.caffeine.cache.Cache<String, Object> local = cache.getLocalCache();
+            com.github.benmanes.caffeine.cache.stats.CacheStats stats = local.stats();
+            statistics.put(cache.getName(), new NearCacheStatistics(local.estimatedSize(),
+                    stats.hitCount(), stats.missCount(), stats.hitRate(), stats.evictionCount()));
+        }
+        return statistics;
+    }
+
+    /**
+     * Nhận message từ kênh INVALIDATION_CHANNEL: "E|node|cache|key" hoặc "C|node|cache"
+     */
+    public void onInvalidationMessage(String message) {
+        String[] parts = message.split("\\" + SEPARATOR, 4);
+        if (parts.length < 3 || nodeId.equals(parts[1])) {
+            return;
+        }
+        TwoLevelCache cache = nearCaches.get(parts[2]);
+        if (cache != null) {
+            if (CLEAR.equals(parts[0])) {
+                cache.clearLocal();
+            } else if (EVICT.equals(parts[0]) && parts.length == 4) {
+                cache.evictLocal(parts[3]);
+            }
+        }
+    }
+
+    void publishEvict(String cacheName, String key) {
+        publish(EVICT + SEPARATOR + nodeId + SEPARATOR + cacheName + SEPARATOR + key);
+    }
+
+    void publishClear(String cacheName) {
+        publish(CLEAR + SEPARATOR + nodeId + SEPARATOR + cacheName);
+    }
+
+    private void publish(String message) {
+        try {
+            redisTemplate.convertAndSend(INVALIDATION_CHANNEL, message);
+        } catch (Exception e) {
+            // L1 có TTL ngắn nên mất một message chỉ làm node khác đọc dữ liệu cũ trong thời gian ngắn
+            log.warn("Failed to publish cache invalidation '{}': {}", message, e.getMessage());
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class NearCacheSpec {
+        private final long maximumSize;
+        private final Duration timeToLive;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class NearCacheStatistics {
+        private final long size;
+        private final long hitCount;
+        private final long missCount;
+        private final double hitRate;
+        private final long evictionCount;
+    }
+}
@@ -5,6 +5,17 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import fit.iuh.edu.fashion.cache.BinaryCacheValueCodec;
+import fit.iuh.edu.fashion.cache.CacheDependencyTracker;
+import fit.iuh.edu.fashion.cache.RefreshAheadCache;
+import fit.iuh.edu.fashion.cache.TwoLevelCacheManager;
+import fit.iuh.edu.fashion.dto.AiChatResponse;
+import fit.iuh.edu.fashion.dto.CatalogDataDTO;
+import fit.iuh.edu.fashion.dto.ProductCatalogDTO;
+import fit.iuh.edu.fashion.dto.response.*;
+import fit.iuh.edu.fashion.services.CatalogDictionary;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
@@ -12,20 +23,49 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 @Configuration
 @EnableCaching
 public class CacheConfig {
 
+    // Kiểu giá trị (hoặc phần tử List) được mã hóa nhị phân - thêm vào đây khi có @Cacheable trả về DTO mới
+    private static final List<Class<?>> BINARY_CACHE_TYPES = List.of(
+            String.class,
+            ProductResponse.class,
+            ProductVariantResponse.class,
+            ProductReviewResponse.class,
+            StockCheckResponse.class,
+            BrandResponse.class,
+            CategoryResponse.class,
+            ProductCatalogDTO.class,
+            CatalogDataDTO.class,
+            AiChatResponse.class,
+            OrderHistoryPageResponse.class
+    );
+
+    @Value("${app.cache.codec:binary}")
+    private String cacheCodec;
+
+    @Value("${app.cache.codec.compression-threshold:1024}")
+    private int compressionThreshold;
+
     @Bean
-    public CacheManager cacheManager(RedisConnectionFactory connectionFactory) {
+    public CacheManager cacheManager(RedisConnectionFactory connectionFactory, StringRedisTemplate stringRedisTemplate,
+                                     CacheDependencyTracker cacheDependencyTracker) {
         // Tạo ObjectMapper với JavaTimeModule để hỗ trợ LocalDateTime
         ObjectMapper objectMapper = new ObjectMapper();
         objectMapper.registerModule(new JavaTimeModule());
@@ -40,13 +80,21 @@ public class CacheConfig {
         );
 
         // Tạo serializer với custom ObjectMapper
-        GenericJackson2JsonRedisSerializer serializer = new GenericJackson2JsonRedisSerializer(objectMapper);
+        GenericJackson2JsonRedisSerializer jsonSerializer = new GenericJackson2JsonRedisSerializer(objectMapper);
+
+        // Codec nhị phân cho các DTO hay cache; JSON ở trên chỉ còn là dự phòng cho kiểu chưa đăng ký
+        RedisSerializer<Object> serializer = "json".equalsIgnoreCase(cacheCodec)
+                ? jsonSerializer
+                : new BinaryCacheValueCodec(BINARY_CACHE_TYPES, jsonSerializer, compressionThreshold);
+        // Key của mỗi codec nằm ở vùng riêng: rollback về bản JSON cũ không đọc nhầm entry nhị phân
+        String keyPrefix = "json".equalsIgnoreCase(cacheCodec) ? "" : "bin:";
 
         // Cấu hình cache mặc định
         RedisCacheConfiguration defaultConfig = RedisCacheConfiguration.defaultCacheConfig()
                 .entryTtl(Duration.ofHours(1))
                 .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
                 .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(serializer))
+                .prefixCacheNameWith(keyPrefix)
                 .disableCachingNullValues();
 
         // Tạo các cấu hình cache riêng cho từng loại data
@@ -57,6 +105,7 @@ public class CacheConfig {
                 .entryTtl(Duration.ofMinutes(30))
                 .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
                 .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(serializer))
+                .prefixCacheNameWith(keyPrefix)
                 .disableCachingNullValues());
 
         // Catalog data - cache 5 phút (tự động refresh)
@@ -64,6 +113,7 @@ public class CacheConfig {
                 .entryTtl(Duration.ofMinutes(5))
                 .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
                 .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(serializer))
+                .prefixCacheNameWith(keyPrefix)
                 .disableCachingNullValues());
 
         // Top products - cache 2 phút
@@ -71,6 +121,7 @@ public class CacheConfig {
                 .entryTtl(Duration.ofMinutes(2))
                 .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
                 .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(serializer))
+                .prefixCacheNameWith(keyPrefix)
                 .disableCachingNullValues());
 
         // Product search - cache 5 phút
@@ -78,6 +129,7 @@ public class CacheConfig {
                 .entryTtl(Duration.ofMinutes(5))
                 .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
                 .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(serializer))
+                .prefixCacheNameWith(keyPrefix)
                 .disableCachingNullValues());
 
         // Products by brand - cache 5 phút
@@ -85,6 +137,7 @@ public class CacheConfig {
                 .entryTtl(Duration.ofMinutes(5))
                 .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
                 .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(serializer))
+                .prefixCacheNameWith(keyPrefix)
                 .disableCachingNullValues());
 
         // Products by category - cache 5 phút
@@ -92,6 +145,15 @@ public class CacheConfig {
                 .entryTtl(Duration.ofMinutes(5))
                 .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
                 .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(serializer))
+                .prefixCacheNameWith(keyPrefix)
+                .disableCachingNullValues());
+
+        // Trang đầu lịch sử đơn hàng theo khách hàng - bị xóa khi đơn của khách thay đổi
+        cacheConfigurations.put("customerOrders", RedisCacheConfiguration.defaultCacheConfig()
+                .entryTtl(Duration.ofMinutes(10))
+                .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(serializer))
+                .prefixCacheNameWith(keyPrefix)
                 .disableCachingNullValues());
 
         // Static data caches - cache lâu hơn (1 giờ)
@@ -100,9 +162,60 @@ public class CacheConfig {
         cacheConfigurations.put("colors", defaultConfig);
         cacheConfigurations.put("sizes", defaultConfig);
 
-        return RedisCacheManager.builder(connectionFactory)
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(connectionFactory)
                 .cacheDefaults(defaultConfig)
                 .withInitialCacheConfigurations(cacheConfigurations)
                 .build();
+        // Không phải bean nên phải tự khởi tạo các cache cấu hình sẵn (TTL riêng)
+        redisCacheManager.afterPropertiesSet();
+
+        // L1 near-cache trên heap cho các lookup nhỏ, đọc nhiều - tránh round trip Redis
+        // (L1 giữ bản mã hóa bằng cùng codec, mỗi lần đọc được một bản DTO riêng)
+        Map<String, TwoLevelCacheManager.NearCacheSpec> nearCaches = new HashMap<>();
+        nearCaches.put("categories", new TwoLevelCacheManager.NearCacheSpec(500, Duration.ofMinutes(10)));
+        nearCaches.put("brands", new TwoLevelCacheManager.NearCacheSpec(500, Duration.ofMinutes(10)));
+        nearCaches.put("colors", new TwoLevelCacheManager.NearCacheSpec(200, Duration.ofMinutes(10)));
+        nearCaches.put("sizes", new TwoLevelCacheManager.NearCacheSpec(200, Duration.ofMinutes(10)));
+        nearCaches.put("products", new TwoLevelCacheManager.NearCacheSpec(5_000, Duration.ofSeconds(60)));
+        nearCaches.put("productVariants", new TwoLevelCacheManager.NearCacheSpec(5_000, Duration.ofSeconds(60)));
+        nearCaches.put("catalogData", new TwoLevelCacheManager.NearCacheSpec(1, Duration.ofSeconds(60)));
+        nearCaches.put("topProducts", new TwoLevelCacheManager.NearCacheSpec(20, Duration.ofSeconds(30)));
+        nearCaches.put("customerOrders", new TwoLevelCacheManager.NearCacheSpec(10_000, Duration.ofSeconds(60)));
+
+        return new TwoLevelCacheManager(redisCacheManager, stringRedisTemplate, nearCaches, cacheDependencyTracker,
+                serializer);
+    }
+
+    /**
+     * Refresh-ahead cho các loader đắt: refresh nền trước khi hết TTL (catalogData 5 phút, topProducts 2 phút)
+     */
+    @Bean
+    public RefreshAheadCache refreshAheadCache(CacheManager cacheManager, @Qualifier("taskExecutor") Executor taskExecutor) {
+        Map<String, Duration> refreshAfter = new HashMap<>();
+        refreshAfter.put("catalogData", Duration.ofMinutes(4));
+        refreshAfter.put("topProducts", Duration.ofSeconds(90));
+        return new RefreshAheadCache(cacheManager, taskExecutor, refreshAfter);
+    }
+
+    /**
+     * Lắng nghe kênh invalidation để bỏ L1 khi node khác ghi/xóa cache, và kênh nạp lại từ điển brand/category
+     */
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                            CacheManager cacheManager,
+                                                                            CatalogDictionary catalogDictionary) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(
+                (message, pattern) -> catalogDictionary.onRefreshMessage(
+                        new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(CatalogDictionary.REFRESH_CHANNEL));
+        if (cacheManager instanceof TwoLevelCacheManager twoLevelCacheManager) {
+            container.addMessageListener(
+                    (message, pattern) -> twoLevelCacheManager.onInvalidationMessage(
+                            new String(message.getBody(), StandardCharsets.UTF_8)),
+                    new ChannelTopic(TwoLevelCacheManager.INVALIDATION_CHANNEL));
+        }
+        return container;
     }
 }
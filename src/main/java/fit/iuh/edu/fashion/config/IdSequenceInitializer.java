@@ -0,0 +1,59 @@
+package fit.iuh.edu.fashion.config;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Các bảng ghi nhiều (order_items, inventory_movements, payment_transactions, audit_logs, loyalty_point_entries)
+ * lấy id từ sequence pooled (allocationSize = 50) thay vì AUTO_INCREMENT để Hibernate gom INSERT theo lô.
+ * Pooled optimizer cấp các id (giá trị sequence - 49 .. giá trị sequence], nên khi khởi động sequence phải đứng
+ * sau id lớn nhất đang có - dữ liệu cũ sinh bằng AUTO_INCREMENT, hoặc sequence vừa được ddl-auto tạo mới từ 1.
+ * Chạy sau khi EntityManagerFactory cập nhật schema, trước CommandLineRunner và request đầu tiên.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@RequiredArgsConstructor
+@Slf4j
+public class IdSequenceInitializer {
+
+    static final int ALLOCATION_SIZE = 50;
+
+    // bảng -> sequence
+    static final Map<String, String> SEQUENCES = Map.of(
+            "order_items", "order_items_seq",
+            "inventory_movements", "inventory_movements_seq",
+            "payment_transactions", "payment_transactions_seq",
+            "audit_logs", "audit_logs_seq",
+            "loyalty_point_entries", "loyalty_point_entries_seq");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void alignSequences() {
+        SEQUENCES.forEach((table, sequence) -> {
+            try {
+                align(table, sequence);
+            } catch (RuntimeException e) {
+                // Không chặn khởi động: sequence còn thiếu (chưa chạy migration / ddl) sẽ báo lỗi ngay ở lần INSERT đầu
+                log.error("Cannot align id sequence {} with table {}: {}", sequence, table, e.getMessage());
+            }
+        });
+    }
+
+    private void align(String table, String sequence) {
+        long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + table, Long.class);
+        // Lấy một giá trị (bỏ phí một khối id) để biết sequence đang ở đâu - cú pháp chung của MariaDB và H2
+        long next = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR " + sequence, Long.class);
+        if (next - ALLOCATION_SIZE + 1 <= maxId) {
+            long restart = maxId + ALLOCATION_SIZE;
+            jdbcTemplate.execute("ALTER SEQUENCE " + sequence + " RESTART WITH " + restart);
+            log.warn("Id sequence {} was behind {} (max id {}), restarted at {}", sequence, table, maxId, restart);
+        }
+    }
+}
@@ -5,8 +5,16 @@ import fit.iuh.edu.fashion.dto.AiChatResponse;
 import fit.iuh.edu.fashion.services.AiAssistantService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.Disposable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/ai")
@@ -16,6 +24,9 @@ public class AiAssistantController {
 
     private final AiAssistantService aiAssistantService;
 
+    @Value("${app.ai.stream-timeout-ms:180000}")
+    private long streamTimeoutMs;
+
     /**
      * Endpoint chat đơn giản
      * POST /api/ai/chat
@@ -27,6 +38,49 @@ public class AiAssistantController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Chat dạng streaming (Server-Sent Events)
+     * POST /api/ai/chat/stream
+     * Event "token": {"content": "..."} cho từng đoạn model sinh ra, "done" khi xong, "error" nếu stream lỗi giữa chừng.
+     * Thread của Tomcat trả về ngay; client đóng kết nối hoặc hết thời gian thì request tới model bị hủy.
+     */
+    @PostMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter chatStream(@RequestBody String message) {
+        log.info("Received streaming chat request: {}", message);
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+
+        Disposable stream = aiAssistantService.chatStream(message).subscribe(
+                token -> send(emitter, SseEmitter.event().name("token").data(Map.of("content", token), MediaType.APPLICATION_JSON)),
+                error -> {
+                    log.warn("AI chat stream failed: {}", error.getMessage());
+                    try {
+                        emitter.send(SseEmitter.event().name("error")
+                                .data(Map.of("content", "Xin lỗi, câu trả lời bị gián đoạn. Vui lòng thử lại."), MediaType.APPLICATION_JSON));
+                        emitter.complete();
+                    } catch (IOException | IllegalStateException e) {
+                        emitter.completeWithError(e);
+                    }
+                },
+                () -> {
+                    send(emitter, SseEmitter.event().name("done").data(""));
+                    emitter.complete();
+                });
+
+        emitter.onTimeout(stream::dispose);
+        emitter.onError(error -> stream.dispose());
+        emitter.onCompletion(stream::dispose);
+        return emitter;
+    }
+
+    private void send(SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+        } catch (IOException e) {
+            // Client đã ngắt: lỗi này hủy subscription, dừng luôn request tới model
+            throw new UncheckedIOException(e);
+        }
+    }
+
     /**
      * Endpoint chat với ngữ cảnh sản phẩm
      * POST /api/ai/chat/product
@@ -1,9 +1,12 @@
 package fit.iuh.edu.fashion.controllers;
 
 import fit.iuh.edu.fashion.dto.response.AuditLogResponse;
+import fit.iuh.edu.fashion.dto.response.CursorPageResponse;
 import fit.iuh.edu.fashion.models.AuditLog;
 import fit.iuh.edu.fashion.repositories.AuditLogRepository;
+import fit.iuh.edu.fashion.utils.PageCursorUtil;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -34,6 +37,24 @@ public class AuditLogController {
         return ResponseEntity.ok(auditLogs);
     }
 
+    /**
+     * Phân trang cursor theo (createdAt, id) cho bảng audit_logs lớn - không COUNT, không OFFSET
+     */
+    @GetMapping("/scroll")
+    @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+    public ResponseEntity<CursorPageResponse<AuditLogResponse>> scrollAuditLogs(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        int pageSize = PageCursorUtil.clampSize(size);
+        PageCursorUtil.Cursor position = PageCursorUtil.decodeTimed(cursor);
+        Limit limit = Limit.of(pageSize + 1);
+        List<AuditLog> rows = position == null
+                ? auditLogRepository.findLatest(limit)
+                : auditLogRepository.findBefore(position.getTime(), position.getId(), limit);
+        return ResponseEntity.ok(CursorPageResponse.of(rows, pageSize,
+                auditLog -> PageCursorUtil.encode(auditLog.getCreatedAt(), auditLog.getId()), this::mapToResponse));
+    }
+
     @GetMapping("/{id}")
     @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
     public ResponseEntity<AuditLogResponse> getAuditLogById(@PathVariable Long id) {
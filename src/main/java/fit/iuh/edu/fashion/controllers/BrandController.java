@@ -1,9 +1,15 @@
 package fit.iuh.edu.fashion.controllers;
 
+import fit.iuh.edu.fashion.cache.CacheDependencyTracker;
 import fit.iuh.edu.fashion.dto.request.BrandRequest;
 import fit.iuh.edu.fashion.dto.response.BrandResponse;
 import fit.iuh.edu.fashion.models.Brand;
 import fit.iuh.edu.fashion.repositories.BrandRepository;
+import fit.iuh.edu.fashion.repositories.ProductRepository;
+import fit.iuh.edu.fashion.services.CatalogDictionary;
+import fit.iuh.edu.fashion.services.CatalogStatisticsService;
+import fit.iuh.edu.fashion.services.ProductFacetIndex;
+import fit.iuh.edu.fashion.services.ProductSearchIndex;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
@@ -19,6 +25,12 @@ import java.util.stream.Collectors;
 public class BrandController {
 
     private final BrandRepository brandRepository;
+    private final ProductRepository productRepository;
+    private final CacheDependencyTracker cacheDependencyTracker;
+    private final CatalogDictionary catalogDictionary;
+    private final CatalogStatisticsService catalogStatisticsService;
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductFacetIndex productFacetIndex;
 
     @GetMapping
     public ResponseEntity<List<BrandResponse>> getAllBrands() {
@@ -45,6 +57,7 @@ public class BrandController {
         brand.setLogo(request.getLogoUrl());
         brand.setIsActive(request.getIsActive());
         Brand savedBrand = brandRepository.save(brand);
+        invalidateBrandCaches(savedBrand.getId(), List.of());
         return ResponseEntity.ok(mapToBrandResponse(savedBrand));
     }
 
@@ -59,16 +72,34 @@ public class BrandController {
         brand.setLogo(request.getLogoUrl());
         brand.setIsActive(request.getIsActive());
         Brand updatedBrand = brandRepository.save(brand);
+        invalidateBrandCaches(updatedBrand.getId(), productRepository.findIdsByBrandId(id));
         return ResponseEntity.ok(mapToBrandResponse(updatedBrand));
     }
 
     @DeleteMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<Void> deleteBrand(@PathVariable Long id) {
+        List<Long> productIds = productRepository.findIdsByBrandId(id);
         brandRepository.deleteById(id);
+        invalidateBrandCaches(id, productIds);
         return ResponseEntity.ok().build();
     }
 
+    // Brand nằm trong BrandResponse, ProductResponse, danh sách brand, catalog, chỉ mục tìm kiếm / facet của các
+    // sản phẩm thuộc brand và từ điển tên của AI
+    private void invalidateBrandCaches(Long brandId, List<Long> productIds) {
+        cacheDependencyTracker.invalidate(
+                CacheDependencyTracker.brand(brandId),
+                CacheDependencyTracker.brandProducts(brandId),
+                CacheDependencyTracker.BRAND_LIST,
+                CacheDependencyTracker.CATALOG);
+        catalogDictionary.reload();
+        productSearchIndex.reindexProducts(productIds);
+        productFacetIndex.reindexProducts(productIds);
+        // Thay đổi hiếm: build lại thống kê catalog, xóa luôn sai lệch của các cập nhật tăng dần nếu có
+        catalogStatisticsService.invalidate();
+    }
+
     private BrandResponse mapToBrandResponse(Brand brand) {
         return BrandResponse.builder()
                 .id(brand.getId())
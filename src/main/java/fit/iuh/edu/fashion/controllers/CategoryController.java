@@ -1,15 +1,22 @@
 package fit.iuh.edu.fashion.controllers;
 
+import fit.iuh.edu.fashion.cache.CacheDependencyTracker;
 import fit.iuh.edu.fashion.dto.request.CategoryRequest;
 import fit.iuh.edu.fashion.dto.response.CategoryResponse;
 import fit.iuh.edu.fashion.models.Category;
 import fit.iuh.edu.fashion.repositories.CategoryRepository;
+import fit.iuh.edu.fashion.repositories.ProductRepository;
+import fit.iuh.edu.fashion.services.CatalogDictionary;
+import fit.iuh.edu.fashion.services.CatalogStatisticsService;
+import fit.iuh.edu.fashion.services.ProductFacetIndex;
+import fit.iuh.edu.fashion.services.ProductSearchIndex;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -19,6 +26,12 @@ import java.util.stream.Collectors;
 public class CategoryController {
 
     private final CategoryRepository categoryRepository;
+    private final ProductRepository productRepository;
+    private final CacheDependencyTracker cacheDependencyTracker;
+    private final CatalogDictionary catalogDictionary;
+    private final CatalogStatisticsService catalogStatisticsService;
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductFacetIndex productFacetIndex;
 
     @GetMapping
     public ResponseEntity<List<CategoryResponse>> getAllCategories() {
@@ -75,6 +88,7 @@ public class CategoryController {
         }
 
         Category savedCategory = categoryRepository.save(category);
+        invalidateCategoryCaches(savedCategory.getId(), List.of(), savedCategory.getParent());
         return ResponseEntity.ok(mapToCategoryResponse(savedCategory));
     }
 
@@ -83,6 +97,7 @@ public class CategoryController {
     public ResponseEntity<CategoryResponse> updateCategory(@PathVariable Long id, @Valid @RequestBody CategoryRequest request) {
         Category category = categoryRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Category not found"));
+        Category oldParent = category.getParent();
         category.setName(request.getName());
         category.setSlug(request.getSlug());
         category.setDescription(request.getDescription());
@@ -99,16 +114,42 @@ public class CategoryController {
         }
 
         Category updatedCategory = categoryRepository.save(category);
+        invalidateCategoryCaches(updatedCategory.getId(), productRepository.findIdsByCategoryId(id),
+                oldParent, updatedCategory.getParent());
         return ResponseEntity.ok(mapToCategoryResponse(updatedCategory));
     }
 
     @DeleteMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<Void> deleteCategory(@PathVariable Long id) {
+        Category parent = categoryRepository.findById(id).map(Category::getParent).orElse(null);
+        List<Long> productIds = productRepository.findIdsByCategoryId(id);
         categoryRepository.deleteById(id);
+        invalidateCategoryCaches(id, productIds, parent);
         return ResponseEntity.ok().build();
     }
 
+    // Category cha cũng đổi (childrenCount, danh sách con); sản phẩm thuộc category được index lại (tìm theo tên
+    // category mới, bỏ bitmap của category đã xóa)
+    private void invalidateCategoryCaches(Long categoryId, List<Long> productIds, Category... parents) {
+        List<String> tags = new ArrayList<>(List.of(
+                CacheDependencyTracker.category(categoryId),
+                CacheDependencyTracker.categoryProducts(categoryId),
+                CacheDependencyTracker.CATEGORY_LIST,
+                CacheDependencyTracker.CATALOG));
+        for (Category parent : parents) {
+            if (parent != null) {
+                tags.add(CacheDependencyTracker.category(parent.getId()));
+            }
+        }
+        cacheDependencyTracker.invalidate(tags);
+        catalogDictionary.reload();
+        productSearchIndex.reindexProducts(productIds);
+        productFacetIndex.reindexProducts(productIds);
+        // Thay đổi hiếm: build lại thống kê catalog, xóa luôn sai lệch của các cập nhật tăng dần nếu có
+        catalogStatisticsService.invalidate();
+    }
+
     private CategoryResponse mapToCategoryResponse(Category category) {
         return CategoryResponse.builder()
                 .id(category.getId())
@@ -1,11 +1,15 @@
 package fit.iuh.edu.fashion.controllers;
 
+import fit.iuh.edu.fashion.dto.response.CursorPageResponse;
 import fit.iuh.edu.fashion.models.Coupon;
 import fit.iuh.edu.fashion.models.User;
 import fit.iuh.edu.fashion.repositories.CouponRepository;
 import fit.iuh.edu.fashion.repositories.UserRepository;
 import fit.iuh.edu.fashion.security.CustomUserDetails;
+import fit.iuh.edu.fashion.services.CouponRedemptionService;
+import fit.iuh.edu.fashion.utils.PageCursorUtil;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -20,14 +24,18 @@ import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 @RestController
 @RequestMapping("/api/coupons")
 @RequiredArgsConstructor
 public class CouponController {
 
+    private static final int MAX_REDEMPTION_STRIPES = 64;
+
     private final CouponRepository couponRepository;
     private final UserRepository userRepository;
+    private final CouponRedemptionService couponRedemptionService;
 
     @GetMapping("/validate")
     public ResponseEntity<?> validateCoupon(
@@ -46,8 +54,8 @@ public class CouponController {
                 return ResponseEntity.badRequest().body(error);
             }
 
-            // Check usage limit
-            if (coupon.getUsageLimit() != null && coupon.getUsedCount() >= coupon.getUsageLimit()) {
+            // Check usage limit (kể cả lượt đã dùng trên các stripe)
+            if (!couponRedemptionService.hasRemainingUses(coupon)) {
                 Map<String, String> error = new HashMap<>();
                 error.put("message", "Mã giảm giá đã hết lượt sử dụng");
                 return ResponseEntity.badRequest().body(error);
@@ -70,20 +78,47 @@ public class CouponController {
             @RequestParam(defaultValue = "10") int size
     ) {
         Pageable pageable = PageRequest.of(page, size, Sort.by("id").descending());
-        return ResponseEntity.ok(couponRepository.findAll(pageable));
+        Page<Coupon> coupons = couponRepository.findAll(pageable);
+        couponRedemptionService.fillTotalUsedCounts(coupons.getContent());
+        return ResponseEntity.ok(coupons);
+    }
+
+    /**
+     * Phân trang cursor theo id - gửi lại nextCursor để lấy trang tiếp theo
+     */
+    @GetMapping("/scroll")
+    @PreAuthorize("hasAnyRole('ADMIN', 'STAFF_SALES')")
+    public ResponseEntity<CursorPageResponse<Coupon>> scrollCoupons(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        int pageSize = PageCursorUtil.clampSize(size);
+        PageCursorUtil.Cursor position = PageCursorUtil.decode(cursor);
+        Limit limit = Limit.of(pageSize + 1);
+        List<Coupon> rows = position == null
+                ? couponRepository.findLatest(limit)
+                : couponRepository.findBefore(position.getId(), limit);
+        couponRedemptionService.fillTotalUsedCounts(rows);
+        return ResponseEntity.ok(CursorPageResponse.of(rows, pageSize,
+                coupon -> PageCursorUtil.encode(coupon.getId()), Function.identity()));
     }
 
     @GetMapping("/active")
     @PreAuthorize("hasAnyRole('ADMIN', 'STAFF_SALES')")
     public ResponseEntity<List<Coupon>> getActiveCoupons() {
-        return ResponseEntity.ok(couponRepository.findActiveCoupons(LocalDateTime.now()));
+        List<Coupon> coupons = couponRepository.findActiveCoupons(LocalDateTime.now());
+        couponRedemptionService.fillTotalUsedCounts(coupons);
+        return ResponseEntity.ok(coupons);
     }
 
     @GetMapping("/{id}")
     @PreAuthorize("hasAnyRole('ADMIN', 'STAFF_SALES')")
     public ResponseEntity<?> getCouponById(@PathVariable Long id) {
         return couponRepository.findById(id)
-                .map(ResponseEntity::ok)
+                .map(coupon -> {
+                    couponRedemptionService.fillTotalUsedCounts(List.of(coupon));
+                    return ResponseEntity.ok(coupon);
+                })
                 .orElse(ResponseEntity.notFound().build());
     }
 
@@ -139,7 +174,16 @@ public class CouponController {
                 }
             }
 
+            if (!isValidStripeCount(coupon.getRedemptionStripes())) {
+                Map<String, String> error = new HashMap<>();
+                error.put("message", "Số stripe phải từ 0 đến " + MAX_REDEMPTION_STRIPES);
+                return ResponseEntity.badRequest().body(error);
+            }
+
             Coupon savedCoupon = couponRepository.save(coupon);
+            if (isStriped(savedCoupon)) {
+                couponRedemptionService.rebalance(savedCoupon.getId());
+            }
             return ResponseEntity.ok(savedCoupon);
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
@@ -178,6 +222,8 @@ public class CouponController {
             existingCoupon.setUsageLimit(coupon.getUsageLimit());
             existingCoupon.setPerUserLimit(coupon.getPerUserLimit());
             existingCoupon.setIsActive(coupon.getIsActive());
+            boolean wasStriped = isStriped(existingCoupon);
+            existingCoupon.setRedemptionStripes(coupon.getRedemptionStripes());
 
             // Validate dates
             if (existingCoupon.getStartAt().isAfter(existingCoupon.getEndAt())) {
@@ -186,7 +232,17 @@ public class CouponController {
                 return ResponseEntity.badRequest().body(error);
             }
 
+            if (!isValidStripeCount(existingCoupon.getRedemptionStripes())) {
+                Map<String, String> error = new HashMap<>();
+                error.put("message", "Số stripe phải từ 0 đến " + MAX_REDEMPTION_STRIPES);
+                return ResponseEntity.badRequest().body(error);
+            }
+
             Coupon updatedCoupon = couponRepository.save(existingCoupon);
+            // Chia lại lượt theo usage_limit / số stripe mới, hoặc gộp stripe về used_count khi tắt
+            if (wasStriped || isStriped(updatedCoupon)) {
+                couponRedemptionService.rebalance(updatedCoupon.getId());
+            }
             return ResponseEntity.ok(updatedCoupon);
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
@@ -230,6 +286,14 @@ public class CouponController {
         }
     }
 
+    private boolean isStriped(Coupon coupon) {
+        return coupon.getRedemptionStripes() != null && coupon.getRedemptionStripes() > 0;
+    }
+
+    private boolean isValidStripeCount(Integer stripes) {
+        return stripes == null || (stripes >= 0 && stripes <= MAX_REDEMPTION_STRIPES);
+    }
+
     private String formatCurrency(BigDecimal amount) {
         return String.format("%,d ₫", amount.longValue());
     }
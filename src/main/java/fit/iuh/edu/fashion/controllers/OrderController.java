@@ -1,9 +1,12 @@
 package fit.iuh.edu.fashion.controllers;
 
 import fit.iuh.edu.fashion.dto.request.OrderRequest;
+import fit.iuh.edu.fashion.dto.response.CursorPageResponse;
 import fit.iuh.edu.fashion.dto.response.OrderResponse;
+import fit.iuh.edu.fashion.dto.response.OrderSummaryResponse;
 import fit.iuh.edu.fashion.models.Order;
 import fit.iuh.edu.fashion.security.CustomUserDetails;
+import fit.iuh.edu.fashion.services.CustomerOrderHistoryService;
 import fit.iuh.edu.fashion.services.OrderService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -16,6 +19,7 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -24,16 +28,15 @@ import java.util.Map;
 public class OrderController {
 
     private final OrderService orderService;
+    private final CustomerOrderHistoryService customerOrderHistoryService;
 
     @GetMapping("/my")
-    public ResponseEntity<Page<OrderResponse>> getMyOrders(
+    public ResponseEntity<Page<OrderSummaryResponse>> getMyOrders(
             @AuthenticationPrincipal CustomUserDetails userDetails,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size
     ) {
-        Sort sort = Sort.by(Sort.Direction.DESC, "placedAt");
-        Pageable pageable = PageRequest.of(page, size, sort);
-        return ResponseEntity.ok(orderService.getMyOrders(userDetails.getId(), pageable));
+        return ResponseEntity.ok(customerOrderHistoryService.getMyOrders(userDetails.getId(), page, size));
     }
 
     @GetMapping("/{id}")
@@ -70,6 +73,18 @@ public class OrderController {
         return ResponseEntity.ok(orderService.getAllOrders(pageable));
     }
 
+    /**
+     * Phân trang cursor cho danh sách dài - gửi lại nextCursor để lấy trang tiếp theo
+     */
+    @GetMapping("/scroll")
+    @PreAuthorize("hasAnyRole('ADMIN', 'STAFF_SALES')")
+    public ResponseEntity<CursorPageResponse<OrderResponse>> scrollOrders(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        return ResponseEntity.ok(orderService.scrollOrders(cursor, size));
+    }
+
     @GetMapping("/status/{status}")
     @PreAuthorize("hasAnyRole('ADMIN', 'STAFF_SALES')")
     public ResponseEntity<Page<OrderResponse>> getOrdersByStatus(
@@ -90,6 +105,12 @@ public class OrderController {
         return ResponseEntity.ok(orderService.updateOrderStatus(id, status));
     }
 
+    @PutMapping("/status/completed")
+    @PreAuthorize("hasAnyRole('ADMIN', 'STAFF_SALES')")
+    public ResponseEntity<List<OrderResponse>> completeOrders(@RequestBody List<Long> orderIds) {
+        return ResponseEntity.ok(orderService.completeOrders(orderIds));
+    }
+
     @PutMapping("/{id}/payment-method")
     public ResponseEntity<?> updatePaymentMethod(
             @PathVariable Long id,
@@ -1,6 +1,7 @@
 package fit.iuh.edu.fashion.controllers;
 
 import fit.iuh.edu.fashion.dto.PaymentDetailDTO;
+import fit.iuh.edu.fashion.dto.response.CursorPageResponse;
 import fit.iuh.edu.fashion.models.Payment;
 import fit.iuh.edu.fashion.models.PaymentTransaction;
 import fit.iuh.edu.fashion.models.User;
@@ -60,6 +61,17 @@ public class PaymentManagementController {
         }
     }
 
+    /**
+     * Lấy thanh toán theo cursor (Admin và Staff Sales) - dùng cho trang sâu, không đếm tổng
+     */
+    @GetMapping("/scroll")
+    @PreAuthorize("hasAnyRole('ADMIN', 'STAFF_SALES')")
+    public ResponseEntity<CursorPageResponse<Payment>> scrollPayments(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(paymentService.scrollPayments(cursor, size));
+    }
+
     /**
      * Lấy chi tiết thanh toán
      */
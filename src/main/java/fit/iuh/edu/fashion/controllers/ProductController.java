@@ -1,6 +1,9 @@
 package fit.iuh.edu.fashion.controllers;
 
+import fit.iuh.edu.fashion.dto.request.ProductFacetSearchRequest;
 import fit.iuh.edu.fashion.dto.request.ProductRequest;
+import fit.iuh.edu.fashion.dto.response.CursorPageResponse;
+import fit.iuh.edu.fashion.dto.response.ProductFacetSearchResponse;
 import fit.iuh.edu.fashion.dto.response.ProductResponse;
 import fit.iuh.edu.fashion.dto.response.StockCheckResponse;
 import fit.iuh.edu.fashion.security.CustomUserDetails;
@@ -36,6 +39,17 @@ public class ProductController {
         return ResponseEntity.ok(productService.getAllProducts(pageable));
     }
 
+    /**
+     * Phân trang cursor (sản phẩm mới nhất trước) - gửi lại nextCursor để lấy trang tiếp theo
+     */
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorPageResponse<ProductResponse>> scrollProducts(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        return ResponseEntity.ok(productService.scrollProducts(cursor, size));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<ProductResponse> getProductById(@PathVariable Long id) {
         return ResponseEntity.ok(productService.getProductById(id));
@@ -56,6 +70,18 @@ public class ProductController {
         return ResponseEntity.ok(productService.searchProducts(keyword, pageable));
     }
 
+    /**
+     * Lọc facet: /api/products/search/facets?brandIds=1,2&colorIds=3&inStock=true&priceBuckets=200000-500000
+     */
+    @GetMapping("/search/facets")
+    public ResponseEntity<ProductFacetSearchResponse> searchWithFacets(
+            @ModelAttribute ProductFacetSearchRequest request,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        return ResponseEntity.ok(productService.searchWithFacets(request, page, size));
+    }
+
     @GetMapping("/category/{categoryId}")
     public ResponseEntity<Page<ProductResponse>> getProductsByCategory(
             @PathVariable Long categoryId,
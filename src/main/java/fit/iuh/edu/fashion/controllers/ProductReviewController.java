@@ -54,5 +54,14 @@ public class ProductReviewController {
         productReviewService.deleteReview(reviewId, userDetails.getId());
         return ResponseEntity.ok().build();
     }
+
+    @PutMapping("/reviews/{reviewId}/approval")
+    @PreAuthorize("hasAnyRole('ADMIN', 'STAFF_PRODUCT')")
+    public ResponseEntity<ProductReviewResponse> setReviewApproval(
+            @PathVariable Long reviewId,
+            @RequestParam boolean approved
+    ) {
+        return ResponseEntity.ok(productReviewService.setApproval(reviewId, approved));
+    }
 }
 
@@ -1,7 +1,9 @@
 package fit.iuh.edu.fashion.controllers;
 
 import fit.iuh.edu.fashion.dto.request.ProductVariantRequest;
+import fit.iuh.edu.fashion.dto.response.HotSkuStatusResponse;
 import fit.iuh.edu.fashion.dto.response.ProductVariantResponse;
+import fit.iuh.edu.fashion.services.HotSkuLedger;
 import fit.iuh.edu.fashion.services.ProductVariantService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -17,6 +19,7 @@ import java.util.List;
 public class ProductVariantController {
 
     private final ProductVariantService productVariantService;
+    private final HotSkuLedger hotSkuLedger;
 
     @GetMapping("/product/{productId}")
     public ResponseEntity<List<ProductVariantResponse>> getVariantsByProductId(@PathVariable Long productId) {
@@ -49,5 +52,38 @@ public class ProductVariantController {
         productVariantService.deleteVariant(id);
         return ResponseEntity.ok().build();
     }
-}
 
+    /**
+     * Hot SKU (flash sale): trạng thái ledger của các variant đang bật
+     */
+    @GetMapping("/hot")
+    @PreAuthorize("hasAnyRole('ADMIN', 'STAFF_PRODUCT')")
+    public ResponseEntity<List<HotSkuStatusResponse>> getHotSkus() {
+        return ResponseEntity.ok(hotSkuLedger.status());
+    }
+
+    @PutMapping("/{id}/hot")
+    @PreAuthorize("hasAnyRole('ADMIN', 'STAFF_PRODUCT')")
+    public ResponseEntity<HotSkuStatusResponse> enableHotSku(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "50") int admissionLimit
+    ) {
+        return ResponseEntity.ok(hotSkuLedger.enable(id, admissionLimit));
+    }
+
+    @DeleteMapping("/{id}/hot")
+    @PreAuthorize("hasAnyRole('ADMIN', 'STAFF_PRODUCT')")
+    public ResponseEntity<Void> disableHotSku(@PathVariable Long id) {
+        hotSkuLedger.disable(id);
+        return ResponseEntity.ok().build();
+    }
+
+    /**
+     * Flush ledger rồi đối soát tồn kho DB với tồn kho ledger
+     */
+    @PostMapping("/hot/reconcile")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<List<HotSkuStatusResponse>> reconcileHotSkus() {
+        return ResponseEntity.ok(hotSkuLedger.reconcile());
+    }
+}
@@ -1,5 +1,6 @@
 package fit.iuh.edu.fashion.controllers;
 
+import fit.iuh.edu.fashion.dto.response.CacheStatsResponse;
 import fit.iuh.edu.fashion.dto.response.SystemHealthResponse;
 import fit.iuh.edu.fashion.services.SystemMonitorService;
 import lombok.RequiredArgsConstructor;
@@ -9,6 +10,8 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/system")
 @RequiredArgsConstructor
@@ -21,5 +24,10 @@ public class SystemMonitorController {
     public ResponseEntity<SystemHealthResponse> getSystemHealth() {
         return ResponseEntity.ok(systemMonitorService.getSystemHealth());
     }
+
+    @GetMapping("/cache-stats")
+    public ResponseEntity<List<CacheStatsResponse>> getCacheStatistics() {
+        return ResponseEntity.ok(systemMonitorService.getCacheStatistics());
+    }
 }
 
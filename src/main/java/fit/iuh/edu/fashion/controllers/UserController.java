@@ -3,6 +3,7 @@ package fit.iuh.edu.fashion.controllers;
 import fit.iuh.edu.fashion.dto.request.CreateUserRequest;
 import fit.iuh.edu.fashion.dto.request.UpdateUserRequest;
 import fit.iuh.edu.fashion.dto.request.UpdateUserStatusRequest;
+import fit.iuh.edu.fashion.dto.response.LoyaltyReconcileResponse;
 import fit.iuh.edu.fashion.dto.response.UserResponse;
 import fit.iuh.edu.fashion.models.Role;
 import fit.iuh.edu.fashion.models.User;
@@ -10,6 +11,7 @@ import fit.iuh.edu.fashion.repositories.CustomerProfileRepository;
 import fit.iuh.edu.fashion.repositories.EmployeeProfileRepository;
 import fit.iuh.edu.fashion.repositories.RoleRepository;
 import fit.iuh.edu.fashion.repositories.UserRepository;
+import fit.iuh.edu.fashion.services.LoyaltyLedgerService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
@@ -33,6 +35,7 @@ public class UserController {
     private final EmployeeProfileRepository employeeProfileRepository;
     private final CustomerProfileRepository customerProfileRepository;
     private final PasswordEncoder passwordEncoder;
+    private final LoyaltyLedgerService loyaltyLedgerService;
 
     @GetMapping
     @PreAuthorize("hasRole('ADMIN')")
@@ -43,6 +46,15 @@ public class UserController {
         return ResponseEntity.ok(users);
     }
 
+    /**
+     * Đối soát số dư điểm tích lũy của khách hàng với sổ điểm
+     */
+    @PostMapping("/loyalty/reconcile")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<LoyaltyReconcileResponse> reconcileLoyaltyPoints() {
+        return ResponseEntity.ok(loyaltyLedgerService.reconcile());
+    }
+
     @GetMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<UserResponse> getUserById(@PathVariable Long id) {
@@ -1,5 +1,6 @@
 package fit.iuh.edu.fashion.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 
 import java.io.Serializable;
@@ -9,6 +10,7 @@ import java.util.Set;
 
 /**
  * DTO tối ưu cho AI context - chỉ chứa thông tin cần thiết
+ * (các getter tính toán được @JsonIgnore để không bị ghi vào cache rồi đọc lại như field lạ)
  */
 @Data
 @Builder
@@ -89,6 +91,7 @@ public class ProductCatalogDTO implements Serializable {
     /**
      * Lấy danh sách màu sắc có sẵn dưới dạng string
      */
+    @JsonIgnore
     public String getColors() {
         if (variants == null || variants.isEmpty()) return "";
 
@@ -104,6 +107,7 @@ public class ProductCatalogDTO implements Serializable {
     /**
      * Lấy danh sách size có sẵn dưới dạng string
      */
+    @JsonIgnore
     public String getSizes() {
         if (variants == null || variants.isEmpty()) return "";
 
@@ -119,6 +123,7 @@ public class ProductCatalogDTO implements Serializable {
     /**
      * Lấy tên category đầu tiên
      */
+    @JsonIgnore
     public String getCategoryName() {
         if (categories == null || categories.isEmpty()) return null;
         return categories.get(0);
@@ -0,0 +1,23 @@
+package fit.iuh.edu.fashion.dto.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Tham số lọc facet (bind từ query string): OR trong cùng một facet, AND giữa các facet
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductFacetSearchRequest {
+    private String keyword;
+    private List<Long> brandIds;
+    private List<Long> categoryIds;
+    private List<Long> colorIds;
+    private List<Long> sizeIds;
+    private Boolean inStock;
+    private List<String> priceBuckets;
+}
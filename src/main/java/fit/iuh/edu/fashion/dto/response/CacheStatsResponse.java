@@ -0,0 +1,35 @@
+package fit.iuh.edu.fashion.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheStatsResponse {
+    private String cacheName;
+
+    // L1 near-cache (trên heap của node hiện tại)
+    private long l1Size;
+    private long l1HitCount;
+    private long l1MissCount;
+    private double l1HitRate;
+    private long l1EvictionCount;
+
+    // Refresh-ahead (chỉ có với cache dùng RefreshAheadCache)
+    private long refreshAheadRequests;
+    private long refreshAheadLoads;
+    private long backgroundRefreshes;
+    private long coalescedCallers;
+    private long staleServed;
+    private long refreshFailures;
+
+    // Cache câu trả lời AI theo nghĩa (aiResponses.intent, aiResponses.similar)
+    private long semanticSize;
+    private long semanticHitCount;
+    private long semanticMissCount;
+    private double semanticHitRate;
+}
@@ -0,0 +1,30 @@
+package fit.iuh.edu.fashion.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HotSkuStatusResponse {
+    private Long variantId;
+    private String label;
+    private int admissionLimit;
+    private int inFlight;
+
+    // Tồn kho trong ledger (đã trừ các lượt giữ hàng chưa flush)
+    private int ledgerStock;
+    // Tồn kho ledger đã ghi xuống product_variants ở lần flush gần nhất
+    private int flushedStock;
+    // Tồn kho đọc từ product_variants khi đối soát (null nếu chưa đối soát)
+    private Integer databaseStock;
+    // databaseStock - flushedStock; khác 0 là có ghi tồn kho ngoài ledger
+    private int drift;
+
+    private long reservations;
+    private long admissionRejections;
+    private long outOfStockRejections;
+}
@@ -0,0 +1,29 @@
+package fit.iuh.edu.fashion.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoyaltyReconcileResponse {
+    private long customersChecked;
+    private long entriesScanned;
+    // Khách hàng có số dư customer_profiles.loyalty_point khác tổng sổ điểm
+    private List<Mismatch> mismatches;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Mismatch {
+        private Long customerId;
+        // null: không có customer profile
+        private Integer balance;
+        private long ledgerBalance;
+    }
+}
@@ -0,0 +1,20 @@
+package fit.iuh.edu.fashion.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Trang đầu lịch sử đơn hàng của một khách hàng, giữ trong cache customerOrders
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OrderHistoryPageResponse {
+    private List<OrderSummaryResponse> content;
+    private long totalElements;
+}
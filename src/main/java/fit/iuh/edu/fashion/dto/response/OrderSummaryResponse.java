@@ -0,0 +1,34 @@
+package fit.iuh.edu.fashion.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Một dòng trong danh sách "Đơn hàng của tôi" - chi tiết đơn lấy qua /api/orders/{id}
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OrderSummaryResponse {
+    private Long id;
+    private String code;
+    private String status;
+    private String paymentStatus;
+    private String paymentMethod;
+    private BigDecimal grandTotal;
+    private LocalDateTime placedAt;
+    private String shipName;
+    private String shipPhone;
+    private String shipLine1;
+    private String shipWard;
+    private String shipDistrict;
+    private String shipCity;
+    private Integer itemCount;
+    private String firstItemName;
+}
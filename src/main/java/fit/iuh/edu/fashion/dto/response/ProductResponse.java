@@ -7,6 +7,7 @@ import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @Data
 @NoArgsConstructor
@@ -26,6 +27,7 @@ public class ProductResponse {
     private List<ProductImageResponse> images;
     private Double averageRating;
     private Long totalReviews;
+    private Map<Integer, Long> ratingDistribution;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 }
@@ -35,7 +35,10 @@ public class CartItem {
 
     @PrePersist
     protected void onCreate() {
-        addedAt = LocalDateTime.now();
+        // Giỏ sống ghi xuống giữ nguyên thời điểm thêm món
+        if (addedAt == null) {
+            addedAt = LocalDateTime.now();
+        }
     }
 }
 
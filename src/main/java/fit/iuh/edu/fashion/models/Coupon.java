@@ -53,6 +53,14 @@ public class Coupon {
     @Column(name = "is_active", nullable = false)
     private Boolean isActive = true;
 
+    // > 0: lượt dùng chia sẵn vào N stripe (coupon_redemption_stripes) cho chiến dịch lớn, tránh một dòng nóng
+    @Column(name = "redemption_stripes")
+    private Integer redemptionStripes;
+
+    // Tổng lượt đã dùng (used_count + lượt trên các stripe) cho trang quản trị - không lưu xuống DB
+    @Transient
+    private Integer totalUsedCount;
+
     @JsonIgnore
     @ManyToOne
     @JoinColumn(name = "created_by")
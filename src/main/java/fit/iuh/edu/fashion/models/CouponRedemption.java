@@ -0,0 +1,59 @@
+package fit.iuh.edu.fashion.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Một lượt dùng mã giảm giá của một đơn hàng. Hủy/hoàn tiền đơn thì lượt được trả lại (RELEASED)
+ * về đúng nơi đã lấy: stripe, hoặc bộ đếm used_count của coupon.
+ */
+@Entity
+@Table(name = "coupon_redemptions", indexes = {
+    @Index(name = "idx_coupon_redemptions_coupon_customer", columnList = "coupon_id, customer_user_id, status")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CouponRedemption {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "coupon_id", nullable = false)
+    private Long couponId;
+
+    @Column(name = "order_id", nullable = false, unique = true)
+    private Long orderId;
+
+    @Column(name = "customer_user_id", nullable = false)
+    private Long customerId;
+
+    // Stripe đã lấy lượt; null khi lấy từ used_count
+    @Column(name = "stripe")
+    private Integer stripe;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    @Builder.Default
+    private Status status = Status.REDEEMED;
+
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "released_at")
+    private LocalDateTime releasedAt;
+
+    public enum Status {
+        REDEEMED,
+        RELEASED
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,38 @@
+package fit.iuh.edu.fashion.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Một phần lượt dùng được chia sẵn của coupon. Checkout trừ lượt trên một stripe ngẫu nhiên,
+ * nên các đơn dùng cùng mã không tranh nhau một dòng coupons.
+ * Tổng lượt đã dùng của coupon = used_count + tổng used của các stripe.
+ */
+@Entity
+@Table(name = "coupon_redemption_stripes", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_coupon_redemption_stripes", columnNames = {"coupon_id", "stripe"})
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CouponRedemptionStripe {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "coupon_id", nullable = false)
+    private Long couponId;
+
+    @Column(name = "stripe", nullable = false)
+    private Integer stripe;
+
+    // null: coupon không giới hạn lượt dùng
+    @Column(name = "capacity")
+    private Integer capacity;
+
+    @Column(name = "used", nullable = false)
+    @Builder.Default
+    private Integer used = 0;
+}
@@ -0,0 +1,79 @@
+package fit.iuh.edu.fashion.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Bản tóm tắt một đơn hàng cho trang "Đơn hàng của tôi" (read model, một dòng / đơn).
+ * Ghi cùng transaction khi đơn được tạo, đổi trạng thái, đổi thanh toán hoặc hoàn tiền;
+ * trang danh sách đọc bảng này theo (khách hàng, placed_at) thay vì nạp đơn và từng dòng hàng.
+ */
+@Entity
+@Table(name = "customer_order_summaries", indexes = {
+    @Index(name = "idx_customer_order_summaries_customer", columnList = "customer_user_id, placed_at, order_id")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CustomerOrderSummary {
+    @Id
+    @Column(name = "order_id")
+    private Long orderId;
+
+    @Column(name = "customer_user_id", nullable = false)
+    private Long customerId;
+
+    @Column(nullable = false, length = 40)
+    private String code;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Order.OrderStatus status;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "payment_status", nullable = false, length = 20)
+    private Order.PaymentStatus paymentStatus;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "payment_method", nullable = false, length = 20)
+    private Order.PaymentMethod paymentMethod;
+
+    @Column(name = "grand_total", nullable = false, precision = 12, scale = 2)
+    private BigDecimal grandTotal;
+
+    @Column(name = "placed_at")
+    private LocalDateTime placedAt;
+
+    @Column(name = "ship_name", length = 160)
+    private String shipName;
+
+    @Column(name = "ship_phone", length = 32)
+    private String shipPhone;
+
+    @Column(name = "ship_line1", length = 255)
+    private String shipLine1;
+
+    @Column(name = "ship_ward", length = 128)
+    private String shipWard;
+
+    @Column(name = "ship_district", length = 128)
+    private String shipDistrict;
+
+    @Column(name = "ship_city", length = 128)
+    private String shipCity;
+
+    @Column(name = "item_count", nullable = false)
+    private Integer itemCount;
+
+    // Tên sản phẩm đầu tiên của đơn, để hiển thị xem trước
+    @Column(name = "first_item_name", length = 255)
+    private String firstItemName;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
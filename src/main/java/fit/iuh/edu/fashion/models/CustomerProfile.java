@@ -31,7 +31,9 @@ public class CustomerProfile {
     @Column
     private LocalDate birthday;
 
-    @Column(name = "loyalty_point", nullable = false)
+    // Số dư sổ điểm (loyalty_point_entries) - chỉ LoyaltyLedgerService cập nhật bằng UPDATE nguyên tử,
+    // lưu entity (ví dụ sửa hồ sơ) không ghi đè cột này
+    @Column(name = "loyalty_point", nullable = false, updatable = false)
     private Integer loyaltyPoint = 0;
 
     public enum Gender {
@@ -0,0 +1,34 @@
+package fit.iuh.edu.fashion.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Variant được admin đánh dấu "hot SKU" (flash sale): tồn kho giữ trong HotSkuLedger thay vì khóa dòng DB.
+ */
+@Entity
+@Table(name = "hot_sku_variants")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class HotSkuVariant {
+    @Id
+    @Column(name = "variant_id")
+    private Long variantId;
+
+    // Số lượt đặt hàng đồng thời tối đa cho variant này
+    @Column(name = "admission_limit", nullable = false)
+    private Integer admissionLimit;
+
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,58 @@
+package fit.iuh.edu.fashion.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Một dòng trong sổ điểm tích lũy (chỉ thêm, không sửa). Số dư customer_profiles.loyalty_point
+ * luôn bằng tổng points các dòng của khách hàng; mỗi đơn chỉ có tối đa một dòng cho mỗi loại.
+ */
+@Entity
+@Table(name = "loyalty_point_entries", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_loyalty_point_entries_order_type", columnNames = {"order_id", "type"})
+}, indexes = {
+    @Index(name = "idx_loyalty_point_entries_customer", columnList = "customer_user_id, id")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LoyaltyPointEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "loyalty_point_entries_seq")
+    @SequenceGenerator(name = "loyalty_point_entries_seq", sequenceName = "loyalty_point_entries_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "customer_user_id", nullable = false)
+    private Long customerId;
+
+    @Column(name = "order_id")
+    private Long orderId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "type", nullable = false, length = 20)
+    private EntryType type;
+
+    // Dương: cộng điểm, âm: trừ điểm
+    @Column(name = "points", nullable = false)
+    private Integer points;
+
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+
+    public enum EntryType {
+        OPENING,          // số dư có sẵn trước khi dùng sổ điểm
+        REDEEM,           // dùng điểm khi đặt hàng
+        REDEEM_REVERSAL,  // hoàn điểm đã dùng khi hủy/hoàn tiền
+        EARN,             // cộng điểm khi đơn hoàn thành
+        EARN_REVERSAL     // thu hồi điểm đã cộng khi đơn hoàn thành bị hoàn tiền
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
@@ -10,7 +10,9 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+    @Index(name = "idx_orders_payment_expires_at", columnList = "payment_expires_at")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -107,6 +109,10 @@ public class Order {
     @Column(name = "payment_time")
     private LocalDateTime paymentTime;
 
+    // Hạn thanh toán online (VNPay); quá hạn mà chưa thanh toán thì đơn bị hủy và trả hàng về kho
+    @Column(name = "payment_expires_at")
+    private LocalDateTime paymentExpiresAt;
+
     @JsonIgnoreProperties({"order", "hibernateLazyInitializer", "handler"})
     @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<OrderItem> items = new ArrayList<>();
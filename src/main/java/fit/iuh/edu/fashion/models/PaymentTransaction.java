@@ -15,7 +15,8 @@ import java.time.LocalDateTime;
 @Builder
 public class PaymentTransaction {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payment_transactions_seq")
+    @SequenceGenerator(name = "payment_transactions_seq", sequenceName = "payment_transactions_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne
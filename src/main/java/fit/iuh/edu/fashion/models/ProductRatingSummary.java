@@ -0,0 +1,47 @@
+package fit.iuh.edu.fashion.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Tổng hợp đánh giá đã duyệt của một sản phẩm (tổng điểm, số lượt, phân bố theo số sao).
+ * Được cập nhật tăng dần cùng transaction với thao tác trên product_reviews.
+ */
+@Entity
+@Table(name = "product_rating_summaries")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductRatingSummary {
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Column(name = "rating_sum", nullable = false)
+    private Long ratingSum = 0L;
+
+    @Column(name = "rating_count", nullable = false)
+    private Long ratingCount = 0L;
+
+    @Column(name = "star1_count", nullable = false)
+    private Long star1Count = 0L;
+
+    @Column(name = "star2_count", nullable = false)
+    private Long star2Count = 0L;
+
+    @Column(name = "star3_count", nullable = false)
+    private Long star3Count = 0L;
+
+    @Column(name = "star4_count", nullable = false)
+    private Long star4Count = 0L;
+
+    @Column(name = "star5_count", nullable = false)
+    private Long star5Count = 0L;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
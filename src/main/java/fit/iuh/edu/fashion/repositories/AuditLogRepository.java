@@ -1,6 +1,7 @@
 package fit.iuh.edu.fashion.repositories;
 
 import fit.iuh.edu.fashion.models.AuditLog;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -9,6 +10,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -24,8 +26,21 @@ public interface AuditLogRepository extends JpaRepository<AuditLog, Long> {
 
     Page<AuditLog> findByCreatedAtBetween(LocalDateTime start, LocalDateTime end, Pageable pageable);
 
+    // Keyset pagination theo (createdAt, id) giảm dần - không COUNT, không OFFSET
+    @Query("SELECT a FROM AuditLog a ORDER BY a.createdAt DESC, a.id DESC")
+    List<AuditLog> findLatest(Limit limit);
+
+    @Query("SELECT a FROM AuditLog a WHERE a.createdAt < :createdAt OR (a.createdAt = :createdAt AND a.id < :id) " +
+           "ORDER BY a.createdAt DESC, a.id DESC")
+    List<AuditLog> findBefore(@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Limit limit);
+
     List<AuditLog> findByEntityTypeAndEntityIdOrderByCreatedAtDesc(String entityType, Long entityId);
 
+    @Query("SELECT DISTINCT a.entityId FROM AuditLog a WHERE a.action = :action AND a.entityType = :entityType " +
+           "AND a.entityId IN :entityIds")
+    List<Long> findLoggedEntityIds(@Param("action") String action, @Param("entityType") String entityType,
+                                   @Param("entityIds") Collection<Long> entityIds);
+
     Long countByAction(String action);
 
     Long countByStatus(String status);
@@ -2,12 +2,33 @@ package fit.iuh.edu.fashion.repositories;
 
 import fit.iuh.edu.fashion.models.CartItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface CartItemRepository extends JpaRepository<CartItem, Long> {
     Optional<CartItem> findByCartIdAndVariantId(Long cartId, Long variantId);
-}
 
+    /**
+     * Các dòng đã lưu của giỏ để đồng bộ với giỏ sống
+     * 0 id, 1 variantId, 2 quantity
+     */
+    @Query("SELECT ci.id, ci.variant.id, ci.quantity FROM CartItem ci WHERE ci.cart.id = :cartId")
+    List<Object[]> findFlushRows(@Param("cartId") Long cartId);
+
+    @Modifying
+    @Query("UPDATE CartItem ci SET ci.quantity = :quantity WHERE ci.id = :id")
+    int updateQuantity(@Param("id") Long id, @Param("quantity") Integer quantity);
+
+    // Dọn giỏ hàng sau khi đặt hàng: giữ lại các món khách thêm vào sau thời điểm đặt
+    @Modifying
+    @Query("DELETE FROM CartItem ci WHERE ci.cart.id IN (SELECT c.id FROM Cart c WHERE c.customer.id = :customerId) " +
+           "AND ci.addedAt <= :placedAt")
+    int deleteByCustomerAddedUntil(@Param("customerId") Long customerId, @Param("placedAt") LocalDateTime placedAt);
+}
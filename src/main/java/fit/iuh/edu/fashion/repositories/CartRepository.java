@@ -3,13 +3,27 @@ package fit.iuh.edu.fashion.repositories;
 import fit.iuh.edu.fashion.models.Cart;
 import fit.iuh.edu.fashion.models.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface CartRepository extends JpaRepository<Cart, Long> {
     Optional<Cart> findByCustomer(User customer);
     Optional<Cart> findByCustomerId(Long customerId);
+
+    @Query("SELECT c.id FROM Cart c WHERE c.customer.id = :customerId")
+    Optional<Long> findIdByCustomerId(@Param("customerId") Long customerId);
+
+    /**
+     * Giỏ hàng của khách để nạp vào giỏ sống (giỏ rỗng: một dòng với variantId null)
+     * 0 cartId, 1 variantId, 2 quantity, 3 addedAt
+     */
+    @Query("SELECT c.id, ci.variant.id, ci.quantity, ci.addedAt FROM Cart c LEFT JOIN c.items ci " +
+           "WHERE c.customer.id = :customerId")
+    List<Object[]> findLiveCartRows(@Param("customerId") Long customerId);
 }
 
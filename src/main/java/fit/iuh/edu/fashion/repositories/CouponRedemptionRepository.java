@@ -0,0 +1,34 @@
+package fit.iuh.edu.fashion.repositories;
+
+import fit.iuh.edu.fashion.models.CouponRedemption;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CouponRedemptionRepository extends JpaRepository<CouponRedemption, Long> {
+
+    Optional<CouponRedemption> findByOrderIdAndStatus(Long orderId, CouponRedemption.Status status);
+
+    // Đọc có khóa: thấy lượt vừa commit của transaction khác (không dùng snapshot của REPEATABLE READ)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r.id FROM CouponRedemption r " +
+           "WHERE r.couponId = :couponId AND r.customerId = :customerId AND r.status = :status")
+    List<Long> lockIdsByCouponIdAndCustomerIdAndStatus(@Param("couponId") Long couponId,
+                                                       @Param("customerId") Long customerId,
+                                                       @Param("status") CouponRedemption.Status status);
+
+    // Chỉ một lần hủy/hoàn tiền trả lại lượt, kể cả khi hai thao tác chạy đồng thời
+    @Modifying
+    @Query("UPDATE CouponRedemption r SET r.status = fit.iuh.edu.fashion.models.CouponRedemption.Status.RELEASED, " +
+           "r.releasedAt = :now WHERE r.id = :id AND r.status = fit.iuh.edu.fashion.models.CouponRedemption.Status.REDEEMED")
+    int markReleased(@Param("id") Long id, @Param("now") LocalDateTime now);
+}
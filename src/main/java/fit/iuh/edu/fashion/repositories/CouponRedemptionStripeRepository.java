@@ -0,0 +1,46 @@
+package fit.iuh.edu.fashion.repositories;
+
+import fit.iuh.edu.fashion.models.CouponRedemptionStripe;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface CouponRedemptionStripeRepository extends JpaRepository<CouponRedemptionStripe, Long> {
+
+    @Modifying
+    @Query("UPDATE CouponRedemptionStripe s SET s.used = s.used + 1 " +
+           "WHERE s.couponId = :couponId AND s.stripe = :stripe AND (s.capacity IS NULL OR s.used < s.capacity)")
+    int take(@Param("couponId") Long couponId, @Param("stripe") Integer stripe);
+
+    @Modifying
+    @Query("UPDATE CouponRedemptionStripe s SET s.used = s.used - 1 " +
+           "WHERE s.couponId = :couponId AND s.stripe = :stripe AND s.used > 0")
+    int giveBack(@Param("couponId") Long couponId, @Param("stripe") Integer stripe);
+
+    @Modifying
+    @Query("UPDATE CouponRedemptionStripe s SET s.capacity = s.capacity + 1 " +
+           "WHERE s.couponId = :couponId AND s.stripe = :stripe AND s.capacity IS NOT NULL")
+    int addCapacity(@Param("couponId") Long couponId, @Param("stripe") Integer stripe);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM CouponRedemptionStripe s WHERE s.couponId = :couponId ORDER BY s.stripe")
+    List<CouponRedemptionStripe> lockByCouponId(@Param("couponId") Long couponId);
+
+    List<CouponRedemptionStripe> findByCouponId(Long couponId);
+
+    @Query("SELECT s.couponId, SUM(s.used) FROM CouponRedemptionStripe s " +
+           "WHERE s.couponId IN :couponIds GROUP BY s.couponId")
+    List<Object[]> sumUsedByCouponIds(@Param("couponIds") Collection<Long> couponIds);
+
+    @Modifying
+    @Query("DELETE FROM CouponRedemptionStripe s WHERE s.couponId = :couponId")
+    int deleteByCouponId(@Param("couponId") Long couponId);
+}
@@ -1,7 +1,11 @@
 package fit.iuh.edu.fashion.repositories;
 
 import fit.iuh.edu.fashion.models.Coupon;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -21,5 +25,28 @@ public interface CouponRepository extends JpaRepository<Coupon, Long> {
 
     @Query("SELECT c FROM Coupon c WHERE c.isActive = true AND c.endAt >= :now")
     List<Coupon> findActiveCoupons(@Param("now") LocalDateTime now);
-}
 
+    // Keyset pagination theo id giảm dần
+    @Query("SELECT c FROM Coupon c ORDER BY c.id DESC")
+    List<Coupon> findLatest(Limit limit);
+
+    @Query("SELECT c FROM Coupon c WHERE c.id < :id ORDER BY c.id DESC")
+    List<Coupon> findBefore(@Param("id") Long id, Limit limit);
+
+    // Tăng lượt dùng có điều kiện - trả về 0 khi đã hết lượt
+    @Modifying
+    @Query("UPDATE Coupon c SET c.usedCount = c.usedCount + 1 " +
+           "WHERE c.id = :id AND (c.usageLimit IS NULL OR c.usedCount < c.usageLimit)")
+    int incrementUsage(@Param("id") Long id);
+
+    @Modifying
+    @Query("UPDATE Coupon c SET c.usedCount = c.usedCount - 1 WHERE c.id = :id AND c.usedCount > 0")
+    int decrementUsage(@Param("id") Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Coupon c WHERE c.id = :id")
+    Optional<Coupon> lockById(@Param("id") Long id);
+
+    @Query("SELECT c.id FROM Coupon c WHERE c.redemptionStripes > 0")
+    List<Long> findStripedIds();
+}
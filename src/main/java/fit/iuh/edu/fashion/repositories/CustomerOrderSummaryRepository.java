@@ -0,0 +1,33 @@
+package fit.iuh.edu.fashion.repositories;
+
+import fit.iuh.edu.fashion.models.CustomerOrderSummary;
+import fit.iuh.edu.fashion.models.Order;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface CustomerOrderSummaryRepository extends JpaRepository<CustomerOrderSummary, Long> {
+
+    // Một câu SQL: trang đơn (đọc theo index customer, placed_at) kèm tổng số đơn của khách (đếm trên cùng index)
+    @Query("SELECT s, (SELECT COUNT(c) FROM CustomerOrderSummary c WHERE c.customerId = :customerId) " +
+           "FROM CustomerOrderSummary s WHERE s.customerId = :customerId ORDER BY s.placedAt DESC, s.orderId DESC")
+    List<Object[]> findPageWithTotal(@Param("customerId") Long customerId, Pageable pageable);
+
+    long countByCustomerId(Long customerId);
+
+    @Modifying
+    @Query("UPDATE CustomerOrderSummary s SET s.status = :status, s.paymentStatus = :paymentStatus, " +
+           "s.paymentMethod = :paymentMethod, s.updatedAt = :now WHERE s.orderId = :orderId")
+    int updateState(@Param("orderId") Long orderId,
+                    @Param("status") Order.OrderStatus status,
+                    @Param("paymentStatus") Order.PaymentStatus paymentStatus,
+                    @Param("paymentMethod") Order.PaymentMethod paymentMethod,
+                    @Param("now") LocalDateTime now);
+}
@@ -1,10 +1,48 @@
 package fit.iuh.edu.fashion.repositories;
 
 import fit.iuh.edu.fashion.models.CustomerProfile;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface CustomerProfileRepository extends JpaRepository<CustomerProfile, Long> {
-}
 
+    @Query("SELECT p.loyaltyPoint FROM CustomerProfile p WHERE p.userId = :userId")
+    Optional<Integer> findLoyaltyPoint(@Param("userId") Long userId);
+
+    @Query("SELECT p.userId, p.loyaltyPoint FROM CustomerProfile p WHERE p.userId IN :userIds")
+    List<Object[]> findLoyaltyPoints(@Param("userIds") Collection<Long> userIds);
+
+    // Trừ điểm có điều kiện - trả về 0 khi không đủ điểm
+    @Modifying
+    @Query("UPDATE CustomerProfile p SET p.loyaltyPoint = p.loyaltyPoint - :points " +
+           "WHERE p.userId = :userId AND p.loyaltyPoint >= :points")
+    int spendLoyaltyPoints(@Param("userId") Long userId, @Param("points") int points);
+
+    @Modifying
+    @Query("UPDATE CustomerProfile p SET p.loyaltyPoint = p.loyaltyPoint + :points WHERE p.userId = :userId")
+    int addLoyaltyPoints(@Param("userId") Long userId, @Param("points") int points);
+
+    // Số dư khác 0 nhưng không có dòng nào trong sổ điểm
+    @Query("SELECT p.userId, p.loyaltyPoint FROM CustomerProfile p WHERE p.loyaltyPoint <> 0 " +
+           "AND NOT EXISTS (SELECT 1 FROM LoyaltyPointEntry e WHERE e.customerId = p.userId)")
+    List<Object[]> findUnledgeredLoyaltyPoints();
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p.loyaltyPoint FROM CustomerProfile p WHERE p.userId = :userId")
+    Optional<Integer> lockLoyaltyPoint(@Param("userId") Long userId);
+
+    // Khóa hồ sơ khách hàng để tuần tự hóa các checkout của cùng một khách (kiểm tra per_user_limit)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p.userId FROM CustomerProfile p WHERE p.userId = :userId")
+    Optional<Long> lockByUserId(@Param("userId") Long userId);
+}
@@ -0,0 +1,26 @@
+package fit.iuh.edu.fashion.repositories;
+
+import fit.iuh.edu.fashion.models.HotSkuVariant;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface HotSkuVariantRepository extends JpaRepository<HotSkuVariant, Long> {
+
+    /**
+     * Đơn hàng đã commit trên hot SKU nhưng chưa có inventory movement SALE (tiến trình dừng trước khi flush)
+     * 0 orderId, 1 orderCode, 2 customerId, 3 variantId, 4 quantity
+     */
+    @Query(value = "SELECT oi.order_id, o.code, o.customer_user_id, oi.variant_id, SUM(oi.quantity) " +
+                   "FROM order_items oi " +
+                   "JOIN orders o ON o.id = oi.order_id " +
+                   "JOIN hot_sku_variants h ON h.variant_id = oi.variant_id " +
+                   "WHERE o.placed_at >= h.created_at AND o.status NOT IN ('CANCELLED', 'REFUNDED') " +
+                   "AND NOT EXISTS (SELECT 1 FROM inventory_movements im WHERE im.related_order_id = oi.order_id " +
+                   "AND im.variant_id = oi.variant_id AND im.reason = 'SALE') " +
+                   "GROUP BY oi.order_id, o.code, o.customer_user_id, oi.variant_id", nativeQuery = true)
+    List<Object[]> findUnrecordedSales();
+}
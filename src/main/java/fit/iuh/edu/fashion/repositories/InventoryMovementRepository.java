@@ -7,12 +7,21 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface InventoryMovementRepository extends JpaRepository<InventoryMovement, Long> {
     List<InventoryMovement> findByVariantId(Long variantId);
 
+    /**
+     * Các cặp (orderId, variantId) đã có movement với lý do này
+     */
+    @Query("SELECT DISTINCT im.relatedOrder.id, im.variant.id FROM InventoryMovement im " +
+           "WHERE im.relatedOrder.id IN :orderIds AND im.reason = :reason")
+    List<Object[]> findRelatedOrderVariantIds(@Param("orderIds") Collection<Long> orderIds,
+                                              @Param("reason") InventoryMovement.MovementReason reason);
+
     @Query("SELECT im FROM InventoryMovement im WHERE im.variant.id = :variantId " +
            "AND im.createdAt BETWEEN :startDate AND :endDate ORDER BY im.createdAt DESC")
     List<InventoryMovement> findByVariantIdAndDateRange(@Param("variantId") Long variantId,
@@ -0,0 +1,33 @@
+package fit.iuh.edu.fashion.repositories;
+
+import fit.iuh.edu.fashion.models.LoyaltyPointEntry;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+@Repository
+public interface LoyaltyPointEntryRepository extends JpaRepository<LoyaltyPointEntry, Long> {
+
+    boolean existsByOrderIdAndType(Long orderId, LoyaltyPointEntry.EntryType type);
+
+    @Query("SELECT e.orderId FROM LoyaltyPointEntry e WHERE e.type = :type AND e.orderId IN :orderIds")
+    List<Long> findOrderIdsByType(@Param("type") LoyaltyPointEntry.EntryType type,
+                                  @Param("orderIds") Collection<Long> orderIds);
+
+    List<LoyaltyPointEntry> findByCustomerIdOrderByIdDesc(Long customerId);
+
+    // Đối soát: tổng điểm theo khách hàng, đọc dần theo con trỏ thay vì nạp cả sổ vào bộ nhớ
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT e.customerId, SUM(e.points), COUNT(e) FROM LoyaltyPointEntry e " +
+           "GROUP BY e.customerId ORDER BY e.customerId")
+    Stream<Object[]> streamBalancesByCustomer();
+}
@@ -0,0 +1,28 @@
+package fit.iuh.edu.fashion.repositories;
+
+import fit.iuh.edu.fashion.models.OrderOutboxEvent;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OrderOutboxEventRepository extends JpaRepository<OrderOutboxEvent, Long> {
+
+    @Query("SELECT e.id FROM OrderOutboxEvent e WHERE e.status = :status ORDER BY e.id")
+    List<Long> findIdsByStatus(@Param("status") OrderOutboxEvent.Status status, Limit limit);
+
+    // Khóa các sự kiện còn chờ - instance khác đang xử lý cùng lô sẽ đợi rồi thấy status đã đổi
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT e FROM OrderOutboxEvent e WHERE e.id IN :ids AND e.status = :status ORDER BY e.id")
+    List<OrderOutboxEvent> lockByIdInAndStatus(@Param("ids") Collection<Long> ids,
+                                               @Param("status") OrderOutboxEvent.Status status);
+
+    long countByStatus(OrderOutboxEvent.Status status);
+}
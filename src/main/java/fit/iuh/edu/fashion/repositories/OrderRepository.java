@@ -1,14 +1,18 @@
 package fit.iuh.edu.fashion.repositories;
 
 import fit.iuh.edu.fashion.models.Order;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,6 +24,18 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
 
     Page<Order> findByStatus(Order.OrderStatus status, Pageable pageable);
 
+    // Keyset pagination theo (placedAt, id) giảm dần - không COUNT, không OFFSET.
+    // placedAt NULL (dữ liệu cũ) xếp cuối khi DESC trên MariaDB/H2 và được duyệt tiếp theo id.
+    @Query("SELECT o FROM Order o ORDER BY o.placedAt DESC, o.id DESC")
+    List<Order> findLatest(Limit limit);
+
+    @Query("SELECT o FROM Order o WHERE o.placedAt < :placedAt OR (o.placedAt = :placedAt AND o.id < :id) " +
+           "OR o.placedAt IS NULL ORDER BY o.placedAt DESC, o.id DESC")
+    List<Order> findPlacedBefore(@Param("placedAt") LocalDateTime placedAt, @Param("id") Long id, Limit limit);
+
+    @Query("SELECT o FROM Order o WHERE o.placedAt IS NULL AND o.id < :id ORDER BY o.id DESC")
+    List<Order> findUnplacedBefore(@Param("id") Long id, Limit limit);
+
     @Query("SELECT o FROM Order o WHERE o.customer.id = :customerId AND o.status = :status")
     Page<Order> findByCustomerIdAndStatus(@Param("customerId") Long customerId,
                                           @Param("status") Order.OrderStatus status,
@@ -32,4 +48,24 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     List<Order> findByCustomerOrderByPlacedAtDesc(fit.iuh.edu.fashion.models.User customer);
 
     long countByPlacedAtAfter(LocalDateTime date);
+
+    @Query("SELECT o FROM Order o JOIN FETCH o.customer WHERE o.id IN :ids")
+    List<Order> findAllWithCustomerByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.code = :code")
+    Optional<Order> lockByCode(@Param("code") String code);
+
+    // Đơn chờ thanh toán online còn giữ hàng: (id, payment_expires_at), duyệt theo id
+    @Query("SELECT o.id, o.paymentExpiresAt FROM Order o WHERE o.paymentExpiresAt IS NOT NULL " +
+           "AND o.status = fit.iuh.edu.fashion.models.Order.OrderStatus.PENDING " +
+           "AND o.paymentStatus <> fit.iuh.edu.fashion.models.Order.PaymentStatus.PAID AND o.id > :afterId ORDER BY o.id")
+    List<Object[]> findAwaitingPayment(@Param("afterId") Long afterId, Limit limit);
+
+    // Khóa các đơn vẫn còn chờ thanh toán đã quá hạn - đơn vừa được thanh toán / hủy / đổi phương thức thì bỏ qua
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.id IN :ids AND o.paymentExpiresAt <= :now " +
+           "AND o.status = fit.iuh.edu.fashion.models.Order.OrderStatus.PENDING " +
+           "AND o.paymentStatus <> fit.iuh.edu.fashion.models.Order.PaymentStatus.PAID ORDER BY o.id")
+    List<Order> lockExpiredAwaitingPayment(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
 }
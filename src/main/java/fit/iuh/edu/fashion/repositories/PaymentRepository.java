@@ -1,9 +1,14 @@
 package fit.iuh.edu.fashion.repositories;
 
 import fit.iuh.edu.fashion.models.Payment;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -11,5 +16,20 @@ import java.util.Optional;
 public interface PaymentRepository extends JpaRepository<Payment, Long> {
     List<Payment> findByOrderId(Long orderId);
     Optional<Payment> findByTransactionId(String transactionId);
+
+    @Query("SELECT DISTINCT p.order.id FROM Payment p WHERE p.order.id IN :orderIds")
+    List<Long> findOrderIdsWithPayments(@Param("orderIds") Collection<Long> orderIds);
+
+    // Keyset pagination theo (createdAt, id) giảm dần - không COUNT, không OFFSET.
+    // createdAt NULL (dữ liệu cũ) xếp cuối khi DESC trên MariaDB/H2 và được duyệt tiếp theo id.
+    @Query("SELECT p FROM Payment p ORDER BY p.createdAt DESC, p.id DESC")
+    List<Payment> findLatest(Limit limit);
+
+    @Query("SELECT p FROM Payment p WHERE p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id) " +
+           "OR p.createdAt IS NULL ORDER BY p.createdAt DESC, p.id DESC")
+    List<Payment> findBefore(@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Limit limit);
+
+    @Query("SELECT p FROM Payment p WHERE p.createdAt IS NULL AND p.id < :id ORDER BY p.id DESC")
+    List<Payment> findUndatedBefore(@Param("id") Long id, Limit limit);
 }
 
@@ -2,8 +2,11 @@ package fit.iuh.edu.fashion.repositories;
 
 import fit.iuh.edu.fashion.models.ProductImage;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -15,4 +18,12 @@ public interface ProductImageRepository extends JpaRepository<ProductImage, Long
     List<ProductImage> findByVariantId(Long variantId);
 
     void deleteByProductId(Long productId);
+
+    /**
+     * Ảnh của nhiều sản phẩm trong một query - dùng cho listing
+     * 0 productId, 1 id, 2 url, 3 altText, 4 sortOrder, 5 variantId
+     */
+    @Query("SELECT pi.product.id, pi.id, pi.url, pi.altText, pi.sortOrder, pi.variant.id " +
+           "FROM ProductImage pi WHERE pi.product.id IN :productIds ORDER BY pi.id")
+    List<Object[]> findListingRows(@Param("productIds") Collection<Long> productIds);
 }
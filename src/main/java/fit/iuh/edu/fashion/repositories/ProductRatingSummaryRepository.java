@@ -0,0 +1,55 @@
+package fit.iuh.edu.fashion.repositories;
+
+import fit.iuh.edu.fashion.models.ProductRatingSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ProductRatingSummaryRepository extends JpaRepository<ProductRatingSummary, Long> {
+
+    /**
+     * Cộng dồn delta vào dòng tổng hợp (tạo dòng nếu chưa có) bằng một câu lệnh nguyên tử,
+     * không đọc-sửa-ghi nên hai review đồng thời của cùng sản phẩm không làm mất cập nhật
+     */
+    @Modifying
+    @Query(value = "INSERT INTO product_rating_summaries " +
+            "(product_id, rating_sum, rating_count, star1_count, star2_count, star3_count, star4_count, star5_count, updated_at) " +
+            "VALUES (:productId, :sumDelta, :countDelta, :star1, :star2, :star3, :star4, :star5, NOW()) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "rating_sum = rating_sum + VALUES(rating_sum), " +
+            "rating_count = rating_count + VALUES(rating_count), " +
+            "star1_count = star1_count + VALUES(star1_count), " +
+            "star2_count = star2_count + VALUES(star2_count), " +
+            "star3_count = star3_count + VALUES(star3_count), " +
+            "star4_count = star4_count + VALUES(star4_count), " +
+            "star5_count = star5_count + VALUES(star5_count), " +
+            "updated_at = NOW()", nativeQuery = true)
+    void applyDelta(@Param("productId") Long productId,
+                    @Param("sumDelta") long sumDelta,
+                    @Param("countDelta") long countDelta,
+                    @Param("star1") long star1,
+                    @Param("star2") long star2,
+                    @Param("star3") long star3,
+                    @Param("star4") long star4,
+                    @Param("star5") long star5);
+
+    @Modifying
+    @Query(value = "DELETE FROM product_rating_summaries", nativeQuery = true)
+    void deleteAllRows();
+
+    /**
+     * Tính lại toàn bộ từ product_reviews (dùng khi bảng tổng hợp còn trống / cần đối soát)
+     */
+    @Modifying
+    @Query(value = "INSERT INTO product_rating_summaries " +
+            "(product_id, rating_sum, rating_count, star1_count, star2_count, star3_count, star4_count, star5_count, updated_at) " +
+            "SELECT product_id, SUM(rating), COUNT(*), " +
+            "SUM(CASE WHEN rating = 1 THEN 1 ELSE 0 END), SUM(CASE WHEN rating = 2 THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN rating = 3 THEN 1 ELSE 0 END), SUM(CASE WHEN rating = 4 THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN rating = 5 THEN 1 ELSE 0 END), NOW() " +
+            "FROM product_reviews WHERE is_approved = TRUE GROUP BY product_id", nativeQuery = true)
+    int rebuildFromReviews();
+}
@@ -1,6 +1,7 @@
 package fit.iuh.edu.fashion.repositories;
 
 import fit.iuh.edu.fashion.models.Product;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -8,6 +9,8 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -27,6 +30,43 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     @Query("SELECT p FROM Product p WHERE p.brand.id = :brandId AND p.isActive = true")
     Page<Product> findByBrand(@Param("brandId") Long brandId, Pageable pageable);
 
+    // ===== Listing path: chỉ lấy id của trang, dữ liệu hiển thị được load theo lô (ProductListingService) =====
+
+    @Query(value = "SELECT p.id FROM Product p", countQuery = "SELECT COUNT(p) FROM Product p")
+    Page<Long> findPageIds(Pageable pageable);
+
+    @Query(value = "SELECT p.id FROM Product p JOIN p.categories c WHERE c.id = :categoryId AND p.isActive = true",
+           countQuery = "SELECT COUNT(p) FROM Product p JOIN p.categories c WHERE c.id = :categoryId AND p.isActive = true")
+    Page<Long> findPageIdsByCategory(@Param("categoryId") Long categoryId, Pageable pageable);
+
+    @Query(value = "SELECT p.id FROM Product p WHERE p.brand.id = :brandId AND p.isActive = true",
+           countQuery = "SELECT COUNT(p) FROM Product p WHERE p.brand.id = :brandId AND p.isActive = true")
+    Page<Long> findPageIdsByBrand(@Param("brandId") Long brandId, Pageable pageable);
+
+    // Keyset pagination theo id giảm dần (sản phẩm mới nhất trước)
+    @Query("SELECT p.id FROM Product p ORDER BY p.id DESC")
+    List<Long> findLatestIds(Limit limit);
+
+    @Query("SELECT p.id FROM Product p WHERE p.id < :id ORDER BY p.id DESC")
+    List<Long> findIdsBefore(@Param("id") Long id, Limit limit);
+
+    /**
+     * Cột của product + brand cho một trang (không load entity nên không kéo theo createdBy/updatedBy EAGER)
+     * 0 id, 1 name, 2 slug, 3 description, 4 material, 5 origin, 6 isActive, 7 createdAt, 8 updatedAt,
+     * 9 brandId, 10 brandName, 11 brandSlug
+     */
+    @Query("SELECT p.id, p.name, p.slug, p.description, p.material, p.origin, p.isActive, p.createdAt, p.updatedAt, " +
+           "b.id, b.name, b.slug " +
+           "FROM Product p LEFT JOIN p.brand b WHERE p.id IN :ids")
+    List<Object[]> findListingRows(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 0 productId, 1 categoryId, 2 name, 3 slug, 4 parentId
+     */
+    @Query("SELECT p.id, c.id, c.name, c.slug, c.parent.id " +
+           "FROM Product p JOIN p.categories c WHERE p.id IN :ids ORDER BY c.id")
+    List<Object[]> findListingCategoryRows(@Param("ids") Collection<Long> ids);
+
     // Tìm kiếm nâng cao với nhiều tiêu chí
     @Query("SELECT DISTINCT p FROM Product p " +
            "LEFT JOIN p.categories c " +
@@ -108,5 +148,45 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
             @Param("maxPrice") Long maxPrice,
             Pageable pageable
     );
-}
 
+    /**
+     * Một lượt quét cho thống kê catalog (CatalogStatisticsService) và bộ lọc facet (ProductFacetIndex):
+     * mỗi dòng là (product, variant) hoặc (product, category) - category_id chỉ có ở nhánh thứ hai
+     */
+    @Query(value = "SELECT p.id, p.brand_id, p.is_active, v.id, v.color_id, v.size_id, v.stock, v.is_active, NULL, v.price " +
+           "FROM products p LEFT JOIN product_variants v ON v.product_id = p.id " +
+           "UNION ALL " +
+           "SELECT pc.product_id, NULL, NULL, NULL, NULL, NULL, NULL, NULL, pc.category_id, NULL " +
+           "FROM product_categories pc",
+           nativeQuery = true)
+    List<Object[]> findCatalogStatisticsRows();
+
+    @Query(value = "SELECT p.id, p.brand_id, p.is_active, v.id, v.color_id, v.size_id, v.stock, v.is_active, NULL, v.price " +
+           "FROM products p LEFT JOIN product_variants v ON v.product_id = p.id WHERE p.id IN (:ids) " +
+           "UNION ALL " +
+           "SELECT pc.product_id, NULL, NULL, NULL, NULL, NULL, NULL, NULL, pc.category_id, NULL " +
+           "FROM product_categories pc WHERE pc.product_id IN (:ids)",
+           nativeQuery = true)
+    List<Object[]> findCatalogStatisticsRows(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Dữ liệu để build chỉ mục tìm kiếm (ProductSearchIndex): một dòng cho mỗi (product, category)
+     */
+    @Query("SELECT p.id, p.name, p.description, p.isActive, b.name, c.name FROM Product p " +
+           "LEFT JOIN p.brand b " +
+           "LEFT JOIN p.categories c")
+    List<Object[]> findSearchIndexRows();
+
+    @Query("SELECT p.id, p.name, p.description, p.isActive, b.name, c.name FROM Product p " +
+           "LEFT JOIN p.brand b " +
+           "LEFT JOIN p.categories c " +
+           "WHERE p.id IN :ids")
+    List<Object[]> findSearchIndexRows(@Param("ids") Collection<Long> ids);
+
+    // Sản phẩm (kể cả ngừng bán) thuộc brand/category - để index lại khi brand/category đổi tên hoặc bị xóa
+    @Query("SELECT p.id FROM Product p WHERE p.brand.id = :brandId")
+    List<Long> findIdsByBrandId(@Param("brandId") Long brandId);
+
+    @Query("SELECT p.id FROM Product p JOIN p.categories c WHERE c.id = :categoryId")
+    List<Long> findIdsByCategoryId(@Param("categoryId") Long categoryId);
+}
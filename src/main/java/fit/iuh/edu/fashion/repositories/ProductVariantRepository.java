@@ -9,6 +9,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -24,6 +25,28 @@ public interface ProductVariantRepository extends JpaRepository<ProductVariant,
     @Query("SELECT pv FROM ProductVariant pv WHERE pv.isActive = true AND pv.stock > 0")
     List<ProductVariant> findInStock();
 
+    /**
+     * Variant (kèm color/size) của nhiều sản phẩm trong một query - dùng cho listing
+     * 0 productId, 1 id, 2 sku, 3 colorId, 4 colorName, 5 colorHex, 6 sizeId, 7 sizeName, 8 sizeNote,
+     * 9 price, 10 compareAtPrice, 11 stock, 12 weightGram, 13 barcode, 14 isActive
+     */
+    @Query("SELECT pv.product.id, pv.id, pv.sku, c.id, c.name, c.hex, s.id, s.name, s.note, " +
+           "pv.price, pv.compareAtPrice, pv.stock, pv.weightGram, pv.barcode, pv.isActive " +
+           "FROM ProductVariant pv LEFT JOIN pv.color c LEFT JOIN pv.size s " +
+           "WHERE pv.product.id IN :productIds ORDER BY pv.id")
+    List<Object[]> findListingRows(@Param("productIds") Collection<Long> productIds);
+
+    /**
+     * Variant (kèm color/size) và tên sản phẩm của các dòng giỏ hàng trong một query
+     * 0 id, 1 sku, 2 colorId, 3 colorName, 4 colorHex, 5 sizeId, 6 sizeName, 7 sizeNote,
+     * 8 price, 9 compareAtPrice, 10 stock, 11 weightGram, 12 barcode, 13 isActive, 14 productId, 15 productName
+     */
+    @Query("SELECT pv.id, pv.sku, c.id, c.name, c.hex, s.id, s.name, s.note, " +
+           "pv.price, pv.compareAtPrice, pv.stock, pv.weightGram, pv.barcode, pv.isActive, p.id, p.name " +
+           "FROM ProductVariant pv JOIN pv.product p LEFT JOIN pv.color c LEFT JOIN pv.size s " +
+           "WHERE pv.id IN :ids")
+    List<Object[]> findCartRows(@Param("ids") Collection<Long> ids);
+
     /**
      * Lock variant for update to prevent race condition
      */
@@ -31,6 +54,29 @@ public interface ProductVariantRepository extends JpaRepository<ProductVariant,
     @Query("SELECT pv FROM ProductVariant pv WHERE pv.id = :id")
     Optional<ProductVariant> findByIdWithLock(@Param("id") Long id);
 
+    /**
+     * Khóa nhiều variant trong một câu lệnh, theo thứ tự id tăng dần (tránh deadlock giữa các đơn hàng)
+     * Chỉ đọc bảng product_variants để không khóa kèm product/color/size
+     * 0 id, 1 stock
+     */
+    @Query(value = "SELECT id, stock FROM product_variants WHERE id IN (:ids) ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<Object[]> lockStockRows(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Tồn kho hiện tại (không khóa) - dùng để đối soát hot SKU
+     * 0 id, 1 stock
+     */
+    @Query("SELECT pv.id, pv.stock FROM ProductVariant pv WHERE pv.id IN :ids")
+    List<Object[]> findStockRows(@Param("ids") Collection<Long> ids);
+
+    // Các id còn tồn tại trong số ids (variant đã bị xóa thì không có)
+    @Query("SELECT pv.id FROM ProductVariant pv WHERE pv.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT pv FROM ProductVariant pv JOIN FETCH pv.product LEFT JOIN FETCH pv.color LEFT JOIN FETCH pv.size " +
+           "WHERE pv.id IN :ids")
+    List<ProductVariant> findAllWithDetailsByIdIn(@Param("ids") Collection<Long> ids);
+
     /**
      * Atomic decrease stock - returns number of rows affected
      * Only decreases if sufficient stock is available
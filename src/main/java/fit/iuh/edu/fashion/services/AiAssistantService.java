@@ -10,12 +10,19 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 @Service
@@ -28,6 +35,9 @@ public class AiAssistantService {
     private final CatalogCacheService catalogCacheService;
     private final RestClient.Builder restClientBuilder;
     private final UserIntentAnalyzer intentAnalyzer;
+    private final CacheManager cacheManager;
+    private final ExecutorService aiExecutor;
+    private final SemanticResponseCache semanticResponseCache;
 
     @Value("${spring.ai.openai.base-url}")
     private String lmStudioBaseUrl;
@@ -39,6 +49,7 @@ public class AiAssistantService {
     private String defaultSystem;
 
     private RestClient restClient;
+    private Scheduler aiScheduler;
     private volatile boolean lmStudioChecked = false;
     private volatile boolean lmStudioAvailable = false;
 
@@ -56,6 +67,7 @@ public class AiAssistantService {
         this.restClient = restClientBuilder
                 .requestFactory(requestFactory)
                 .build();
+        this.aiScheduler = Schedulers.fromExecutorService(aiExecutor, "ai-stream");
     }
 
     /**
@@ -137,28 +149,20 @@ public class AiAssistantService {
         log.info("Processing simple AI chat: {}", userMessage);
 
         try {
-            // BƯỚC 1: Phân tích ý định người dùng
-            UserIntentDTO intent = intentAnalyzer.analyzeIntent(userMessage);
-            log.info("✓ Intent analyzed: type={}, productType={}, category={}, brand={}",
-                     intent.getIntentType(), intent.getProductType(),
-                     intent.getCategory(), intent.getBrand());
-
-            // BƯỚC 2: Xử lý theo loại ý định
-            switch (intent.getIntentType()) {
-                case PRODUCT_SEARCH:
-                case PRODUCT_RECOMMENDATION:
-                    // Tìm kiếm sản phẩm thông minh với các tiêu chí đã phân tích
-                    return searchProductsByIntent(intent);
-
-                case PRODUCT_COMPARE:
-                    // So sánh sản phẩm
-                    return compareProductsByIntent(intent);
-
-                case INFORMATION_QUERY:
-                case GENERAL_CHAT:
-                default:
-                    // Chat thông thường với context catalog
-                    return chatWithCatalogContext(userMessage);
+            ChatPlan plan = planChat(userMessage);
+            if (plan.answer() != null) {
+                return plan.answer();
+            }
+            try {
+                String response = generate(plan.message(), plan.systemPrompt());
+                AiChatResponse answer = new AiChatResponse(response, requiredModel, System.currentTimeMillis());
+                semanticResponseCache.put(plan.cacheKey(), answer);
+                return answer;
+            } catch (RuntimeException e) {
+                if (plan.fallback() == null) {
+                    throw e;
+                }
+                return new AiChatResponse(plan.fallback(), requiredModel, System.currentTimeMillis());
             }
         } catch (Exception e) {
             log.error("Error processing AI chat: ", e);
@@ -167,40 +171,171 @@ public class AiAssistantService {
     }
 
     /**
-     * Tìm kiếm sản phẩm dựa trên ý định đã phân tích
+     * Bản streaming của chat(): cùng phân tích ý định và prompt, nhưng token được đẩy ra ngay khi model sinh
+     * (WebClient, không giữ thread nào trong lúc chờ model). Phần chuẩn bị (intent, catalog, kiểm tra LM Studio)
+     * chạy trên aiExecutor. Câu trả lời đã có trong cache "aiResponses" (key của chat()) được trả nguyên một lần;
+     * stream chạy hết thì câu trả lời đầy đủ được ghi vào cache - hủy giữa chừng thì không.
+     * Lỗi trước token đầu tiên được thay bằng thông báo lỗi như chat(), lỗi giữa chừng được trả về cho subscriber.
      */
-    private AiChatResponse searchProductsByIntent(UserIntentDTO intent) {
-        log.info("Searching products by intent: {}", intent);
+    public Flux<String> chatStream(String userMessage) {
+        String cacheKey = "chat_" + userMessage;
+        AtomicBoolean emitted = new AtomicBoolean();
+        return Flux.defer(() -> {
+                    AiChatResponse cached = cachedResponse(cacheKey);
+                    if (cached != null) {
+                        return Flux.just(cached.getResponse());
+                    }
+
+                    log.info("Streaming AI chat: {}", userMessage);
+                    ChatPlan plan = planChat(userMessage);
+                    if (plan.answer() != null) {
+                        cacheResponse(cacheKey, plan.answer());
+                        return Flux.just(plan.answer().getResponse());
+                    }
+                    if (!isLmStudioAvailable()) {
+                        throw new RuntimeException("LM Studio is not available");
+                    }
+
+                    StringBuilder full = new StringBuilder();
+                    return chatClient.prompt()
+                            .system(plan.systemPrompt())
+                            .user(plan.message())
+                            .stream()
+                            .content()
+                            .doOnNext(full::append)
+                            .doOnComplete(() -> {
+                                AiChatResponse answer = new AiChatResponse(full.toString(), requiredModel,
+                                        System.currentTimeMillis());
+                                cacheResponse(cacheKey, answer);
+                                semanticResponseCache.put(plan.cacheKey(), answer);
+                            })
+                            .onErrorResume(e -> plan.fallback() != null && full.isEmpty(),
+                                    e -> Flux.just(plan.fallback()));
+                })
+                .doOnNext(token -> emitted.set(true))
+                .onErrorResume(e -> !emitted.get(), e -> {
+                    log.error("Error streaming AI chat: ", e);
+                    return Flux.just(handleError(e instanceof Exception ex ? ex : new RuntimeException(e)).getResponse());
+                })
+                .subscribeOn(aiScheduler);
+    }
 
-        try {
-            // Tìm sản phẩm với các tiêu chí đã phân tích
-            List<ProductCatalogDTO> products = searchProductsAdvanced(intent);
+    /**
+     * Kết quả bước chuẩn bị của chat: câu trả lời có sẵn (không cần gọi AI), hoặc prompt gửi cho AI
+     * kèm câu trả lời thay thế khi AI lỗi và key để lưu câu trả lời vào SemanticResponseCache
+     */
+    private record ChatPlan(AiChatResponse answer, String systemPrompt, String message, String fallback,
+                            SemanticResponseCache.Key cacheKey) {
 
-            if (products.isEmpty()) {
-                log.warn("No products found for intent: {}", intent);
-                return suggestAlternatives(intent.toQueryString());
+        static ChatPlan answer(AiChatResponse answer) {
+            return new ChatPlan(answer, null, null, null, null);
+        }
+
+        static ChatPlan prompt(String systemPrompt, String message) {
+            return new ChatPlan(null, systemPrompt, message, null, null);
+        }
+
+        ChatPlan withCacheKey(SemanticResponseCache.Key cacheKey) {
+            return new ChatPlan(answer, systemPrompt, message, fallback, cacheKey);
+        }
+    }
+
+    private ChatPlan planChat(String userMessage) {
+        // BƯỚC 1: Phân tích ý định người dùng
+        UserIntentDTO intent = intentAnalyzer.analyzeIntent(userMessage);
+        log.info("✓ Intent analyzed: type={}, productType={}, category={}, brand={}",
+                 intent.getIntentType(), intent.getProductType(),
+                 intent.getCategory(), intent.getBrand());
+
+        // Câu hỏi tìm / so sánh cùng tiêu chí (khác cách viết) dùng chung câu trả lời
+        SemanticResponseCache.Key intentKey = semanticResponseCache.intentKey(intent, extractLimit(userMessage));
+        if (intentKey != null) {
+            AiChatResponse cached = semanticResponseCache.get(intentKey);
+            if (cached != null) {
+                return ChatPlan.answer(cached);
             }
+        }
 
-            log.info("Found {} products matching intent", products.size());
+        // BƯỚC 2: Xử lý theo loại ý định
+        ChatPlan plan;
+        switch (intent.getIntentType()) {
+            case PRODUCT_SEARCH:
+            case PRODUCT_RECOMMENDATION:
+                // Tìm kiếm sản phẩm thông minh với các tiêu chí đã phân tích
+                plan = planProductSearch(intent);
+                break;
 
-            // Lấy catalog context
-            CatalogDataDTO catalogData = catalogCacheService.getCatalogData();
-            String systemPrompt = catalogData.toSystemPrompt();
+            case PRODUCT_COMPARE:
+                // So sánh sản phẩm
+                plan = planProductCompare(intent);
+                break;
+
+            case INFORMATION_QUERY:
+            case GENERAL_CHAT:
+            default:
+                // Chat thông thường với context catalog
+                plan = planCatalogChat(userMessage);
+        }
+        if (plan.answer() != null) {
+            return plan;
+        }
+        if (intentKey != null) {
+            return plan.withCacheKey(intentKey);
+        }
 
-            // Tạo câu hỏi tư vấn với thông tin chi tiết về ý định
-            String message = buildIntelligentMessage(intent, products);
+        // Câu hỏi tự do: dùng lại câu trả lời của câu đã hỏi gần giống
+        SemanticResponseCache.Key textKey = semanticResponseCache.textKey(plan.systemPrompt(), userMessage);
+        AiChatResponse similar = semanticResponseCache.get(textKey);
+        return similar != null ? ChatPlan.answer(similar) : plan.withCacheKey(textKey);
+    }
 
-            log.debug("Message sent to AI:\n{}", message);
+    private AiChatResponse cachedResponse(String key) {
+        try {
+            Cache cache = cacheManager.getCache("aiResponses");
+            return cache != null ? cache.get(key, AiChatResponse.class) : null;
+        } catch (RuntimeException e) {
+            log.warn("Cannot read aiResponses cache: {}", e.getMessage());
+            return null;
+        }
+    }
 
-            String response = generate(message, systemPrompt);
-            log.info("AI response generated successfully");
+    private void cacheResponse(String key, AiChatResponse response) {
+        try {
+            Cache cache = cacheManager.getCache("aiResponses");
+            if (cache != null) {
+                cache.put(key, response);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Cannot write aiResponses cache: {}", e.getMessage());
+        }
+    }
 
-            return new AiChatResponse(response, requiredModel, System.currentTimeMillis());
+    /**
+     * Tìm kiếm sản phẩm dựa trên ý định đã phân tích
+     */
+    private ChatPlan planProductSearch(UserIntentDTO intent) {
+        log.info("Searching products by intent: {}", intent);
 
-        } catch (Exception e) {
-            log.error("Error in search by intent: ", e);
-            return handleError(e);
+        // Tìm sản phẩm với các tiêu chí đã phân tích
+        List<ProductCatalogDTO> products = searchProductsAdvanced(intent);
+
+        if (products.isEmpty()) {
+            log.warn("No products found for intent: {}", intent);
+            return planAlternatives(intent.toQueryString());
         }
+
+        log.info("Found {} products matching intent", products.size());
+
+        // Lấy catalog context
+        CatalogDataDTO catalogData = catalogCacheService.getCatalogData();
+        String systemPrompt = catalogData.toSystemPrompt();
+
+        // Tạo câu hỏi tư vấn với thông tin chi tiết về ý định
+        String message = buildIntelligentMessage(intent, products);
+
+        log.debug("Message sent to AI:\n{}", message);
+
+        return ChatPlan.prompt(systemPrompt, message);
     }
 
     /**
@@ -401,95 +536,82 @@ public class AiAssistantService {
     /**
      * So sánh sản phẩm dựa trên ý định
      */
-    private AiChatResponse compareProductsByIntent(UserIntentDTO intent) {
+    private ChatPlan planProductCompare(UserIntentDTO intent) {
         log.info("Comparing products by intent: {}", intent);
 
-        try {
-            List<ProductCatalogDTO> products = searchProductsAdvanced(intent);
-
-            if (products.size() < 2) {
-                return new AiChatResponse(
-                    "Xin lỗi, tôi cần ít nhất 2 sản phẩm để so sánh. " +
-                    "Hiện tại chỉ tìm thấy " + products.size() + " sản phẩm.",
-                    requiredModel,
-                    System.currentTimeMillis()
-                );
-            }
+        List<ProductCatalogDTO> products = searchProductsAdvanced(intent);
 
-            CatalogDataDTO catalogData = catalogCacheService.getCatalogData();
-            String systemPrompt = catalogData.toSystemPrompt();
-
-            String message = String.format(
-                "Khách hàng muốn so sánh các sản phẩm: %s\n\n" +
-                "Các sản phẩm cần so sánh:\n%s\n\n" +
-                "YÊU CẦU: Hãy so sánh chi tiết về:\n" +
-                "- Giá cả\n" +
-                "- Chất liệu và chất lượng\n" +
-                "- Màu sắc và size có sẵn\n" +
-                "- Ưu điểm và nhược điểm của từng sản phẩm\n" +
-                "- Gợi ý sản phẩm phù hợp nhất dựa trên nhu cầu",
-                intent.getOriginalMessage(),
-                products.stream()
-                    .limit(5)
-                    .map(ProductCatalogDTO::toAiDescription)
-                    .collect(Collectors.joining("\n\n", "", ""))
-            );
+        if (products.size() < 2) {
+            return ChatPlan.answer(new AiChatResponse(
+                "Xin lỗi, tôi cần ít nhất 2 sản phẩm để so sánh. " +
+                "Hiện tại chỉ tìm thấy " + products.size() + " sản phẩm.",
+                requiredModel,
+                System.currentTimeMillis()
+            ));
+        }
 
-            String response = generate(message, systemPrompt);
-            return new AiChatResponse(response, requiredModel, System.currentTimeMillis());
+        CatalogDataDTO catalogData = catalogCacheService.getCatalogData();
+        String systemPrompt = catalogData.toSystemPrompt();
+
+        String message = String.format(
+            "Khách hàng muốn so sánh các sản phẩm: %s\n\n" +
+            "Các sản phẩm cần so sánh:\n%s\n\n" +
+            "YÊU CẦU: Hãy so sánh chi tiết về:\n" +
+            "- Giá cả\n" +
+            "- Chất liệu và chất lượng\n" +
+            "- Màu sắc và size có sẵn\n" +
+            "- Ưu điểm và nhược điểm của từng sản phẩm\n" +
+            "- Gợi ý sản phẩm phù hợp nhất dựa trên nhu cầu",
+            intent.getOriginalMessage(),
+            products.stream()
+                .limit(5)
+                .map(ProductCatalogDTO::toAiDescription)
+                .collect(Collectors.joining("\n\n", "", ""))
+        );
 
-        } catch (Exception e) {
-            log.error("Error in compare by intent: ", e);
-            return handleError(e);
-        }
+        return ChatPlan.prompt(systemPrompt, message);
     }
 
     /**
      * Chat thông thường với context catalog
      */
-    private AiChatResponse chatWithCatalogContext(String userMessage) {
-        try {
-            CatalogDataDTO catalogData = catalogCacheService.getCatalogData();
+    private ChatPlan planCatalogChat(String userMessage) {
+        CatalogDataDTO catalogData = catalogCacheService.getCatalogData();
 
-            // Phát hiện loại câu hỏi để tạo system prompt phù hợp
-            String systemPrompt;
-            String lowerMessage = userMessage.toLowerCase();
-
-            if (containsAny(lowerMessage, "phối đồ", "mix đồ", "kết hợp", "cách mặc", "outfit", "phong cách")) {
-                // Câu hỏi về phối đồ/tư vấn thời trang
-                systemPrompt = """
-                    Bạn là chuyên gia tư vấn thời trang chuyên nghiệp.
-                    
-                    NHIỆM VỤ:
-                    - Tư vấn cách phối đồ phù hợp với hoàn cảnh (đi làm, đi chơi, dự tiệc...)
-                    - Gợi ý các loại trang phục, màu sắc, phụ kiện phù hợp
-                    - Đưa ra lời khuyên thực tế, dễ áp dụng
-                    - Giải thích TẠI SAO phối đồ đó phù hợp
-                    
-                    FORMAT TRẢ LỜI:
-                    1. Phân tích hoàn cảnh/mục đích
-                    2. Gợi ý các item cần có (áo, quần, giày, phụ kiện)
-                    3. Lời khuyên về màu sắc và style
-                    4. Tips thêm (nếu có)
-                    
-                    LƯU Ý:
-                    - Trả lời cụ thể, rõ ràng
-                    - Ngắn gọn 5-7 câu
-                    - Thân thiện, dễ hiểu
-                    - Không cần giới thiệu sản phẩm cụ thể trừ khi được hỏi
-                    """;
-            } else {
-                // Câu hỏi chung về thời trang/cửa hàng
-                systemPrompt = catalogData.toSystemPrompt() +
-                    "\n\nBạn đang trả lời câu hỏi chung về cửa hàng hoặc thời trang. Trả lời ngắn gọn, thân thiện và hữu ích.";
-            }
+        // Phát hiện loại câu hỏi để tạo system prompt phù hợp
+        String systemPrompt;
+        String lowerMessage = userMessage.toLowerCase();
 
-            String response = generate(userMessage, systemPrompt);
-            return new AiChatResponse(response, requiredModel, System.currentTimeMillis());
-        } catch (Exception e) {
-            log.error("Error in chat with catalog context: ", e);
-            return handleError(e);
+        if (containsAny(lowerMessage, "phối đồ", "mix đồ", "kết hợp", "cách mặc", "outfit", "phong cách")) {
+            // Câu hỏi về phối đồ/tư vấn thời trang
+            systemPrompt = """
+                Bạn là chuyên gia tư vấn thời trang chuyên nghiệp.
+                
+                NHIỆM VỤ:
+                - Tư vấn cách phối đồ phù hợp với hoàn cảnh (đi làm, đi chơi, dự tiệc...)
+                - Gợi ý các loại trang phục, màu sắc, phụ kiện phù hợp
+                - Đưa ra lời khuyên thực tế, dễ áp dụng
+                - Giải thích TẠI SAO phối đồ đó phù hợp
+                
+                FORMAT TRẢ LỜI:
+                1. Phân tích hoàn cảnh/mục đích
+                2. Gợi ý các item cần có (áo, quần, giày, phụ kiện)
+                3. Lời khuyên về màu sắc và style
+                4. Tips thêm (nếu có)
+                
+                LƯU Ý:
+                - Trả lời cụ thể, rõ ràng
+                - Ngắn gọn 5-7 câu
+                - Thân thiện, dễ hiểu
+                - Không cần giới thiệu sản phẩm cụ thể trừ khi được hỏi
+                """;
+        } else {
+            // Câu hỏi chung về thời trang/cửa hàng
+            systemPrompt = catalogData.toSystemPrompt() +
+                "\n\nBạn đang trả lời câu hỏi chung về cửa hàng hoặc thời trang. Trả lời ngắn gọn, thân thiện và hữu ích.";
         }
+
+        return ChatPlan.prompt(systemPrompt, userMessage);
     }
 
     /**
@@ -760,35 +882,40 @@ public class AiAssistantService {
      */
     private AiChatResponse suggestAlternatives(String keyword) {
         try {
-            // Lấy top products thay thế
-            List<ProductCatalogDTO> alternatives = catalogCacheService.getTopProducts(5);
-
-            CatalogDataDTO catalogData = catalogCacheService.getCatalogData();
-            String systemPrompt = catalogData.toSystemPrompt();
-
-            String message = String.format(
-                "Khách hàng tìm '%s' nhưng không có sản phẩm phù hợp.\n" +
-                "Gợi ý các sản phẩm thay thế:\n%s\n" +
-                "Hãy tư vấn thân thiện và gợi ý sản phẩm tương tự.",
-                keyword,
-                alternatives.stream()
-                    .map(ProductCatalogDTO::toAiDescription)
-                    .collect(Collectors.joining("\n- ", "- ", ""))
-            );
-
-            String response = generate(message, systemPrompt);
+            ChatPlan plan = planAlternatives(keyword);
+            String response = generate(plan.message(), plan.systemPrompt());
             return new AiChatResponse(response, requiredModel, System.currentTimeMillis());
 
         } catch (Exception e) {
-            return new AiChatResponse(
-                "Xin lỗi, tôi không tìm thấy sản phẩm phù hợp với '" + keyword + "'. " +
-                "Bạn có thể mô tả chi tiết hơn hoặc thử từ khóa khác không?",
-                requiredModel,
-                System.currentTimeMillis()
-            );
+            return new AiChatResponse(noMatchMessage(keyword), requiredModel, System.currentTimeMillis());
         }
     }
 
+    private ChatPlan planAlternatives(String keyword) {
+        // Lấy top products thay thế
+        List<ProductCatalogDTO> alternatives = catalogCacheService.getTopProducts(5);
+
+        CatalogDataDTO catalogData = catalogCacheService.getCatalogData();
+        String systemPrompt = catalogData.toSystemPrompt();
+
+        String message = String.format(
+            "Khách hàng tìm '%s' nhưng không có sản phẩm phù hợp.\n" +
+            "Gợi ý các sản phẩm thay thế:\n%s\n" +
+            "Hãy tư vấn thân thiện và gợi ý sản phẩm tương tự.",
+            keyword,
+            alternatives.stream()
+                .map(ProductCatalogDTO::toAiDescription)
+                .collect(Collectors.joining("\n- ", "- ", ""))
+        );
+
+        return new ChatPlan(null, systemPrompt, message, noMatchMessage(keyword), null);
+    }
+
+    private String noMatchMessage(String keyword) {
+        return "Xin lỗi, tôi không tìm thấy sản phẩm phù hợp với '" + keyword + "'. " +
+            "Bạn có thể mô tả chi tiết hơn hoặc thử từ khóa khác không?";
+    }
+
     /**
      * Xử lý lỗi chung
      */
@@ -100,6 +100,35 @@ public class AuditService {
         }
     }
 
+    /**
+     * Dựng audit log (chưa lưu) từ người dùng và request hiện tại, ngay trên luồng xử lý request -
+     * dùng khi bản ghi được lưu sau, ở luồng khác (outbox đơn hàng). Không query DB; userId do nơi lưu bổ sung.
+     */
+    public AuditLog prepareLog(String action, String entityType, Long entityId, String oldValue, String newValue) {
+        AuditLog auditLog = AuditLog.builder()
+                .action(action)
+                .entityType(entityType)
+                .entityId(entityId)
+                .oldValue(oldValue)
+                .newValue(newValue)
+                .status("SUCCESS")
+                .build();
+
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null && auth.isAuthenticated() && !"anonymousUser".equals(auth.getName())) {
+            auditLog.setUsername(auth.getName());
+        }
+
+        HttpServletRequest request = getCurrentRequest();
+        if (request != null) {
+            auditLog.setIpAddress(getClientIP(request));
+            auditLog.setUserAgent(request.getHeader("User-Agent"));
+            auditLog.setRequestMethod(request.getMethod());
+            auditLog.setRequestUrl(request.getRequestURI());
+        }
+        return auditLog;
+    }
+
     // NEW: Log login attempts
     @Async
     public void logLoginAttempt(String username, boolean success, String ipAddress, String userAgent) {
@@ -4,186 +4,168 @@ import fit.iuh.edu.fashion.dto.request.CartItemRequest;
 import fit.iuh.edu.fashion.dto.request.OrderItemRequest;
 import fit.iuh.edu.fashion.dto.response.CartItemResponse;
 import fit.iuh.edu.fashion.dto.response.CartResponse;
+import fit.iuh.edu.fashion.dto.response.ColorResponse;
 import fit.iuh.edu.fashion.dto.response.ProductVariantResponse;
-import fit.iuh.edu.fashion.models.*;
-import fit.iuh.edu.fashion.repositories.CartItemRepository;
-import fit.iuh.edu.fashion.repositories.CartRepository;
+import fit.iuh.edu.fashion.dto.response.SizeResponse;
 import fit.iuh.edu.fashion.repositories.ProductImageRepository;
 import fit.iuh.edu.fashion.repositories.ProductVariantRepository;
-import fit.iuh.edu.fashion.repositories.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
+/**
+ * Giỏ hàng đọc / ghi trên LiveCartStore (Redis), DB được cập nhật sau theo lô.
+ * Mỗi dòng giỏ được định danh bằng variantId - itemId trong API chính là variantId của dòng.
+ */
 @Service
 @RequiredArgsConstructor
 public class CartService {
 
-    private final CartRepository cartRepository;
-    private final CartItemRepository cartItemRepository;
+    private final LiveCartStore liveCartStore;
     private final ProductVariantRepository productVariantRepository;
-    private final UserRepository userRepository;
-    private final ProductVariantService productVariantService;
     private final ProductImageRepository productImageRepository;
 
     @Transactional(readOnly = true)
     public CartResponse getCart(Long userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
-        Cart cart = cartRepository.findByCustomer(user)
-                .orElseGet(() -> createNewCart(user));
-
-        return mapToCartResponse(cart);
+        return mapToCartResponse(liveCartStore.load(userId));
     }
 
-    @Transactional
+    @Transactional(readOnly = true)
     public CartResponse addToCart(Long userId, CartItemRequest request) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
-        Cart cart = cartRepository.findByCustomer(user)
-                .orElseGet(() -> createNewCart(user));
-
-        ProductVariant variant = productVariantRepository.findById(request.getVariantId())
-                .orElseThrow(() -> new RuntimeException("Product variant not found"));
+        int stock = currentStock(request.getVariantId());
 
         // Check stock
-        if (variant.getStock() < request.getQuantity()) {
+        if (stock < request.getQuantity()) {
             throw new RuntimeException("Insufficient stock");
         }
 
-        // Check if item already in cart
-        CartItem existingItem = cartItemRepository.findByCartIdAndVariantId(cart.getId(), variant.getId())
-                .orElse(null);
-
-        if (existingItem != null) {
+        LiveCartStore.Snapshot cart = liveCartStore.load(userId);
+        LiveCartStore.Line existing = cart.line(request.getVariantId()).orElse(null);
+        if (existing != null) {
             // Update quantity
-            int newQuantity = existingItem.getQuantity() + request.getQuantity();
-            if (variant.getStock() < newQuantity) {
+            int newQuantity = existing.quantity() + request.getQuantity();
+            if (stock < newQuantity) {
                 throw new RuntimeException("Insufficient stock");
             }
-            existingItem.setQuantity(newQuantity);
-            cartItemRepository.save(existingItem);
+            liveCartStore.put(userId, new LiveCartStore.Line(existing.variantId(), newQuantity, existing.addedAt()));
         } else {
-            // Add new item
-            CartItem cartItem = CartItem.builder()
-                    .cart(cart)
-                    .variant(variant)
-                    .quantity(request.getQuantity())
-                    .build();
-            cart.getItems().add(cartItem);
-            cartItemRepository.save(cartItem);
+            liveCartStore.put(userId, new LiveCartStore.Line(request.getVariantId(), request.getQuantity(),
+                    LocalDateTime.now()));
         }
 
-        return mapToCartResponse(cart);
+        return mapToCartResponse(liveCartStore.load(userId));
     }
 
-    @Transactional
+    @Transactional(readOnly = true)
     public CartResponse updateCartItem(Long userId, Long itemId, Integer quantity) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
-        Cart cart = cartRepository.findByCustomer(user)
-                .orElseThrow(() -> new RuntimeException("Cart not found"));
-
-        CartItem cartItem = cartItemRepository.findById(itemId)
+        LiveCartStore.Line line = liveCartStore.load(userId).line(itemId)
                 .orElseThrow(() -> new RuntimeException("Cart item not found"));
 
-        if (!cartItem.getCart().getId().equals(cart.getId())) {
-            throw new RuntimeException("Cart item does not belong to this cart");
-        }
-
         // Check stock
-        if (cartItem.getVariant().getStock() < quantity) {
+        if (currentStock(itemId) < quantity) {
             throw new RuntimeException("Insufficient stock");
         }
 
-        cartItem.setQuantity(quantity);
-        cartItemRepository.save(cartItem);
+        liveCartStore.put(userId, new LiveCartStore.Line(line.variantId(), quantity, line.addedAt()));
 
-        return mapToCartResponse(cart);
+        return mapToCartResponse(liveCartStore.load(userId));
     }
 
-    @Transactional
+    @Transactional(readOnly = true)
     public CartResponse removeCartItem(Long userId, Long itemId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
-        Cart cart = cartRepository.findByCustomer(user)
-                .orElseThrow(() -> new RuntimeException("Cart not found"));
-
-        CartItem cartItem = cartItemRepository.findById(itemId)
-                .orElseThrow(() -> new RuntimeException("Cart item not found"));
-
-        if (!cartItem.getCart().getId().equals(cart.getId())) {
-            throw new RuntimeException("Cart item does not belong to this cart");
+        liveCartStore.load(userId);
+        if (!liveCartStore.remove(userId, itemId)) {
+            throw new RuntimeException("Cart item not found");
         }
 
-        cart.getItems().remove(cartItem);
-        cartItemRepository.delete(cartItem);
-
-        return mapToCartResponse(cart);
+        return mapToCartResponse(liveCartStore.load(userId));
     }
 
-    @Transactional
+    @Transactional(readOnly = true)
     public void clearCart(Long userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
-        Cart cart = cartRepository.findByCustomer(user)
-                .orElseThrow(() -> new RuntimeException("Cart not found"));
-
-        cart.getItems().clear();
-        cartRepository.save(cart);
+        liveCartStore.clear(userId);
     }
 
+    /**
+     * Checkout đọc giỏ sống - có cả các thay đổi chưa được ghi xuống DB
+     */
     @Transactional(readOnly = true)
     public List<OrderItemRequest> getCartItemsForOrder(Long userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
-        Cart cart = cartRepository.findByCustomer(user)
-                .orElse(null);
-
-        if (cart == null || cart.getItems().isEmpty()) {
-            return new ArrayList<>();
-        }
-
-        return cart.getItems().stream()
-                .map(item -> new OrderItemRequest(item.getVariant().getId(), item.getQuantity()))
+        return liveCartStore.load(userId).lines().stream()
+                .map(line -> new OrderItemRequest(line.variantId(), line.quantity()))
                 .collect(Collectors.toList());
     }
 
-    private Cart createNewCart(User user) {
-        Cart cart = Cart.builder()
-                .customer(user)
-                .build();
-        return cartRepository.save(cart);
+    private int currentStock(Long variantId) {
+        List<Object[]> rows = productVariantRepository.findStockRows(List.of(variantId));
+        if (rows.isEmpty()) {
+            throw new RuntimeException("Product variant not found");
+        }
+        return (Integer) rows.get(0)[1];
     }
 
-    private CartResponse mapToCartResponse(Cart cart) {
-        BigDecimal subtotal = cart.getItems().stream()
-                .map(item -> item.getVariant().getPrice().multiply(BigDecimal.valueOf(item.getQuantity())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    /**
+     * Render giỏ hàng bằng số query cố định, không phụ thuộc số dòng: một query cho variant/sản phẩm của các dòng,
+     * một query cho ảnh của các sản phẩm trong giỏ. Không đi qua entity (Product kéo theo brand, createdBy...)
+     * và không gọi cache variant cho từng dòng - giá và tồn kho đọc trực tiếp từ DB.
+     */
+    private CartResponse mapToCartResponse(LiveCartStore.Snapshot cart) {
+        Map<Long, Object[]> variants = new HashMap<>();
+        Map<Long, String> variantImages = new HashMap<>();
+        Map<Long, String> productImages = new HashMap<>();
+        if (!cart.lines().isEmpty()) {
+            for (Object[] row : productVariantRepository.findCartRows(
+                    cart.lines().stream().map(LiveCartStore.Line::variantId).toList())) {
+                variants.put((Long) row[0], row);
+            }
+            Set<Long> productIds = variants.values().stream().map(row -> (Long) row[14]).collect(Collectors.toSet());
+            Map<Long, Integer> productImageOrder = new HashMap<>();
+            // Rows theo id ảnh: ảnh đầu tiên của variant, ảnh có sortOrder nhỏ nhất của sản phẩm
+            for (Object[] row : productImageRepository.findListingRows(productIds)) {
+                Long productId = (Long) row[0];
+                Long variantId = (Long) row[5];
+                int sortOrder = row[4] != null ? (Integer) row[4] : Integer.MIN_VALUE;
+                if (variantId != null) {
+                    variantImages.putIfAbsent(variantId, (String) row[2]);
+                }
+                Integer current = productImageOrder.get(productId);
+                if (current == null || sortOrder < current) {
+                    productImageOrder.put(productId, sortOrder);
+                    productImages.put(productId, (String) row[2]);
+                }
+            }
+        }
 
-        Integer totalItems = cart.getItems().stream()
-                .mapToInt(CartItem::getQuantity)
-                .sum();
+        List<CartItemResponse> items = new ArrayList<>(cart.lines().size());
+        BigDecimal subtotal = BigDecimal.ZERO;
+        int totalItems = 0;
+        for (LiveCartStore.Line line : cart.lines()) {
+            Object[] variant = variants.get(line.variantId());
+            if (variant == null) {
+                // Variant đã bị xóa khỏi DB
+                continue;
+            }
+            CartItemResponse item = mapToCartItemResponse(line, variant, variantImages, productImages);
+            items.add(item);
+            subtotal = subtotal.add(item.getLineTotal());
+            totalItems += item.getQuantity();
+        }
 
         BigDecimal discountTotal = BigDecimal.ZERO;
         BigDecimal grandTotal = subtotal.subtract(discountTotal);
 
         return CartResponse.builder()
-                .id(cart.getId())
-                .items(cart.getItems().stream()
-                        .map(this::mapToCartItemResponse)
-                        .collect(Collectors.toList()))
+                .id(cart.cartId())
+                .items(items)
                 .subtotal(subtotal)
                 .discountTotal(discountTotal)
                 .grandTotal(grandTotal)
@@ -191,40 +173,55 @@ public class CartService {
                 .build();
     }
 
-    private CartItemResponse mapToCartItemResponse(CartItem item) {
-        ProductVariantResponse variantResponse = productVariantService.getVariantById(item.getVariant().getId());
-
-        BigDecimal lineTotal = item.getVariant().getPrice().multiply(BigDecimal.valueOf(item.getQuantity()));
+    private CartItemResponse mapToCartItemResponse(LiveCartStore.Line line, Object[] row,
+                                                   Map<Long, String> variantImages, Map<Long, String> productImages) {
+        int quantity = line.quantity();
+        Long colorId = (Long) row[2];
+        Long sizeId = (Long) row[5];
+        BigDecimal price = (BigDecimal) row[8];
+        ProductVariantResponse variantResponse = ProductVariantResponse.builder()
+                .id(line.variantId())
+                .sku((String) row[1])
+                .color(colorId != null ? ColorResponse.builder()
+                        .id(colorId)
+                        .name((String) row[3])
+                        .hex((String) row[4])
+                        .build() : null)
+                .size(sizeId != null ? SizeResponse.builder()
+                        .id(sizeId)
+                        .name((String) row[6])
+                        .note((String) row[7])
+                        .build() : null)
+                .price(price)
+                .compareAtPrice((BigDecimal) row[9])
+                .stock((Integer) row[10])
+                .weightGram((Integer) row[11])
+                .barcode((String) row[12])
+                .isActive((Boolean) row[13])
+                .build();
 
-        // Get first image URL - check variant images first, then product images
-        String imageUrl = null;
+        BigDecimal lineTotal = price.multiply(BigDecimal.valueOf(quantity));
 
-        // Try to get variant-specific image
-        List<ProductImage> variantImages = productImageRepository.findByVariantId(item.getVariant().getId());
-        if (variantImages != null && !variantImages.isEmpty()) {
-            imageUrl = variantImages.get(0).getUrl();
-        } else {
-            // Fallback to product images
-            List<ProductImage> productImages = productImageRepository.findByProductIdOrderBySortOrder(item.getVariant().getProduct().getId());
-            if (productImages != null && !productImages.isEmpty()) {
-                imageUrl = productImages.get(0).getUrl();
-            }
+        // Ảnh riêng của variant trước, không có thì lấy ảnh của sản phẩm
+        String imageUrl = variantImages.get(line.variantId());
+        if (imageUrl == null) {
+            imageUrl = productImages.get((Long) row[14]);
         }
 
         // Get current stock and check availability
-        Integer availableStock = item.getVariant().getStock();
+        Integer availableStock = variantResponse.getStock();
         Boolean outOfStock = availableStock <= 0;
-        Boolean insufficientStock = item.getQuantity() > availableStock;
+        Boolean insufficientStock = quantity > availableStock;
 
         return CartItemResponse.builder()
-                .id(item.getId())
+                .id(line.variantId())
                 .variant(variantResponse)
-                .productName(item.getVariant().getProduct().getName())
-                .colorName(item.getVariant().getColor() != null ? item.getVariant().getColor().getName() : null)
-                .sizeName(item.getVariant().getSize() != null ? item.getVariant().getSize().getName() : null)
+                .productName((String) row[15])
+                .colorName(variantResponse.getColor() != null ? variantResponse.getColor().getName() : null)
+                .sizeName(variantResponse.getSize() != null ? variantResponse.getSize().getName() : null)
                 .imageUrl(imageUrl)
-                .quantity(item.getQuantity())
-                .unitPrice(item.getVariant().getPrice())
+                .quantity(quantity)
+                .unitPrice(price)
                 .lineTotal(lineTotal)
                 .availableStock(availableStock)
                 .outOfStock(outOfStock)
@@ -1,15 +1,20 @@
 package fit.iuh.edu.fashion.services;
 
+import fit.iuh.edu.fashion.cache.RefreshAheadCache;
 import fit.iuh.edu.fashion.dto.CatalogDataDTO;
 import fit.iuh.edu.fashion.dto.ProductCatalogDTO;
 import fit.iuh.edu.fashion.models.*;
 import fit.iuh.edu.fashion.repositories.*;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.interceptor.SimpleKey;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.util.List;
@@ -29,78 +34,82 @@ public class CatalogCacheService {
     private final CategoryRepository categoryRepository;
     private final ColorRepository colorRepository;
     private final SizeRepository sizeRepository;
+    private final CatalogStatisticsService catalogStatisticsService;
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductService productService;
+    private final RefreshAheadCache refreshAheadCache;
+    private final PlatformTransactionManager transactionManager;
+
+    // Loader có thể chạy trên thread refresh nền, cần transaction riêng để đọc các association lazy
+    private TransactionTemplate readOnlyTransaction;
+
+    @PostConstruct
+    void initTransactionTemplate() {
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+    }
 
     /**
-     * Lấy toàn bộ catalog data - CACHED 5 phút
+     * Lấy toàn bộ catalog data - CACHED 5 phút, refresh nền từ phút thứ 4 (RefreshAheadCache)
+     * Khi cache miss, các request đồng thời chờ chung một lần load thay vì cùng query database
      */
-    @Cacheable(value = "catalogData", unless = "#result == null")
-    @Transactional(readOnly = true)
     public CatalogDataDTO getCatalogData() {
+        return refreshAheadCache.get("catalogData", SimpleKey.EMPTY,
+            () -> readOnlyTransaction.execute(status -> loadCatalogData()));
+    }
+
+    /**
+     * Lấy top products - CACHED 2 phút, refresh nền sau 90 giây (RefreshAheadCache)
+     */
+    public List<ProductCatalogDTO> getTopProducts(int limit) {
+        return refreshAheadCache.get("topProducts", limit,
+            () -> readOnlyTransaction.execute(status -> loadTopProducts(limit)));
+    }
+
+    /**
+     * Số lượng sản phẩm lấy từ CatalogStatisticsService (đã tính sẵn trong bộ nhớ)
+     */
+    private CatalogDataDTO loadCatalogData() {
         log.info("Loading catalog data from database...");
 
-        long totalProducts = productRepository.count();
-        long activeProducts = productRepository.findByIsActive(true, PageRequest.of(0, Integer.MAX_VALUE)).getTotalElements();
+        CatalogStatisticsService.CatalogCounts counts = catalogStatisticsService.getCounts();
 
         List<CatalogDataDTO.BrandInfo> brands = brandRepository.findAll().stream()
-            .map(b -> {
-                long count = productRepository.findByBrand(b.getId(), PageRequest.of(0, 1)).getTotalElements();
-
-                return CatalogDataDTO.BrandInfo.builder()
-                    .id(b.getId())
-                    .name(b.getName())
-                    .description(b.getDescription())
-                    .productCount(count)
-                    .build();
-            })
+            .map(b -> CatalogDataDTO.BrandInfo.builder()
+                .id(b.getId())
+                .name(b.getName())
+                .description(b.getDescription())
+                .productCount(counts.brandCount(b.getId()))
+                .build())
             .collect(Collectors.toList());
 
         List<CatalogDataDTO.CategoryInfo> categories = categoryRepository.findAll().stream()
-            .map(c -> {
-                long count = productRepository.findByCategory(c.getId(), PageRequest.of(0, 1)).getTotalElements();
-
-                return CatalogDataDTO.CategoryInfo.builder()
-                    .id(c.getId())
-                    .name(c.getName())
-                    .description(c.getDescription())
-                    .parentId(c.getParent() != null ? c.getParent().getId() : null)
-                    .parentName(c.getParent() != null ? c.getParent().getName() : null)
-                    .productCount(count)
-                    .build();
-            })
+            .map(c -> CatalogDataDTO.CategoryInfo.builder()
+                .id(c.getId())
+                .name(c.getName())
+                .description(c.getDescription())
+                .parentId(c.getParent() != null ? c.getParent().getId() : null)
+                .parentName(c.getParent() != null ? c.getParent().getName() : null)
+                .productCount(counts.categoryCount(c.getId()))
+                .build())
             .collect(Collectors.toList());
 
         List<CatalogDataDTO.ColorInfo> colors = colorRepository.findAll().stream()
-            .map(c -> {
-                long count = productRepository.findAll().stream()
-                    .filter(p -> p.getVariants().stream()
-                        .anyMatch(v -> v.getColor() != null && v.getColor().getId().equals(c.getId())
-                            && v.getIsActive() && v.getStock() > 0))
-                    .count();
-
-                return CatalogDataDTO.ColorInfo.builder()
-                    .id(c.getId())
-                    .name(c.getName())
-                    .hex(c.getHex())
-                    .productCount(count)
-                    .build();
-            })
+            .map(c -> CatalogDataDTO.ColorInfo.builder()
+                .id(c.getId())
+                .name(c.getName())
+                .hex(c.getHex())
+                .productCount(counts.colorCount(c.getId()))
+                .build())
             .collect(Collectors.toList());
 
         List<CatalogDataDTO.SizeInfo> sizes = sizeRepository.findAll().stream()
-            .map(s -> {
-                long count = productRepository.findAll().stream()
-                    .filter(p -> p.getVariants().stream()
-                        .anyMatch(v -> v.getSize() != null && v.getSize().getId().equals(s.getId())
-                            && v.getIsActive() && v.getStock() > 0))
-                    .count();
-
-                return CatalogDataDTO.SizeInfo.builder()
-                    .id(s.getId())
-                    .name(s.getName())
-                    .note(s.getNote())
-                    .productCount(count)
-                    .build();
-            })
+            .map(s -> CatalogDataDTO.SizeInfo.builder()
+                .id(s.getId())
+                .name(s.getName())
+                .note(s.getNote())
+                .productCount(counts.sizeCount(s.getId()))
+                .build())
             .collect(Collectors.toList());
 
         log.info("Catalog data loaded: {} brands, {} categories, {} colors, {} sizes",
@@ -111,17 +120,15 @@ public class CatalogCacheService {
             .categories(categories)
             .colors(colors)
             .sizes(sizes)
-            .totalProducts(totalProducts)
-            .activeProducts(activeProducts)
+            .totalProducts(counts.getTotalProducts())
+            .activeProducts(counts.getActiveProducts())
             .build();
     }
 
     /**
-     * Lấy top products - CACHED 2 phút - SỬ DỤNG REPOSITORY METHOD
+     * SỬ DỤNG REPOSITORY METHOD
      */
-    @Cacheable(value = "topProducts", key = "#limit", unless = "#result == null")
-    @Transactional(readOnly = true)
-    public List<ProductCatalogDTO> getTopProducts(int limit) {
+    private List<ProductCatalogDTO> loadTopProducts(int limit) {
         log.info("Loading top {} products from database...", limit);
 
         List<Product> products = productRepository.findByIsActive(true, PageRequest.of(0, limit)).getContent();
@@ -134,15 +141,16 @@ public class CatalogCacheService {
     }
 
     /**
-     * Search products by keyword - SỬ DỤNG REPOSITORY SEARCH METHOD
+     * Search products by keyword - SỬ DỤNG CHỈ MỤC TÌM KIẾM (ProductSearchIndex)
      */
     @Cacheable(value = "productSearch", key = "#keyword + '_' + #limit", unless = "#result == null")
     @Transactional(readOnly = true)
     public List<ProductCatalogDTO> searchProducts(String keyword, int limit) {
         log.info("Searching products with keyword: '{}', limit: {}", keyword, limit);
 
-        // SỬ DỤNG repository method đã có sẵn thay vì findAll() và filter
-        List<Product> products = productRepository.searchProducts(keyword, PageRequest.of(0, limit)).getContent();
+        // Tìm trên chỉ mục trong bộ nhớ (bỏ dấu, xếp hạng) rồi chỉ load các sản phẩm khớp
+        List<Long> productIds = productSearchIndex.search(keyword, 0, limit).getProductIds();
+        List<Product> products = productService.findAllByIdInOrder(productIds);
 
         log.info("Found {} products matching keyword '{}'", products.size(), keyword);
 
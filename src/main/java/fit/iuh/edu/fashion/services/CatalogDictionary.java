@@ -0,0 +1,160 @@
+package fit.iuh.edu.fashion.services;
+
+import fit.iuh.edu.fashion.models.Brand;
+import fit.iuh.edu.fashion.models.Category;
+import fit.iuh.edu.fashion.repositories.BrandRepository;
+import fit.iuh.edu.fashion.repositories.CategoryRepository;
+import fit.iuh.edu.fashion.utils.KeywordAutomaton;
+import fit.iuh.edu.fashion.utils.TransactionUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Từ điển tên thương hiệu / danh mục cho UserIntentAnalyzer, giữ trên heap thay vì findAll mỗi câu hỏi.
+ * Tên được chuẩn hóa (lowercase, bỏ dấu như câu hỏi) một lần khi nạp và compile thành KeywordAutomaton
+ * (trie + suffix link), tra một câu là một lượt quét; câu chứa nhiều tên thì lấy tên dài nhất
+ * ("áo thun" thay vì "áo"), bằng nhau thì lấy tên xuất hiện trước.
+ * Nạp lại sau khi admin thêm/sửa/xóa brand hoặc category (các node khác được báo qua kênh REFRESH_CHANNEL)
+ * và định kỳ cho các thay đổi không đi qua API.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class CatalogDictionary {
+
+    public static final String REFRESH_CHANNEL = "catalog:dictionary";
+
+    private final BrandRepository brandRepository;
+    private final CategoryRepository categoryRepository;
+    private final StringRedisTemplate redisTemplate;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * Thương hiệu (tên lowercase) có trong câu đã chuẩn hóa, null nếu không có
+     */
+    public String findBrand(String normalizedMessage) {
+        return current().brands().longestMatch(normalizedMessage);
+    }
+
+    /**
+     * Danh mục (tên gốc) có trong câu đã chuẩn hóa, null nếu không có
+     */
+    public String findCategory(String normalizedMessage) {
+        return current().categories().longestMatch(normalizedMessage);
+    }
+
+    /**
+     * Brand / category vừa đổi: nạp lại sau khi transaction hiện tại commit và báo các node khác
+     */
+    public void reload() {
+        TransactionUtil.afterCommit(() -> {
+            refresh();
+            try {
+                redisTemplate.convertAndSend(REFRESH_CHANNEL, nodeId);
+            } catch (Exception e) {
+                // Node khác vẫn nạp lại theo lịch định kỳ
+                log.warn("Failed to publish catalog dictionary refresh: {}", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Nhận message từ kênh REFRESH_CHANNEL (id của node đã đổi dữ liệu)
+     */
+    public void onRefreshMessage(String message) {
+        if (!nodeId.equals(message)) {
+            refresh();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        refresh();
+    }
+
+    @Scheduled(fixedDelayString = "${app.ai.catalog-dictionary.refresh-interval-ms:600000}",
+            initialDelayString = "${app.ai.catalog-dictionary.refresh-interval-ms:600000}")
+    public void refreshPeriodically() {
+        refresh();
+    }
+
+    /**
+     * Đọc lại toàn bộ brand / category và thay từ điển đang dùng
+     */
+    public synchronized void refresh() {
+        try {
+            snapshot = new Snapshot(
+                    NameIndex.of(brandRepository.findAll().stream().map(Brand::getName).toList(), String::toLowerCase),
+                    NameIndex.of(categoryRepository.findAll().stream().map(Category::getName).toList(), Function.identity()));
+            log.debug("Catalog dictionary loaded: {} brands, {} categories",
+                    snapshot.brands().size(), snapshot.categories().size());
+        } catch (RuntimeException e) {
+            // Giữ bản cũ khi không đọc được DB
+            log.warn("Failed to load catalog dictionary: {}", e.getMessage());
+        }
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            // Gọi trước ApplicationReadyEvent hoặc lần nạp lúc khởi động bị lỗi
+            refresh();
+            current = snapshot;
+        }
+        return current != null ? current : Snapshot.EMPTY;
+    }
+
+    private record Snapshot(NameIndex brands, NameIndex categories) {
+        static final Snapshot EMPTY = new Snapshot(NameIndex.of(List.of(), Function.identity()),
+                NameIndex.of(List.of(), Function.identity()));
+    }
+
+    /**
+     * Tên đã chuẩn hóa compile thành automaton; group i là names.get(i)
+     */
+    private record NameIndex(KeywordAutomaton automaton, List<String> names) {
+
+        static NameIndex of(List<String> names, Function<String, String> display) {
+            List<String> displayNames = new ArrayList<>();
+            List<String[]> keywords = new ArrayList<>();
+            for (String name : names) {
+                if (name != null) {
+                    displayNames.add(display.apply(name));
+                    keywords.add(new String[]{UserIntentAnalyzer.normalizeVietnamese(name.toLowerCase())});
+                }
+            }
+            return new NameIndex(KeywordAutomaton.compile(keywords), displayNames);
+        }
+
+        String longestMatch(String message) {
+            int[] best = {-1, 0, 0}; // group, start, length
+            automaton.scan(message, (group, start, end) -> {
+                int length = end - start;
+                // Cùng vị trí và độ dài (hai tên chuẩn hóa trùng nhau): lấy tên đứng trước trong DB
+                if (length > best[2] || (length == best[2] && (start < best[1] || (start == best[1] && group < best[0])))) {
+                    best[0] = group;
+                    best[1] = start;
+                    best[2] = length;
+                }
+            });
+            return best[0] >= 0 ? names.get(best[0]) : null;
+        }
+
+        int size() {
+            return names.size();
+        }
+    }
+}
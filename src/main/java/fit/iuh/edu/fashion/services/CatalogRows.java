@@ -0,0 +1,85 @@
+package fit.iuh.edu.fashion.services;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Đọc các dòng của ProductRepository.findCatalogStatisticsRows thành product/variant.
+ * Dùng chung cho CatalogStatisticsService và ProductFacetIndex (cùng query, cùng cách gom).
+ * Cột: product id, brand id, product active, variant id, color id, size id, stock, variant active,
+ * category id (chỉ ở dòng category), price.
+ */
+final class CatalogRows {
+
+    private CatalogRows() {
+    }
+
+    /**
+     * Gom các dòng theo product (id tăng dần)
+     */
+    static TreeMap<Long, ProductEntry> group(List<Object[]> rows) {
+        TreeMap<Long, ProductEntry> byProduct = new TreeMap<>();
+        for (Object[] row : rows) {
+            Long productId = toLong(row[0]);
+            ProductEntry entry = byProduct.computeIfAbsent(productId, id -> new ProductEntry());
+
+            Long categoryId = toLong(row[8]);
+            if (categoryId != null) {
+                entry.categoryIds.add(categoryId);
+                continue;
+            }
+
+            entry.brandId = toLong(row[1]);
+            entry.active = toBoolean(row[2]);
+
+            Long variantId = toLong(row[3]);
+            if (variantId != null) {
+                VariantEntry variant = new VariantEntry();
+                variant.colorId = toLong(row[4]);
+                variant.sizeId = toLong(row[5]);
+                variant.stock = toStock(row[6]);
+                variant.active = toBoolean(row[7]);
+                variant.price = row[9] != null ? new BigDecimal(row[9].toString()) : null;
+                entry.variants.put(variantId, variant);
+            }
+        }
+        return byProduct;
+    }
+
+    static int toStock(Object value) {
+        return value != null ? ((Number) value).intValue() : 0;
+    }
+
+    private static Long toLong(Object value) {
+        return value != null ? ((Number) value).longValue() : null;
+    }
+
+    // Cột BIT/TINYINT trả về Boolean, số hoặc byte[] tùy driver
+    private static boolean toBoolean(Object value) {
+        if (value instanceof Boolean b) {
+            return b;
+        }
+        if (value instanceof Number n) {
+            return n.intValue() != 0;
+        }
+        if (value instanceof byte[] bytes) {
+            return bytes.length > 0 && bytes[0] != 0;
+        }
+        return false;
+    }
+
+    static class ProductEntry {
+        Long brandId;
+        Set<Long> categoryIds = new HashSet<>();
+        boolean active;
+        final Map<Long, VariantEntry> variants = new HashMap<>();
+    }
+
+    static class VariantEntry {
+        Long colorId;
+        Long sizeId;
+        BigDecimal price;
+        int stock;
+        boolean active;
+    }
+}
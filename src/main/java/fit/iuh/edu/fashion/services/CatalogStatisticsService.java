@@ -0,0 +1,311 @@
+package fit.iuh.edu.fashion.services;
+
+import fit.iuh.edu.fashion.models.Category;
+import fit.iuh.edu.fashion.models.Product;
+import fit.iuh.edu.fashion.models.ProductVariant;
+import fit.iuh.edu.fashion.repositories.ProductRepository;
+import fit.iuh.edu.fashion.repositories.ProductVariantRepository;
+import fit.iuh.edu.fashion.services.CatalogRows.ProductEntry;
+import fit.iuh.edu.fashion.services.CatalogRows.VariantEntry;
+import fit.iuh.edu.fashion.utils.IndexBuildState;
+import fit.iuh.edu.fashion.utils.TransactionUtil;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Thống kê catalog (số sản phẩm theo brand/category/color/size) giữ trong bộ nhớ.
+ * Build một lần bằng một query gộp, sau đó cập nhật tăng dần khi product/variant thay đổi,
+ * nên cache miss của catalogData không còn phải quét lại toàn bộ bảng products.
+ * Query build chạy ngoài khóa; cập nhật đến trong lúc build được giữ lại và áp dụng sau (IndexBuildState).
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class CatalogStatisticsService {
+
+    private final ProductRepository productRepository;
+    private final ProductVariantRepository productVariantRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object buildLock = new Object();
+    private final IndexBuildState buildState = new IndexBuildState();
+
+    private final Map<Long, ProductEntry> products = new HashMap<>();
+    private final Map<Long, Long> variantOwners = new HashMap<>();
+
+    private final Map<Long, Long> brandCounts = new HashMap<>();
+    private final Map<Long, Long> categoryCounts = new HashMap<>();
+    private final Map<Long, Long> colorCounts = new HashMap<>();
+    private final Map<Long, Long> sizeCounts = new HashMap<>();
+    private long totalProducts;
+    private long activeProducts;
+
+    // Số thứ tự của lượt đọc tồn kho đã áp dụng cho từng variant (giữ qua các lần build):
+    // lượt đọc bắt đầu trước không ghi đè kết quả của lượt đọc bắt đầu sau
+    private final AtomicLong stockReads = new AtomicLong();
+    private final Map<Long, Long> stockStamps = new HashMap<>();
+
+    /**
+     * Lấy snapshot thống kê hiện tại - build từ DB nếu chưa có
+     */
+    public CatalogCounts getCounts() {
+        ensureBuilt();
+        lock.readLock().lock();
+        try {
+            return CatalogCounts.builder()
+                    .totalProducts(totalProducts)
+                    .activeProducts(activeProducts)
+                    .brandCounts(Map.copyOf(brandCounts))
+                    .categoryCounts(Map.copyOf(categoryCounts))
+                    .colorCounts(Map.copyOf(colorCounts))
+                    .sizeCounts(Map.copyOf(sizeCounts))
+                    .build();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Bỏ snapshot sau khi transaction hiện tại commit, lần đọc tiếp theo sẽ build lại từ DB
+     */
+    public void invalidate() {
+        TransactionUtil.afterCommit(buildState::invalidate);
+    }
+
+    /**
+     * Product được tạo/cập nhật (brand, categories, trạng thái active)
+     */
+    public void onProductSaved(Product product) {
+        Long productId = product.getId();
+        Long brandId = product.getBrand() != null ? product.getBrand().getId() : null;
+        Set<Long> categoryIds = new HashSet<>();
+        if (product.getCategories() != null) {
+            for (Category category : product.getCategories()) {
+                categoryIds.add(category.getId());
+            }
+        }
+        boolean active = Boolean.TRUE.equals(product.getIsActive());
+
+        TransactionUtil.afterCommit(() -> buildState.apply(() -> applyProduct(productId, brandId, categoryIds, active)));
+    }
+
+    /**
+     * Variant được tạo/cập nhật (color, size, stock, trạng thái active)
+     */
+    public void onVariantSaved(ProductVariant variant) {
+        Long variantId = variant.getId();
+        Long productId = variant.getProduct().getId();
+        Long colorId = variant.getColor() != null ? variant.getColor().getId() : null;
+        Long sizeId = variant.getSize() != null ? variant.getSize().getId() : null;
+        int stock = variant.getStock() != null ? variant.getStock() : 0;
+        boolean active = Boolean.TRUE.equals(variant.getIsActive());
+
+        TransactionUtil.afterCommit(() -> buildState.apply(
+                () -> applyVariant(variantId, productId, colorId, sizeId, stock, active)));
+    }
+
+    /**
+     * Tồn kho của các variant đổi bởi UPDATE trực tiếp (đặt hàng, hủy đơn, flush hot SKU).
+     * Sau commit đọc lại tồn kho từ DB thay vì cộng chênh lệch: lượt đọc nào cũng đã thấy commit này,
+     * nên áp dụng sau một lần build (dù build có thấy commit hay không) không bị mất hay tính hai lần.
+     */
+    public void onStockChanged(Collection<Long> variantIds) {
+        if (variantIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = List.copyOf(variantIds);
+        TransactionUtil.afterCommit(() -> buildState.apply(() -> refreshStock(ids)));
+    }
+
+    void applyProduct(Long productId, Long brandId, Set<Long> categoryIds, boolean active) {
+        lock.writeLock().lock();
+        try {
+            ProductEntry entry = products.get(productId);
+            if (entry == null) {
+                entry = new ProductEntry();
+                products.put(productId, entry);
+            } else {
+                contribute(entry, -1);
+            }
+            entry.brandId = brandId;
+            entry.categoryIds = categoryIds;
+            entry.active = active;
+            contribute(entry, 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void applyVariant(Long variantId, Long productId, Long colorId, Long sizeId, int stock, boolean active) {
+        lock.writeLock().lock();
+        try {
+            ProductEntry entry = products.get(productId);
+            if (entry == null) {
+                // Product chưa có trong snapshot (tạo trong transaction chưa kịp áp dụng) - build lại cho chắc
+                buildState.invalidate();
+                return;
+            }
+            contribute(entry, -1);
+            VariantEntry variant = entry.variants.computeIfAbsent(variantId, id -> new VariantEntry());
+            variant.colorId = colorId;
+            variant.sizeId = sizeId;
+            variant.stock = stock;
+            variant.active = active;
+            variantOwners.put(variantId, productId);
+            contribute(entry, 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Đọc tồn kho hiện tại của các variant (ngoài khóa) rồi ghi vào thống kê
+     */
+    void refreshStock(List<Long> variantIds) {
+        // Lấy số thứ tự trước khi đọc: lượt đọc có số lớn hơn thấy dữ liệu mới bằng hoặc hơn
+        long stamp = stockReads.incrementAndGet();
+        List<Object[]> rows = productVariantRepository.findStockRows(variantIds);
+        lock.writeLock().lock();
+        try {
+            for (Object[] row : rows) {
+                applyStock((Long) row[0], CatalogRows.toStock(row[1]), stamp);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void applyStock(Long variantId, int stock, long stamp) {
+        Long applied = stockStamps.get(variantId);
+        if (applied != null && applied > stamp) {
+            return;
+        }
+        stockStamps.put(variantId, stamp);
+        Long productId = variantOwners.get(variantId);
+        ProductEntry entry = productId != null ? products.get(productId) : null;
+        if (entry == null) {
+            buildState.invalidate();
+            return;
+        }
+        contribute(entry, -1);
+        entry.variants.get(variantId).stock = stock;
+        contribute(entry, 1);
+    }
+
+    private void ensureBuilt() {
+        if (buildState.isBuilt()) {
+            return;
+        }
+        synchronized (buildLock) {
+            if (!buildState.isBuilt()) {
+                buildState.build(this::rebuild);
+            }
+        }
+    }
+
+    /**
+     * Build lại toàn bộ thống kê bằng MỘT query (gom dòng bằng CatalogRows).
+     * Query chạy ngoài khóa; chỉ lúc thay dữ liệu mới chặn người đọc.
+     */
+    private void rebuild() {
+        long start = System.currentTimeMillis();
+
+        List<Object[]> rows = productRepository.findCatalogStatisticsRows();
+        Map<Long, ProductEntry> loaded = CatalogRows.group(rows);
+        Map<Long, Long> owners = new HashMap<>();
+        loaded.forEach((productId, entry) -> entry.variants.keySet().forEach(variantId -> owners.put(variantId, productId)));
+
+        lock.writeLock().lock();
+        try {
+            products.clear();
+            variantOwners.clear();
+            brandCounts.clear();
+            categoryCounts.clear();
+            colorCounts.clear();
+            sizeCounts.clear();
+            totalProducts = 0;
+            activeProducts = 0;
+
+            products.putAll(loaded);
+            variantOwners.putAll(owners);
+            for (ProductEntry entry : products.values()) {
+                contribute(entry, 1);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        log.info("Catalog statistics rebuilt from {} rows in {} ms ({} products)",
+                rows.size(), System.currentTimeMillis() - start, loaded.size());
+    }
+
+    /**
+     * Cộng (sign = 1) hoặc trừ (sign = -1) phần đóng góp của một product vào các bộ đếm
+     */
+    private void contribute(ProductEntry entry, int sign) {
+        totalProducts += sign;
+        if (entry.active) {
+            activeProducts += sign;
+            if (entry.brandId != null) {
+                brandCounts.merge(entry.brandId, (long) sign, Long::sum);
+            }
+            for (Long categoryId : entry.categoryIds) {
+                categoryCounts.merge(categoryId, (long) sign, Long::sum);
+            }
+        }
+
+        // Color/size: đếm product có ít nhất 1 variant còn bán và còn hàng
+        Set<Long> colors = new HashSet<>();
+        Set<Long> sizes = new HashSet<>();
+        for (VariantEntry variant : entry.variants.values()) {
+            if (variant.active && variant.stock > 0) {
+                if (variant.colorId != null) {
+                    colors.add(variant.colorId);
+                }
+                if (variant.sizeId != null) {
+                    sizes.add(variant.sizeId);
+                }
+            }
+        }
+        for (Long colorId : colors) {
+            colorCounts.merge(colorId, (long) sign, Long::sum);
+        }
+        for (Long sizeId : sizes) {
+            sizeCounts.merge(sizeId, (long) sign, Long::sum);
+        }
+    }
+
+    @Getter
+    @Builder
+    public static class CatalogCounts {
+        private final long totalProducts;
+        private final long activeProducts;
+        private final Map<Long, Long> brandCounts;
+        private final Map<Long, Long> categoryCounts;
+        private final Map<Long, Long> colorCounts;
+        private final Map<Long, Long> sizeCounts;
+
+        public long brandCount(Long brandId) {
+            return brandCounts.getOrDefault(brandId, 0L);
+        }
+
+        public long categoryCount(Long categoryId) {
+            return categoryCounts.getOrDefault(categoryId, 0L);
+        }
+
+        public long colorCount(Long colorId) {
+            return colorCounts.getOrDefault(colorId, 0L);
+        }
+
+        public long sizeCount(Long sizeId) {
+            return sizeCounts.getOrDefault(sizeId, 0L);
+        }
+    }
+}
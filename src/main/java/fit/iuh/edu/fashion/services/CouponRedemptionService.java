@@ -0,0 +1,233 @@
+package fit.iuh.edu.fashion.services;
+
+import fit.iuh.edu.fashion.exception.BusinessException;
+import fit.iuh.edu.fashion.models.Coupon;
+import fit.iuh.edu.fashion.models.CouponRedemption;
+import fit.iuh.edu.fashion.models.CouponRedemptionStripe;
+import fit.iuh.edu.fashion.models.Order;
+import fit.iuh.edu.fashion.repositories.CouponRedemptionRepository;
+import fit.iuh.edu.fashion.repositories.CouponRedemptionStripeRepository;
+import fit.iuh.edu.fashion.repositories.CouponRepository;
+import fit.iuh.edu.fashion.repositories.CustomerProfileRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Dùng / trả lượt mã giảm giá trong transaction của đơn hàng.
+ * - coupon thường: tăng used_count có điều kiện (used_count < usage_limit) bằng một câu UPDATE,
+ *   không đọc-sửa-ghi nên không mất lượt cập nhật và không vượt giới hạn
+ * - coupon chia stripe (redemption_stripes > 0): lượt còn lại được chia sẵn vào N dòng
+ *   coupon_redemption_stripes; checkout trừ trên một stripe ngẫu nhiên, stripe hết thì thử stripe kế tiếp
+ * Mỗi đơn có một bản ghi coupon_redemptions; hủy/hoàn tiền đơn trả lại lượt đúng một lần.
+ * Định kỳ cân bằng lại các coupon chia stripe: gộp lượt đã dùng vào used_count và chia đều lượt còn lại.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class CouponRedemptionService {
+
+    private final CouponRepository couponRepository;
+    private final CouponRedemptionRepository couponRedemptionRepository;
+    private final CouponRedemptionStripeRepository stripeRepository;
+    private final CustomerProfileRepository customerProfileRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    void initTransactionTemplate() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Lấy một lượt dùng coupon cho đơn hàng (đã lưu). Hết lượt thì ném BusinessException và đơn bị rollback.
+     * Giới hạn theo khách hàng (per_user_limit): khóa hồ sơ khách hàng trước khi đếm để hai đơn đồng thời
+     * của cùng một khách không cùng qua được bước kiểm tra; khách chưa có hồ sơ thì khóa dòng coupon.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public CouponRedemption redeem(Coupon coupon, Order order) {
+        Long customerId = order.getCustomer().getId();
+        if (coupon.getPerUserLimit() != null) {
+            if (customerProfileRepository.lockByUserId(customerId).isEmpty()) {
+                couponRepository.lockById(coupon.getId());
+            }
+            if (couponRedemptionRepository.lockIdsByCouponIdAndCustomerIdAndStatus(coupon.getId(), customerId,
+                    CouponRedemption.Status.REDEEMED).size() >= coupon.getPerUserLimit()) {
+                throw new BusinessException("Bạn đã dùng hết số lượt cho mã giảm giá này");
+            }
+        }
+
+        Integer stripe = null;
+        if (isStriped(coupon)) {
+            stripe = takeStripe(coupon);
+        }
+        if (stripe == null && couponRepository.incrementUsage(coupon.getId()) == 0) {
+            throw new BusinessException("Mã giảm giá đã hết lượt sử dụng");
+        }
+
+        return couponRedemptionRepository.save(CouponRedemption.builder()
+                .couponId(coupon.getId())
+                .orderId(order.getId())
+                .customerId(customerId)
+                .stripe(stripe)
+                .build());
+    }
+
+    /**
+     * Trả lại lượt dùng coupon của đơn bị hủy/hoàn tiền. Đơn không dùng coupon hoặc đã trả thì bỏ qua.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void release(Order order) {
+        couponRedemptionRepository.findByOrderIdAndStatus(order.getId(), CouponRedemption.Status.REDEEMED)
+                .ifPresent(redemption -> {
+                    if (couponRedemptionRepository.markReleased(redemption.getId(), LocalDateTime.now()) == 0) {
+                        return;
+                    }
+                    Long couponId = redemption.getCouponId();
+                    if (redemption.getStripe() == null || stripeRepository.giveBack(couponId, redemption.getStripe()) == 0) {
+                        // Lượt nằm trong used_count (coupon thường, hoặc đã được gộp khi cân bằng lại).
+                        // Coupon đang chia stripe thì lượt trả về được cộng vào capacity của một stripe để checkout lấy lại được.
+                        couponRepository.decrementUsage(couponId);
+                        int stripe = redemption.getStripe() != null ? redemption.getStripe() : 0;
+                        if (stripeRepository.addCapacity(couponId, stripe) == 0 && stripe != 0) {
+                            stripeRepository.addCapacity(couponId, 0);
+                        }
+                    }
+                    log.info("Released coupon {} redemption of order {}", couponId, order.getId());
+                });
+    }
+
+    /**
+     * Tổng lượt đã dùng: used_count cộng phần đã dùng trên các stripe
+     */
+    @Transactional(readOnly = true)
+    public int usedCount(Coupon coupon) {
+        int used = coupon.getUsedCount();
+        if (isStriped(coupon)) {
+            for (CouponRedemptionStripe stripe : stripeRepository.findByCouponId(coupon.getId())) {
+                used += stripe.getUsed();
+            }
+        }
+        return used;
+    }
+
+    /**
+     * Gán totalUsedCount (used_count + lượt trên các stripe) cho danh sách coupon trả về trang quản trị,
+     * một câu truy vấn cho cả trang
+     */
+    @Transactional(readOnly = true)
+    public void fillTotalUsedCounts(Collection<Coupon> coupons) {
+        List<Long> stripedIds = coupons.stream().filter(this::isStriped).map(Coupon::getId).toList();
+        Map<Long, Long> stripeUsed = new HashMap<>();
+        if (!stripedIds.isEmpty()) {
+            for (Object[] row : stripeRepository.sumUsedByCouponIds(stripedIds)) {
+                stripeUsed.put((Long) row[0], ((Number) row[1]).longValue());
+            }
+        }
+        for (Coupon coupon : coupons) {
+            coupon.setTotalUsedCount(coupon.getUsedCount() + stripeUsed.getOrDefault(coupon.getId(), 0L).intValue());
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public boolean hasRemainingUses(Coupon coupon) {
+        return coupon.getUsageLimit() == null || usedCount(coupon) < coupon.getUsageLimit();
+    }
+
+    /**
+     * Gộp lượt đã dùng trên các stripe vào used_count rồi chia lại lượt còn lại theo redemption_stripes hiện tại.
+     * Gọi sau khi admin đổi usage_limit / redemption_stripes; redemption_stripes = 0 thì xóa các stripe.
+     */
+    public void rebalance(Long couponId) {
+        transactionTemplate.executeWithoutResult(status -> rebalanceLocked(couponId, true));
+    }
+
+    @Scheduled(fixedDelayString = "${app.coupon.rebalance-interval-ms:60000}",
+               initialDelayString = "${app.coupon.rebalance-interval-ms:60000}")
+    public void rebalanceStriped() {
+        for (Long couponId : couponRepository.findStripedIds()) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> rebalanceLocked(couponId, false));
+            } catch (RuntimeException e) {
+                log.warn("Cannot rebalance redemption stripes of coupon {}: {}", couponId, e.getMessage());
+            }
+        }
+    }
+
+    private void rebalanceLocked(Long couponId, boolean force) {
+        // Khóa coupon rồi các stripe: các lượt đang giữ stripe phải commit xong trước khi gộp
+        Coupon coupon = couponRepository.lockById(couponId).orElse(null);
+        if (coupon == null) {
+            return;
+        }
+        List<CouponRedemptionStripe> stripes = stripeRepository.lockByCouponId(couponId);
+        int stripeCount = isStriped(coupon) ? coupon.getRedemptionStripes() : 0;
+        // Chỉ chia lại khi có stripe đã hết trong lúc stripe khác còn lượt
+        if (!force && stripes.size() == stripeCount
+                && (stripes.stream().noneMatch(this::isFull) || stripes.stream().allMatch(this::isFull))) {
+            return;
+        }
+
+        int used = coupon.getUsedCount();
+        for (CouponRedemptionStripe stripe : stripes) {
+            used += stripe.getUsed();
+        }
+        coupon.setUsedCount(used);
+        stripeRepository.deleteByCouponId(couponId);
+        if (stripeCount == 0) {
+            return;
+        }
+
+        Integer remaining = coupon.getUsageLimit() == null ? null : Math.max(0, coupon.getUsageLimit() - used);
+        List<CouponRedemptionStripe> allocated = new ArrayList<>(stripeCount);
+        for (int i = 0; i < stripeCount; i++) {
+            allocated.add(CouponRedemptionStripe.builder()
+                    .couponId(couponId)
+                    .stripe(i)
+                    .capacity(remaining == null ? null : remaining / stripeCount + (i < remaining % stripeCount ? 1 : 0))
+                    .build());
+        }
+        stripeRepository.saveAll(allocated);
+        log.info("Coupon {} redemption stripes rebalanced: {} used, {} stripes", coupon.getCode(), used, stripeCount);
+    }
+
+    // Thử lần lượt các stripe từ một vị trí ngẫu nhiên; null khi mọi stripe đã hết hoặc chưa được chia
+    private Integer takeStripe(Coupon coupon) {
+        int stripeCount = coupon.getRedemptionStripes();
+        int start = ThreadLocalRandom.current().nextInt(stripeCount);
+        for (int i = 0; i < stripeCount; i++) {
+            int stripe = (start + i) % stripeCount;
+            if (stripeRepository.take(coupon.getId(), stripe) == 1) {
+                return stripe;
+            }
+        }
+        if (stripeRepository.findByCouponId(coupon.getId()).isEmpty()) {
+            // Chưa chia stripe (vừa bật chế độ này): dùng bộ đếm used_count
+            return null;
+        }
+        throw new BusinessException("Mã giảm giá đã hết lượt sử dụng");
+    }
+
+    private boolean isFull(CouponRedemptionStripe stripe) {
+        return stripe.getCapacity() != null && stripe.getUsed() >= stripe.getCapacity();
+    }
+
+    private boolean isStriped(Coupon coupon) {
+        return coupon.getRedemptionStripes() != null && coupon.getRedemptionStripes() > 0;
+    }
+}
@@ -0,0 +1,211 @@
+package fit.iuh.edu.fashion.services;
+
+import fit.iuh.edu.fashion.dto.response.OrderHistoryPageResponse;
+import fit.iuh.edu.fashion.dto.response.OrderSummaryResponse;
+import fit.iuh.edu.fashion.models.CustomerOrderSummary;
+import fit.iuh.edu.fashion.models.Order;
+import fit.iuh.edu.fashion.models.OrderItem;
+import fit.iuh.edu.fashion.repositories.CustomerOrderSummaryRepository;
+import fit.iuh.edu.fashion.utils.TransactionUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lịch sử đơn hàng của khách hàng đọc từ read model customer_order_summaries.
+ * OrderService / VNPayService cập nhật bản tóm tắt trong cùng transaction với đơn (tạo, đổi trạng thái,
+ * thanh toán, hủy, hoàn tiền) và xóa cache của khách sau commit.
+ * Trang đầu (trang khách mở nhiều nhất) nằm trong cache customerOrders theo khách hàng; cache miss và các trang
+ * sau là một câu SQL trên index (customer_user_id, placed_at) trả về cả tổng số đơn.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class CustomerOrderHistoryService {
+
+    public static final String CACHE_NAME = "customerOrders";
+    // Kích thước trang mặc định của /api/orders/my
+    private static final int CACHED_PAGE_SIZE = 10;
+    // Số stripe của bộ đếm phiên bản cache (theo id khách hàng)
+    private static final int VERSION_STRIPES = 256;
+
+    private final CustomerOrderSummaryRepository summaryRepository;
+    private final CacheManager cacheManager;
+
+    // Tăng trước mỗi lần xóa cache của khách: trang đọc từ DB chỉ được giữ lại trong cache nếu không có lần xóa
+    // nào chen vào giữa lúc đọc và lúc ghi (khách chung stripe chỉ làm trang bị ghi lại thêm một lần)
+    private final AtomicLongArray cacheVersions = new AtomicLongArray(VERSION_STRIPES);
+
+    @Transactional(readOnly = true)
+    public Page<OrderSummaryResponse> getMyOrders(Long customerId, int page, int size) {
+        Pageable pageable = PageRequest.of(page, size);
+        boolean cacheable = page == 0 && size == CACHED_PAGE_SIZE;
+        // Lấy phiên bản trước khi đọc DB
+        long version = cacheVersions.get(stripe(customerId));
+        if (cacheable) {
+            OrderHistoryPageResponse cached = readCache(customerId);
+            if (cached != null) {
+                return new PageImpl<>(cached.getContent(), pageable, cached.getTotalElements());
+            }
+        }
+
+        List<Object[]> rows = summaryRepository.findPageWithTotal(customerId, pageable);
+        List<OrderSummaryResponse> content = rows.stream()
+                .map(row -> toResponse((CustomerOrderSummary) row[0]))
+                .toList();
+        // Trang vượt quá số đơn không có dòng nào mang theo tổng
+        long total = rows.isEmpty() ? summaryRepository.countByCustomerId(customerId) : (Long) rows.get(0)[1];
+
+        if (cacheable) {
+            writeCache(customerId, new OrderHistoryPageResponse(content, total), version);
+        }
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    /**
+     * Ghi bản tóm tắt cho đơn vừa tạo (đơn đã lưu, có đủ dòng hàng)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void orderPlaced(Order order) {
+        summaryRepository.save(toSummary(order));
+        evictAfterCommit(Set.of(order.getCustomer().getId()));
+    }
+
+    /**
+     * Cập nhật trạng thái đơn / thanh toán trong bản tóm tắt; đơn chưa có bản tóm tắt thì tạo
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void orderUpdated(Order order) {
+        ordersUpdated(List.of(order));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void ordersUpdated(Collection<Order> orders) {
+        Set<Long> customerIds = new LinkedHashSet<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (Order order : orders) {
+            int updated = summaryRepository.updateState(order.getId(), order.getStatus(),
+                    order.getPaymentStatus(), order.getPaymentMethod(), now);
+            if (updated == 0) {
+                summaryRepository.save(toSummary(order));
+            }
+            customerIds.add(order.getCustomer().getId());
+        }
+        evictAfterCommit(customerIds);
+    }
+
+    private void evictAfterCommit(Set<Long> customerIds) {
+        if (customerIds.isEmpty()) {
+            return;
+        }
+        TransactionUtil.afterCommit(() -> {
+            Cache cache = cacheManager.getCache(CACHE_NAME);
+            if (cache == null) {
+                return;
+            }
+            for (Long customerId : customerIds) {
+                cacheVersions.incrementAndGet(stripe(customerId));
+                try {
+                    cache.evict(customerId);
+                } catch (RuntimeException e) {
+                    log.warn("Cannot evict order history cache of customer {}: {}", customerId, e.getMessage());
+                }
+            }
+        });
+    }
+
+    // Cache lỗi (Redis không sẵn sàng) thì đọc thẳng DB
+    private OrderHistoryPageResponse readCache(Long customerId) {
+        Cache cache = cacheManager.getCache(CACHE_NAME);
+        if (cache == null) {
+            return null;
+        }
+        try {
+            return cache.get(customerId, OrderHistoryPageResponse.class);
+        } catch (RuntimeException e) {
+            log.debug("Order history cache read failed for customer {}: {}", customerId, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Ghi trang đầu rồi kiểm tra phiên bản: một lần xóa chạy sau lúc đọc DB mà trước lúc ghi
+     * đã không thấy trang này, nên trang (có thể là dữ liệu cũ) bị xóa ngay thay vì nằm tới hết TTL
+     */
+    private void writeCache(Long customerId, OrderHistoryPageResponse page, long version) {
+        Cache cache = cacheManager.getCache(CACHE_NAME);
+        if (cache == null) {
+            return;
+        }
+        try {
+            cache.put(customerId, page);
+            if (cacheVersions.get(stripe(customerId)) != version) {
+                cache.evict(customerId);
+            }
+        } catch (RuntimeException e) {
+            log.debug("Order history cache write failed for customer {}: {}", customerId, e.getMessage());
+        }
+    }
+
+    private static int stripe(Long customerId) {
+        return Long.hashCode(customerId) & (VERSION_STRIPES - 1);
+    }
+
+    private CustomerOrderSummary toSummary(Order order) {
+        List<OrderItem> items = order.getItems();
+        return CustomerOrderSummary.builder()
+                .orderId(order.getId())
+                .customerId(order.getCustomer().getId())
+                .code(order.getCode())
+                .status(order.getStatus())
+                .paymentStatus(order.getPaymentStatus())
+                .paymentMethod(order.getPaymentMethod())
+                .grandTotal(order.getGrandTotal())
+                .placedAt(order.getPlacedAt())
+                .shipName(order.getShipName())
+                .shipPhone(order.getShipPhone())
+                .shipLine1(order.getShipLine1())
+                .shipWard(order.getShipWard())
+                .shipDistrict(order.getShipDistrict())
+                .shipCity(order.getShipCity())
+                .itemCount(items != null ? items.size() : 0)
+                .firstItemName(items != null && !items.isEmpty() ? items.get(0).getProductName() : null)
+                .updatedAt(LocalDateTime.now())
+                .build();
+    }
+
+    private OrderSummaryResponse toResponse(CustomerOrderSummary summary) {
+        return OrderSummaryResponse.builder()
+                .id(summary.getOrderId())
+                .code(summary.getCode())
+                .status(summary.getStatus().name())
+                .paymentStatus(summary.getPaymentStatus().name())
+                .paymentMethod(summary.getPaymentMethod().name())
+                .grandTotal(summary.getGrandTotal())
+                .placedAt(summary.getPlacedAt())
+                .shipName(summary.getShipName())
+                .shipPhone(summary.getShipPhone())
+                .shipLine1(summary.getShipLine1())
+                .shipWard(summary.getShipWard())
+                .shipDistrict(summary.getShipDistrict())
+                .shipCity(summary.getShipCity())
+                .itemCount(summary.getItemCount())
+                .firstItemName(summary.getFirstItemName())
+                .build();
+    }
+}
@@ -0,0 +1,134 @@
+package fit.iuh.edu.fashion.services;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bánh xe thời gian phân cấp (kiểu timer wheel của Linux): LEVELS tầng, mỗi tầng SLOTS ô;
+ * ô ở tầng L trải 64^L tick. Hạn chót được đặt vào tầng nhỏ nhất chứa được khoảng cách tới nó,
+ * khi tầng dưới quay hết một vòng thì ô kế tiếp của tầng trên được đổ xuống (cascade).
+ * Thêm / hủy O(1), mỗi tick chỉ chạm một ô - không quét toàn bộ khóa đang chờ.
+ * Hạn xa hơn tầm của bánh xe được kẹp lại và đặt lại khi tới ô.
+ * Không thread-safe: nơi dùng tự khóa.
+ */
+class HierarchicalTimingWheel<K> {
+
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_DELTA = (1L << (BITS * LEVELS)) - 1;
+
+    private final long tickMillis;
+    private final List<ArrayDeque<Entry<K>>> buckets = new ArrayList<>(LEVELS * SLOTS);
+    private final Map<K, Entry<K>> entries = new HashMap<>();
+    private long currentTick;
+
+    HierarchicalTimingWheel(long tickMillis, long startMillis) {
+        this.tickMillis = tickMillis;
+        this.currentTick = startMillis / tickMillis;
+        for (int i = 0; i < LEVELS * SLOTS; i++) {
+            buckets.add(new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Đặt (hoặc dời) hạn chót của key. Hạn đã qua sẽ được trả về ở lần advance() kế tiếp.
+     */
+    void schedule(K key, long deadlineMillis) {
+        Entry<K> previous = entries.remove(key);
+        if (previous != null) {
+            previous.cancelled = true;
+        }
+        // Làm tròn lên: không bao giờ hết hạn trước deadline
+        long deadlineTick = Math.max(currentTick + 1, Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis));
+        Entry<K> entry = new Entry<>(key, deadlineTick);
+        entries.put(key, entry);
+        place(entry);
+    }
+
+    boolean cancel(K key) {
+        Entry<K> entry = entries.remove(key);
+        if (entry == null) {
+            return false;
+        }
+        entry.cancelled = true;
+        return true;
+    }
+
+    boolean contains(K key) {
+        return entries.containsKey(key);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Quay bánh xe tới nowMillis, trả về các key đã tới hạn (theo thứ tự hạn chót)
+     */
+    List<K> advance(long nowMillis) {
+        List<K> expired = new ArrayList<>();
+        long targetTick = nowMillis / tickMillis;
+        while (currentTick < targetTick) {
+            currentTick++;
+            int index = (int) (currentTick & MASK);
+            // Tầng 0 vừa quay hết một vòng: đổ ô kế tiếp của tầng trên xuống, lan tiếp lên nếu tầng đó cũng vừa hết vòng
+            for (int level = 1; level < LEVELS && (currentTick >> (BITS * (level - 1)) & MASK) == 0; level++) {
+                cascade(level, (int) (currentTick >> (BITS * level) & MASK));
+            }
+            ArrayDeque<Entry<K>> bucket = buckets.get(index);
+            while (!bucket.isEmpty()) {
+                Entry<K> entry = bucket.poll();
+                if (entry.cancelled) {
+                    continue;
+                }
+                if (entry.deadlineTick > currentTick) {
+                    // Hạn bị kẹp vì vượt tầm bánh xe
+                    place(entry);
+                    continue;
+                }
+                entries.remove(entry.key);
+                expired.add(entry.key);
+            }
+        }
+        return expired;
+    }
+
+    private void cascade(int level, int index) {
+        ArrayDeque<Entry<K>> bucket = buckets.get(level * SLOTS + index);
+        List<Entry<K>> moved = new ArrayList<>(bucket);
+        bucket.clear();
+        for (Entry<K> entry : moved) {
+            if (!entry.cancelled) {
+                place(entry);
+            }
+        }
+    }
+
+    private void place(Entry<K> entry) {
+        // delta = 0: đổ xuống từ tầng trên đúng tick hết hạn - vào ô tầng 0 sắp được xử lý
+        long delta = Math.min(Math.max(entry.deadlineTick - currentTick, 0), MAX_DELTA);
+        long tick = currentTick + delta;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (BITS * (level + 1))) {
+            level++;
+        }
+        int index = (int) (tick >> (BITS * level) & MASK);
+        buckets.get(level * SLOTS + index).add(entry);
+    }
+
+    private static final class Entry<K> {
+        private final K key;
+        private final long deadlineTick;
+        private boolean cancelled;
+
+        private Entry(K key, long deadlineTick) {
+            this.key = key;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package fit.iuh.edu.fashion.services;
+
+import fit.iuh.edu.fashion.models.Cart;
+import fit.iuh.edu.fashion.models.CartItem;
+import fit.iuh.edu.fashion.models.ProductVariant;
+import fit.iuh.edu.fashion.models.User;
+import fit.iuh.edu.fashion.repositories.CartItemRepository;
+import fit.iuh.edu.fashion.repositories.CartRepository;
+import fit.iuh.edu.fashion.repositories.ProductVariantRepository;
+import fit.iuh.edu.fashion.utils.TransactionUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+
+/**
+ * Bản "sống" của giỏ hàng nằm trong Redis, bảng carts/cart_items chỉ là bản lưu bền ghi sau (write-behind).
+ * Mỗi khách một hash "cart:live:{userId}": field = variantId, value = "quantity:addedAtMillis",
+ * field "_" giữ id của dòng carts (0 nếu chưa có) và đánh dấu giỏ đã được nạp từ DB.
+ * Thêm / sửa / xóa chỉ ghi hash rồi đưa userId vào set "cart:dirty"; flush định kỳ lấy (SPOP) từng lô khách
+ * và đồng bộ cả giỏ xuống DB trong một transaction - nhiều thao tác liên tiếp của một khách gộp thành một lần ghi.
+ * SPOP đảm bảo mỗi khách chỉ được một instance flush; flush lỗi thì khách được đưa lại vào set.
+ * Hash hết hạn sau một thời gian không dùng, lần đọc sau nạp lại từ DB.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class LiveCartStore {
+
+    private static final String KEY_PREFIX = "cart:live:";
+    static final String DIRTY_KEY = "cart:dirty";
+    private static final String CART_FIELD = "_";
+    private static final String NO_CART = "0";
+    private static final Duration LIVE_TTL = Duration.ofDays(7);
+
+    private final StringRedisTemplate redisTemplate;
+    private final CartRepository cartRepository;
+    private final CartItemRepository cartItemRepository;
+    private final ProductVariantRepository productVariantRepository;
+    private final EntityManager entityManager;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${app.cart.flush-batch-size:200}")
+    private int flushBatchSize = 200;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    void initTransactionTemplate() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Một dòng của giỏ hàng sống
+     */
+    public record Line(Long variantId, int quantity, LocalDateTime addedAt) {
+    }
+
+    /**
+     * Giỏ hàng sống của khách: id giỏ trong DB (null nếu chưa flush lần nào) và các dòng theo thứ tự thêm vào
+     */
+    public record Snapshot(Long cartId, List<Line> lines) {
+
+        public Optional<Line> line(Long variantId) {
+            return lines.stream().filter(line -> line.variantId().equals(variantId)).findFirst();
+        }
+    }
+
+    public Snapshot load(Long userId) {
+        Map<Object, Object> entries = redisTemplate.opsForHash().entries(key(userId));
+        if (entries.isEmpty()) {
+            entries = hydrate(userId);
+        }
+        return toSnapshot(entries);
+    }
+
+    public void put(Long userId, Line line) {
+        String key = key(userId);
+        redisTemplate.opsForHash().put(key, String.valueOf(line.variantId()), encode(line));
+        markDirty(userId, key);
+    }
+
+    public boolean remove(Long userId, Long variantId) {
+        String key = key(userId);
+        boolean removed = redisTemplate.opsForHash().delete(key, String.valueOf(variantId)) > 0;
+        if (removed) {
+            markDirty(userId, key);
+        }
+        return removed;
+    }
+
+    public void clear(Long userId) {
+        Snapshot snapshot = load(userId);
+        if (snapshot.lines().isEmpty()) {
+            return;
+        }
+        String key = key(userId);
+        redisTemplate.opsForHash().delete(key, snapshot.lines().stream()
+                .map(line -> (Object) String.valueOf(line.variantId()))
+                .toArray());
+        markDirty(userId, key);
+    }
+
+    /**
+     * Sau khi đơn hàng commit: bỏ khỏi giỏ sống các món thêm vào trước thời điểm đặt
+     * (món khách thêm sau đó được giữ lại, giống cartItemRepository.deleteByCustomerAddedUntil)
+     */
+    public void removeAddedUntilAfterCommit(Long userId, LocalDateTime placedAt) {
+        TransactionUtil.afterCommit(() -> {
+            String key = key(userId);
+            Map<Object, Object> entries = redisTemplate.opsForHash().entries(key);
+            Object[] fields = toSnapshot(entries).lines().stream()
+                    .filter(line -> !line.addedAt().isAfter(placedAt))
+                    .map(line -> (Object) String.valueOf(line.variantId()))
+                    .toArray();
+            if (fields.length > 0) {
+                redisTemplate.opsForHash().delete(key, fields);
+                markDirty(userId, key);
+            }
+        });
+    }
+
+    public long pendingFlushCount() {
+        Long size = redisTemplate.opsForSet().size(DIRTY_KEY);
+        return size != null ? size : 0;
+    }
+
+    @Scheduled(fixedDelayString = "${app.cart.flush-interval-ms:2000}")
+    public void flush() {
+        List<String> userIds;
+        do {
+            userIds = redisTemplate.opsForSet().pop(DIRTY_KEY, flushBatchSize);
+            if (userIds == null) {
+                return;
+            }
+            for (String userId : userIds) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> flushCart(Long.valueOf(userId)));
+                } catch (RuntimeException e) {
+                    log.error("Cannot persist live cart of user {}, retrying on next flush", userId, e);
+                    redisTemplate.opsForSet().add(DIRTY_KEY, userId);
+                }
+            }
+        } while (userIds.size() == flushBatchSize);
+    }
+
+    private void flushCart(Long userId) {
+        String key = key(userId);
+        Map<Object, Object> entries = redisTemplate.opsForHash().entries(key);
+        if (entries.isEmpty()) {
+            // Hash đã hết hạn: DB giữ bản flush gần nhất
+            return;
+        }
+        Snapshot snapshot = toSnapshot(entries);
+        Long cartId = cartRepository.findIdByCustomerId(userId).orElse(null);
+        if (cartId == null) {
+            if (snapshot.lines().isEmpty()) {
+                return;
+            }
+            cartId = cartRepository.save(Cart.builder()
+                    .customer(entityManager.getReference(User.class, userId))
+                    .build()).getId();
+            String created = String.valueOf(cartId);
+            TransactionUtil.afterCommit(() -> redisTemplate.opsForHash().put(key, CART_FIELD, created));
+        }
+
+        Map<Long, Line> live = new HashMap<>();
+        snapshot.lines().forEach(line -> live.put(line.variantId(), line));
+        List<Long> removed = new ArrayList<>();
+        for (Object[] row : cartItemRepository.findFlushRows(cartId)) {
+            Line line = live.remove((Long) row[1]);
+            if (line == null) {
+                removed.add((Long) row[0]);
+            } else if (line.quantity() != (Integer) row[2]) {
+                cartItemRepository.updateQuantity((Long) row[0], line.quantity());
+            }
+        }
+        if (!removed.isEmpty()) {
+            cartItemRepository.deleteAllByIdInBatch(removed);
+        }
+        if (!live.isEmpty()) {
+            // Variant đã bị xóa khỏi DB: bỏ khỏi lần ghi (tránh lỗi FK lặp lại mỗi lần flush) và khỏi giỏ sống
+            Set<Long> gone = new HashSet<>(live.keySet());
+            productVariantRepository.findExistingIds(live.keySet()).forEach(gone::remove);
+            if (!gone.isEmpty()) {
+                live.keySet().removeAll(gone);
+                Object[] fields = gone.stream().map(variantId -> (Object) String.valueOf(variantId)).toArray();
+                TransactionUtil.afterCommit(() -> redisTemplate.opsForHash().delete(key, fields));
+            }
+        }
+        List<CartItem> added = new ArrayList<>();
+        for (Line line : live.values()) {
+            added.add(CartItem.builder()
+                    .cart(entityManager.getReference(Cart.class, cartId))
+                    .variant(entityManager.getReference(ProductVariant.class, line.variantId()))
+                    .quantity(line.quantity())
+                    .addedAt(line.addedAt())
+                    .build());
+        }
+        cartItemRepository.saveAll(added);
+    }
+
+    /**
+     * Nạp giỏ từ DB vào hash. HSETNX: không đè lên thao tác ghi đồng thời đã vào hash trước
+     */
+    private Map<Object, Object> hydrate(Long userId) {
+        String key = key(userId);
+        Map<Object, Object> entries = new LinkedHashMap<>();
+        String cartId = NO_CART;
+        for (Object[] row : cartRepository.findLiveCartRows(userId)) {
+            cartId = String.valueOf(row[0]);
+            if (row[1] != null) {
+                Line line = new Line((Long) row[1], (Integer) row[2], (LocalDateTime) row[3]);
+                entries.put(String.valueOf(line.variantId()), encode(line));
+            }
+        }
+        entries.put(CART_FIELD, cartId);
+        entries.forEach((field, value) -> redisTemplate.opsForHash().putIfAbsent(key, field, value));
+        redisTemplate.expire(key, LIVE_TTL);
+        return redisTemplate.opsForHash().entries(key);
+    }
+
+    private void markDirty(Long userId, String key) {
+        redisTemplate.expire(key, LIVE_TTL);
+        redisTemplate.opsForSet().add(DIRTY_KEY, String.valueOf(userId));
+    }
+
+    private static Snapshot toSnapshot(Map<Object, Object> entries) {
+        Long cartId = null;
+        List<Line> lines = new ArrayList<>();
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            String field = (String) entry.getKey();
+            String value = (String) entry.getValue();
+            if (CART_FIELD.equals(field)) {
+                cartId = NO_CART.equals(value) ? null : Long.valueOf(value);
+                continue;
+            }
+            int separator = value.indexOf(':');
+            lines.add(new Line(Long.valueOf(field), Integer.parseInt(value.substring(0, separator)),
+                    LocalDateTime.ofInstant(Instant.ofEpochMilli(Long.parseLong(value.substring(separator + 1))),
+                            ZoneId.systemDefault())));
+        }
+        lines.sort(Comparator.comparing(Line::addedAt).thenComparing(Line::variantId));
+        return new Snapshot(cartId, lines);
+    }
+
+    private static String encode(Line line) {
+        LocalDateTime addedAt = line.addedAt() != null ? line.addedAt() : LocalDateTime.now();
+        return line.quantity() + ":" + addedAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static String key(Long userId) {
+        return KEY_PREFIX + userId;
+    }
+}
@@ -0,0 +1,200 @@
+package fit.iuh.edu.fashion.services;
+
+import fit.iuh.edu.fashion.dto.response.LoyaltyReconcileResponse;
+import fit.iuh.edu.fashion.exception.BusinessException;
+import fit.iuh.edu.fashion.models.LoyaltyPointEntry;
+import fit.iuh.edu.fashion.models.Order;
+import fit.iuh.edu.fashion.repositories.CustomerProfileRepository;
+import fit.iuh.edu.fashion.repositories.LoyaltyPointEntryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Sổ điểm tích lũy chỉ thêm (loyalty_point_entries) cùng số dư customer_profiles.loyalty_point:
+ * mỗi thay đổi điểm là một UPDATE nguyên tử trên số dư và một dòng sổ trong cùng transaction,
+ * không đọc-sửa-ghi nên hai đơn đồng thời không dùng chung được một lượng điểm.
+ * Đọc số dư là một lần đọc theo khóa chính; đối soát duyệt sổ theo con trỏ.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LoyaltyLedgerService {
+
+    private static final int RECONCILE_CHUNK = 500;
+
+    private final LoyaltyPointEntryRepository entryRepository;
+    private final CustomerProfileRepository customerProfileRepository;
+
+    @Transactional(readOnly = true)
+    public int balance(Long customerId) {
+        return customerProfileRepository.findLoyaltyPoint(customerId).orElse(0);
+    }
+
+    /**
+     * Trừ điểm khách dùng cho đơn (đã lưu). Không đủ điểm thì ném BusinessException và đơn bị rollback.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void redeem(Order order, int points) {
+        Long customerId = order.getCustomer().getId();
+        if (customerProfileRepository.spendLoyaltyPoints(customerId, points) == 0) {
+            throw new BusinessException("Không đủ điểm tích lũy");
+        }
+        append(customerId, order.getId(), LoyaltyPointEntry.EntryType.REDEEM, -points);
+    }
+
+    /**
+     * Hoàn điểm đã dùng của đơn bị hủy/hoàn tiền - mỗi đơn một lần
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void reverseRedemption(Order order) {
+        int points = order.getLoyaltyPointsUsed();
+        if (points <= 0 || entryRepository.existsByOrderIdAndType(order.getId(), LoyaltyPointEntry.EntryType.REDEEM_REVERSAL)) {
+            return;
+        }
+        Long customerId = order.getCustomer().getId();
+        if (customerProfileRepository.addLoyaltyPoints(customerId, points) == 0) {
+            log.warn("Customer {} has no profile, cannot restore {} loyalty points", customerId, points);
+            return;
+        }
+        append(customerId, order.getId(), LoyaltyPointEntry.EntryType.REDEEM_REVERSAL, points);
+        log.info("Restored {} loyalty points to customer {}", points, customerId);
+    }
+
+    /**
+     * Cộng điểm cho các đơn vừa hoàn thành theo lô: bỏ qua đơn đã được cộng, ghi các dòng sổ bằng
+     * một lần saveAll (id pooled - INSERT theo lô) và một UPDATE số dư cho mỗi khách hàng.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void creditEarned(Collection<Order> orders) {
+        Map<Long, Order> eligible = new LinkedHashMap<>();
+        for (Order order : orders) {
+            if (order.getLoyaltyPointsEarned() > 0) {
+                eligible.put(order.getId(), order);
+            }
+        }
+        if (eligible.isEmpty()) {
+            return;
+        }
+        entryRepository.findOrderIdsByType(LoyaltyPointEntry.EntryType.EARN, eligible.keySet())
+                .forEach(eligible::remove);
+
+        Map<Long, Integer> pointsByCustomer = new LinkedHashMap<>();
+        for (Order order : eligible.values()) {
+            pointsByCustomer.merge(order.getCustomer().getId(), order.getLoyaltyPointsEarned(), Integer::sum);
+        }
+        Set<Long> credited = new HashSet<>();
+        pointsByCustomer.forEach((customerId, points) -> {
+            if (customerProfileRepository.addLoyaltyPoints(customerId, points) == 1) {
+                credited.add(customerId);
+            } else {
+                log.warn("Customer {} has no profile, cannot credit {} loyalty points", customerId, points);
+            }
+        });
+
+        List<LoyaltyPointEntry> entries = new ArrayList<>();
+        for (Order order : eligible.values()) {
+            if (credited.contains(order.getCustomer().getId())) {
+                entries.add(entry(order.getCustomer().getId(), order.getId(),
+                        LoyaltyPointEntry.EntryType.EARN, order.getLoyaltyPointsEarned()));
+            }
+        }
+        entryRepository.saveAll(entries);
+    }
+
+    /**
+     * Thu hồi điểm đã cộng khi đơn hoàn thành bị hoàn tiền; số dư không xuống dưới 0
+     * (khách đã tiêu một phần thì chỉ thu hồi phần còn lại).
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void reverseEarned(Order order) {
+        int earned = order.getLoyaltyPointsEarned();
+        if (earned <= 0 || entryRepository.existsByOrderIdAndType(order.getId(), LoyaltyPointEntry.EntryType.EARN_REVERSAL)) {
+            return;
+        }
+        Long customerId = order.getCustomer().getId();
+        // Số điểm thu hồi phụ thuộc số dư hiện tại nên khóa dòng số dư (thao tác hiếm)
+        Integer balance = customerProfileRepository.lockLoyaltyPoint(customerId).orElse(null);
+        if (balance == null) {
+            return;
+        }
+        int deducted = Math.min(balance, earned);
+        if (deducted > 0) {
+            customerProfileRepository.addLoyaltyPoints(customerId, -deducted);
+        }
+        append(customerId, order.getId(), LoyaltyPointEntry.EntryType.EARN_REVERSAL, -deducted);
+        log.info("Deducted {} earned loyalty points from customer {}", deducted, customerId);
+    }
+
+    /**
+     * So số dư của từng khách hàng với tổng sổ điểm. Sổ được đọc dần theo con trỏ (đã gộp theo khách hàng),
+     * số dư nạp theo từng nhóm RECONCILE_CHUNK khách hàng.
+     */
+    @Transactional(readOnly = true)
+    public LoyaltyReconcileResponse reconcile() {
+        List<LoyaltyReconcileResponse.Mismatch> mismatches = new ArrayList<>();
+        long customers = 0;
+        long entries = 0;
+        Map<Long, Long> chunk = new LinkedHashMap<>();
+        try (Stream<Object[]> rows = entryRepository.streamBalancesByCustomer()) {
+            Iterator<Object[]> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                Object[] row = iterator.next();
+                chunk.put((Long) row[0], ((Number) row[1]).longValue());
+                entries += ((Number) row[2]).longValue();
+                if (chunk.size() == RECONCILE_CHUNK) {
+                    customers += compareChunk(chunk, mismatches);
+                    chunk.clear();
+                }
+            }
+        }
+        customers += compareChunk(chunk, mismatches);
+
+        for (Object[] row : customerProfileRepository.findUnledgeredLoyaltyPoints()) {
+            mismatches.add(new LoyaltyReconcileResponse.Mismatch((Long) row[0], (Integer) row[1], 0));
+        }
+        if (!mismatches.isEmpty()) {
+            log.warn("Loyalty ledger reconciliation found {} mismatched balances", mismatches.size());
+        }
+        return LoyaltyReconcileResponse.builder()
+                .customersChecked(customers)
+                .entriesScanned(entries)
+                .mismatches(mismatches)
+                .build();
+    }
+
+    private int compareChunk(Map<Long, Long> ledgerBalances, List<LoyaltyReconcileResponse.Mismatch> mismatches) {
+        if (ledgerBalances.isEmpty()) {
+            return 0;
+        }
+        Map<Long, Integer> balances = new HashMap<>();
+        for (Object[] row : customerProfileRepository.findLoyaltyPoints(ledgerBalances.keySet())) {
+            balances.put((Long) row[0], (Integer) row[1]);
+        }
+        ledgerBalances.forEach((customerId, ledgerBalance) -> {
+            Integer balance = balances.get(customerId);
+            if (balance == null || balance.longValue() != ledgerBalance) {
+                mismatches.add(new LoyaltyReconcileResponse.Mismatch(customerId, balance, ledgerBalance));
+            }
+        });
+        return ledgerBalances.size();
+    }
+
+    private void append(Long customerId, Long orderId, LoyaltyPointEntry.EntryType type, int points) {
+        entryRepository.save(entry(customerId, orderId, type, points));
+    }
+
+    private LoyaltyPointEntry entry(Long customerId, Long orderId, LoyaltyPointEntry.EntryType type, int points) {
+        return LoyaltyPointEntry.builder()
+                .customerId(customerId)
+                .orderId(orderId)
+                .type(type)
+                .points(points)
+                .build();
+    }
+}
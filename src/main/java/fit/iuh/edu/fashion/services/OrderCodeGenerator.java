@@ -0,0 +1,162 @@
+package fit.iuh.edu.fashion.services;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Sinh mã đơn hàng duy nhất, tăng dần theo thời gian, không cần query DB:
+ * ORD-yyMMddHHmmss-NNSSSSC (24 ký tự)
+ * - yyMMddHHmmss: giây sinh mã
+ * - NN: node id (base36, 0..1295) - mỗi instance một giá trị, cấu hình app.order-code.node-id
+ * - SSSS: số thứ tự trong giây (base36, tới 1.679.616 mã/giây/node); hết số thì mượn giây kế tiếp
+ * - C: ký tự kiểm tra ISO 7064 MOD 37,36 (bắt mọi lỗi gõ sai một ký tự và phần lớn lỗi đảo hai ký tự liền nhau)
+ * Dùng làm vnp_TxnRef của VNPay nên chỉ gồm chữ hoa, số và '-', dài 24 ký tự.
+ * Giây và số thứ tự đóng gói trong một AtomicLong (CAS, không khóa); đồng hồ lùi thì tiếp tục từ giây cũ
+ * nên mã không bao giờ lặp lại hay giảm trên cùng node.
+ * Khởi động bắt đầu từ giây kế tiếp: instance trước cùng node id có thể đã cấp mã trong giây khởi động,
+ * số thứ tự trong bộ nhớ thì bắt đầu lại từ 0.
+ */
+@Service
+@Slf4j
+public class OrderCodeGenerator {
+
+    private static final String PREFIX = "ORD-";
+    private static final String ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    private static final int RADIX = 36;
+    private static final int NODE_CHARS = 2;
+    private static final int SEQUENCE_CHARS = 4;
+    static final int MAX_NODE_ID = RADIX * RADIX - 1;
+    static final int SEQUENCE_PER_SECOND = RADIX * RADIX * RADIX * RADIX;
+    private static final int SEQUENCE_BITS = 21;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyMMddHHmmss");
+    static final int CODE_LENGTH = PREFIX.length() + 12 + 1 + NODE_CHARS + SEQUENCE_CHARS + 1;
+
+    private final LongSupplier epochSeconds;
+    private final ZoneId zone;
+    // (epochSecond << SEQUENCE_BITS) | sequence của mã vừa cấp
+    private final AtomicLong state = new AtomicLong();
+
+    @Value("${app.order-code.node-id:-1}")
+    private int configuredNodeId = -1;
+
+    private String nodePart;
+
+    public OrderCodeGenerator() {
+        this(() -> Instant.now().getEpochSecond(), ZoneId.systemDefault());
+    }
+
+    OrderCodeGenerator(LongSupplier epochSeconds, ZoneId zone) {
+        this.epochSeconds = epochSeconds;
+        this.zone = zone;
+    }
+
+    OrderCodeGenerator(LongSupplier epochSeconds, ZoneId zone, int nodeId) {
+        this(epochSeconds, zone);
+        this.configuredNodeId = nodeId;
+        init();
+    }
+
+    @PostConstruct
+    void init() {
+        int nodeId = configuredNodeId;
+        if (nodeId < 0) {
+            nodeId = derivedNodeId();
+            log.warn("app.order-code.node-id is not set, using node id {} derived from host and process", nodeId);
+        }
+        if (nodeId > MAX_NODE_ID) {
+            throw new IllegalStateException("app.order-code.node-id must be between 0 and " + MAX_NODE_ID);
+        }
+        nodePart = encode(nodeId, NODE_CHARS);
+        // Coi như đã dùng hết số thứ tự của giây hiện tại -> mã đầu tiên mượn giây kế tiếp
+        state.set((epochSeconds.getAsLong() << SEQUENCE_BITS) | (SEQUENCE_PER_SECOND - 1));
+    }
+
+    public String nextCode() {
+        long next;
+        while (true) {
+            long previous = state.get();
+            long previousSecond = previous >>> SEQUENCE_BITS;
+            long now = epochSeconds.getAsLong();
+            if (now > previousSecond) {
+                next = now << SEQUENCE_BITS;
+            } else if ((previous & ((1L << SEQUENCE_BITS) - 1)) + 1 < SEQUENCE_PER_SECOND) {
+                next = previous + 1;
+            } else {
+                // Hết số thứ tự trong giây (hoặc đồng hồ lùi): mượn giây kế tiếp
+                next = (previousSecond + 1) << SEQUENCE_BITS;
+            }
+            if (state.compareAndSet(previous, next)) {
+                break;
+            }
+        }
+        long second = next >>> SEQUENCE_BITS;
+        int sequence = (int) (next & ((1L << SEQUENCE_BITS) - 1));
+
+        String body = LocalDateTime.ofInstant(Instant.ofEpochSecond(second), zone).format(TIME_FORMAT)
+                + nodePart + encode(sequence, SEQUENCE_CHARS);
+        StringBuilder code = new StringBuilder(CODE_LENGTH);
+        code.append(PREFIX).append(body, 0, 12).append('-').append(body, 12, body.length()).append(checkCharacter(body));
+        return code.toString();
+    }
+
+    /**
+     * Kiểm tra định dạng và ký tự kiểm tra của mã theo định dạng hiện tại
+     */
+    public static boolean isValid(String code) {
+        if (code == null || code.length() != CODE_LENGTH || !code.startsWith(PREFIX) || code.charAt(16) != '-') {
+            return false;
+        }
+        String body = code.substring(4, 16) + code.substring(17, CODE_LENGTH - 1);
+        for (int i = 0; i < body.length(); i++) {
+            if (ALPHABET.indexOf(body.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return checkCharacter(body) == code.charAt(CODE_LENGTH - 1);
+    }
+
+    /**
+     * ISO 7064 MOD 37,36 (hệ lai) trên bảng chữ 0-9A-Z
+     */
+    static char checkCharacter(CharSequence body) {
+        int product = RADIX;
+        for (int i = 0; i < body.length(); i++) {
+            int sum = (product + ALPHABET.indexOf(body.charAt(i))) % RADIX;
+            if (sum == 0) {
+                sum = RADIX;
+            }
+            product = (2 * sum) % (RADIX + 1);
+        }
+        return ALPHABET.charAt((RADIX + 1 - product) % RADIX);
+    }
+
+    private static String encode(int value, int width) {
+        char[] chars = new char[width];
+        for (int i = width - 1; i >= 0; i--) {
+            chars[i] = ALPHABET.charAt(value % RADIX);
+            value /= RADIX;
+        }
+        return new String(chars);
+    }
+
+    private static int derivedNodeId() {
+        String identity;
+        try {
+            identity = InetAddress.getLocalHost().getHostName() + "/" + ManagementFactory.getRuntimeMXBean().getName();
+        } catch (Exception e) {
+            identity = ManagementFactory.getRuntimeMXBean().getName();
+        }
+        return Math.floorMod(identity.hashCode(), MAX_NODE_ID + 1);
+    }
+}
@@ -0,0 +1,315 @@
+package fit.iuh.edu.fashion.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fit.iuh.edu.fashion.models.AuditLog;
+import fit.iuh.edu.fashion.models.InventoryMovement;
+import fit.iuh.edu.fashion.models.Order;
+import fit.iuh.edu.fashion.models.OrderOutboxEvent;
+import fit.iuh.edu.fashion.repositories.AuditLogRepository;
+import fit.iuh.edu.fashion.repositories.CartItemRepository;
+import fit.iuh.edu.fashion.repositories.InventoryMovementRepository;
+import fit.iuh.edu.fashion.repositories.OrderOutboxEventRepository;
+import fit.iuh.edu.fashion.repositories.OrderRepository;
+import fit.iuh.edu.fashion.repositories.ProductVariantRepository;
+import fit.iuh.edu.fashion.utils.TransactionUtil;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Transactional outbox cho tác vụ phụ của đơn hàng.
+ * Checkout chỉ giữ hàng, lưu đơn và ghi một sự kiện ORDER_PLACED trong cùng transaction;
+ * sau khi commit dispatcher xử lý theo lô, mỗi lô một transaction:
+ * - tạo bản ghi thanh toán COD
+ * - ghi inventory movement SALE (INSERT theo lô nhờ id pooled)
+ * - dọn giỏ hàng của khách
+ * - auto-deactivate variant vừa hết hàng
+ * - ghi audit log (người dùng / request đã chụp lúc checkout)
+ * Sự kiện chỉ được đánh dấu DONE cùng transaction với tác vụ, và các tác vụ kiểm tra bản ghi đã có trước khi tạo,
+ * nên xử lý lại (lỗi giữa chừng, nhiều instance) không tạo bản ghi trùng. Movement SALE được kiểm tra theo
+ * (đơn, variant) vì ledger hot SKU ghi movement SALE riêng cho các dòng hot của cùng đơn.
+ * Dispatcher được đánh thức ngay sau commit; lịch quét định kỳ nhặt lại sự kiện còn sót (lỗi, khởi động lại).
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class OrderOutboxService {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int MAX_ERROR_LENGTH = 2000;
+
+    private final OrderOutboxEventRepository outboxEventRepository;
+    private final OrderRepository orderRepository;
+    private final InventoryMovementRepository inventoryMovementRepository;
+    private final ProductVariantRepository productVariantRepository;
+    private final CartItemRepository cartItemRepository;
+    private final LiveCartStore liveCartStore;
+    private final AuditLogRepository auditLogRepository;
+    private final PaymentService paymentService;
+    private final ProductService productService;
+    private final AuditService auditService;
+    private final PlatformTransactionManager transactionManager;
+    @Qualifier("taskExecutor")
+    private final Executor taskExecutor;
+
+    @Value("${app.outbox.batch-size:100}")
+    private int batchSize = 100;
+
+    @Value("${app.outbox.max-attempts:5}")
+    private int maxAttempts = 5;
+
+    private final ReentrantLock dispatchLock = new ReentrantLock();
+    private final AtomicBoolean wakeRequested = new AtomicBoolean();
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    void initTransactionTemplate() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Ghi sự kiện ORDER_PLACED trong transaction checkout
+     *
+     * @param saleQuantities     variantId -> số lượng cần ghi movement SALE (không gồm hot SKU - ledger tự ghi)
+     * @param depletedVariantIds variant vừa hết hàng, cần kiểm tra auto-deactivate
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void orderPlaced(Order order, Map<Long, Integer> saleQuantities, Collection<Long> depletedVariantIds) {
+        // Chụp người dùng / request ngay trên luồng request - dispatcher chạy ở luồng khác
+        AuditLog audit = auditService.prepareLog("CREATE", "Order", order.getId(), null,
+                String.format("Created order: %s, Total: %s", order.getCode(), order.getGrandTotal()));
+        OrderPlacedPayload payload = new OrderPlacedPayload(new LinkedHashMap<>(saleQuantities),
+                List.copyOf(depletedVariantIds), AuditContext.of(audit));
+
+        outboxEventRepository.save(OrderOutboxEvent.builder()
+                .orderId(order.getId())
+                .eventType(OrderOutboxEvent.EventType.ORDER_PLACED)
+                .payload(write(payload))
+                .build());
+        TransactionUtil.afterCommit(this::wakeUp);
+    }
+
+    /**
+     * Chạy dispatcher trên taskExecutor; các lần gọi dồn dập chỉ tạo một lượt chạy
+     */
+    public void wakeUp() {
+        if (wakeRequested.compareAndSet(false, true)) {
+            try {
+                taskExecutor.execute(this::dispatch);
+            } catch (RejectedExecutionException e) {
+                // Executor đầy: lịch quét định kỳ sẽ xử lý
+                wakeRequested.set(false);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.poll-interval-ms:1000}")
+    public void dispatch() {
+        while (dispatchLock.tryLock()) {
+            try {
+                do {
+                    wakeRequested.set(false);
+                    while (dispatchBatch() >= batchSize) {
+                        // Lô đầy: còn sự kiện chờ, xử lý tiếp
+                    }
+                } while (wakeRequested.get());
+            } finally {
+                dispatchLock.unlock();
+            }
+            // Có yêu cầu mới đến đúng lúc vừa nhả khóa thì chạy thêm một lượt
+            if (!wakeRequested.get()) {
+                return;
+            }
+        }
+    }
+
+    public long pendingCount() {
+        return outboxEventRepository.countByStatus(OrderOutboxEvent.Status.PENDING);
+    }
+
+    /**
+     * Xử lý một lô sự kiện trong một transaction; lô lỗi thì xử lý lại từng sự kiện để cô lập sự kiện hỏng
+     *
+     * @return số sự kiện đã xử lý xong
+     */
+    private int dispatchBatch() {
+        List<Long> ids;
+        try {
+            ids = outboxEventRepository.findIdsByStatus(OrderOutboxEvent.Status.PENDING, Limit.of(batchSize));
+        } catch (RuntimeException e) {
+            log.error("Cannot read order outbox: {}", e.getMessage());
+            return 0;
+        }
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> process(
+                    outboxEventRepository.lockByIdInAndStatus(ids, OrderOutboxEvent.Status.PENDING)));
+            return ids.size();
+        } catch (RuntimeException e) {
+            log.warn("Order outbox batch of {} events failed, retrying one by one: {}", ids.size(), e.getMessage());
+        }
+
+        int processed = 0;
+        for (Long id : ids) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> process(
+                        outboxEventRepository.lockByIdInAndStatus(List.of(id), OrderOutboxEvent.Status.PENDING)));
+                processed++;
+            } catch (RuntimeException e) {
+                recordFailure(id, e);
+            }
+        }
+        return processed;
+    }
+
+    private void process(List<OrderOutboxEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        Map<Long, OrderPlacedPayload> payloads = new LinkedHashMap<>();
+        for (OrderOutboxEvent event : events) {
+            payloads.put(event.getOrderId(), read(event.getPayload()));
+        }
+        Map<Long, Order> orders = new HashMap<>();
+        for (Order order : orderRepository.findAllWithCustomerByIdIn(payloads.keySet())) {
+            orders.put(order.getId(), order);
+        }
+        Map<Long, Set<Long>> recorded = new HashMap<>();
+        for (Object[] row : inventoryMovementRepository.findRelatedOrderVariantIds(
+                payloads.keySet(), InventoryMovement.MovementReason.SALE)) {
+            recorded.computeIfAbsent((Long) row[0], id -> new HashSet<>()).add((Long) row[1]);
+        }
+        Set<Long> audited = new HashSet<>(auditLogRepository.findLoggedEntityIds("CREATE", "Order", payloads.keySet()));
+
+        List<InventoryMovement> movements = new ArrayList<>();
+        Set<Long> depleted = new TreeSet<>();
+        List<AuditLog> auditLogs = new ArrayList<>();
+        for (Map.Entry<Long, OrderPlacedPayload> entry : payloads.entrySet()) {
+            Order order = orders.get(entry.getKey());
+            if (order == null) {
+                log.warn("Order {} of outbox event no longer exists, skipping", entry.getKey());
+                continue;
+            }
+            OrderPlacedPayload payload = entry.getValue();
+            Set<Long> recordedVariants = recorded.getOrDefault(order.getId(), Set.of());
+            payload.saleQuantities().forEach((variantId, quantity) -> {
+                if (!recordedVariants.contains(variantId)) {
+                    movements.add(InventoryMovement.builder()
+                            .variant(productVariantRepository.getReferenceById(variantId))
+                            .quantity(-quantity)
+                            .reason(InventoryMovement.MovementReason.SALE)
+                            .relatedOrder(order)
+                            .note("Order: " + order.getCode())
+                            .createdBy(order.getCustomer())
+                            .build());
+                }
+            });
+            cartItemRepository.deleteByCustomerAddedUntil(order.getCustomer().getId(), order.getPlacedAt());
+            liveCartStore.removeAddedUntilAfterCommit(order.getCustomer().getId(), order.getPlacedAt());
+            depleted.addAll(payload.depletedVariantIds());
+            if (!audited.contains(order.getId())) {
+                auditLogs.add(payload.audit().toAuditLog(order));
+            }
+        }
+
+        paymentService.createCODPayments(orders.values());
+        inventoryMovementRepository.saveAll(movements);
+        depleted.forEach(productService::checkAndUpdateStockStatus);
+        auditLogRepository.saveAll(auditLogs);
+
+        LocalDateTime now = LocalDateTime.now();
+        for (OrderOutboxEvent event : events) {
+            event.setStatus(OrderOutboxEvent.Status.DONE);
+            event.setProcessedAt(now);
+            event.setLastError(null);
+        }
+    }
+
+    private void recordFailure(Long eventId, RuntimeException error) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> outboxEventRepository.findById(eventId).ifPresent(event -> {
+                event.setAttempts(event.getAttempts() + 1);
+                String message = String.valueOf(error.getMessage());
+                event.setLastError(message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message);
+                if (event.getAttempts() >= maxAttempts) {
+                    event.setStatus(OrderOutboxEvent.Status.FAILED);
+                    log.error("Order outbox event {} (order {}) failed {} times, giving up: {}",
+                            eventId, event.getOrderId(), event.getAttempts(), message);
+                } else {
+                    log.warn("Order outbox event {} (order {}) failed, attempt {}: {}",
+                            eventId, event.getOrderId(), event.getAttempts(), message);
+                }
+            }));
+        } catch (RuntimeException e) {
+            log.error("Cannot record failure of order outbox event {}: {}", eventId, e.getMessage());
+        }
+    }
+
+    private static String write(OrderPlacedPayload payload) {
+        try {
+            return MAPPER.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize order outbox payload", e);
+        }
+    }
+
+    private static OrderPlacedPayload read(String json) {
+        try {
+            return MAPPER.readValue(json, OrderPlacedPayload.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot read order outbox payload", e);
+        }
+    }
+
+    record OrderPlacedPayload(Map<Long, Integer> saleQuantities, List<Long> depletedVariantIds, AuditContext audit) {
+    }
+
+    record AuditContext(String username, String ipAddress, String userAgent, String requestMethod,
+                        String requestUrl, String newValue) {
+
+        static AuditContext of(AuditLog log) {
+            return new AuditContext(log.getUsername(), log.getIpAddress(), log.getUserAgent(),
+                    log.getRequestMethod(), log.getRequestUrl(), log.getNewValue());
+        }
+
+        AuditLog toAuditLog(Order order) {
+            AuditLog auditLog = AuditLog.builder()
+                    .action("CREATE")
+                    .entityType("Order")
+                    .entityId(order.getId())
+                    .newValue(newValue)
+                    .status("SUCCESS")
+                    .username(username)
+                    .ipAddress(ipAddress)
+                    .userAgent(userAgent)
+                    .requestMethod(requestMethod)
+                    .requestUrl(requestUrl)
+                    .build();
+            // Người đặt hàng thường chính là khách hàng của đơn
+            if (username != null && username.equals(order.getCustomer().getEmail())) {
+                auditLog.setUserId(order.getCustomer().getId());
+            }
+            return auditLog;
+        }
+    }
+}
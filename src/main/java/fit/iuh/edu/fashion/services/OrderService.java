@@ -1,12 +1,16 @@
 package fit.iuh.edu.fashion.services;
 
+import fit.iuh.edu.fashion.cache.CacheDependencyTracker;
 import fit.iuh.edu.fashion.dto.request.OrderRequest;
+import fit.iuh.edu.fashion.dto.response.CursorPageResponse;
 import fit.iuh.edu.fashion.dto.response.OrderItemResponse;
 import fit.iuh.edu.fashion.dto.response.OrderResponse;
 import fit.iuh.edu.fashion.models.*;
 import fit.iuh.edu.fashion.repositories.*;
+import fit.iuh.edu.fashion.utils.PageCursorUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -15,9 +19,11 @@ import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -30,18 +36,21 @@ public class OrderService {
     private final ProductVariantRepository productVariantRepository;
     private final CouponRepository couponRepository;
     private final InventoryMovementRepository inventoryMovementRepository;
-    private final CartRepository cartRepository;
-    private final CartItemRepository cartItemRepository;
-    private final CustomerProfileRepository customerProfileRepository;
     private final AuditService auditService;
     private final ProductService productService;
     private final PaymentService paymentService;
-
-    @Transactional(readOnly = true)
-    public Page<OrderResponse> getMyOrders(Long userId, Pageable pageable) {
-        return orderRepository.findByCustomerId(userId, pageable)
-                .map(this::mapToOrderResponse);
-    }
+    private final CatalogStatisticsService catalogStatisticsService;
+    private final ProductFacetIndex productFacetIndex;
+    private final CacheDependencyTracker cacheDependencyTracker;
+    private final StockReservationService stockReservationService;
+    private final HotSkuLedger hotSkuLedger;
+    private final OrderCodeGenerator orderCodeGenerator;
+    private final OrderOutboxService orderOutboxService;
+    private final CouponRedemptionService couponRedemptionService;
+    private final LoyaltyLedgerService loyaltyLedgerService;
+    private final PaymentExpiryScheduler paymentExpiryScheduler;
+    private final AuditLogRepository auditLogRepository;
+    private final CustomerOrderHistoryService customerOrderHistoryService;
 
     @Transactional(readOnly = true)
     public OrderResponse getOrderById(Long id) {
@@ -56,6 +65,27 @@ public class OrderService {
                 .map(this::mapToOrderResponse);
     }
 
+    /**
+     * Phân trang keyset theo (placedAt, id) cho trang sâu - không COUNT, không OFFSET
+     */
+    @Transactional(readOnly = true)
+    public CursorPageResponse<OrderResponse> scrollOrders(String cursor, int size) {
+        int pageSize = PageCursorUtil.clampSize(size);
+        PageCursorUtil.Cursor position = PageCursorUtil.decode(cursor);
+        Limit limit = Limit.of(pageSize + 1);
+        List<Order> rows;
+        if (position == null) {
+            rows = orderRepository.findLatest(limit);
+        } else if (position.getTime() == null) {
+            rows = orderRepository.findUnplacedBefore(position.getId(), limit);
+        } else {
+            rows = orderRepository.findPlacedBefore(position.getTime(), position.getId(), limit);
+        }
+        return CursorPageResponse.of(rows, pageSize,
+                order -> PageCursorUtil.encode(order.getPlacedAt(), order.getId()),
+                this::mapToOrderResponse);
+    }
+
     @Transactional(readOnly = true)
     public Page<OrderResponse> getOrdersByStatus(Order.OrderStatus status, Pageable pageable) {
         return orderRepository.findByStatus(status, pageable)
@@ -69,7 +99,7 @@ public class OrderService {
 
         // Create order
         Order order = Order.builder()
-                .code(generateOrderCode())
+                .code(orderCodeGenerator.nextCode())
                 .customer(customer)
                 .status(Order.OrderStatus.PENDING)
                 .shipName(request.getShipName())
@@ -89,24 +119,15 @@ public class OrderService {
         // Calculate totals
         BigDecimal subtotal = BigDecimal.ZERO;
 
+        // Giữ hàng cho cả đơn một lần: khóa theo thứ tự id, trừ tồn kho theo lô
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
         for (var itemRequest : request.getItems()) {
-            // Use pessimistic lock to prevent race condition
-            ProductVariant variant = productVariantRepository.findByIdWithLock(itemRequest.getVariantId())
-                    .orElseThrow(() -> new RuntimeException("Product variant not found: " + itemRequest.getVariantId()));
-
-            // Atomic decrease stock - prevents overselling
-            int rowsAffected = productVariantRepository.decreaseStock(variant.getId(), itemRequest.getQuantity());
-
-            if (rowsAffected == 0) {
-                // Stock insufficient or variant not found
-                throw new RuntimeException("Insufficient stock for product: " + variant.getProduct().getName() +
-                        " (Available: " + variant.getStock() + ", Requested: " + itemRequest.getQuantity() + ")");
-            }
+            quantities.merge(itemRequest.getVariantId(), itemRequest.getQuantity(), Integer::sum);
+        }
+        StockReservationService.Reservation reservation = stockReservationService.reserve(quantities);
 
-            // Refresh variant to get updated stock
-            productVariantRepository.flush();
-            variant = productVariantRepository.findById(variant.getId())
-                    .orElseThrow(() -> new RuntimeException("Product variant not found"));
+        for (var itemRequest : request.getItems()) {
+            ProductVariant variant = reservation.getVariants().get(itemRequest.getVariantId());
 
             OrderItem orderItem = OrderItem.builder()
                     .order(order)
@@ -124,18 +145,36 @@ public class OrderService {
 
             order.getItems().add(orderItem);
             subtotal = subtotal.add(orderItem.getLineTotal());
+        }
 
-
-            // Check and update stock status (auto-deactivate if out of stock)
-            productService.checkAndUpdateStockStatus(variant.getId());
+        // Hot SKU: chỉ mục, cache, auto-deactivate và inventory movement do ledger cập nhật khi flush
+        Map<Long, Integer> saleQuantities = new LinkedHashMap<>();
+        List<Long> depletedVariantIds = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            Long variantId = entry.getKey();
+            if (reservation.isHot(variantId)) {
+                continue;
+            }
+            saleQuantities.put(variantId, entry.getValue());
+            // Chỉ variant vừa hết hàng mới cần kiểm tra auto-deactivate
+            if (reservation.getVariants().get(variantId).getStock() <= 0) {
+                depletedVariantIds.add(variantId);
+            }
         }
+        // Các hàm này tự đăng ký afterCommit - gọi trong transaction (callback đăng ký lúc afterCommit không chạy)
+        catalogStatisticsService.onStockChanged(saleQuantities.keySet());
+        productFacetIndex.onStockChanged(saleQuantities.keySet());
+        cacheDependencyTracker.invalidate(saleQuantities.keySet().stream()
+                .map(CacheDependencyTracker::variant)
+                .toList());
 
         order.setSubtotal(subtotal);
 
         // Apply coupon if provided
         BigDecimal discountTotal = BigDecimal.ZERO;
+        Coupon coupon = null;
         if (request.getCouponCode() != null && !request.getCouponCode().isEmpty()) {
-            Coupon coupon = couponRepository.findValidCouponByCode(request.getCouponCode(), LocalDateTime.now())
+            coupon = couponRepository.findValidCouponByCode(request.getCouponCode(), LocalDateTime.now())
                     .orElseThrow(() -> new RuntimeException("Invalid or expired coupon"));
 
             // Check min order amount
@@ -153,8 +192,6 @@ public class OrderService {
             }
 
             order.setCouponCode(request.getCouponCode());
-            coupon.setUsedCount(coupon.getUsedCount() + 1);
-            couponRepository.save(coupon);
         }
 
         order.setDiscountTotal(discountTotal);
@@ -163,31 +200,21 @@ public class OrderService {
         BigDecimal loyaltyPointsDiscount = BigDecimal.ZERO;
         int pointsUsed = 0;
         if (request.getLoyaltyPointsToUse() != null && request.getLoyaltyPointsToUse() > 0) {
-            // Get customer profile
-            CustomerProfile customerProfile = customerProfileRepository.findById(customer.getId())
-                    .orElse(null);
-
-            if (customerProfile != null) {
-                int availablePoints = customerProfile.getLoyaltyPoint();
-                pointsUsed = Math.min(request.getLoyaltyPointsToUse(), availablePoints);
-
-                if (pointsUsed > 0) {
-                    // 1 điểm = 1000 VND giảm giá
-                    loyaltyPointsDiscount = BigDecimal.valueOf(pointsUsed).multiply(BigDecimal.valueOf(1000));
-
-                    // Giảm giá không được vượt quá subtotal - discountTotal
-                    BigDecimal maxPointsDiscount = subtotal.subtract(discountTotal);
-                    if (loyaltyPointsDiscount.compareTo(maxPointsDiscount) > 0) {
-                        loyaltyPointsDiscount = maxPointsDiscount;
-                        pointsUsed = loyaltyPointsDiscount.divide(BigDecimal.valueOf(1000), 0, RoundingMode.DOWN).intValue();
-                    }
-
-                    // Trừ điểm của khách hàng
-                    customerProfile.setLoyaltyPoint(availablePoints - pointsUsed);
-                    customerProfileRepository.save(customerProfile);
-
-                    order.setLoyaltyPointsUsed(pointsUsed);
+            int availablePoints = loyaltyLedgerService.balance(customer.getId());
+            pointsUsed = Math.min(request.getLoyaltyPointsToUse(), availablePoints);
+
+            if (pointsUsed > 0) {
+                // 1 điểm = 1000 VND giảm giá
+                loyaltyPointsDiscount = BigDecimal.valueOf(pointsUsed).multiply(BigDecimal.valueOf(1000));
+
+                // Giảm giá không được vượt quá subtotal - discountTotal
+                BigDecimal maxPointsDiscount = subtotal.subtract(discountTotal);
+                if (loyaltyPointsDiscount.compareTo(maxPointsDiscount) > 0) {
+                    loyaltyPointsDiscount = maxPointsDiscount;
+                    pointsUsed = loyaltyPointsDiscount.divide(BigDecimal.valueOf(1000), 0, RoundingMode.DOWN).intValue();
                 }
+
+                order.setLoyaltyPointsUsed(pointsUsed);
             }
         }
 
@@ -208,6 +235,11 @@ public class OrderService {
 
         order.setGrandTotal(grandTotal);
 
+        // Thanh toán online: quá hạn mà chưa thanh toán thì đơn bị hủy, hàng được trả về kho
+        if (order.getPaymentMethod() == Order.PaymentMethod.VNPAY) {
+            order.setPaymentExpiresAt(paymentExpiryScheduler.deadlineFrom(LocalDateTime.now()));
+        }
+
         // Tính điểm tích lũy được (1% của grand total, làm tròn xuống)
         // Chỉ tính khi đơn hàng có giá trị
         if (grandTotal.compareTo(BigDecimal.ZERO) > 0) {
@@ -216,40 +248,21 @@ public class OrderService {
         }
 
         order = orderRepository.save(order);
+        customerOrderHistoryService.orderPlaced(order);
 
-        // Tạo bản ghi thanh toán cho đơn hàng COD
-        try {
-            if (order.getPaymentMethod() == Order.PaymentMethod.COD) {
-                paymentService.createCODPayment(order);
-            }
-        } catch (Exception e) {
-            // Log lỗi nhưng không làm gián đoạn việc tạo đơn hàng
-            System.err.println("Failed to create payment record for COD order: " + e.getMessage());
+        // Lấy lượt dùng coupon bằng UPDATE có điều kiện - hết lượt thì cả đơn rollback
+        if (coupon != null) {
+            couponRedemptionService.redeem(coupon, order);
         }
-
-        // Create inventory movements
-        for (OrderItem item : order.getItems()) {
-            InventoryMovement movement = InventoryMovement.builder()
-                    .variant(item.getVariant())
-                    .quantity(-item.getQuantity())
-                    .reason(InventoryMovement.MovementReason.SALE)
-                    .relatedOrder(order)
-                    .note("Order: " + order.getCode())
-                    .createdBy(customer)
-                    .build();
-            inventoryMovementRepository.save(movement);
+        // Trừ điểm bằng UPDATE có điều kiện trên số dư: đơn đồng thời đã dùng hết điểm thì đơn này rollback
+        if (pointsUsed > 0) {
+            loyaltyLedgerService.redeem(order, pointsUsed);
         }
 
-        // Clear user's cart after successful order
-        cartRepository.findByCustomer(customer).ifPresent(cart -> {
-            cartItemRepository.deleteAll(cart.getItems());
-            cart.getItems().clear();
-            cartRepository.save(cart);
-        });
-
-        // Audit log
-        auditService.logAction("CREATE", "Order", order.getId(), null,
-                String.format("Created order: %s, Total: %s", order.getCode(), order.getGrandTotal()));
+        // Thanh toán COD, inventory movement, dọn giỏ hàng, auto-deactivate và audit chạy sau commit qua outbox
+        hotSkuLedger.recordSale(order, customer, reservation.getHotQuantities());
+        orderOutboxService.orderPlaced(order, saleQuantities, depletedVariantIds);
+        paymentExpiryScheduler.track(order);
 
         return mapToOrderResponse(order);
     }
@@ -264,41 +277,16 @@ public class OrderService {
 
         // Tự động cập nhật trạng thái thanh toán khi hoàn thành đơn hàng
         if (status == Order.OrderStatus.COMPLETED) {
-            // Khi hoàn thành đơn hàng, đánh dấu đã thanh toán (cho cả COD và các phương thức khác)
-            if (order.getPaymentStatus() != Order.PaymentStatus.PAID) {
-                order.setPaymentStatus(Order.PaymentStatus.PAID);
-                order.setPaymentTime(LocalDateTime.now());
-
-                // Cập nhật Payment record nếu là COD
-                try {
-                    if (order.getPaymentMethod() == Order.PaymentMethod.COD) {
-                        var payments = paymentService.getPaymentsByOrder(order.getId());
-                        for (var payment : payments) {
-                            if (payment.getStatus() == fit.iuh.edu.fashion.models.Payment.PaymentStatus.PENDING) {
-                                paymentService.updatePaymentStatus(payment.getId(),
-                                    fit.iuh.edu.fashion.models.Payment.PaymentStatus.COMPLETED);
-                            }
-                        }
-                    }
-                } catch (Exception e) {
-                    System.err.println("Failed to update payment status: " + e.getMessage());
-                }
-            }
+            markPaid(order);
 
             // Cộng điểm tích lũy cho khách hàng khi hoàn thành đơn hàng
-            if (order.getLoyaltyPointsEarned() > 0 && oldStatus != Order.OrderStatus.COMPLETED) {
-                CustomerProfile customerProfile = customerProfileRepository.findById(order.getCustomer().getId())
-                        .orElse(null);
-
-                if (customerProfile != null) {
-                    int currentPoints = customerProfile.getLoyaltyPoint();
-                    customerProfile.setLoyaltyPoint(currentPoints + order.getLoyaltyPointsEarned());
-                    customerProfileRepository.save(customerProfile);
-                }
+            if (oldStatus != Order.OrderStatus.COMPLETED) {
+                loyaltyLedgerService.creditEarned(List.of(order));
             }
         } else if (status == Order.OrderStatus.CANCELLED || status == Order.OrderStatus.REFUNDED) {
             // Hoàn lại kho hàng khi hủy/hoàn tiền
             restoreOrderStock(order);
+            couponRedemptionService.release(order);
 
             // Khi hủy đơn, đánh dấu thất bại nếu chưa thanh toán
             if (order.getPaymentStatus() == Order.PaymentStatus.UNPAID) {
@@ -322,35 +310,16 @@ public class OrderService {
             }
 
             // Hoàn lại điểm đã sử dụng khi hủy/hoàn trả đơn
-            if (order.getLoyaltyPointsUsed() > 0) {
-                CustomerProfile customerProfile = customerProfileRepository.findById(order.getCustomer().getId())
-                        .orElse(null);
-
-                if (customerProfile != null) {
-                    int currentPoints = customerProfile.getLoyaltyPoint();
-                    customerProfile.setLoyaltyPoint(currentPoints + order.getLoyaltyPointsUsed());
-                    customerProfileRepository.save(customerProfile);
-                    log.info("Restored {} loyalty points to customer {}",
-                            order.getLoyaltyPointsUsed(), order.getCustomer().getId());
-                }
-            }
+            loyaltyLedgerService.reverseRedemption(order);
 
             // Trừ điểm đã được cộng nếu đơn từng hoàn thành
-            if (oldStatus == Order.OrderStatus.COMPLETED && order.getLoyaltyPointsEarned() > 0) {
-                CustomerProfile customerProfile = customerProfileRepository.findById(order.getCustomer().getId())
-                        .orElse(null);
-
-                if (customerProfile != null) {
-                    int currentPoints = customerProfile.getLoyaltyPoint();
-                    customerProfile.setLoyaltyPoint(Math.max(0, currentPoints - order.getLoyaltyPointsEarned()));
-                    customerProfileRepository.save(customerProfile);
-                    log.info("Deducted {} earned loyalty points from customer {}",
-                            order.getLoyaltyPointsEarned(), order.getCustomer().getId());
-                }
+            if (oldStatus == Order.OrderStatus.COMPLETED) {
+                loyaltyLedgerService.reverseEarned(order);
             }
         }
 
         order = orderRepository.save(order);
+        customerOrderHistoryService.orderUpdated(order);
 
         // Audit log
         auditService.logAction("UPDATE_STATUS", "Order", order.getId(),
@@ -359,6 +328,32 @@ public class OrderService {
         return mapToOrderResponse(order);
     }
 
+    /**
+     * Đánh dấu nhiều đơn đã giao xong (COMPLETED) cùng lúc; điểm tích lũy được cộng theo lô.
+     * Đơn đã hoàn thành, đã hủy hoặc đã hoàn tiền được bỏ qua.
+     */
+    @Transactional
+    public List<OrderResponse> completeOrders(List<Long> orderIds) {
+        List<Order> completed = new ArrayList<>();
+        for (Order order : orderRepository.findAllById(orderIds)) {
+            Order.OrderStatus oldStatus = order.getStatus();
+            if (oldStatus == Order.OrderStatus.COMPLETED || oldStatus == Order.OrderStatus.CANCELLED
+                    || oldStatus == Order.OrderStatus.REFUNDED) {
+                continue;
+            }
+            order.setStatus(Order.OrderStatus.COMPLETED);
+            markPaid(order);
+            completed.add(order);
+            auditService.logAction("UPDATE_STATUS", "Order", order.getId(),
+                    "Status: " + oldStatus, "Status: " + Order.OrderStatus.COMPLETED);
+        }
+        loyaltyLedgerService.creditEarned(completed);
+        customerOrderHistoryService.ordersUpdated(completed);
+        return orderRepository.saveAll(completed).stream()
+                .map(this::mapToOrderResponse)
+                .collect(Collectors.toList());
+    }
+
     @Transactional
     public OrderResponse updatePaymentMethod(Long orderId, String paymentMethod, Long userId) {
         log.info("Updating payment method for order {} to {} by user {}", orderId, paymentMethod, userId);
@@ -420,7 +415,19 @@ public class OrderService {
 
         // Update payment method
         order.setPaymentMethod(newMethod);
+        // Chuyển sang VNPay: hạn thanh toán tính từ lúc đổi; chuyển khỏi VNPay: đơn không còn hạn thanh toán
+        if (newMethod == Order.PaymentMethod.VNPAY) {
+            order.setPaymentExpiresAt(paymentExpiryScheduler.deadlineFrom(LocalDateTime.now()));
+        } else {
+            order.setPaymentExpiresAt(null);
+        }
         order = orderRepository.save(order);
+        customerOrderHistoryService.orderUpdated(order);
+        if (order.getPaymentExpiresAt() != null) {
+            paymentExpiryScheduler.track(order);
+        } else {
+            paymentExpiryScheduler.untrack(order.getId());
+        }
 
         log.info("Successfully updated payment method for order {} to {}", order.getCode(), newMethod);
 
@@ -471,22 +478,13 @@ public class OrderService {
 
         // Restore stock atomically
         restoreOrderStock(order);
+        couponRedemptionService.release(order);
 
         // Hoàn lại điểm tích lũy đã sử dụng
-        if (order.getLoyaltyPointsUsed() > 0) {
-            CustomerProfile customerProfile = customerProfileRepository.findById(userId)
-                    .orElse(null);
-
-            if (customerProfile != null) {
-                int currentPoints = customerProfile.getLoyaltyPoint();
-                customerProfile.setLoyaltyPoint(currentPoints + order.getLoyaltyPointsUsed());
-                customerProfileRepository.save(customerProfile);
-                log.info("Restored {} loyalty points to customer {}",
-                        order.getLoyaltyPointsUsed(), userId);
-            }
-        }
+        loyaltyLedgerService.reverseRedemption(order);
 
         orderRepository.save(order);
+        customerOrderHistoryService.orderUpdated(order);
 
         // Audit log
         auditService.logAction("CANCEL", "Order", order.getId(),
@@ -521,34 +519,18 @@ public class OrderService {
 
         // Hoàn lại kho hàng
         restoreOrderStock(order);
+        couponRedemptionService.release(order);
 
         // Hoàn lại điểm tích lũy đã sử dụng
-        if (order.getLoyaltyPointsUsed() > 0) {
-            CustomerProfile customerProfile = customerProfileRepository.findById(order.getCustomer().getId())
-                    .orElse(null);
-            if (customerProfile != null) {
-                int currentPoints = customerProfile.getLoyaltyPoint();
-                customerProfile.setLoyaltyPoint(currentPoints + order.getLoyaltyPointsUsed());
-                customerProfileRepository.save(customerProfile);
-                log.info("Restored {} loyalty points to customer {}",
-                        order.getLoyaltyPointsUsed(), order.getCustomer().getId());
-            }
-        }
+        loyaltyLedgerService.reverseRedemption(order);
 
         // Trừ lại điểm đã được cộng nếu đơn từng hoàn thành
-        if (oldStatus == Order.OrderStatus.COMPLETED && order.getLoyaltyPointsEarned() > 0) {
-            CustomerProfile customerProfile = customerProfileRepository.findById(order.getCustomer().getId())
-                    .orElse(null);
-            if (customerProfile != null) {
-                int currentPoints = customerProfile.getLoyaltyPoint();
-                customerProfile.setLoyaltyPoint(Math.max(0, currentPoints - order.getLoyaltyPointsEarned()));
-                customerProfileRepository.save(customerProfile);
-                log.info("Deducted {} earned loyalty points from customer {}",
-                        order.getLoyaltyPointsEarned(), order.getCustomer().getId());
-            }
+        if (oldStatus == Order.OrderStatus.COMPLETED) {
+            loyaltyLedgerService.reverseEarned(order);
         }
 
         orderRepository.save(order);
+        customerOrderHistoryService.orderUpdated(order);
 
         // Audit log
         auditService.logAction("REFUND", "Order", order.getId(),
@@ -558,11 +540,69 @@ public class OrderService {
         log.info("Refund processed for order {} by admin. Reason: {}", order.getCode(), adminReason);
     }
 
+    /**
+     * Hủy các đơn thanh toán online đã quá hạn mà chưa thanh toán: trả hàng về kho, trả lượt coupon và điểm đã dùng.
+     * Các đơn được khóa và kiểm tra lại trạng thái - callback/IPN đến cùng lúc chờ khóa và thấy đơn đã hủy.
+     *
+     * @return số đơn đã hủy
+     */
+    @Transactional
+    public int expireUnpaidOrders(Collection<Long> orderIds) {
+        List<Order> expired = orderRepository.lockExpiredAwaitingPayment(orderIds, LocalDateTime.now());
+        List<AuditLog> auditLogs = new ArrayList<>();
+        for (Order order : expired) {
+            order.setStatus(Order.OrderStatus.CANCELLED);
+            order.setPaymentStatus(Order.PaymentStatus.FAILED);
+            restoreOrderStock(order);
+            couponRedemptionService.release(order);
+            loyaltyLedgerService.reverseRedemption(order);
+            auditLogs.add(auditService.prepareLog("EXPIRE_PAYMENT", "Order", order.getId(),
+                    "Status: PENDING, Payment: UNPAID",
+                    "Status: CANCELLED, Payment deadline: " + order.getPaymentExpiresAt()));
+        }
+        orderRepository.saveAll(expired);
+        customerOrderHistoryService.ordersUpdated(expired);
+        auditLogRepository.saveAll(auditLogs);
+        return expired.size();
+    }
+
+    /**
+     * Khi hoàn thành đơn hàng, đánh dấu đã thanh toán (cho cả COD và các phương thức khác)
+     */
+    private void markPaid(Order order) {
+        if (order.getPaymentStatus() == Order.PaymentStatus.PAID) {
+            return;
+        }
+        order.setPaymentStatus(Order.PaymentStatus.PAID);
+        order.setPaymentTime(LocalDateTime.now());
+
+        // Cập nhật Payment record nếu là COD
+        try {
+            if (order.getPaymentMethod() == Order.PaymentMethod.COD) {
+                var payments = paymentService.getPaymentsByOrder(order.getId());
+                for (var payment : payments) {
+                    if (payment.getStatus() == fit.iuh.edu.fashion.models.Payment.PaymentStatus.PENDING) {
+                        paymentService.updatePaymentStatus(payment.getId(),
+                            fit.iuh.edu.fashion.models.Payment.PaymentStatus.COMPLETED);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.error("Failed to update payment status for order {}", order.getId(), e);
+        }
+    }
+
     /**
      * Helper method để hoàn lại kho hàng
      */
     private void restoreOrderStock(Order order) {
+        List<InventoryMovement> movements = new ArrayList<>();
+        List<Long> restoredVariantIds = new ArrayList<>();
         for (OrderItem item : order.getItems()) {
+            if (hotSkuLedger.isHot(item.getVariant().getId())) {
+                hotSkuLedger.restore(order, item.getVariant().getId(), item.getQuantity());
+                continue;
+            }
             // Atomic increase stock when cancelling order
             int rowsAffected = productVariantRepository.increaseStock(
                     item.getVariant().getId(), item.getQuantity());
@@ -571,6 +611,8 @@ public class OrderService {
                 throw new RuntimeException("Failed to restore stock for variant: " +
                         item.getVariant().getId());
             }
+            restoredVariantIds.add(item.getVariant().getId());
+            cacheDependencyTracker.invalidate(CacheDependencyTracker.variant(item.getVariant().getId()));
 
             productVariantRepository.flush();
 
@@ -585,13 +627,12 @@ public class OrderService {
                     .relatedOrder(order)
                     .note("Order " + order.getStatus() + ": " + order.getCode())
                     .build();
-            inventoryMovementRepository.save(movement);
+            movements.add(movement);
         }
-    }
-
-    private String generateOrderCode() {
-        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
-        return "ORD-" + timestamp;
+        catalogStatisticsService.onStockChanged(restoredVariantIds);
+        productFacetIndex.onStockChanged(restoredVariantIds);
+        // Lưu sau vòng lặp: flush() ở trên sẽ đẩy từng movement ra riêng lẻ thay vì theo lô
+        inventoryMovementRepository.saveAll(movements);
     }
 
     private OrderResponse mapToOrderResponse(Order order) {
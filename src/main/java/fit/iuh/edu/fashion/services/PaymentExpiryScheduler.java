@@ -0,0 +1,165 @@
+package fit.iuh.edu.fashion.services;
+
+import fit.iuh.edu.fashion.models.Order;
+import fit.iuh.edu.fashion.repositories.OrderRepository;
+import fit.iuh.edu.fashion.utils.TransactionUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hạn thanh toán của đơn VNPay. Tồn kho bị trừ ngay khi đặt đơn, khách bỏ dở trang thanh toán thì
+ * đơn nằm PENDING/UNPAID giữ hàng mãi - quá orders.payment_expires_at đơn được hủy và trả hàng về kho.
+ * Hạn chót nằm trên bánh xe thời gian phân cấp trong bộ nhớ (đăng ký sau commit, mỗi tick 1 giây chỉ chạm
+ * một ô), không quét bảng orders định kỳ. Đơn tới hạn được hủy theo lô, mỗi lô một transaction;
+ * OrderService khóa và kiểm tra lại trạng thái nên đơn vừa được thanh toán / hủy tay không bị đụng tới.
+ * Khởi động lại thì nạp lại các đơn còn chờ thanh toán từ DB (đơn quá hạn trong lúc dừng hết hạn ngay tick đầu).
+ * Mỗi instance theo dõi đơn do mình tạo cộng các đơn nạp lúc khởi động.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class PaymentExpiryScheduler {
+
+    private static final long TICK_MILLIS = 1000;
+    private static final int LOAD_PAGE_SIZE = 500;
+
+    private final OrderRepository orderRepository;
+    // OrderService đăng ký hạn qua lớp này - lấy qua provider để tránh vòng phụ thuộc
+    private final ObjectProvider<OrderService> orderService;
+
+    @Value("${app.payment.expiry.hold-minutes:30}")
+    private long holdMinutes = 30;
+
+    @Value("${app.payment.expiry.batch-size:100}")
+    private int batchSize = 100;
+
+    @Value("${app.payment.expiry.retry-delay-ms:60000}")
+    private long retryDelayMillis = 60000;
+
+    private final ReentrantLock wheelLock = new ReentrantLock();
+    private final HierarchicalTimingWheel<Long> wheel =
+            new HierarchicalTimingWheel<>(TICK_MILLIS, System.currentTimeMillis());
+
+    /**
+     * Hạn thanh toán cho đơn bắt đầu chờ thanh toán online lúc start
+     */
+    public LocalDateTime deadlineFrom(LocalDateTime start) {
+        return start.plusMinutes(holdMinutes);
+    }
+
+    /**
+     * Theo dõi hạn thanh toán của đơn (payment_expires_at) khi transaction hiện tại commit
+     */
+    public void track(Order order) {
+        Long orderId = order.getId();
+        LocalDateTime expiresAt = order.getPaymentExpiresAt();
+        if (expiresAt == null) {
+            return;
+        }
+        TransactionUtil.afterCommit(() -> schedule(orderId, toMillis(expiresAt)));
+    }
+
+    /**
+     * Bỏ theo dõi khi transaction hiện tại commit (đơn đã thanh toán, đổi sang COD...)
+     */
+    public void untrack(Long orderId) {
+        TransactionUtil.afterCommit(() -> {
+            wheelLock.lock();
+            try {
+                wheel.cancel(orderId);
+            } finally {
+                wheelLock.unlock();
+            }
+        });
+    }
+
+    public int pendingCount() {
+        wheelLock.lock();
+        try {
+            return wheel.size();
+        } finally {
+            wheelLock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelay = TICK_MILLIS)
+    public void tick() {
+        List<Long> expired;
+        wheelLock.lock();
+        try {
+            expired = wheel.advance(System.currentTimeMillis());
+        } finally {
+            wheelLock.unlock();
+        }
+        for (int from = 0; from < expired.size(); from += batchSize) {
+            List<Long> batch = expired.subList(from, Math.min(from + batchSize, expired.size()));
+            try {
+                int released = orderService.getObject().expireUnpaidOrders(batch);
+                if (released > 0) {
+                    log.info("Released stock of {} unpaid orders past their payment deadline", released);
+                }
+            } catch (RuntimeException e) {
+                log.error("Cannot expire unpaid orders {}, retrying in {} ms", batch, retryDelayMillis, e);
+                long retryAt = System.currentTimeMillis() + retryDelayMillis;
+                batch.forEach(orderId -> schedule(orderId, retryAt));
+            }
+        }
+    }
+
+    /**
+     * Khởi động: nạp hạn thanh toán của các đơn còn chờ thanh toán, duyệt theo id
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadAwaitingPayment() {
+        long afterId = 0;
+        int loaded = 0;
+        while (true) {
+            List<Object[]> rows = orderRepository.findAwaitingPayment(afterId, Limit.of(LOAD_PAGE_SIZE));
+            wheelLock.lock();
+            try {
+                for (Object[] row : rows) {
+                    Long orderId = (Long) row[0];
+                    // Đơn vừa được đăng ký sau commit giữ hạn mới hơn
+                    if (!wheel.contains(orderId)) {
+                        wheel.schedule(orderId, toMillis((LocalDateTime) row[1]));
+                    }
+                    afterId = orderId;
+                }
+            } finally {
+                wheelLock.unlock();
+            }
+            loaded += rows.size();
+            if (rows.size() < LOAD_PAGE_SIZE) {
+                break;
+            }
+        }
+        if (loaded > 0) {
+            log.info("Tracking payment deadlines of {} orders awaiting online payment", loaded);
+        }
+    }
+
+    private void schedule(Long orderId, long deadlineMillis) {
+        wheelLock.lock();
+        try {
+            wheel.schedule(orderId, deadlineMillis);
+        } finally {
+            wheelLock.unlock();
+        }
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -1,13 +1,16 @@
 package fit.iuh.edu.fashion.services;
 
+import fit.iuh.edu.fashion.dto.response.CursorPageResponse;
 import fit.iuh.edu.fashion.models.Order;
 import fit.iuh.edu.fashion.models.Payment;
 import fit.iuh.edu.fashion.models.PaymentTransaction;
 import fit.iuh.edu.fashion.repositories.OrderRepository;
 import fit.iuh.edu.fashion.repositories.PaymentRepository;
 import fit.iuh.edu.fashion.repositories.PaymentTransactionRepository;
+import fit.iuh.edu.fashion.utils.PageCursorUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -16,8 +19,12 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 
 @Service
 @RequiredArgsConstructor
@@ -27,6 +34,7 @@ public class PaymentService {
     private final PaymentRepository paymentRepository;
     private final PaymentTransactionRepository paymentTransactionRepository;
     private final OrderRepository orderRepository;
+    private final CustomerOrderHistoryService customerOrderHistoryService;
 
     /**
      * Tạo bản ghi thanh toán từ giao dịch
@@ -85,27 +93,42 @@ public class PaymentService {
     }
 
     /**
-     * Tạo bản ghi thanh toán cho COD
+     * Tạo bản ghi thanh toán COD cho một lô đơn hàng (outbox đơn hàng, sau khi checkout commit).
+     * Đơn đã có bản ghi thanh toán thì bỏ qua nên gọi lại nhiều lần vẫn an toàn.
+     * Đơn đã được đánh dấu PAID trước khi outbox chạy thì bản ghi được tạo ở trạng thái COMPLETED.
      */
     @Transactional
-    public Payment createCODPayment(Order order) {
-        try {
-            Payment payment = Payment.builder()
-                    .order(order)
-                    .paymentMethod("COD")
-                    .amount(order.getGrandTotal().doubleValue())
-                    .status(Payment.PaymentStatus.PENDING)
-                    .paymentInfo("Thanh toán khi nhận hàng")
-                    .build();
-
-            Payment savedPayment = paymentRepository.save(payment);
-            log.info("Created COD payment for order: {}", order.getCode());
-
-            return savedPayment;
-        } catch (Exception e) {
-            log.error("Failed to create COD payment for order: {}", order.getCode(), e);
-            throw new RuntimeException("Không thể tạo bản ghi thanh toán COD", e);
+    public List<Payment> createCODPayments(Collection<Order> orders) {
+        List<Order> codOrders = orders.stream()
+                .filter(order -> order.getPaymentMethod() == Order.PaymentMethod.COD)
+                // Đơn đã hủy / hoàn tiền trước khi outbox chạy thì không cần bản ghi thanh toán
+                .filter(order -> order.getStatus() != Order.OrderStatus.CANCELLED
+                        && order.getStatus() != Order.OrderStatus.REFUNDED)
+                .toList();
+        if (codOrders.isEmpty()) {
+            return List.of();
         }
+        Set<Long> existing = new HashSet<>(paymentRepository.findOrderIdsWithPayments(
+                codOrders.stream().map(Order::getId).toList()));
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Payment> payments = codOrders.stream()
+                .filter(order -> !existing.contains(order.getId()))
+                .map(order -> {
+                    boolean paid = order.getPaymentStatus() == Order.PaymentStatus.PAID;
+                    return Payment.builder()
+                            .order(order)
+                            .paymentMethod("COD")
+                            .amount(order.getGrandTotal().doubleValue())
+                            .status(paid ? Payment.PaymentStatus.COMPLETED : Payment.PaymentStatus.PENDING)
+                            .completedAt(paid ? now : null)
+                            .paymentInfo("Thanh toán khi nhận hàng")
+                            .build();
+                })
+                .toList();
+        List<Payment> saved = paymentRepository.saveAll(payments);
+        log.info("Created {} COD payments", saved.size());
+        return saved;
     }
 
     /**
@@ -175,6 +198,7 @@ public class PaymentService {
             // Lưu Order vào database nếu có thay đổi
             if (updated) {
                 orderRepository.save(order);
+                customerOrderHistoryService.orderUpdated(order);
             }
         } catch (Exception e) {
             log.error("Failed to update order payment status for order: {}", order.getCode(), e);
@@ -196,6 +220,27 @@ public class PaymentService {
         return paymentRepository.findAll(pageable);
     }
 
+    /**
+     * Lấy thanh toán theo phân trang keyset (createdAt, id) - không COUNT, không OFFSET
+     */
+    @Transactional(readOnly = true)
+    public CursorPageResponse<Payment> scrollPayments(String cursor, int size) {
+        int pageSize = PageCursorUtil.clampSize(size);
+        PageCursorUtil.Cursor position = PageCursorUtil.decode(cursor);
+        Limit limit = Limit.of(pageSize + 1);
+        List<Payment> rows;
+        if (position == null) {
+            rows = paymentRepository.findLatest(limit);
+        } else if (position.getTime() == null) {
+            rows = paymentRepository.findUndatedBefore(position.getId(), limit);
+        } else {
+            rows = paymentRepository.findBefore(position.getTime(), position.getId(), limit);
+        }
+        return CursorPageResponse.of(rows, pageSize,
+                payment -> PageCursorUtil.encode(payment.getCreatedAt(), payment.getId()),
+                Function.identity());
+    }
+
     /**
      * Lấy payment theo transaction ID
      */
@@ -0,0 +1,531 @@
+package fit.iuh.edu.fashion.services;
+
+import fit.iuh.edu.fashion.models.Category;
+import fit.iuh.edu.fashion.models.Product;
+import fit.iuh.edu.fashion.models.ProductVariant;
+import fit.iuh.edu.fashion.repositories.ProductRepository;
+import fit.iuh.edu.fashion.repositories.ProductVariantRepository;
+import fit.iuh.edu.fashion.services.CatalogRows.ProductEntry;
+import fit.iuh.edu.fashion.services.CatalogRows.VariantEntry;
+import fit.iuh.edu.fashion.utils.IndexBuildState;
+import fit.iuh.edu.fashion.utils.TransactionUtil;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Bộ lọc facet sản phẩm bằng bitmap nén (RoaringBitmap) thay cho searchComprehensive.
+ * Mỗi giá trị facet (brand, category, color, size, còn hàng, khoảng giá) giữ một bitmap
+ * trên ordinal sản phẩm: OR trong cùng một facet, AND giữa các facet, đếm facet bằng andCardinality.
+ * Brand/category đổi hoặc bị xóa thì các sản phẩm liên quan được đọc lại (reindexProducts).
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ProductFacetIndex {
+
+    public static final String FACET_BRAND = "brand";
+    public static final String FACET_CATEGORY = "category";
+    public static final String FACET_COLOR = "color";
+    public static final String FACET_SIZE = "size";
+    public static final String FACET_STOCK = "inStock";
+    public static final String FACET_PRICE = "price";
+
+    // Khoảng giá (VND): [0, 200k), [200k, 500k), [500k, 1tr), [1tr, 2tr), [2tr, ...)
+    private static final long[] PRICE_BOUNDS = {200_000, 500_000, 1_000_000, 2_000_000};
+    public static final List<String> PRICE_BUCKETS = List.of(
+            "0-200000", "200000-500000", "500000-1000000", "1000000-2000000", "2000000+");
+
+    private final ProductRepository productRepository;
+    private final ProductVariantRepository productVariantRepository;
+    private final ProductSearchIndex productSearchIndex;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Integer> ordinals = new HashMap<>();
+    private long[] productIds = new long[1024];
+    private ProductEntry[] entries = new ProductEntry[1024];
+    private final Map<Long, Long> variantOwners = new HashMap<>();
+    private int documentCount = 0;
+
+    private final RoaringBitmap activeProducts = new RoaringBitmap();
+    private final RoaringBitmap inStockProducts = new RoaringBitmap();
+    private final Map<Long, RoaringBitmap> brandBitmaps = new HashMap<>();
+    private final Map<Long, RoaringBitmap> categoryBitmaps = new HashMap<>();
+    private final Map<Long, RoaringBitmap> colorBitmaps = new HashMap<>();
+    private final Map<Long, RoaringBitmap> sizeBitmaps = new HashMap<>();
+    private final RoaringBitmap[] priceBitmaps = new RoaringBitmap[PRICE_BUCKETS.size()];
+
+    private final Object buildLock = new Object();
+    private final IndexBuildState buildState = new IndexBuildState();
+
+    // Số thứ tự của lượt đọc tồn kho đã áp dụng cho từng variant (giữ qua các lần build)
+    private final AtomicLong stockReads = new AtomicLong();
+    private final Map<Long, Long> stockStamps = new HashMap<>();
+
+    /**
+     * Lọc sản phẩm đang bán theo tổ hợp facet, trả về id của trang yêu cầu, tổng số và số đếm từng facet.
+     * Có từ khóa thì giữ thứ tự liên quan của ProductSearchIndex, không thì sản phẩm mới nhất trước.
+     */
+    public FacetResult search(FacetQuery query, int offset, int limit) {
+        ensureBuilt();
+
+        List<Long> keywordHits = null;
+        if (query.getKeyword() != null && !query.getKeyword().isBlank()) {
+            keywordHits = productSearchIndex.search(query.getKeyword(), 0, Integer.MAX_VALUE).getProductIds();
+        }
+
+        lock.readLock().lock();
+        try {
+            RoaringBitmap base = activeProducts.clone();
+            if (keywordHits != null) {
+                RoaringBitmap keywordBitmap = new RoaringBitmap();
+                for (Long productId : keywordHits) {
+                    Integer doc = ordinals.get(productId);
+                    if (doc != null) {
+                        keywordBitmap.add(doc);
+                    }
+                }
+                base.and(keywordBitmap);
+            }
+
+            // Mỗi facet có chọn giá trị -> OR các bitmap của facet đó
+            Map<String, RoaringBitmap> selections = new LinkedHashMap<>();
+            putSelection(selections, FACET_BRAND, brandBitmaps, query.getBrandIds());
+            putSelection(selections, FACET_CATEGORY, categoryBitmaps, query.getCategoryIds());
+            putSelection(selections, FACET_COLOR, colorBitmaps, query.getColorIds());
+            putSelection(selections, FACET_SIZE, sizeBitmaps, query.getSizeIds());
+            if (Boolean.TRUE.equals(query.getInStock())) {
+                selections.put(FACET_STOCK, inStockProducts);
+            }
+            if (query.getPriceBuckets() != null && !query.getPriceBuckets().isEmpty()) {
+                RoaringBitmap union = new RoaringBitmap();
+                for (String bucket : query.getPriceBuckets()) {
+                    int index = PRICE_BUCKETS.indexOf(bucket);
+                    if (index < 0) {
+                        throw new RuntimeException("Invalid price bucket: " + bucket);
+                    }
+                    union.or(priceBitmaps[index]);
+                }
+                selections.put(FACET_PRICE, union);
+            }
+
+            RoaringBitmap matched = base.clone();
+            for (RoaringBitmap selection : selections.values()) {
+                matched.and(selection);
+            }
+
+            // Số đếm của một facet áp dụng mọi bộ lọc TRỪ chính facet đó, để UI vẫn hiện các lựa chọn khác
+            Map<String, Map<String, Long>> facets = new LinkedHashMap<>();
+            facets.put(FACET_BRAND, countFacet(base, selections, FACET_BRAND, brandBitmaps));
+            facets.put(FACET_CATEGORY, countFacet(base, selections, FACET_CATEGORY, categoryBitmaps));
+            facets.put(FACET_COLOR, countFacet(base, selections, FACET_COLOR, colorBitmaps));
+            facets.put(FACET_SIZE, countFacet(base, selections, FACET_SIZE, sizeBitmaps));
+
+            Map<String, Long> stockCounts = new LinkedHashMap<>();
+            stockCounts.put("true", (long) RoaringBitmap.andCardinality(restrict(base, selections, FACET_STOCK), inStockProducts));
+            facets.put(FACET_STOCK, stockCounts);
+
+            RoaringBitmap priceBase = restrict(base, selections, FACET_PRICE);
+            Map<String, Long> priceCounts = new LinkedHashMap<>();
+            for (int i = 0; i < priceBitmaps.length; i++) {
+                priceCounts.put(PRICE_BUCKETS.get(i), (long) RoaringBitmap.andCardinality(priceBase, priceBitmaps[i]));
+            }
+            facets.put(FACET_PRICE, priceCounts);
+
+            List<Long> page = new ArrayList<>();
+            if (keywordHits != null) {
+                int skipped = 0;
+                for (Long productId : keywordHits) {
+                    if (page.size() >= limit) {
+                        break;
+                    }
+                    Integer doc = ordinals.get(productId);
+                    if (doc != null && matched.contains(doc) && skipped++ >= offset) {
+                        page.add(productId);
+                    }
+                }
+            } else {
+                // Ordinal cấp theo thứ tự id tăng dần nên duyệt ngược = sản phẩm mới nhất trước
+                IntIterator iterator = matched.getReverseIntIterator();
+                int skipped = 0;
+                while (iterator.hasNext() && page.size() < limit) {
+                    int doc = iterator.next();
+                    if (skipped++ >= offset) {
+                        page.add(productIds[doc]);
+                    }
+                }
+            }
+
+            return new FacetResult(page, matched.getLongCardinality(), facets);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Product được tạo/cập nhật (brand, categories, trạng thái active)
+     */
+    public void onProductSaved(Product product) {
+        Long productId = product.getId();
+        Long brandId = product.getBrand() != null ? product.getBrand().getId() : null;
+        Set<Long> categoryIds = new HashSet<>();
+        if (product.getCategories() != null) {
+            for (Category category : product.getCategories()) {
+                categoryIds.add(category.getId());
+            }
+        }
+        boolean active = Boolean.TRUE.equals(product.getIsActive());
+
+        TransactionUtil.afterCommit(() -> buildState.apply(() -> applyProduct(productId, brandId, categoryIds, active)));
+    }
+
+    /**
+     * Variant được tạo/cập nhật (color, size, giá, stock, trạng thái active)
+     */
+    public void onVariantSaved(ProductVariant variant) {
+        Long variantId = variant.getId();
+        Long productId = variant.getProduct().getId();
+        Long colorId = variant.getColor() != null ? variant.getColor().getId() : null;
+        Long sizeId = variant.getSize() != null ? variant.getSize().getId() : null;
+        BigDecimal price = variant.getPrice();
+        int stock = variant.getStock() != null ? variant.getStock() : 0;
+        boolean active = Boolean.TRUE.equals(variant.getIsActive());
+
+        TransactionUtil.afterCommit(() -> buildState.apply(
+                () -> applyVariant(variantId, productId, colorId, sizeId, price, stock, active)));
+    }
+
+    /**
+     * Tồn kho của các variant đổi bởi UPDATE trực tiếp (đặt hàng, hủy đơn, flush hot SKU).
+     * Sau commit đọc lại tồn kho từ DB (giá trị tuyệt đối), giống CatalogStatisticsService.onStockChanged.
+     */
+    public void onStockChanged(Collection<Long> variantIds) {
+        if (variantIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = List.copyOf(variantIds);
+        TransactionUtil.afterCommit(() -> buildState.apply(() -> refreshStock(ids)));
+    }
+
+    /**
+     * Đọc lại từ DB và index lại các sản phẩm sau khi transaction commit - dùng khi brand/category của chúng
+     * bị xóa hoặc đổi (danh sách id lấy trước khi xóa), để không còn bitmap của brand/category đã xóa
+     */
+    public void reindexProducts(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = List.copyOf(productIds);
+        TransactionUtil.afterCommit(() -> buildState.apply(() -> {
+            TreeMap<Long, ProductEntry> byProduct = CatalogRows.group(productRepository.findCatalogStatisticsRows(ids));
+            lock.writeLock().lock();
+            try {
+                for (Map.Entry<Long, ProductEntry> product : byProduct.entrySet()) {
+                    Integer existing = ordinals.get(product.getKey());
+                    int doc = existing != null ? existing : addDocument(product.getKey());
+                    unindex(doc, entries[doc]);
+                    entries[doc].variants.keySet().forEach(variantOwners::remove);
+                    entries[doc] = product.getValue();
+                    product.getValue().variants.keySet().forEach(variantId -> variantOwners.put(variantId, product.getKey()));
+                    index(doc, product.getValue());
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }));
+    }
+
+    void applyProduct(Long productId, Long brandId, Set<Long> categoryIds, boolean active) {
+        lock.writeLock().lock();
+        try {
+            Integer existing = ordinals.get(productId);
+            int doc = existing != null ? existing : addDocument(productId);
+            ProductEntry entry = entries[doc];
+            unindex(doc, entry);
+            entry.brandId = brandId;
+            entry.categoryIds = categoryIds;
+            entry.active = active;
+            index(doc, entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void applyVariant(Long variantId, Long productId, Long colorId, Long sizeId, BigDecimal price, int stock, boolean active) {
+        lock.writeLock().lock();
+        try {
+            Integer doc = ordinals.get(productId);
+            if (doc == null) {
+                // Product chưa có trong bitmap (tạo trong transaction chưa kịp áp dụng) - build lại cho chắc
+                buildState.invalidate();
+                return;
+            }
+            ProductEntry entry = entries[doc];
+            unindex(doc, entry);
+            VariantEntry variant = entry.variants.computeIfAbsent(variantId, id -> new VariantEntry());
+            variant.colorId = colorId;
+            variant.sizeId = sizeId;
+            variant.price = price;
+            variant.stock = stock;
+            variant.active = active;
+            variantOwners.put(variantId, productId);
+            index(doc, entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Đọc tồn kho hiện tại của các variant (ngoài khóa) rồi cập nhật bitmap "còn hàng".
+     * Lượt đọc bắt đầu trước không ghi đè kết quả của lượt đọc bắt đầu sau.
+     */
+    void refreshStock(List<Long> variantIds) {
+        long stamp = stockReads.incrementAndGet();
+        List<Object[]> rows = productVariantRepository.findStockRows(variantIds);
+        lock.writeLock().lock();
+        try {
+            for (Object[] row : rows) {
+                Long variantId = (Long) row[0];
+                Long applied = stockStamps.get(variantId);
+                if (applied != null && applied > stamp) {
+                    continue;
+                }
+                stockStamps.put(variantId, stamp);
+                Long productId = variantOwners.get(variantId);
+                Integer doc = productId != null ? ordinals.get(productId) : null;
+                if (doc == null) {
+                    buildState.invalidate();
+                    continue;
+                }
+                ProductEntry entry = entries[doc];
+                unindex(doc, entry);
+                entry.variants.get(variantId).stock = CatalogRows.toStock(row[1]);
+                index(doc, entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void ensureBuilt() {
+        if (buildState.isBuilt()) {
+            return;
+        }
+        synchronized (buildLock) {
+            if (!buildState.isBuilt()) {
+                buildState.build(this::rebuild);
+            }
+        }
+    }
+
+    /**
+     * Build lại toàn bộ bitmap bằng MỘT query (xem ProductRepository.findCatalogStatisticsRows).
+     * Query chạy ngoài khóa; chỉ lúc thay bitmap mới chặn người đọc.
+     */
+    private void rebuild() {
+        long start = System.currentTimeMillis();
+
+        // Gom theo product trước, cấp ordinal theo id tăng dần
+        TreeMap<Long, ProductEntry> byProduct = CatalogRows.group(productRepository.findCatalogStatisticsRows());
+        lock.writeLock().lock();
+        try {
+            install(byProduct);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        log.info("Product facet index built: {} products in {} ms", byProduct.size(), System.currentTimeMillis() - start);
+    }
+
+    private void install(TreeMap<Long, ProductEntry> byProduct) {
+        ordinals.clear();
+        variantOwners.clear();
+        documentCount = 0;
+        activeProducts.clear();
+        inStockProducts.clear();
+        brandBitmaps.clear();
+        categoryBitmaps.clear();
+        colorBitmaps.clear();
+        sizeBitmaps.clear();
+        for (int i = 0; i < priceBitmaps.length; i++) {
+            priceBitmaps[i] = new RoaringBitmap();
+        }
+
+        for (Map.Entry<Long, ProductEntry> product : byProduct.entrySet()) {
+            int doc = addDocument(product.getKey());
+            entries[doc] = product.getValue();
+            product.getValue().variants.keySet().forEach(variantId -> variantOwners.put(variantId, product.getKey()));
+            index(doc, product.getValue());
+        }
+        for (RoaringBitmap bitmap : allBitmaps()) {
+            bitmap.runOptimize();
+        }
+    }
+
+    private int addDocument(Long productId) {
+        int doc = documentCount++;
+        if (doc == productIds.length) {
+            productIds = Arrays.copyOf(productIds, doc * 2);
+            entries = Arrays.copyOf(entries, doc * 2);
+        }
+        productIds[doc] = productId;
+        entries[doc] = new ProductEntry();
+        ordinals.put(productId, doc);
+        return doc;
+    }
+
+    /**
+     * Đặt bit của product vào mọi bitmap tương ứng với thuộc tính hiện tại của nó
+     */
+    private void index(int doc, ProductEntry entry) {
+        if (entry.active) {
+            activeProducts.add(doc);
+        }
+        if (entry.brandId != null) {
+            brandBitmaps.computeIfAbsent(entry.brandId, id -> new RoaringBitmap()).add(doc);
+        }
+        for (Long categoryId : entry.categoryIds) {
+            categoryBitmaps.computeIfAbsent(categoryId, id -> new RoaringBitmap()).add(doc);
+        }
+        // Color/size/giá tính theo variant còn bán; "còn hàng" = có variant còn bán và stock > 0
+        for (VariantEntry variant : entry.variants.values()) {
+            if (!variant.active) {
+                continue;
+            }
+            if (variant.colorId != null) {
+                colorBitmaps.computeIfAbsent(variant.colorId, id -> new RoaringBitmap()).add(doc);
+            }
+            if (variant.sizeId != null) {
+                sizeBitmaps.computeIfAbsent(variant.sizeId, id -> new RoaringBitmap()).add(doc);
+            }
+            if (variant.price != null) {
+                priceBitmaps[priceBucket(variant.price)].add(doc);
+            }
+            if (variant.stock > 0) {
+                inStockProducts.add(doc);
+            }
+        }
+    }
+
+    /**
+     * Xóa bit của product khỏi các bitmap theo thuộc tính CŨ (trước khi cập nhật)
+     */
+    private void unindex(int doc, ProductEntry entry) {
+        activeProducts.remove(doc);
+        inStockProducts.remove(doc);
+        removeFrom(brandBitmaps, entry.brandId, doc);
+        for (Long categoryId : entry.categoryIds) {
+            removeFrom(categoryBitmaps, categoryId, doc);
+        }
+        for (VariantEntry variant : entry.variants.values()) {
+            removeFrom(colorBitmaps, variant.colorId, doc);
+            removeFrom(sizeBitmaps, variant.sizeId, doc);
+            if (variant.price != null) {
+                priceBitmaps[priceBucket(variant.price)].remove(doc);
+            }
+        }
+    }
+
+    private static void removeFrom(Map<Long, RoaringBitmap> bitmaps, Long key, int doc) {
+        if (key == null) {
+            return;
+        }
+        RoaringBitmap bitmap = bitmaps.get(key);
+        if (bitmap != null) {
+            bitmap.remove(doc);
+            if (bitmap.isEmpty()) {
+                bitmaps.remove(key);
+            }
+        }
+    }
+
+    private static int priceBucket(BigDecimal price) {
+        long value = price.longValue();
+        int bucket = 0;
+        while (bucket < PRICE_BOUNDS.length && value >= PRICE_BOUNDS[bucket]) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    private static void putSelection(Map<String, RoaringBitmap> selections, String facet,
+                                     Map<Long, RoaringBitmap> bitmaps, Collection<Long> selectedIds) {
+        if (selectedIds == null || selectedIds.isEmpty()) {
+            return;
+        }
+        RoaringBitmap union = new RoaringBitmap();
+        for (Long id : selectedIds) {
+            RoaringBitmap bitmap = bitmaps.get(id);
+            if (bitmap != null) {
+                union.or(bitmap);
+            }
+        }
+        selections.put(facet, union);
+    }
+
+    private static RoaringBitmap restrict(RoaringBitmap base, Map<String, RoaringBitmap> selections, String excludedFacet) {
+        RoaringBitmap restricted = base;
+        for (Map.Entry<String, RoaringBitmap> selection : selections.entrySet()) {
+            if (!selection.getKey().equals(excludedFacet)) {
+                restricted = RoaringBitmap.and(restricted, selection.getValue());
+            }
+        }
+        return restricted;
+    }
+
+    private static Map<String, Long> countFacet(RoaringBitmap base, Map<String, RoaringBitmap> selections,
+                                                String facet, Map<Long, RoaringBitmap> bitmaps) {
+        RoaringBitmap restricted = restrict(base, selections, facet);
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Map.Entry<Long, RoaringBitmap> value : bitmaps.entrySet()) {
+            long count = RoaringBitmap.andCardinality(restricted, value.getValue());
+            if (count > 0) {
+                counts.put(String.valueOf(value.getKey()), count);
+            }
+        }
+        return counts;
+    }
+
+    private List<RoaringBitmap> allBitmaps() {
+        List<RoaringBitmap> bitmaps = new ArrayList<>();
+        bitmaps.add(activeProducts);
+        bitmaps.add(inStockProducts);
+        bitmaps.addAll(brandBitmaps.values());
+        bitmaps.addAll(categoryBitmaps.values());
+        bitmaps.addAll(colorBitmaps.values());
+        bitmaps.addAll(sizeBitmaps.values());
+        bitmaps.addAll(Arrays.asList(priceBitmaps));
+        return bitmaps;
+    }
+
+    @Getter
+    @Builder
+    public static class FacetQuery {
+        private final String keyword;
+        private final List<Long> brandIds;
+        private final List<Long> categoryIds;
+        private final List<Long> colorIds;
+        private final List<Long> sizeIds;
+        private final Boolean inStock;
+        private final List<String> priceBuckets;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class FacetResult {
+        private final List<Long> productIds;
+        private final long total;
+        // facet -> (giá trị -> số sản phẩm)
+        private final Map<String, Map<String, Long>> facets;
+    }
+}
@@ -0,0 +1,132 @@
+package fit.iuh.edu.fashion.services;
+
+import fit.iuh.edu.fashion.dto.response.*;
+import fit.iuh.edu.fashion.repositories.ProductImageRepository;
+import fit.iuh.edu.fashion.repositories.ProductRepository;
+import fit.iuh.edu.fashion.repositories.ProductVariantRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Đường đọc riêng cho các trang danh sách sản phẩm.
+ * Thay vì map từng entity Product (mỗi sản phẩm kéo theo brand, categories, variants + color/size, images,
+ * createdBy/updatedBy...), trang chỉ lấy id rồi load dữ liệu hiển thị theo lô bằng số query cố định:
+ * products+brand, categories, variants+color+size, images, rating - bất kể trang có bao nhiêu sản phẩm.
+ */
+@Service
+@RequiredArgsConstructor
+public class ProductListingService {
+
+    private final ProductRepository productRepository;
+    private final ProductVariantRepository productVariantRepository;
+    private final ProductImageRepository productImageRepository;
+    private final ProductRatingService productRatingService;
+
+    /**
+     * Map một trang id sản phẩm sang trang ProductResponse (giữ nguyên thứ tự và tổng số phần tử)
+     */
+    @Transactional(readOnly = true)
+    public Page<ProductResponse> loadPage(Page<Long> productIds) {
+        return new PageImpl<>(load(productIds.getContent()), productIds.getPageable(), productIds.getTotalElements());
+    }
+
+    /**
+     * Load ProductResponse cho danh sách id, giữ nguyên thứ tự của danh sách
+     */
+    @Transactional(readOnly = true)
+    public List<ProductResponse> load(List<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, ProductResponse> products = new HashMap<>();
+        for (Object[] row : productRepository.findListingRows(productIds)) {
+            Long brandId = (Long) row[9];
+            products.put((Long) row[0], ProductResponse.builder()
+                    .id((Long) row[0])
+                    .name((String) row[1])
+                    .slug((String) row[2])
+                    .description((String) row[3])
+                    .material((String) row[4])
+                    .origin((String) row[5])
+                    .isActive((Boolean) row[6])
+                    .createdAt((LocalDateTime) row[7])
+                    .updatedAt((LocalDateTime) row[8])
+                    .brand(brandId != null ? BrandResponse.builder()
+                            .id(brandId)
+                            .name((String) row[10])
+                            .slug((String) row[11])
+                            .build() : null)
+                    .categories(new ArrayList<>())
+                    .variants(new ArrayList<>())
+                    .images(new ArrayList<>())
+                    .build());
+        }
+
+        for (Object[] row : productRepository.findListingCategoryRows(products.keySet())) {
+            products.get((Long) row[0]).getCategories().add(CategoryResponse.builder()
+                    .id((Long) row[1])
+                    .name((String) row[2])
+                    .slug((String) row[3])
+                    .parentId((Long) row[4])
+                    .build());
+        }
+
+        for (Object[] row : productVariantRepository.findListingRows(products.keySet())) {
+            Long colorId = (Long) row[3];
+            Long sizeId = (Long) row[6];
+            products.get((Long) row[0]).getVariants().add(ProductVariantResponse.builder()
+                    .id((Long) row[1])
+                    .sku((String) row[2])
+                    .color(colorId != null ? ColorResponse.builder()
+                            .id(colorId)
+                            .name((String) row[4])
+                            .hex((String) row[5])
+                            .build() : null)
+                    .size(sizeId != null ? SizeResponse.builder()
+                            .id(sizeId)
+                            .name((String) row[7])
+                            .note((String) row[8])
+                            .build() : null)
+                    .price((BigDecimal) row[9])
+                    .compareAtPrice((BigDecimal) row[10])
+                    .stock((Integer) row[11])
+                    .weightGram((Integer) row[12])
+                    .barcode((String) row[13])
+                    .isActive((Boolean) row[14])
+                    .build());
+        }
+
+        for (Object[] row : productImageRepository.findListingRows(products.keySet())) {
+            products.get((Long) row[0]).getImages().add(ProductImageResponse.builder()
+                    .id((Long) row[1])
+                    .url((String) row[2])
+                    .altText((String) row[3])
+                    .sortOrder((Integer) row[4])
+                    .variantId((Long) row[5])
+                    .build());
+        }
+
+        Map<Long, ProductRatingService.RatingSummary> ratings = productRatingService.getSummaries(products.keySet());
+        List<ProductResponse> result = new ArrayList<>(productIds.size());
+        for (Long id : productIds) {
+            ProductResponse product = products.get(id);
+            if (product == null) {
+                continue;
+            }
+            ProductRatingService.RatingSummary rating = ratings.getOrDefault(id, ProductRatingService.RatingSummary.EMPTY);
+            product.setAverageRating(rating.getAverageRating());
+            product.setTotalReviews(rating.getTotalReviews());
+            product.setRatingDistribution(rating.getDistribution());
+            result.add(product);
+        }
+        return result;
+    }
+}
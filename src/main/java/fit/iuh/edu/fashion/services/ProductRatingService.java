@@ -0,0 +1,141 @@
+package fit.iuh.edu.fashion.services;
+
+import fit.iuh.edu.fashion.models.ProductRatingSummary;
+import fit.iuh.edu.fashion.models.ProductReview;
+import fit.iuh.edu.fashion.repositories.ProductRatingSummaryRepository;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Điểm đánh giá của sản phẩm đọc từ bảng tổng hợp product_rating_summaries thay vì AVG/COUNT trên
+ * product_reviews cho từng sản phẩm. Chỉ review đã duyệt được tính; mọi thay đổi review đi qua
+ * applyDelta trong cùng transaction nên tổng hợp luôn khớp với dữ liệu review.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ProductRatingService {
+
+    private final ProductRatingSummaryRepository productRatingSummaryRepository;
+
+    /**
+     * Review mới được tạo
+     */
+    public void onReviewAdded(ProductReview review) {
+        if (Boolean.TRUE.equals(review.getIsApproved())) {
+            apply(review.getProduct().getId(), review.getRating(), 1);
+        }
+    }
+
+    /**
+     * Review được sửa điểm hoặc đổi trạng thái duyệt - truyền điểm/trạng thái trước khi sửa
+     */
+    public void onReviewChanged(ProductReview review, Integer previousRating, Boolean previouslyApproved) {
+        Long productId = review.getProduct().getId();
+        if (Boolean.TRUE.equals(previouslyApproved)) {
+            apply(productId, previousRating, -1);
+        }
+        if (Boolean.TRUE.equals(review.getIsApproved())) {
+            apply(productId, review.getRating(), 1);
+        }
+    }
+
+    /**
+     * Review bị xóa
+     */
+    public void onReviewRemoved(ProductReview review) {
+        if (Boolean.TRUE.equals(review.getIsApproved())) {
+            apply(review.getProduct().getId(), review.getRating(), -1);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public RatingSummary getSummary(Long productId) {
+        return productRatingSummaryRepository.findById(productId)
+                .map(RatingSummary::from)
+                .orElse(RatingSummary.EMPTY);
+    }
+
+    /**
+     * Đọc tổng hợp của cả một trang sản phẩm bằng một query
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, RatingSummary> getSummaries(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return Map.of();
+        }
+        return productRatingSummaryRepository.findAllById(productIds).stream()
+                .collect(Collectors.toMap(ProductRatingSummary::getProductId, RatingSummary::from));
+    }
+
+    /**
+     * Tính lại toàn bộ tổng hợp từ product_reviews
+     */
+    @Transactional
+    public int rebuild() {
+        productRatingSummaryRepository.deleteAllRows();
+        int products = productRatingSummaryRepository.rebuildFromReviews();
+        log.info("Rebuilt rating summaries for {} products", products);
+        return products;
+    }
+
+    /**
+     * Bảng do Hibernate tạo mới (ddl-auto) sẽ trống - backfill một lần khi khởi động
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfillIfEmpty() {
+        if (productRatingSummaryRepository.count() == 0) {
+            rebuild();
+        }
+    }
+
+    private void apply(Long productId, Integer rating, int direction) {
+        if (rating == null || rating < 1 || rating > 5) {
+            return;
+        }
+        long[] stars = new long[6];
+        stars[rating] = direction;
+        productRatingSummaryRepository.applyDelta(productId, (long) rating * direction, direction,
+                stars[1], stars[2], stars[3], stars[4], stars[5]);
+    }
+
+    @Getter
+    @Builder
+    public static class RatingSummary {
+        static final RatingSummary EMPTY = RatingSummary.builder()
+                .averageRating(0.0)
+                .totalReviews(0L)
+                .distribution(new TreeMap<>(Map.of(1, 0L, 2, 0L, 3, 0L, 4, 0L, 5, 0L)))
+                .build();
+
+        private final double averageRating;
+        private final long totalReviews;
+        // số sao -> số review
+        private final Map<Integer, Long> distribution;
+
+        static RatingSummary from(ProductRatingSummary summary) {
+            long count = summary.getRatingCount();
+            Map<Integer, Long> distribution = new LinkedHashMap<>();
+            distribution.put(1, summary.getStar1Count());
+            distribution.put(2, summary.getStar2Count());
+            distribution.put(3, summary.getStar3Count());
+            distribution.put(4, summary.getStar4Count());
+            distribution.put(5, summary.getStar5Count());
+            return RatingSummary.builder()
+                    .averageRating(count > 0 ? (double) summary.getRatingSum() / count : 0.0)
+                    .totalReviews(count)
+                    .distribution(distribution)
+                    .build();
+        }
+    }
+}
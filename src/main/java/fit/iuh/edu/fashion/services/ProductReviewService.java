@@ -1,5 +1,6 @@
 package fit.iuh.edu.fashion.services;
 
+import fit.iuh.edu.fashion.cache.CacheDependencyTracker;
 import fit.iuh.edu.fashion.dto.request.ProductReviewRequest;
 import fit.iuh.edu.fashion.dto.response.ProductReviewResponse;
 import fit.iuh.edu.fashion.models.Product;
@@ -9,7 +10,6 @@ import fit.iuh.edu.fashion.repositories.ProductRepository;
 import fit.iuh.edu.fashion.repositories.ProductReviewRepository;
 import fit.iuh.edu.fashion.repositories.UserRepository;
 import lombok.RequiredArgsConstructor;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -24,6 +24,8 @@ public class ProductReviewService {
     private final ProductReviewRepository productReviewRepository;
     private final ProductRepository productRepository;
     private final UserRepository userRepository;
+    private final CacheDependencyTracker cacheDependencyTracker;
+    private final ProductRatingService productRatingService;
 
     @Cacheable(value = "productReviews", key = "'product_' + #productId")
     @Transactional(readOnly = true)
@@ -34,7 +36,6 @@ public class ProductReviewService {
                 .collect(Collectors.toList());
     }
 
-    @CacheEvict(value = {"productReviews", "products"}, allEntries = true)
     @Transactional
     public ProductReviewResponse addReview(Long productId, ProductReviewRequest request, Long userId) {
         Product product = productRepository.findById(productId)
@@ -58,10 +59,12 @@ public class ProductReviewService {
                 .build();
 
         review = productReviewRepository.save(review);
+        productRatingService.onReviewAdded(review);
+        // Điểm đánh giá nằm trong ProductResponse -> xóa cache review và product của đúng sản phẩm này
+        cacheDependencyTracker.invalidate(CacheDependencyTracker.product(review.getProduct().getId()));
         return mapToResponse(review);
     }
 
-    @CacheEvict(value = {"productReviews", "products"}, allEntries = true)
     @Transactional
     public ProductReviewResponse updateReview(Long reviewId, ProductReviewRequest request, Long userId) {
         ProductReview review = productReviewRepository.findById(reviewId)
@@ -72,15 +75,18 @@ public class ProductReviewService {
             throw new RuntimeException("You can only edit your own reviews");
         }
 
+        Integer previousRating = review.getRating();
         review.setRating(request.getRating());
         review.setTitle(request.getTitle());
         review.setComment(request.getComment());
 
         review = productReviewRepository.save(review);
+        productRatingService.onReviewChanged(review, previousRating, review.getIsApproved());
+        // Điểm đánh giá nằm trong ProductResponse -> xóa cache review và product của đúng sản phẩm này
+        cacheDependencyTracker.invalidate(CacheDependencyTracker.product(review.getProduct().getId()));
         return mapToResponse(review);
     }
 
-    @CacheEvict(value = {"productReviews", "products"}, allEntries = true)
     @Transactional
     public void deleteReview(Long reviewId, Long userId) {
         ProductReview review = productReviewRepository.findById(reviewId)
@@ -92,6 +98,28 @@ public class ProductReviewService {
         }
 
         productReviewRepository.delete(review);
+        productRatingService.onReviewRemoved(review);
+        cacheDependencyTracker.invalidate(CacheDependencyTracker.product(review.getProduct().getId()));
+    }
+
+    /**
+     * Duyệt / ẩn review (admin) - chỉ review đã duyệt được tính vào điểm đánh giá
+     */
+    @Transactional
+    public ProductReviewResponse setApproval(Long reviewId, boolean approved) {
+        ProductReview review = productReviewRepository.findById(reviewId)
+                .orElseThrow(() -> new RuntimeException("Review not found"));
+
+        Boolean previouslyApproved = review.getIsApproved();
+        if (Boolean.valueOf(approved).equals(previouslyApproved)) {
+            return mapToResponse(review);
+        }
+        review.setIsApproved(approved);
+
+        review = productReviewRepository.save(review);
+        productRatingService.onReviewChanged(review, review.getRating(), previouslyApproved);
+        cacheDependencyTracker.invalidate(CacheDependencyTracker.product(review.getProduct().getId()));
+        return mapToResponse(review);
     }
 
     private ProductReviewResponse mapToResponse(ProductReview review) {
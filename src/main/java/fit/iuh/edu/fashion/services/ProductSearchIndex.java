@@ -0,0 +1,323 @@
+package fit.iuh.edu.fashion.services;
+
+import fit.iuh.edu.fashion.models.Category;
+import fit.iuh.edu.fashion.models.Product;
+import fit.iuh.edu.fashion.repositories.ProductRepository;
+import fit.iuh.edu.fashion.utils.IndexBuildState;
+import fit.iuh.edu.fashion.utils.TransactionUtil;
+import fit.iuh.edu.fashion.utils.VietnameseTextUtil;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Chỉ mục tìm kiếm sản phẩm trong bộ nhớ (inverted index) thay cho LIKE '%keyword%'.
+ * Từ khóa được bỏ dấu tiếng Việt nên "ao thun" và "Áo Thun" cho cùng kết quả.
+ * Posting list lưu dạng mảng int (ordinal sản phẩm + trọng số theo field).
+ * Brand/category đổi tên hoặc bị xóa thì các sản phẩm liên quan được index lại (reindexProducts).
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ProductSearchIndex {
+
+    // Trọng số theo vị trí xuất hiện của từ
+    private static final int NAME_WEIGHT = 8;
+    private static final int BRAND_WEIGHT = 4;
+    private static final int CATEGORY_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    // Khớp theo tiền tố ("thu" -> "thun") được tính điểm thấp hơn khớp nguyên từ
+    private static final float PREFIX_FACTOR = 0.5f;
+    private static final int MIN_PREFIX_LENGTH = 2;
+
+    private final ProductRepository productRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<String, PostingList> postings = new TreeMap<>();
+    private final Map<Long, Integer> ordinals = new HashMap<>();
+    private long[] productIds = new long[1024];
+    private String[][] documentTerms = new String[1024][];
+    private final BitSet activeDocuments = new BitSet();
+    private int documentCount = 0;
+    private int liveDocuments = 0;
+    private final Object buildLock = new Object();
+    private final IndexBuildState buildState = new IndexBuildState();
+
+    /**
+     * Tìm kiếm có xếp hạng, trả về id sản phẩm (đang bán) của trang yêu cầu và tổng số kết quả
+     */
+    public SearchResult search(String keyword, int offset, int limit) {
+        ensureBuilt();
+
+        List<String> queryTerms = VietnameseTextUtil.tokenize(keyword);
+        if (queryTerms.isEmpty()) {
+            return new SearchResult(List.of(), 0);
+        }
+
+        lock.readLock().lock();
+        try {
+            // Điểm chỉ tích lũy trên các posting list khớp; sau mỗi từ chỉ giữ sản phẩm khớp TẤT CẢ từ đã xét
+            Map<Integer, Float> candidates = null;
+            for (String term : queryTerms) {
+                Map<Integer, Float> termScores = new HashMap<>();
+                scoreTerm(postings.get(term), 1f, candidates, termScores);
+                if (term.length() >= MIN_PREFIX_LENGTH) {
+                    for (PostingList list : postings.subMap(term, false, term + Character.MAX_VALUE, false).values()) {
+                        scoreTerm(list, PREFIX_FACTOR, candidates, termScores);
+                    }
+                }
+                if (candidates != null) {
+                    for (Map.Entry<Integer, Float> entry : termScores.entrySet()) {
+                        entry.setValue(entry.getValue() + candidates.get(entry.getKey()));
+                    }
+                }
+                candidates = termScores;
+                if (candidates.isEmpty()) {
+                    break;
+                }
+            }
+
+            Map<Integer, Float> scores = candidates;
+            List<Integer> hits = new ArrayList<>(scores.keySet());
+            hits.sort((a, b) -> {
+                int cmp = Float.compare(scores.get(b), scores.get(a));
+                return cmp != 0 ? cmp : Long.compare(productIds[b], productIds[a]);
+            });
+
+            List<Long> page = new ArrayList<>();
+            for (int i = offset; i < hits.size() && page.size() < limit; i++) {
+                page.add(productIds[hits.get(i)]);
+            }
+            return new SearchResult(page, hits.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Cập nhật chỉ mục cho một sản phẩm sau khi transaction commit (tạo/sửa/xóa mềm)
+     */
+    public void onProductSaved(Product product) {
+        Long productId = product.getId();
+        List<String> categoryNames = new ArrayList<>();
+        if (product.getCategories() != null) {
+            for (Category category : product.getCategories()) {
+                categoryNames.add(category.getName());
+            }
+        }
+        Map<String, Integer> terms = extractTerms(product.getName(), product.getDescription(),
+                product.getBrand() != null ? product.getBrand().getName() : null, categoryNames);
+        boolean active = Boolean.TRUE.equals(product.getIsActive());
+
+        TransactionUtil.afterCommit(() -> buildState.apply(() -> {
+            lock.writeLock().lock();
+            try {
+                indexDocument(productId, terms, active);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }));
+    }
+
+    /**
+     * Đọc lại từ DB và index lại các sản phẩm sau khi transaction commit - dùng khi tên brand/category
+     * của chúng đổi hoặc brand/category bị xóa (danh sách id lấy trước khi xóa)
+     */
+    public void reindexProducts(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = List.copyOf(productIds);
+        TransactionUtil.afterCommit(() -> buildState.apply(() -> {
+            List<Object[]> rows = productRepository.findSearchIndexRows(ids);
+            lock.writeLock().lock();
+            try {
+                indexRows(rows);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }));
+    }
+
+    public int size() {
+        return liveDocuments;
+    }
+
+    /**
+     * Cộng điểm của một posting list vào termScores - từ đầu tiên lấy các sản phẩm đang bán,
+     * các từ sau chỉ xét sản phẩm còn trong candidates
+     */
+    private void scoreTerm(PostingList list, float factor, Map<Integer, Float> candidates, Map<Integer, Float> termScores) {
+        if (list == null || list.size == 0) {
+            return;
+        }
+        float idf = (float) Math.log(1 + (double) liveDocuments / list.size);
+        for (int i = 0; i < list.size; i++) {
+            int doc = list.documents[i];
+            boolean candidate = candidates == null ? activeDocuments.get(doc) : candidates.containsKey(doc);
+            if (candidate) {
+                termScores.merge(doc, list.weights[i] * idf * factor, Float::sum);
+            }
+        }
+    }
+
+    private void ensureBuilt() {
+        if (buildState.isBuilt()) {
+            return;
+        }
+        synchronized (buildLock) {
+            if (!buildState.isBuilt()) {
+                buildState.build(this::rebuild);
+            }
+        }
+    }
+
+    /**
+     * Query chạy ngoài khóa; chỉ lúc index lại mới chặn người đọc
+     */
+    private void rebuild() {
+        long start = System.currentTimeMillis();
+
+        List<Object[]> rows = productRepository.findSearchIndexRows();
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            ordinals.clear();
+            activeDocuments.clear();
+            documentCount = 0;
+            liveDocuments = 0;
+
+            indexRows(rows);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        log.info("Product search index built: {} products, {} terms in {} ms",
+                liveDocuments, postings.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Index các sản phẩm trong rows - mỗi dòng: id, name, description, isActive, brand name,
+     * category name (1 dòng / category)
+     */
+    private void indexRows(List<Object[]> rows) {
+        Map<Long, Object[]> rowsByProduct = new LinkedHashMap<>();
+        Map<Long, List<String>> categoriesByProduct = new HashMap<>();
+        for (Object[] row : rows) {
+            Long productId = (Long) row[0];
+            rowsByProduct.putIfAbsent(productId, row);
+            if (row[5] != null) {
+                categoriesByProduct.computeIfAbsent(productId, id -> new ArrayList<>()).add((String) row[5]);
+            }
+        }
+
+        for (Map.Entry<Long, Object[]> entry : rowsByProduct.entrySet()) {
+            Object[] row = entry.getValue();
+            Map<String, Integer> terms = extractTerms((String) row[1], (String) row[2], (String) row[4],
+                    categoriesByProduct.getOrDefault(entry.getKey(), List.of()));
+            indexDocument(entry.getKey(), terms, Boolean.TRUE.equals(row[3]));
+        }
+    }
+
+    private Map<String, Integer> extractTerms(String name, String description, String brandName, List<String> categoryNames) {
+        Map<String, Integer> terms = new HashMap<>();
+        addTerms(terms, description, DESCRIPTION_WEIGHT);
+        for (String categoryName : categoryNames) {
+            addTerms(terms, categoryName, CATEGORY_WEIGHT);
+        }
+        addTerms(terms, brandName, BRAND_WEIGHT);
+        addTerms(terms, name, NAME_WEIGHT);
+        return terms;
+    }
+
+    private void addTerms(Map<String, Integer> terms, String text, int weight) {
+        if (text == null) {
+            return;
+        }
+        // Trọng số là các bit riêng biệt nên OR = tổng trọng số các field chứa từ (mỗi field tính 1 lần)
+        for (String token : VietnameseTextUtil.tokenize(text)) {
+            terms.merge(token, weight, (a, b) -> a | b);
+        }
+    }
+
+    private void indexDocument(Long productId, Map<String, Integer> terms, boolean active) {
+        Integer existing = ordinals.get(productId);
+        int doc;
+        if (existing != null) {
+            doc = existing;
+            for (String term : documentTerms[doc]) {
+                PostingList list = postings.get(term);
+                list.remove(doc);
+                if (list.size == 0) {
+                    postings.remove(term);
+                }
+            }
+        } else {
+            doc = documentCount++;
+            if (doc == productIds.length) {
+                productIds = Arrays.copyOf(productIds, doc * 2);
+                documentTerms = Arrays.copyOf(documentTerms, doc * 2);
+            }
+            productIds[doc] = productId;
+            ordinals.put(productId, doc);
+            liveDocuments++;
+        }
+
+        String[] termArray = terms.keySet().toArray(new String[0]);
+        for (String term : termArray) {
+            postings.computeIfAbsent(term, k -> new PostingList()).add(doc, terms.get(term));
+        }
+        documentTerms[doc] = termArray;
+        activeDocuments.set(doc, active);
+    }
+
+    /**
+     * Danh sách (ordinal, trọng số) sắp xếp tăng dần theo ordinal
+     */
+    private static class PostingList {
+        private int[] documents = new int[4];
+        private int[] weights = new int[4];
+        private int size = 0;
+
+        void add(int doc, int weight) {
+            int pos = Arrays.binarySearch(documents, 0, size, doc);
+            if (pos >= 0) {
+                weights[pos] = weight;
+                return;
+            }
+            pos = -pos - 1;
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            System.arraycopy(documents, pos, documents, pos + 1, size - pos);
+            System.arraycopy(weights, pos, weights, pos + 1, size - pos);
+            documents[pos] = doc;
+            weights[pos] = weight;
+            size++;
+        }
+
+        void remove(int doc) {
+            int pos = Arrays.binarySearch(documents, 0, size, doc);
+            if (pos < 0) {
+                return;
+            }
+            System.arraycopy(documents, pos + 1, documents, pos, size - pos - 1);
+            System.arraycopy(weights, pos + 1, weights, pos, size - pos - 1);
+            size--;
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class SearchResult {
+        private final List<Long> productIds;
+        private final long total;
+    }
+}
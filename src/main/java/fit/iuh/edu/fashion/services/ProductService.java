@@ -1,20 +1,28 @@
 package fit.iuh.edu.fashion.services;
 
+import fit.iuh.edu.fashion.cache.CacheDependencyTracker;
+import fit.iuh.edu.fashion.dto.request.ProductFacetSearchRequest;
 import fit.iuh.edu.fashion.dto.request.ProductRequest;
 import fit.iuh.edu.fashion.dto.response.*;
 import fit.iuh.edu.fashion.models.*;
 import fit.iuh.edu.fashion.repositories.*;
+import fit.iuh.edu.fashion.utils.PageCursorUtil;
 import lombok.RequiredArgsConstructor;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -25,15 +33,19 @@ public class ProductService {
     private final BrandRepository brandRepository;
     private final CategoryRepository categoryRepository;
     private final UserRepository userRepository;
-    private final ProductReviewRepository productReviewRepository;
+    private final ProductRatingService productRatingService;
+    private final ProductListingService productListingService;
     private final ProductVariantRepository productVariantRepository;
     private final AuditService auditService;
+    private final CatalogStatisticsService catalogStatisticsService;
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductFacetIndex productFacetIndex;
+    private final CacheDependencyTracker cacheDependencyTracker;
 
     // KHÔNG cache Page objects - PageImpl không thể deserialize từ Redis
     @Transactional(readOnly = true)
     public Page<ProductResponse> getAllProducts(Pageable pageable) {
-        return productRepository.findAll(pageable)
-                .map(this::mapToProductResponse);
+        return productListingService.loadPage(productRepository.findPageIds(pageable));
     }
 
     @Cacheable(value = "products", key = "'id_' + #id")
@@ -52,28 +64,90 @@ public class ProductService {
         return mapToProductResponse(product);
     }
 
-    // KHÔNG cache Page objects
+    /**
+     * Phân trang keyset theo id (sản phẩm mới nhất trước) - không COUNT, không OFFSET
+     */
+    @Transactional(readOnly = true)
+    public CursorPageResponse<ProductResponse> scrollProducts(String cursor, int size) {
+        int pageSize = PageCursorUtil.clampSize(size);
+        PageCursorUtil.Cursor position = PageCursorUtil.decode(cursor);
+        Limit limit = Limit.of(pageSize + 1);
+        List<Long> ids = position == null
+                ? productRepository.findLatestIds(limit)
+                : productRepository.findIdsBefore(position.getId(), limit);
+        CursorPageResponse<Long> page = CursorPageResponse.of(ids, pageSize, PageCursorUtil::encode, Function.identity());
+        return CursorPageResponse.<ProductResponse>builder()
+                .content(productListingService.load(page.getContent()))
+                .size(page.getSize())
+                .hasNext(page.isHasNext())
+                .nextCursor(page.getNextCursor())
+                .build();
+    }
+
+    // KHÔNG cache Page objects - tìm trên chỉ mục trong bộ nhớ, DB chỉ load đúng trang kết quả
     @Transactional(readOnly = true)
     public Page<ProductResponse> searchProducts(String keyword, Pageable pageable) {
-        return productRepository.searchProducts(keyword, pageable)
-                .map(this::mapToProductResponse);
+        ProductSearchIndex.SearchResult result = productSearchIndex.search(
+                keyword, (int) pageable.getOffset(), pageable.getPageSize());
+        List<ProductResponse> content = productListingService.load(result.getProductIds());
+        return new PageImpl<>(content, pageable, result.getTotal());
+    }
+
+    /**
+     * Lọc facet trên bitmap trong bộ nhớ (thay cho searchComprehensive), kèm số đếm từng facet
+     */
+    @Transactional(readOnly = true)
+    public ProductFacetSearchResponse searchWithFacets(ProductFacetSearchRequest request, int page, int size) {
+        ProductFacetIndex.FacetQuery query = ProductFacetIndex.FacetQuery.builder()
+                .keyword(request.getKeyword())
+                .brandIds(request.getBrandIds())
+                .categoryIds(request.getCategoryIds())
+                .colorIds(request.getColorIds())
+                .sizeIds(request.getSizeIds())
+                .inStock(request.getInStock())
+                .priceBuckets(request.getPriceBuckets())
+                .build();
+        ProductFacetIndex.FacetResult result = productFacetIndex.search(query, page * size, size);
+
+        List<ProductResponse> content = productListingService.load(result.getProductIds());
+        return ProductFacetSearchResponse.builder()
+                .content(content)
+                .page(page)
+                .size(size)
+                .totalElements(result.getTotal())
+                .totalPages(size > 0 ? (int) Math.ceil((double) result.getTotal() / size) : 0)
+                .facets(result.getFacets())
+                .build();
+    }
+
+    /**
+     * Load products theo danh sách id, giữ nguyên thứ tự của danh sách
+     */
+    @Transactional(readOnly = true)
+    public List<Product> findAllByIdInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Product> byId = productRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        return ids.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 
     // KHÔNG cache Page objects
     @Transactional(readOnly = true)
     public Page<ProductResponse> getProductsByCategory(Long categoryId, Pageable pageable) {
-        return productRepository.findByCategory(categoryId, pageable)
-                .map(this::mapToProductResponse);
+        return productListingService.loadPage(productRepository.findPageIdsByCategory(categoryId, pageable));
     }
 
     // KHÔNG cache Page objects
     @Transactional(readOnly = true)
     public Page<ProductResponse> getProductsByBrand(Long brandId, Pageable pageable) {
-        return productRepository.findByBrand(brandId, pageable)
-                .map(this::mapToProductResponse);
+        return productListingService.loadPage(productRepository.findPageIdsByBrand(brandId, pageable));
     }
 
-    @CacheEvict(value = "products", allEntries = true)
     @Transactional
     public ProductResponse createProduct(ProductRequest request, Long userId) {
         User user = userRepository.findById(userId)
@@ -109,6 +183,8 @@ public class ProductService {
         }
 
         product = productRepository.save(product);
+        onProductChanged(product);
+        cacheDependencyTracker.invalidate(productCacheTags(product));
 
         // Audit log
         auditService.logAction("CREATE", "Product", product.getId(), null,
@@ -117,7 +193,6 @@ public class ProductService {
         return mapToProductResponse(product);
     }
 
-    @CacheEvict(value = "products", allEntries = true)
     @Transactional
     public ProductResponse updateProduct(Long id, ProductRequest request, Long userId) {
         Product product = productRepository.findById(id)
@@ -128,6 +203,8 @@ public class ProductService {
 
         // Capture old values for audit
         String oldValue = String.format("Name: %s, Active: %s", product.getName(), product.getIsActive());
+        // Brand/category cũ cũng phải xóa cache danh sách (sản phẩm rời khỏi brand/category đó)
+        List<String> cacheTags = productCacheTags(product);
 
         product.setName(request.getName());
         product.setSlug(request.getSlug());
@@ -158,6 +235,9 @@ public class ProductService {
         }
 
         product = productRepository.save(product);
+        onProductChanged(product);
+        cacheTags.addAll(productCacheTags(product));
+        cacheDependencyTracker.invalidate(cacheTags);
 
         // Audit log
         String newValue = String.format("Name: %s, Active: %s", product.getName(), product.getIsActive());
@@ -166,7 +246,6 @@ public class ProductService {
         return mapToProductResponse(product);
     }
 
-    @CacheEvict(value = "products", allEntries = true)
     @Transactional
     public void deleteProduct(Long id) {
         Product product = productRepository.findById(id)
@@ -175,6 +254,8 @@ public class ProductService {
         String oldValue = "Active: " + product.getIsActive();
         product.setIsActive(false);
         productRepository.save(product);
+        onProductChanged(product);
+        cacheDependencyTracker.invalidate(productCacheTags(product));
 
         // Audit log
         auditService.logAction("DELETE", "Product", product.getId(), oldValue, "Active: false");
@@ -227,6 +308,12 @@ public class ProductService {
         if (variant.getStock() <= 0 && variant.getIsActive()) {
             variant.setIsActive(false);
             productVariantRepository.save(variant);
+            catalogStatisticsService.onVariantSaved(variant);
+            productFacetIndex.onVariantSaved(variant);
+            cacheDependencyTracker.invalidate(
+                    CacheDependencyTracker.variant(variant.getId()),
+                    CacheDependencyTracker.product(variant.getProduct().getId()),
+                    CacheDependencyTracker.CATALOG);
 
             // Audit log
             auditService.logAction("AUTO_UPDATE", "ProductVariant", variant.getId(),
@@ -264,6 +351,8 @@ public class ProductService {
         if (allVariantsUnavailable && product.getIsActive()) {
             product.setIsActive(false);
             productRepository.save(product);
+            onProductChanged(product);
+            cacheDependencyTracker.invalidate(productCacheTags(product));
 
             // Audit log
             auditService.logAction("AUTO_UPDATE", "Product", product.getId(),
@@ -278,11 +367,38 @@ public class ProductService {
         }
     }
 
+    /**
+     * Product vừa lưu: cập nhật thống kê catalog, chỉ mục tìm kiếm và bitmap facet sau khi transaction commit
+     */
+    private void onProductChanged(Product product) {
+        catalogStatisticsService.onProductSaved(product);
+        productSearchIndex.onProductSaved(product);
+        productFacetIndex.onProductSaved(product);
+    }
+
+    /**
+     * Các tag cache phụ thuộc vào product: chính nó, danh sách theo brand/category chứa nó và cache tổng hợp catalog
+     */
+    private List<String> productCacheTags(Product product) {
+        List<String> tags = new ArrayList<>();
+        tags.add(CacheDependencyTracker.product(product.getId()));
+        tags.add(CacheDependencyTracker.CATALOG);
+        if (product.getBrand() != null) {
+            tags.add(CacheDependencyTracker.brandProducts(product.getBrand().getId()));
+        }
+        if (product.getCategories() != null) {
+            for (Category category : product.getCategories()) {
+                tags.add(CacheDependencyTracker.categoryProducts(category.getId()));
+            }
+        }
+        return tags;
+    }
+
     private ProductResponse mapToProductResponse(Product product) {
-        // Get rating statistics
-        Double averageRating = productReviewRepository.getAverageRatingByProductId(product.getId());
-        Long totalReviews = productReviewRepository.countByProductIdAndIsApprovedTrue(product.getId());
+        return mapToProductResponse(product, productRatingService.getSummary(product.getId()));
+    }
 
+    private ProductResponse mapToProductResponse(Product product, ProductRatingService.RatingSummary rating) {
         return ProductResponse.builder()
                 .id(product.getId())
                 .name(product.getName())
@@ -307,8 +423,9 @@ public class ProductService {
                             .map(this::mapToImageResponse)
                             .collect(Collectors.toList())
                         : List.of())
-                .averageRating(averageRating != null ? averageRating : 0.0)
-                .totalReviews(totalReviews != null ? totalReviews : 0L)
+                .averageRating(rating.getAverageRating())
+                .totalReviews(rating.getTotalReviews())
+                .ratingDistribution(rating.getDistribution())
                 .createdAt(product.getCreatedAt())
                 .updatedAt(product.getUpdatedAt())
                 .build();
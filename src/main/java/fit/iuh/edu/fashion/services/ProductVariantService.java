@@ -1,11 +1,12 @@
 package fit.iuh.edu.fashion.services;
 
+import fit.iuh.edu.fashion.cache.CacheDependencyTracker;
 import fit.iuh.edu.fashion.dto.request.ProductVariantRequest;
 import fit.iuh.edu.fashion.dto.response.*;
+import fit.iuh.edu.fashion.exception.BusinessException;
 import fit.iuh.edu.fashion.models.*;
 import fit.iuh.edu.fashion.repositories.*;
 import lombok.RequiredArgsConstructor;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -23,6 +24,10 @@ public class ProductVariantService {
     private final SizeRepository sizeRepository;
     private final AuditService auditService;
     private final ProductService productService;
+    private final CatalogStatisticsService catalogStatisticsService;
+    private final ProductFacetIndex productFacetIndex;
+    private final CacheDependencyTracker cacheDependencyTracker;
+    private final HotSkuLedger hotSkuLedger;
 
     @Cacheable(value = "productVariants", key = "'product_' + #productId")
     @Transactional(readOnly = true)
@@ -40,7 +45,6 @@ public class ProductVariantService {
         return mapToResponse(variant);
     }
 
-    @CacheEvict(value = {"productVariants", "products"}, allEntries = true)
     @Transactional
     public ProductVariantResponse createVariant(ProductVariantRequest request) {
         Product product = productRepository.findById(request.getProductId())
@@ -70,6 +74,9 @@ public class ProductVariantService {
         }
 
         variant = productVariantRepository.save(variant);
+        catalogStatisticsService.onVariantSaved(variant);
+        productFacetIndex.onVariantSaved(variant);
+        invalidateVariantCaches(variant);
 
         // Audit log
         auditService.logAction("CREATE", "ProductVariant", variant.getId(), null,
@@ -78,7 +85,6 @@ public class ProductVariantService {
         return mapToResponse(variant);
     }
 
-    @CacheEvict(value = {"productVariants", "products"}, allEntries = true)
     @Transactional
     public ProductVariantResponse updateVariant(Long id, ProductVariantRequest request) {
         ProductVariant variant = productVariantRepository.findById(id)
@@ -89,6 +95,9 @@ public class ProductVariantService {
                 variant.getSku(), variant.getPrice(), variant.getStock(), variant.getIsActive());
 
         int oldStock = variant.getStock();
+        if (oldStock != request.getStock() && hotSkuLedger.isHot(id)) {
+            throw new BusinessException("Variant đang ở chế độ hot SKU, tắt chế độ này trước khi sửa tồn kho");
+        }
 
         variant.setSku(request.getSku());
         variant.setPrice(request.getPrice());
@@ -111,6 +120,9 @@ public class ProductVariantService {
         }
 
         variant = productVariantRepository.save(variant);
+        catalogStatisticsService.onVariantSaved(variant);
+        productFacetIndex.onVariantSaved(variant);
+        invalidateVariantCaches(variant);
 
         // Check and update stock status if stock has changed
         if (oldStock != request.getStock()) {
@@ -125,7 +137,6 @@ public class ProductVariantService {
         return mapToResponse(variant);
     }
 
-    @CacheEvict(value = {"productVariants", "products"}, allEntries = true)
     @Transactional
     public void deleteVariant(Long id) {
         ProductVariant variant = productVariantRepository.findById(id)
@@ -134,11 +145,24 @@ public class ProductVariantService {
         String oldValue = String.format("Active: %s, Stock: %d", variant.getIsActive(), variant.getStock());
         variant.setIsActive(false);
         productVariantRepository.save(variant);
+        catalogStatisticsService.onVariantSaved(variant);
+        productFacetIndex.onVariantSaved(variant);
+        invalidateVariantCaches(variant);
 
         // Audit log
         auditService.logAction("DELETE", "ProductVariant", variant.getId(), oldValue, "Active: false");
     }
 
+    /**
+     * Chỉ xóa cache của variant, product chứa nó và các cache tổng hợp catalog (không allEntries)
+     */
+    private void invalidateVariantCaches(ProductVariant variant) {
+        cacheDependencyTracker.invalidate(
+                CacheDependencyTracker.variant(variant.getId()),
+                CacheDependencyTracker.product(variant.getProduct().getId()),
+                CacheDependencyTracker.CATALOG);
+    }
+
     private ProductVariantResponse mapToResponse(ProductVariant variant) {
         return ProductVariantResponse.builder()
                 .id(variant.getId())
@@ -0,0 +1,194 @@
+package fit.iuh.edu.fashion.services;
+
+import fit.iuh.edu.fashion.cache.SimilarityIndex;
+import fit.iuh.edu.fashion.dto.AiChatResponse;
+import fit.iuh.edu.fashion.dto.UserIntentDTO;
+import fit.iuh.edu.fashion.utils.VietnameseTextUtil;
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache câu trả lời AI theo nghĩa, đứng sau cache theo nguyên văn câu hỏi ("chat_" + message):
+ * - Tầng intent: câu hỏi tìm / gợi ý / so sánh sản phẩm được trả lời từ các tiêu chí UserIntentAnalyzer trích ra,
+ *   nên key là intent đã chuẩn hóa (loại, loại sản phẩm, danh mục, thương hiệu, màu, size, khoảng giá,
+ *   giới tính, phong cách). Lưu trong "aiResponses" (Redis) với prefix "intent_", dùng chung giữa các node.
+ * - Tầng tương tự: câu hỏi tự do được trả lời từ nguyên văn, nên tra index vector cục bộ theo độ giống
+ *   (cosine >= app.ai.semantic-cache.similarity-threshold), chỉ so với câu đã hỏi cùng system prompt.
+ * Chỉ câu trả lời sinh thành công từ model được lưu. Đếm hit / miss của từng tầng trên node hiện tại.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class SemanticResponseCache {
+
+    static final String CACHE_NAME = "aiResponses";
+    private static final String INTENT_PREFIX = "intent_";
+
+    private static final Set<UserIntentDTO.IntentType> INTENT_TYPES = Set.of(
+            UserIntentDTO.IntentType.PRODUCT_SEARCH,
+            UserIntentDTO.IntentType.PRODUCT_RECOMMENDATION,
+            UserIntentDTO.IntentType.PRODUCT_COMPARE);
+
+    private final CacheManager cacheManager;
+
+    @Value("${app.ai.semantic-cache.similarity-threshold:0.88}")
+    private double similarityThreshold = 0.88;
+
+    @Value("${app.ai.semantic-cache.max-entries:2000}")
+    private int maxEntries = 2000;
+
+    // Cùng TTL với "aiResponses"
+    @Value("${app.ai.semantic-cache.ttl-minutes:30}")
+    private long ttlMinutes = 30;
+
+    private SimilarityIndex<AiChatResponse> index;
+
+    private final TierStatistics intentStatistics = new TierStatistics();
+    private final TierStatistics similarStatistics = new TierStatistics();
+
+    @PostConstruct
+    void initIndex() {
+        index = new SimilarityIndex<>(maxEntries, Duration.ofMinutes(ttlMinutes));
+    }
+
+    /**
+     * Key tra cứu: intent (tầng intent) hoặc scope + câu hỏi (tầng tương tự)
+     */
+    public record Key(String intent, int scope, String text) {
+    }
+
+    /**
+     * Key theo intent, null nếu câu hỏi không thuộc loại tìm / gợi ý / so sánh hoặc không có tiêu chí nào
+     * @param limit số sản phẩm tối đa khách yêu cầu (cũng đổi danh sách gửi cho model)
+     */
+    public Key intentKey(UserIntentDTO intent, int limit) {
+        if (!INTENT_TYPES.contains(intent.getIntentType()) || !intent.hasSearchCriteria()) {
+            return null;
+        }
+        UserIntentDTO.PriceRange priceRange = intent.getPriceRange();
+        String key = String.join("|",
+                intent.getIntentType().name(),
+                fold(intent.getProductType()),
+                fold(intent.getCategory()),
+                fold(intent.getBrand()),
+                foldAll(intent.getColors()),
+                foldAll(intent.getSizes()),
+                priceRange != null ? priceRange.getMin() + "-" + priceRange.getMax() : "",
+                fold(intent.getGender()),
+                fold(intent.getStyle()),
+                String.valueOf(limit));
+        return new Key(key, 0, null);
+    }
+
+    /**
+     * Key cho câu hỏi tự do: câu trả lời phụ thuộc system prompt (prompt catalog đổi khi catalog đổi)
+     */
+    public Key textKey(String systemPrompt, String message) {
+        return new Key(null, systemPrompt != null ? systemPrompt.hashCode() : 0, message);
+    }
+
+    public AiChatResponse get(Key key) {
+        if (key.intent() != null) {
+            AiChatResponse cached = readIntent(key.intent());
+            intentStatistics.record(cached != null);
+            return cached;
+        }
+        SimilarityIndex.Match<AiChatResponse> match = index.nearest(key.scope(), key.text(), similarityThreshold);
+        similarStatistics.record(match != null);
+        if (match == null) {
+            return null;
+        }
+        log.debug("Semantic cache hit ({}): '{}' ~ '{}'", match.similarity(), key.text(), match.text());
+        return match.value();
+    }
+
+    public void put(Key key, AiChatResponse response) {
+        if (key == null) {
+            return;
+        }
+        if (key.intent() == null) {
+            index.put(key.scope(), key.text(), response);
+            return;
+        }
+        try {
+            Cache cache = cacheManager.getCache(CACHE_NAME);
+            if (cache != null) {
+                cache.put(INTENT_PREFIX + key.intent(), response);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Cannot write intent response cache: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Thống kê hai tầng trên node hiện tại: "intent" và "similar"
+     */
+    public List<Statistics> getStatistics() {
+        return List.of(intentStatistics.snapshot("intent", -1), similarStatistics.snapshot("similar", index.size()));
+    }
+
+    private AiChatResponse readIntent(String intentKey) {
+        try {
+            Cache cache = cacheManager.getCache(CACHE_NAME);
+            return cache != null ? cache.get(INTENT_PREFIX + intentKey, AiChatResponse.class) : null;
+        } catch (RuntimeException e) {
+            log.warn("Cannot read intent response cache: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static String fold(String value) {
+        return value != null ? VietnameseTextUtil.fold(value) : "";
+    }
+
+    private static String foldAll(Collection<String> values) {
+        if (values == null) {
+            return "";
+        }
+        // Không phụ thuộc thứ tự và trùng lặp ("đen", "den" là một màu)
+        TreeSet<String> folded = new TreeSet<>();
+        values.forEach(value -> folded.add(VietnameseTextUtil.fold(value)));
+        return String.join(",", folded);
+    }
+
+    private static class TierStatistics {
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+
+        void record(boolean hit) {
+            (hit ? hits : misses).incrementAndGet();
+        }
+
+        Statistics snapshot(String tier, long size) {
+            long hitCount = hits.get();
+            long missCount = misses.get();
+            long total = hitCount + missCount;
+            return new Statistics(tier, size, hitCount, missCount, total == 0 ? 0 : (double) hitCount / total);
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Statistics {
+        private final String tier;
+        // Số entry trên node (-1: entry nằm trong Redis)
+        private final long size;
+        private final long hitCount;
+        private final long missCount;
+        private final double hitRate;
+    }
+}
@@ -0,0 +1,136 @@
+package fit.iuh.edu.fashion.services;
+
+import fit.iuh.edu.fashion.models.ProductVariant;
+import fit.iuh.edu.fashion.repositories.ProductVariantRepository;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Giữ hàng (trừ tồn kho) cho cả đơn hàng theo lô thay vì từng dòng:
+ * 1. Khóa mọi variant của đơn bằng MỘT câu SELECT ... FOR UPDATE, theo thứ tự id tăng dần -
+ *    hai đơn có cùng SKU luôn khóa theo cùng thứ tự nên không thể deadlock với nhau
+ * 2. Kiểm tra tồn kho trên các dòng đã khóa, trừ tất cả bằng một JDBC batch
+ * 3. Load variant (kèm product/color/size) sau khi trừ bằng một query để dựng order item
+ * Số round trip cố định (3) bất kể đơn có bao nhiêu dòng.
+ * Variant ở chế độ hot SKU không khóa DB mà giữ hàng qua HotSkuLedger.
+ */
+@Service
+@RequiredArgsConstructor
+public class StockReservationService {
+
+    private static final String DECREASE_STOCK_SQL =
+            "UPDATE product_variants SET stock = stock - ?, updated_at = ? WHERE id = ? AND stock >= ?";
+
+    private final ProductVariantRepository productVariantRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final HotSkuLedger hotSkuLedger;
+
+    /**
+     * Trừ tồn kho cho các variant trong cùng transaction của đơn hàng
+     *
+     * @param quantities variantId -> số lượng (các dòng trùng variant đã được cộng dồn)
+     */
+    @Transactional
+    public Reservation reserve(Map<Long, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return new Reservation(Map.of(), Map.of());
+        }
+        SortedMap<Long, Integer> all = new TreeMap<>(quantities);
+        SortedMap<Long, Integer> hot = new TreeMap<>();
+        SortedMap<Long, Integer> sorted = new TreeMap<>();
+        all.forEach((variantId, quantity) -> (hotSkuLedger.isHot(variantId) ? hot : sorted).put(variantId, quantity));
+        if (!hot.isEmpty()) {
+            hotSkuLedger.reserve(hot);
+        }
+        Map<Long, Integer> lockedStock = sorted.isEmpty() ? Map.of() : lockAndDecrease(sorted);
+
+        Map<Long, ProductVariant> variants = new HashMap<>();
+        for (ProductVariant variant : productVariantRepository.findAllWithDetailsByIdIn(all.keySet())) {
+            // Variant đã nằm trong persistence context từ trước thì giữ giá trị cũ - đồng bộ lại tồn kho sau khi trừ
+            // (hot SKU: tồn kho DB chỉ đổi khi ledger flush, không đụng vào)
+            if (lockedStock.containsKey(variant.getId())) {
+                variant.setStock(lockedStock.get(variant.getId()) - sorted.get(variant.getId()));
+            }
+            variants.put(variant.getId(), variant);
+        }
+        for (Long variantId : all.keySet()) {
+            if (!variants.containsKey(variantId)) {
+                throw new RuntimeException("Product variant not found: " + variantId);
+            }
+        }
+        return new Reservation(variants, hot);
+    }
+
+    /**
+     * Khóa các dòng theo thứ tự id, kiểm tra và trừ tồn kho bằng một batch
+     *
+     * @return variantId -> tồn kho trước khi trừ
+     */
+    private Map<Long, Integer> lockAndDecrease(SortedMap<Long, Integer> sorted) {
+        Map<Long, Integer> lockedStock = new HashMap<>();
+        for (Object[] row : productVariantRepository.lockStockRows(sorted.keySet())) {
+            lockedStock.put(((Number) row[0]).longValue(), ((Number) row[1]).intValue());
+        }
+        for (Map.Entry<Long, Integer> entry : sorted.entrySet()) {
+            Integer available = lockedStock.get(entry.getKey());
+            if (available == null) {
+                throw new RuntimeException("Product variant not found: " + entry.getKey());
+            }
+            if (available < entry.getValue()) {
+                throw insufficientStock(entry.getKey(), available, entry.getValue());
+            }
+        }
+
+        List<Map.Entry<Long, Integer>> lines = new ArrayList<>(sorted.entrySet());
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        int[] updated = jdbcTemplate.batchUpdate(DECREASE_STOCK_SQL, lines, lines.size(), (ps, line) -> {
+            ps.setInt(1, line.getValue());
+            ps.setTimestamp(2, now);
+            ps.setLong(3, line.getKey());
+            ps.setInt(4, line.getValue());
+        })[0];
+        for (int i = 0; i < updated.length; i++) {
+            // Dòng đã bị khóa nên không thể thiếu hàng ở bước này, trừ khi driver không trả số dòng
+            if (updated[i] == 0) {
+                Map.Entry<Long, Integer> line = lines.get(i);
+                throw insufficientStock(line.getKey(), lockedStock.get(line.getKey()), line.getValue());
+            }
+            if (updated[i] != Statement.SUCCESS_NO_INFO && updated[i] != 1) {
+                throw new IllegalStateException("Unexpected update count " + updated[i] + " for variant " + lines.get(i).getKey());
+            }
+        }
+
+        return lockedStock;
+    }
+
+    private RuntimeException insufficientStock(Long variantId, int available, int requested) {
+        String productName = productVariantRepository.findById(variantId)
+                .map(v -> v.getProduct().getName())
+                .orElse(String.valueOf(variantId));
+        return new RuntimeException("Insufficient stock for product: " + productName +
+                " (Available: " + available + ", Requested: " + requested + ")");
+    }
+
+    /**
+     * Kết quả giữ hàng: variant (kèm product/color/size) và các dòng đi qua hot SKU ledger
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class Reservation {
+        private final Map<Long, ProductVariant> variants;
+        // variantId -> số lượng của các variant hot SKU (tồn kho và inventory movement do ledger ghi)
+        private final Map<Long, Integer> hotQuantities;
+
+        public boolean isHot(Long variantId) {
+            return hotQuantities.containsKey(variantId);
+        }
+    }
+}
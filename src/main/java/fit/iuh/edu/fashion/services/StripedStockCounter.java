@@ -0,0 +1,79 @@
+package fit.iuh.edu.fashion.services;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Tồn kho chia thành nhiều stripe để các luồng trừ kho CAS trên các ô nhớ khác nhau thay vì tranh một biến.
+ * Mỗi stripe cách nhau một cache line (16 int) để tránh false sharing.
+ * take() lấy từ stripe của luồng trước, thiếu thì gom thêm từ các stripe khác; không đủ thì trả lại và thất bại,
+ * nên tổng tồn kho không bao giờ âm. Khi gần hết hàng, một lượt take có thể thất bại dù lượt khác đang trả lại hàng.
+ */
+class StripedStockCounter {
+
+    private static final int PADDING = 16;
+
+    private final AtomicIntegerArray cells;
+    private final int stripes;
+
+    StripedStockCounter(int initial) {
+        this(initial, Math.min(Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors())), 16));
+    }
+
+    StripedStockCounter(int initial, int stripes) {
+        this.stripes = stripes;
+        this.cells = new AtomicIntegerArray(stripes * PADDING);
+        int share = initial / stripes;
+        for (int i = 0; i < stripes; i++) {
+            cells.set(i * PADDING, share + (i < initial % stripes ? 1 : 0));
+        }
+    }
+
+    /**
+     * Trừ quantity nếu đủ hàng
+     */
+    boolean take(int quantity) {
+        int start = ThreadLocalRandom.current().nextInt(stripes);
+        int[] taken = new int[stripes];
+        int remaining = quantity;
+        for (int i = 0; i < stripes && remaining > 0; i++) {
+            int stripe = (start + i) % stripes;
+            int index = stripe * PADDING;
+            while (remaining > 0) {
+                int current = cells.get(index);
+                if (current <= 0) {
+                    break;
+                }
+                int grab = Math.min(current, remaining);
+                if (cells.compareAndSet(index, current, current - grab)) {
+                    taken[stripe] += grab;
+                    remaining -= grab;
+                }
+            }
+        }
+        if (remaining == 0) {
+            return true;
+        }
+        for (int stripe = 0; stripe < stripes; stripe++) {
+            if (taken[stripe] > 0) {
+                cells.addAndGet(stripe * PADDING, taken[stripe]);
+            }
+        }
+        return false;
+    }
+
+    void add(int quantity) {
+        cells.addAndGet(ThreadLocalRandom.current().nextInt(stripes) * PADDING, quantity);
+    }
+
+    /**
+     * Tổng các stripe - không phải snapshot nguyên tử khi đang có luồng trừ kho
+     */
+    int sum() {
+        int sum = 0;
+        for (int i = 0; i < stripes; i++) {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+}
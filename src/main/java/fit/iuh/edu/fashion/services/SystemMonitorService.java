@@ -1,9 +1,13 @@
 package fit.iuh.edu.fashion.services;
 
+import fit.iuh.edu.fashion.cache.RefreshAheadCache;
+import fit.iuh.edu.fashion.cache.TwoLevelCacheManager;
+import fit.iuh.edu.fashion.dto.response.CacheStatsResponse;
 import fit.iuh.edu.fashion.dto.response.SystemHealthResponse;
 import fit.iuh.edu.fashion.repositories.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
@@ -12,7 +16,10 @@ import java.lang.management.MemoryMXBean;
 import java.lang.management.OperatingSystemMXBean;
 import java.lang.management.ThreadMXBean;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 @Service
@@ -25,6 +32,9 @@ public class SystemMonitorService {
     private final ProductRepository productRepository;
     private final AuditLogRepository auditLogRepository;
     private final PaymentRepository paymentRepository;
+    private final CacheManager cacheManager;
+    private final RefreshAheadCache refreshAheadCache;
+    private final SemanticResponseCache semanticResponseCache;
 
     private final long startTime = System.currentTimeMillis();
 
@@ -127,5 +137,43 @@ public class SystemMonitorService {
                     .build();
         }
     }
-}
 
+    /**
+     * Thống kê hit/miss của L1 near-cache, refresh-ahead và cache AI theo nghĩa trên node hiện tại
+     */
+    public List<CacheStatsResponse> getCacheStatistics() {
+        Map<String, CacheStatsResponse> result = new LinkedHashMap<>();
+        if (cacheManager instanceof TwoLevelCacheManager twoLevelCacheManager) {
+            twoLevelCacheManager.getNearCacheStatistics().forEach((name, stats) -> result.put(name,
+                    CacheStatsResponse.builder()
+                            .cacheName(name)
+                            .l1Size(stats.getSize())
+                            .l1HitCount(stats.getHitCount())
+                            .l1MissCount(stats.getMissCount())
+                            .l1HitRate(stats.getHitRate())
+                            .l1EvictionCount(stats.getEvictionCount())
+                            .build()));
+        }
+        refreshAheadCache.getStatistics().forEach((name, stats) -> {
+            CacheStatsResponse response = result.computeIfAbsent(name,
+                    n -> CacheStatsResponse.builder().cacheName(n).build());
+            response.setRefreshAheadRequests(stats.getRequests());
+            response.setRefreshAheadLoads(stats.getLoads());
+            response.setBackgroundRefreshes(stats.getRefreshes());
+            response.setCoalescedCallers(stats.getCoalesced());
+            response.setStaleServed(stats.getStaleServed());
+            response.setRefreshFailures(stats.getFailures());
+        });
+        semanticResponseCache.getStatistics().forEach(stats -> {
+            String name = SemanticResponseCache.CACHE_NAME + "." + stats.getTier();
+            result.put(name, CacheStatsResponse.builder()
+                    .cacheName(name)
+                    .semanticSize(stats.getSize())
+                    .semanticHitCount(stats.getHitCount())
+                    .semanticMissCount(stats.getMissCount())
+                    .semanticHitRate(stats.getHitRate())
+                    .build());
+        });
+        return new ArrayList<>(result.values());
+    }
+}
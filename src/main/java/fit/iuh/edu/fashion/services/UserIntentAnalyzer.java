@@ -1,29 +1,118 @@
 package fit.iuh.edu.fashion.services;
 
 import fit.iuh.edu.fashion.dto.UserIntentDTO;
-import fit.iuh.edu.fashion.models.Category;
-import fit.iuh.edu.fashion.repositories.BrandRepository;
-import fit.iuh.edu.fashion.repositories.CategoryRepository;
+import fit.iuh.edu.fashion.utils.KeywordAutomaton;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 /**
  * Service phân tích ý định người dùng từ câu hỏi tự nhiên
  * Phát hiện: loại sản phẩm, danh mục, thương hiệu, giá, màu sắc, kích thước, v.v.
+ * Mọi bộ từ khóa (intent, loại sản phẩm, màu, phong cách, giới tính, size, giá, độ ưu tiên) được compile
+ * một lần thành KeywordAutomaton khi load class; mỗi câu chỉ quét automaton một lượt rồi tra kết quả theo nhóm.
+ * Khớp theo nghĩa String.contains trên câu đã bỏ dấu, như khi so từng từ khóa.
  */
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class UserIntentAnalyzer {
 
-    private final CategoryRepository categoryRepository;
-    private final BrandRepository brandRepository;
+    // Các nhóm từ khóa của KEYWORDS, id nhóm là thứ tự đăng ký
+    private static final List<String[]> KEYWORD_GROUPS = new ArrayList<>();
+
+    // Loại intent, theo thứ tự ưu tiên của detectIntentType
+    private static final int SIZE_GUIDE = group("size", "co", "cỡ", "kich thuoc", "kích thước", "do size", "đo size",
+            "chon size", "chọn size", "huong dan size", "hướng dẫn size",
+            "bang size", "bảng size", "tu van size", "tư vấn size",
+            "size nao", "size nào", "mac size", "mặc size", "dung size", "đúng size");
+    private static final int OUTFIT = group("phoi do", "phối đồ", "mix do", "mix đồ", "ket hop", "kết hợp",
+            "cach mac", "cách mặc", "mac the nao", "mặc thế nào", "mac gi", "mặc gì",
+            "di lam", "đi làm", "di choi", "đi chơi", "di tiec", "đi tiệc",
+            "outfit", "look", "style nao", "style nào", "phong cach", "phong cách");
+    private static final int SHOW_PRODUCTS = group("san pham", "sản phẩm", "product", "xem", "show", "hien thi", "hiển thị");
+    private static final int FIND = group("tim", "tìm", "find", "search", "cho toi", "cho tôi", "cho minh", "cho mình",
+            "muon", "muốn", "can", "cần", "co", "có");
+    private static final int COMPARE = group("so sanh", "so sánh", "compare", "khac nhau", "khác nhau", "giong", "giống",
+            "tuong tu", "tương tự");
+    private static final int RECOMMEND = group("nen mua", "nên mua", "nen chon", "nên chọn", "goi y san pham",
+            "gợi ý sản phẩm", "recommend product");
+    private static final int QUESTION = group("the nao", "thế nào", "how", "la gi", "là gì", "what", "tai sao", "tại sao",
+            "why", "khi nao", "khi nào", "when", "tu van", "tư vấn", "goi y", "gợi ý", "huong dan", "hướng dẫn");
+
+    // Loại sản phẩm: loại khai báo trước được chọn khi câu khớp nhiều loại
+    private static final String[] PRODUCT_TYPES = {"áo", "quần", "váy", "giày", "túi", "phụ kiện"};
+    private static final int[] PRODUCT_TYPE_GROUPS = {
+            group("áo", "shirt", "ao thun", "ao khoac", "ao so mi", "ao len"),
+            group("quần", "pants", "quan jean", "quan tay", "quan short", "quan dai"),
+            group("váy", "vay", "dress", "dam", "đầm"),
+            group("giày", "giay", "shoes", "sneaker", "boot", "dep"),
+            group("túi", "tui", "bag", "balo", "ba lo", "backpack"),
+            group("phu kien", "accessory", "mũ", "nón", "kính", "that lung", "vi")
+    };
+
+    // Mỗi màu một nhóm để giữ thứ tự của danh sách
+    private static final String[] COLORS = {
+            "đen", "trắng", "đỏ", "xanh", "vàng", "hồng", "tím", "cam", "nâu", "xám",
+            "black", "white", "red", "blue", "yellow", "pink", "purple", "orange", "brown", "gray",
+            "den", "trang", "do", "vang", "hong", "tim", "nau", "xam"
+    };
+    private static final int[] COLOR_GROUPS = Arrays.stream(COLORS).mapToInt(UserIntentAnalyzer::group).toArray();
+
+    private static final int SIZE_SMALL = group("size nho", "size nhỏ", "small");
+    private static final int SIZE_MEDIUM = group("size vua", "medium");
+    private static final int SIZE_LARGE = group("size lon", "size lớn", "large");
+
+    private static final int PRICE_CHEAP = group("rẻ", "re", "giá rẻ", "cheap", "phu hop", "phù hợp");
+    private static final int PRICE_MIDDLE = group("tầm trung", "tam trung", "medium");
+    private static final int PRICE_PREMIUM = group("cao cấp", "cao cap", "luxury", "sang", "đắt", "dat");
+    private static final int PRICE_UNDER = group("dưới", "duoi", "under", "below", "tối đa", "toi da", "max");
+    private static final int PRICE_OVER = group("trên", "tren", "above", "over", "từ", "tu", "from");
+
+    private static final int MALE = group("nam", "man", "men", "boy", "anh", "chàng");
+    private static final int FEMALE = group("nữ", "nu", "woman", "women", "girl", "chị", "cô");
+    private static final int UNISEX = group("unisex", "cả nam và nữ", "ca nam va nu");
+
+    // Phong cách: phong cách khai báo trước được chọn khi câu khớp nhiều phong cách
+    private static final String[] STYLES = {"Thể thao", "Công sở", "Dạo phố", "Dự tiệc", "Vintage"};
+    private static final int[] STYLE_GROUPS = {
+            group("the thao", "sport", "gym", "chạy", "chay"),
+            group("cong so", "office", "formal", "lịch sự", "lich su"),
+            group("dao pho", "casual", "street", "đi chơi", "di choi"),
+            group("du tiec", "party", "event", "sự kiện", "su kien"),
+            group("vintage", "retro", "cổ điển", "co dien")
+    };
+
+    // Tiêu chí ưu tiên: từ khóa nằm trong một từ của câu
+    private static final String[] PRIORITY_CRITERIA = {"color", "price", "size"};
+    private static final int[] PRIORITY_GROUPS = {
+            group("màu", "mau", "color"),
+            group("giá", "gia", "price"),
+            group("size", "cỡ", "co")
+    };
+
+    private static final KeywordAutomaton KEYWORDS = KeywordAutomaton.compile(KEYWORD_GROUPS);
+
+    // Cùng cách tách từ với String.split("\\s+")
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final Set<String> SIZE_TOKENS = Set.of("xs", "s", "m", "l", "xl", "xxl", "xxxl");
+
+    private static final Set<String> ACTION_WORDS = Set.of("tim", "tìm", "find", "search", "muon", "muốn", "can", "cần",
+            "cho", "show", "xem", "hien", "hiển", "thi", "có", "co");
+
+    private static final Set<String> STOP_WORDS = Set.of("the", "a", "an", "and", "or", "but", "in", "on", "at", "to", "for",
+            "của", "cua", "và", "va", "hoặc", "hoac", "với", "voi", "cho", "từ", "tu");
+
+    // Ký tự có dấu -> ký tự không dấu (0: giữ nguyên)
+    private static final char[] VIETNAMESE_FOLD = foldTable(new String[]{
+            "áàảãạăắằẳẵặâấầẩẫậ", "éèẻẽẹêếềểễệ", "íìỉĩị", "óòỏõọôốồổỗộơớờởỡợ", "úùủũụưứừửữự", "ýỳỷỹỵ", "đ"
+    }, "aeiouyd");
+
+    private final CatalogDictionary catalogDictionary;
 
     /**
      * Phân tích ý định người dùng từ câu hỏi
@@ -32,6 +121,9 @@ public class UserIntentAnalyzer {
         log.info("Analyzing user intent for: {}", userMessage);
 
         String normalized = normalizeVietnamese(userMessage.toLowerCase());
+        KeywordScan scan = new KeywordScan();
+        KEYWORDS.scan(normalized, scan);
+        String[] words = WHITESPACE.split(normalized);
 
         UserIntentDTO intent = UserIntentDTO.builder()
                 .originalMessage(userMessage)
@@ -39,25 +131,25 @@ public class UserIntentAnalyzer {
                 .build();
 
         // 1. Phát hiện loại intent
-        intent.setIntentType(detectIntentType(normalized));
+        intent.setIntentType(detectIntentType(scan));
 
         // 2. Trích xuất thông tin sản phẩm
-        intent.setProductType(extractProductType(normalized));
+        intent.setProductType(extractProductType(scan));
         intent.setCategory(extractCategory(normalized));
         intent.setBrand(extractBrand(normalized));
 
         // 3. Trích xuất thuộc tính
-        intent.setColors(extractColors(normalized));
-        intent.setSizes(extractSizes(normalized));
-        intent.setPriceRange(extractPriceRange(normalized));
-        intent.setGender(extractGender(normalized));
-        intent.setStyle(extractStyle(normalized));
+        intent.setColors(extractColors(scan));
+        intent.setSizes(extractSizes(normalized, scan));
+        intent.setPriceRange(extractPriceRange(normalized, scan));
+        intent.setGender(extractGender(scan));
+        intent.setStyle(extractStyle(scan));
 
         // 4. Trích xuất từ khóa tìm kiếm
-        intent.setSearchKeywords(extractSearchKeywords(normalized, intent));
+        intent.setSearchKeywords(extractSearchKeywords(words, intent));
 
         // 5. Xác định độ ưu tiên các tiêu chí
-        intent.setPriority(determinePriority(normalized));
+        intent.setPriority(determinePriority(normalized, words, scan));
 
         log.info("Intent analysis result: {}", intent);
 
@@ -67,46 +159,39 @@ public class UserIntentAnalyzer {
     /**
      * Phát hiện loại ý định chính
      */
-    private UserIntentDTO.IntentType detectIntentType(String message) {
+    private UserIntentDTO.IntentType detectIntentType(KeywordScan scan) {
         // Hỏi về size / tư vấn size (ưu tiên cao nhất)
-        if (containsAny(message, "size", "co", "cỡ", "kich thuoc", "kích thước", "do size", "đo size",
-                        "chon size", "chọn size", "huong dan size", "hướng dẫn size",
-                        "bang size", "bảng size", "tu van size", "tư vấn size",
-                        "size nao", "size nào", "mac size", "mặc size", "dung size", "đúng size")) {
+        if (scan.has(SIZE_GUIDE)) {
             return UserIntentDTO.IntentType.SIZE_GUIDE;
         }
 
         // Hỏi về phối đồ, mix đồ, cách kết hợp (ưu tiên cao)
-        if (containsAny(message, "phoi do", "phối đồ", "mix do", "mix đồ", "ket hop", "kết hợp",
-                        "cach mac", "cách mặc", "mac the nao", "mặc thế nào", "mac gi", "mặc gì",
-                        "di lam", "đi làm", "di choi", "đi chơi", "di tiec", "đi tiệc",
-                        "outfit", "look", "style nao", "style nào", "phong cach", "phong cách")) {
+        if (scan.has(OUTFIT)) {
             return UserIntentDTO.IntentType.INFORMATION_QUERY;
         }
 
         // Xem sản phẩm (mới nhất, bán chạy, trending, hot...)
-        if (containsAny(message, "san pham", "sản phẩm", "product", "xem", "show", "hien thi", "hiển thị")) {
+        if (scan.has(SHOW_PRODUCTS)) {
             return UserIntentDTO.IntentType.PRODUCT_SEARCH;
         }
 
         // Tìm kiếm sản phẩm
-        if (containsAny(message, "tim", "tìm", "find", "search", "cho toi", "cho tôi", "cho minh", "cho mình", "muon", "muốn", "can", "cần", "co", "có")) {
+        if (scan.has(FIND)) {
             return UserIntentDTO.IntentType.PRODUCT_SEARCH;
         }
 
         // So sánh sản phẩm
-        if (containsAny(message, "so sanh", "so sánh", "compare", "khac nhau", "khác nhau", "giong", "giống", "tuong tu", "tương tự")) {
+        if (scan.has(COMPARE)) {
             return UserIntentDTO.IntentType.PRODUCT_COMPARE;
         }
 
         // Tư vấn mua hàng (chỉ khi có từ khóa sản phẩm cụ thể)
-        if (containsAny(message, "nen mua", "nên mua", "nen chon", "nên chọn", "goi y san pham", "gợi ý sản phẩm", "recommend product")) {
+        if (scan.has(RECOMMEND)) {
             return UserIntentDTO.IntentType.PRODUCT_RECOMMENDATION;
         }
 
         // Hỏi thông tin
-        if (containsAny(message, "the nao", "thế nào", "how", "la gi", "là gì", "what", "tai sao", "tại sao", "why", "khi nao", "khi nào", "when",
-                        "tu van", "tư vấn", "goi y", "gợi ý", "huong dan", "hướng dẫn")) {
+        if (scan.has(QUESTION)) {
             return UserIntentDTO.IntentType.INFORMATION_QUERY;
         }
 
@@ -117,19 +202,10 @@ public class UserIntentAnalyzer {
     /**
      * Trích xuất loại sản phẩm chính
      */
-    private String extractProductType(String message) {
-        Map<String, String[]> productTypes = Map.of(
-            "áo", new String[]{"áo", "shirt", "ao thun", "ao khoac", "ao so mi", "ao len"},
-            "quần", new String[]{"quần", "pants", "quan jean", "quan tay", "quan short", "quan dai"},
-            "váy", new String[]{"váy", "vay", "dress", "dam", "đầm"},
-            "giày", new String[]{"giày", "giay", "shoes", "sneaker", "boot", "dep"},
-            "túi", new String[]{"túi", "tui", "bag", "balo", "ba lo", "backpack"},
-            "phụ kiện", new String[]{"phu kien", "accessory", "mũ", "nón", "kính", "that lung", "vi"}
-        );
-
-        for (Map.Entry<String, String[]> entry : productTypes.entrySet()) {
-            if (containsAny(message, entry.getValue())) {
-                return entry.getKey();
+    private String extractProductType(KeywordScan scan) {
+        for (int i = 0; i < PRODUCT_TYPES.length; i++) {
+            if (scan.has(PRODUCT_TYPE_GROUPS[i])) {
+                return PRODUCT_TYPES[i];
             }
         }
 
@@ -137,53 +213,28 @@ public class UserIntentAnalyzer {
     }
 
     /**
-     * Trích xuất danh mục từ database
+     * Trích xuất danh mục (tên dài nhất có trong câu)
      */
     private String extractCategory(String message) {
-        List<Category> allCategories = categoryRepository.findAll();
-
-        for (Category category : allCategories) {
-            String catName = normalizeVietnamese(category.getName().toLowerCase());
-            if (message.contains(catName)) {
-                return category.getName();
-            }
-        }
-
-        return null;
+        return catalogDictionary.findCategory(message);
     }
 
     /**
-     * Trích xuất thương hiệu từ database
+     * Trích xuất thương hiệu (tên dài nhất có trong câu)
      */
     private String extractBrand(String message) {
-        List<String> brands = brandRepository.findAll().stream()
-                .map(b -> b.getName().toLowerCase())
-                .collect(Collectors.toList());
-
-        for (String brand : brands) {
-            if (message.contains(normalizeVietnamese(brand))) {
-                return brand;
-            }
-        }
-
-        return null;
+        return catalogDictionary.findBrand(message);
     }
 
     /**
      * Trích xuất màu sắc
      */
-    private List<String> extractColors(String message) {
+    private List<String> extractColors(KeywordScan scan) {
         List<String> colors = new ArrayList<>();
 
-        String[] colorKeywords = {
-            "đen", "trắng", "đỏ", "xanh", "vàng", "hồng", "tím", "cam", "nâu", "xám",
-            "black", "white", "red", "blue", "yellow", "pink", "purple", "orange", "brown", "gray",
-            "den", "trang", "do", "vang", "hong", "tim", "nau", "xam"
-        };
-
-        for (String color : colorKeywords) {
-            if (message.contains(color)) {
-                colors.add(color);
+        for (int i = 0; i < COLORS.length; i++) {
+            if (scan.has(COLOR_GROUPS[i])) {
+                colors.add(COLORS[i]);
             }
         }
 
@@ -193,25 +244,34 @@ public class UserIntentAnalyzer {
     /**
      * Trích xuất kích thước
      */
-    private List<String> extractSizes(String message) {
+    private List<String> extractSizes(String message, KeywordScan scan) {
         List<String> sizes = new ArrayList<>();
 
-        // Pattern cho size: S, M, L, XL, XXL, số (38, 39, 40...)
-        Pattern sizePattern = Pattern.compile("\\b(xs|s|m|l|xl|xxl|xxxl|\\d{2})\\b", Pattern.CASE_INSENSITIVE);
-        Matcher matcher = sizePattern.matcher(message);
-
-        while (matcher.find()) {
-            sizes.add(matcher.group(1).toUpperCase());
+        // Size: S, M, L, XL, XXL, số (38, 39, 40...) đứng thành một từ riêng (như \b...\b)
+        int length = message.length();
+        int i = 0;
+        while (i < length) {
+            if (!isWordChar(message.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < length && isWordChar(message.charAt(i))) {
+                i++;
+            }
+            if (isSizeToken(message, start, i)) {
+                sizes.add(message.substring(start, i).toUpperCase());
+            }
         }
 
         // Tìm các từ khóa size
-        if (containsAny(message, "size nho", "size nhỏ", "small")) {
+        if (scan.has(SIZE_SMALL)) {
             sizes.add("S");
         }
-        if (containsAny(message, "size vua", "medium")) {
+        if (scan.has(SIZE_MEDIUM)) {
             sizes.add("M");
         }
-        if (containsAny(message, "size lon", "size lớn", "large")) {
+        if (scan.has(SIZE_LARGE)) {
             sizes.add("L");
         }
 
@@ -221,46 +281,24 @@ public class UserIntentAnalyzer {
     /**
      * Trích xuất khoảng giá
      */
-    private UserIntentDTO.PriceRange extractPriceRange(String message) {
-        // Pattern tìm số tiền: 100k, 100000, 1 triệu, 1tr
-        Pattern pricePattern = Pattern.compile("(\\d+)\\s*(k|triệu|tr|trieu|000)?");
-        Matcher matcher = pricePattern.matcher(message);
-
-        List<Long> prices = new ArrayList<>();
-        while (matcher.find()) {
-            try {
-                long amount = Long.parseLong(matcher.group(1));
-                String unit = matcher.group(2);
-
-                if (unit != null) {
-                    if (unit.equals("k") || unit.equals("000")) {
-                        amount *= 1000;
-                    } else if (unit.startsWith("tr")) {
-                        amount *= 1000000;
-                    }
-                }
-
-                prices.add(amount);
-            } catch (NumberFormatException e) {
-                // Ignore invalid numbers
-            }
-        }
+    private UserIntentDTO.PriceRange extractPriceRange(String message, KeywordScan scan) {
+        List<Long> prices = extractPrices(message);
 
         if (prices.isEmpty()) {
             // Phát hiện khoảng giá theo từ khóa
-            if (containsAny(message, "rẻ", "re", "giá rẻ", "cheap", "phu hop", "phù hợp")) {
+            if (scan.has(PRICE_CHEAP)) {
                 return UserIntentDTO.PriceRange.builder()
                         .min(0L)
                         .max(500000L)
                         .build();
             }
-            if (containsAny(message, "tầm trung", "tam trung", "medium")) {
+            if (scan.has(PRICE_MIDDLE)) {
                 return UserIntentDTO.PriceRange.builder()
                         .min(500000L)
                         .max(2000000L)
                         .build();
             }
-            if (containsAny(message, "cao cấp", "cao cap", "luxury", "sang", "đắt", "dat")) {
+            if (scan.has(PRICE_PREMIUM)) {
                 return UserIntentDTO.PriceRange.builder()
                         .min(2000000L)
                         .max(Long.MAX_VALUE)
@@ -271,12 +309,12 @@ public class UserIntentAnalyzer {
 
         if (prices.size() == 1) {
             // Chỉ có 1 giá: tìm "dưới X" hoặc "trên X"
-            if (containsAny(message, "dưới", "duoi", "under", "below", "tối đa", "toi da", "max")) {
+            if (scan.has(PRICE_UNDER)) {
                 return UserIntentDTO.PriceRange.builder()
                         .min(0L)
                         .max(prices.get(0))
                         .build();
-            } else if (containsAny(message, "trên", "tren", "above", "over", "từ", "tu", "from")) {
+            } else if (scan.has(PRICE_OVER)) {
                 return UserIntentDTO.PriceRange.builder()
                         .min(prices.get(0))
                         .max(Long.MAX_VALUE)
@@ -299,17 +337,59 @@ public class UserIntentAnalyzer {
                 .build();
     }
 
+    /**
+     * Số tiền trong câu: 100k, 100000, 100 000, 1 triệu, 1tr (câu đã bỏ dấu nên "triệu" là "trieu", khớp "tr")
+     */
+    private List<Long> extractPrices(String message) {
+        List<Long> prices = new ArrayList<>();
+        int length = message.length();
+        int i = 0;
+        while (i < length) {
+            if (!isDigit(message.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < length && isDigit(message.charAt(i))) {
+                i++;
+            }
+            String digits = message.substring(start, i);
+            while (i < length && isWhitespace(message.charAt(i))) {
+                i++;
+            }
+
+            long multiplier = 1;
+            if (message.startsWith("k", i)) {
+                multiplier = 1000;
+                i += 1;
+            } else if (message.startsWith("tr", i)) {
+                multiplier = 1000000;
+                i += 2;
+            } else if (message.startsWith("000", i)) {
+                multiplier = 1000;
+                i += 3;
+            }
+
+            try {
+                prices.add(Long.parseLong(digits) * multiplier);
+            } catch (NumberFormatException e) {
+                // Ignore invalid numbers
+            }
+        }
+        return prices;
+    }
+
     /**
      * Trích xuất giới tính
      */
-    private String extractGender(String message) {
-        if (containsAny(message, "nam", "man", "men", "boy", "anh", "chàng")) {
+    private String extractGender(KeywordScan scan) {
+        if (scan.has(MALE)) {
             return "Nam";
         }
-        if (containsAny(message, "nữ", "nu", "woman", "women", "girl", "chị", "cô")) {
+        if (scan.has(FEMALE)) {
             return "Nữ";
         }
-        if (containsAny(message, "unisex", "cả nam và nữ", "ca nam va nu")) {
+        if (scan.has(UNISEX)) {
             return "Unisex";
         }
         return null;
@@ -318,18 +398,10 @@ public class UserIntentAnalyzer {
     /**
      * Trích xuất phong cách
      */
-    private String extractStyle(String message) {
-        Map<String, String[]> styles = Map.of(
-            "Thể thao", new String[]{"the thao", "sport", "gym", "chạy", "chay"},
-            "Công sở", new String[]{"cong so", "office", "formal", "lịch sự", "lich su"},
-            "Dạo phố", new String[]{"dao pho", "casual", "street", "đi chơi", "di choi"},
-            "Dự tiệc", new String[]{"du tiec", "party", "event", "sự kiện", "su kien"},
-            "Vintage", new String[]{"vintage", "retro", "cổ điển", "co dien"}
-        );
-
-        for (Map.Entry<String, String[]> entry : styles.entrySet()) {
-            if (containsAny(message, entry.getValue())) {
-                return entry.getKey();
+    private String extractStyle(KeywordScan scan) {
+        for (int i = 0; i < STYLES.length; i++) {
+            if (scan.has(STYLE_GROUPS[i])) {
+                return STYLES[i];
             }
         }
 
@@ -339,15 +411,14 @@ public class UserIntentAnalyzer {
     /**
      * Trích xuất từ khóa tìm kiếm
      */
-    private String extractSearchKeywords(String message, UserIntentDTO intent) {
+    private String extractSearchKeywords(String[] words, UserIntentDTO intent) {
         List<String> keywords = new ArrayList<>();
 
         // PRIORITY 1: Lấy từ khóa từ câu gốc (giữ nguyên chi tiết như "áo thun", "quần jean")
-        String[] words = message.split("\\s+");
         List<String> productWords = new ArrayList<>();
 
         for (String word : words) {
-            if (word.length() > 2 && !isStopWord(word) && !isActionWord(word)) {
+            if (word.length() > 2 && !STOP_WORDS.contains(word) && !ACTION_WORDS.contains(word)) {
                 productWords.add(word);
             }
         }
@@ -370,36 +441,21 @@ public class UserIntentAnalyzer {
         return keywords.isEmpty() ? "" : String.join(" ", keywords);
     }
 
-    /**
-     * Kiểm tra từ có phải action word không (tim, muon, can, cho...)
-     */
-    private boolean isActionWord(String word) {
-        String[] actionWords = {"tim", "tìm", "find", "search", "muon", "muốn", "can", "cần",
-                               "cho", "show", "xem", "hien", "hiển", "thi", "có", "co"};
-        return Arrays.asList(actionWords).contains(word);
-    }
-
     /**
      * Xác định độ ưu tiên tiêu chí tìm kiếm
      */
-    private Map<String, Integer> determinePriority(String message) {
+    private Map<String, Integer> determinePriority(String message, String[] words, KeywordScan scan) {
         Map<String, Integer> priority = new HashMap<>();
 
-        // Phân tích vị trí từ khóa trong câu để xác định mức độ quan trọng
-        String[] words = message.split("\\s+");
-
-        for (int i = 0; i < words.length; i++) {
-            String word = words[i];
-            int weight = words.length - i; // Từ đầu câu quan trọng hơn
-
-            if (containsAny(word, "màu", "mau", "color")) {
-                priority.put("color", weight * 2);
-            }
-            if (containsAny(word, "giá", "gia", "price")) {
-                priority.put("price", weight * 2);
-            }
-            if (containsAny(word, "size", "cỡ", "co")) {
-                priority.put("size", weight * 2);
+        // Phân tích vị trí từ khóa trong câu để xác định mức độ quan trọng: lấy từ cuối cùng chứa từ khóa.
+        // Thêm vào map theo thứ tự từ đầu tiên chứa từ khóa, như khi duyệt từng từ
+        Integer[] criteria = {0, 1, 2};
+        Arrays.sort(criteria, Comparator.comparingInt(i -> scan.firstStart(PRIORITY_GROUPS[i])));
+        for (int i : criteria) {
+            int position = scan.lastStart(PRIORITY_GROUPS[i]);
+            if (position >= 0) {
+                int weight = words.length - wordIndex(message, position); // Từ đầu câu quan trọng hơn
+                priority.put(PRIORITY_CRITERIA[i], weight * 2);
             }
         }
 
@@ -407,38 +463,108 @@ public class UserIntentAnalyzer {
     }
 
     /**
-     * Chuẩn hóa tiếng Việt (bỏ dấu)
+     * Chuẩn hóa tiếng Việt (bỏ dấu) - CatalogDictionary chuẩn hóa tên brand / category cùng cách
      */
-    private String normalizeVietnamese(String text) {
-        String result = text;
-        result = result.replaceAll("[áàảãạăắằẳẵặâấầẩẫậ]", "a");
-        result = result.replaceAll("[éèẻẽẹêếềểễệ]", "e");
-        result = result.replaceAll("[íìỉĩị]", "i");
-        result = result.replaceAll("[óòỏõọôốồổỗộơớờởỡợ]", "o");
-        result = result.replaceAll("[úùủũụưứừửữự]", "u");
-        result = result.replaceAll("[ýỳỷỹỵ]", "y");
-        result = result.replaceAll("đ", "d");
-        return result;
+    static String normalizeVietnamese(String text) {
+        char[] chars = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < VIETNAMESE_FOLD.length && VIETNAMESE_FOLD[c] != 0) {
+                if (chars == null) {
+                    chars = text.toCharArray();
+                }
+                chars[i] = VIETNAMESE_FOLD[c];
+            }
+        }
+        return chars != null ? new String(chars) : text;
     }
 
     /**
-     * Kiểm tra chuỗi có chứa bất kỳ từ nào
+     * Vị trí (trong mảng WHITESPACE.split) của từ chứa ký tự tại position
      */
-    private boolean containsAny(String text, String... keywords) {
-        for (String keyword : keywords) {
-            if (text.contains(keyword)) {
-                return true;
+    private static int wordIndex(String message, int position) {
+        // split giữ một từ rỗng ở đầu nếu câu bắt đầu bằng khoảng trắng
+        int index = 0;
+        for (int i = 1; i <= position; i++) {
+            if (isWhitespace(message.charAt(i - 1)) && !isWhitespace(message.charAt(i))) {
+                index++;
+            }
+        }
+        return index;
+    }
+
+    private static boolean isSizeToken(String message, int start, int end) {
+        int length = end - start;
+        if (length == 2 && isDigit(message.charAt(start)) && isDigit(message.charAt(start + 1))) {
+            return true;
+        }
+        return length <= 4 && SIZE_TOKENS.contains(message.substring(start, end));
+    }
+
+    // Ký tự thuộc từ theo \b của java.util.regex
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    // \d
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // \s
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static int group(String... keywords) {
+        KEYWORD_GROUPS.add(keywords);
+        return KEYWORD_GROUPS.size() - 1;
+    }
+
+    private static char[] foldTable(String[] sources, String targets) {
+        char[] table = new char[0];
+        for (int i = 0; i < sources.length; i++) {
+            for (char c : sources[i].toCharArray()) {
+                if (c >= table.length) {
+                    table = Arrays.copyOf(table, c + 1);
+                }
+                table[c] = targets.charAt(i);
             }
         }
-        return false;
+        return table;
     }
 
     /**
-     * Kiểm tra stop word
+     * Kết quả quét KEYWORDS trên một câu: nhóm nào có từ khóa xuất hiện, vị trí bắt đầu của lần khớp đầu và cuối
      */
-    private boolean isStopWord(String word) {
-        String[] stopWords = {"the", "a", "an", "and", "or", "but", "in", "on", "at", "to", "for",
-                              "của", "cua", "và", "va", "hoặc", "hoac", "với", "voi", "cho", "từ", "tu"};
-        return Arrays.asList(stopWords).contains(word);
+    private static final class KeywordScan implements KeywordAutomaton.MatchListener {
+        private final boolean[] matched = new boolean[KEYWORDS.groupCount()];
+        private final int[] firstStart = new int[KEYWORDS.groupCount()];
+        private final int[] lastStart = new int[KEYWORDS.groupCount()];
+
+        private KeywordScan() {
+            Arrays.fill(lastStart, -1);
+        }
+
+        @Override
+        public void onMatch(int group, int start, int end) {
+            if (!matched[group] || start < firstStart[group]) {
+                firstStart[group] = start;
+            }
+            matched[group] = true;
+            lastStart[group] = Math.max(lastStart[group], start);
+        }
+
+        boolean has(int group) {
+            return matched[group];
+        }
+
+        int firstStart(int group) {
+            return matched[group] ? firstStart[group] : Integer.MAX_VALUE;
+        }
+
+        int lastStart(int group) {
+            return lastStart[group];
+        }
     }
 }
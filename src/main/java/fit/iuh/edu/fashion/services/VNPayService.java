@@ -20,6 +20,7 @@ import java.math.RoundingMode;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
 
@@ -29,12 +30,26 @@ public class VNPayService {
 
     private static final Logger log = LoggerFactory.getLogger(VNPayService.class);
 
+    private static final long PAYMENT_URL_TTL_SECONDS = 15 * 60;
+
     private final VNPayConfig vnPayConfig;
     private final OrderRepository orderRepository;
     private final PaymentTransactionRepository paymentTransactionRepository;
     private final PaymentService paymentService;
+    private final PaymentExpiryScheduler paymentExpiryScheduler;
+    private final CustomerOrderHistoryService customerOrderHistoryService;
 
     public String createPaymentUrl(Order order, HttpServletRequest request) throws UnsupportedEncodingException {
+        // Link thanh toán không được sống lâu hơn hạn giữ hàng của đơn
+        long validSeconds = PAYMENT_URL_TTL_SECONDS;
+        if (order.getPaymentExpiresAt() != null) {
+            long remaining = Duration.between(LocalDateTime.now(), order.getPaymentExpiresAt()).getSeconds();
+            if (order.getStatus() != Order.OrderStatus.PENDING || remaining <= 0) {
+                throw new RuntimeException("Đơn hàng đã hết hạn thanh toán");
+            }
+            validSeconds = Math.min(validSeconds, remaining);
+        }
+
         String vnp_Version = vnPayConfig.getVersion();
         String vnp_Command = vnPayConfig.getCommand();
         String vnp_TmnCode = vnPayConfig.getTmnCode();
@@ -65,7 +80,7 @@ public class VNPayService {
         String vnp_CreateDate = formatter.format(cld.getTime());
         vnp_Params.put("vnp_CreateDate", vnp_CreateDate);
 
-        cld.add(Calendar.MINUTE, 15);
+        cld.add(Calendar.SECOND, (int) validSeconds);
         String vnp_ExpireDate = formatter.format(cld.getTime());
         vnp_Params.put("vnp_ExpireDate", vnp_ExpireDate);
 
@@ -115,26 +130,32 @@ public class VNPayService {
             String vnp_ResponseCode = params.get("vnp_ResponseCode");
             String transactionId = params.get("vnp_TransactionNo");
 
-            Optional<Order> orderOpt = orderRepository.findByCode(orderCode);
+            // Khóa đơn: không chạy xen với việc hủy đơn quá hạn thanh toán
+            Optional<Order> orderOpt = orderRepository.lockByCode(orderCode);
             if (orderOpt.isPresent()) {
                 Order order = orderOpt.get();
 
                 // Lưu thông tin giao dịch vào PaymentTransaction
                 savePaymentTransaction(order, params, "RETURN_CALLBACK");
 
-                if ("00".equals(vnp_ResponseCode)) {
+                if ("00".equals(vnp_ResponseCode) && isCancelled(order)) {
+                    return 0;
+                } else if ("00".equals(vnp_ResponseCode)) {
                     // Payment success
                     order.setPaymentStatus(Order.PaymentStatus.PAID);
                     order.setPaymentTransactionId(transactionId);
                     order.setPaymentTime(LocalDateTime.now());
                     order.setStatus(Order.OrderStatus.CONFIRMED);
                     orderRepository.save(order);
+                    customerOrderHistoryService.orderUpdated(order);
+                    paymentExpiryScheduler.untrack(order.getId());
                     log.info("Order {} payment confirmed via callback", orderCode);
                     return 1; // Success
                 } else {
                     // Payment failed
                     order.setPaymentStatus(Order.PaymentStatus.FAILED);
                     orderRepository.save(order);
+                    customerOrderHistoryService.orderUpdated(order);
                     log.warn("Order {} payment failed. Response code: {}", orderCode, vnp_ResponseCode);
                     return 0; // Failed
                 }
@@ -164,7 +185,7 @@ public class VNPayService {
             }
 
             String orderCode = params.get("vnp_TxnRef");
-            Optional<Order> orderOpt = orderRepository.findByCode(orderCode);
+            Optional<Order> orderOpt = orderRepository.lockByCode(orderCode);
             if (orderOpt.isEmpty()) {
                 resp.put("RspCode", "01");
                 resp.put("Message", "Order not Found");
@@ -202,18 +223,24 @@ public class VNPayService {
             String vnp_ResponseCode = params.get("vnp_ResponseCode");
             String transactionId = params.get("vnp_TransactionNo");
 
-            if ("00".equals(vnp_ResponseCode)) {
+            if ("00".equals(vnp_ResponseCode) && isCancelled(order)) {
+                resp.put("RspCode", "00");
+                resp.put("Message", "Confirm Success");
+            } else if ("00".equals(vnp_ResponseCode)) {
                 order.setPaymentStatus(Order.PaymentStatus.PAID);
                 order.setPaymentTransactionId(transactionId);
                 order.setPaymentTime(LocalDateTime.now());
                 order.setStatus(Order.OrderStatus.CONFIRMED);
                 orderRepository.save(order);
+                customerOrderHistoryService.orderUpdated(order);
+                paymentExpiryScheduler.untrack(order.getId());
                 log.info("Order {} payment confirmed via IPN", orderCode);
                 resp.put("RspCode", "00");
                 resp.put("Message", "Confirm Success");
             } else {
                 order.setPaymentStatus(Order.PaymentStatus.FAILED);
                 orderRepository.save(order);
+                customerOrderHistoryService.orderUpdated(order);
                 log.warn("Order {} payment failed via IPN. Response code: {}", orderCode, vnp_ResponseCode);
                 resp.put("RspCode", "00");
                 resp.put("Message", "Confirm Success");
@@ -227,6 +254,19 @@ public class VNPayService {
         }
     }
 
+    /**
+     * Tiền về khi đơn đã bị hủy (quá hạn thanh toán hoặc khách hủy - hàng đã trả về kho): giữ nguyên trạng thái đơn,
+     * giao dịch đã được lưu để hoàn tiền thủ công
+     */
+    private boolean isCancelled(Order order) {
+        if (order.getStatus() != Order.OrderStatus.CANCELLED) {
+            return false;
+        }
+        log.error("Order {} was paid after it had been cancelled (payment deadline {}) - refund required",
+                order.getCode(), order.getPaymentExpiresAt());
+        return true;
+    }
+
     /**
      * Lưu thông tin giao dịch VNPay vào database
      */
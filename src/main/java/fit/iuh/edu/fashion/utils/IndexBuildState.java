@@ -0,0 +1,112 @@
+package fit.iuh.edu.fashion.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Trạng thái build của một chỉ mục trong bộ nhớ: build lười từ DB, sau đó cập nhật tăng dần sau mỗi commit.
+ * - Chưa build: bỏ qua cập nhật, lần build sau đọc DB đã có thay đổi đó.
+ * - Đang build: lượt đọc DB có thể đã chạy trước khi transaction của cập nhật commit, nên cập nhật được giữ lại
+ *   và áp dụng ngay khi build xong (cập nhật phải ghi giá trị tuyệt đối, áp dụng lại không sai).
+ * - Build chờ các cập nhật đang chạy xong rồi mới đọc DB, nên không cập nhật nào ghi vào dữ liệu cũ
+ *   trong lúc build thay dữ liệu mới. Người gọi build không giữ khóa của chỉ mục (cập nhật cần khóa đó).
+ */
+public class IndexBuildState {
+
+    private final List<Runnable> pending = new ArrayList<>();
+    private boolean built = false;
+    private boolean building = false;
+    private boolean stale = false;
+    private int running = 0;
+
+    public synchronized boolean isBuilt() {
+        return built;
+    }
+
+    /**
+     * Đánh dấu cần build lại - lần đọc tiếp theo sẽ build từ DB
+     */
+    public synchronized void invalidate() {
+        built = false;
+        if (building) {
+            stale = true;
+        }
+    }
+
+    /**
+     * Áp dụng cập nhật ngay (đã build), giữ lại tới khi build xong (đang build) hoặc bỏ qua (chưa build)
+     */
+    public void apply(Runnable update) {
+        synchronized (this) {
+            if (building) {
+                pending.add(update);
+                return;
+            }
+            if (!built) {
+                return;
+            }
+            running++;
+        }
+        try {
+            update.run();
+        } finally {
+            synchronized (this) {
+                running--;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Build lại bằng load, rồi áp dụng các cập nhật đến trong lúc build (ngoài monitor, trên thread build).
+     * Mỗi lúc chỉ một thread được build - người gọi tự đảm bảo.
+     */
+    public void build(Runnable load) {
+        synchronized (this) {
+            building = true;
+            stale = false;
+            awaitRunningUpdates();
+        }
+        boolean done = false;
+        try {
+            load.run();
+            while (true) {
+                List<Runnable> batch;
+                synchronized (this) {
+                    if (pending.isEmpty()) {
+                        // Cập nhật có thể gọi invalidate() (vd. thiếu product) - khi đó lần đọc sau build lại
+                        building = false;
+                        built = !stale;
+                        done = true;
+                        return;
+                    }
+                    batch = new ArrayList<>(pending);
+                    pending.clear();
+                }
+                batch.forEach(Runnable::run);
+            }
+        } finally {
+            if (!done) {
+                synchronized (this) {
+                    building = false;
+                    built = false;
+                    pending.clear();
+                }
+            }
+        }
+    }
+
+    private void awaitRunningUpdates() {
+        boolean interrupted = false;
+        while (running > 0) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
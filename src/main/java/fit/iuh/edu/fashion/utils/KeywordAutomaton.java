@@ -0,0 +1,147 @@
+package fit.iuh.edu.fashion.utils;
+
+import java.util.*;
+
+/**
+ * Automaton Aho–Corasick cho nhiều bộ từ khóa: mỗi từ khóa thuộc một hoặc nhiều nhóm (group id),
+ * quét văn bản một lượt O(độ dài + số lần khớp) và báo mọi vị trí khớp theo nghĩa String.contains
+ * (khớp chồng lấn, khớp bên trong từ khác đều được tính).
+ * Bảng chuyển trạng thái được tính đủ lúc build (DFA), ký tự không có trong từ khóa nào đưa về trạng thái gốc.
+ * Immutable sau khi build, dùng chung giữa các thread.
+ */
+public final class KeywordAutomaton {
+
+    /**
+     * Nhận từng lần khớp: nhóm của từ khóa, vị trí bắt đầu và vị trí ngay sau ký tự cuối của từ khóa trong văn bản
+     */
+    @FunctionalInterface
+    public interface MatchListener {
+        void onMatch(int group, int start, int end);
+    }
+
+    private final int groupCount;
+    // Ký tự -> lớp ký tự (0: ký tự không xuất hiện trong từ khóa nào)
+    private final int[] charClass;
+    private final int classCount;
+    // transitions[state * classCount + class]
+    private final int[] transitions;
+    // Các nhóm khớp khi tới trạng thái (kể cả qua suffix link) và độ dài từ khóa tương ứng
+    private final int[][] outputGroups;
+    private final int[][] outputLengths;
+
+    private KeywordAutomaton(int groupCount, int[] charClass, int classCount, int[] transitions,
+                             int[][] outputGroups, int[][] outputLengths) {
+        this.groupCount = groupCount;
+        this.charClass = charClass;
+        this.classCount = classCount;
+        this.transitions = transitions;
+        this.outputGroups = outputGroups;
+        this.outputLengths = outputLengths;
+    }
+
+    /**
+     * @param groups groups.get(i) là các từ khóa của nhóm i (một từ khóa có thể nằm trong nhiều nhóm)
+     */
+    public static KeywordAutomaton compile(List<String[]> groups) {
+        // Lớp ký tự: chỉ các ký tự có trong từ khóa
+        Map<Character, Integer> classes = new HashMap<>();
+        int maxChar = 0;
+        for (String[] keywords : groups) {
+            for (String keyword : keywords) {
+                for (char c : keyword.toCharArray()) {
+                    classes.putIfAbsent(c, classes.size() + 1);
+                    maxChar = Math.max(maxChar, c);
+                }
+            }
+        }
+        int[] charClass = new int[maxChar + 1];
+        classes.forEach((c, cls) -> charClass[c] = cls);
+        int classCount = classes.size() + 1;
+
+        // Trie
+        List<int[]> trie = new ArrayList<>();
+        List<Map<Integer, Integer>> outputs = new ArrayList<>();
+        trie.add(new int[classCount]);
+        outputs.add(new LinkedHashMap<>());
+        for (int group = 0; group < groups.size(); group++) {
+            for (String keyword : groups.get(group)) {
+                if (keyword.isEmpty()) {
+                    continue;
+                }
+                int state = 0;
+                for (char c : keyword.toCharArray()) {
+                    int cls = charClass[c];
+                    if (trie.get(state)[cls] == 0) {
+                        trie.get(state)[cls] = trie.size();
+                        trie.add(new int[classCount]);
+                        outputs.add(new LinkedHashMap<>());
+                    }
+                    state = trie.get(state)[cls];
+                }
+                outputs.get(state).putIfAbsent(group, keyword.length());
+            }
+        }
+
+        // BFS: suffix link, hoàn thiện bảng chuyển và gộp output theo suffix link
+        int states = trie.size();
+        int[] transitions = new int[states * classCount];
+        int[] fail = new int[states];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int cls = 1; cls < classCount; cls++) {
+            int next = trie.get(0)[cls];
+            transitions[cls] = next;
+            if (next != 0) {
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            outputs.get(fail[state]).forEach(outputs.get(state)::putIfAbsent);
+            for (int cls = 1; cls < classCount; cls++) {
+                int next = trie.get(state)[cls];
+                if (next != 0) {
+                    fail[next] = transitions[fail[state] * classCount + cls];
+                    transitions[state * classCount + cls] = next;
+                    queue.add(next);
+                } else {
+                    transitions[state * classCount + cls] = transitions[fail[state] * classCount + cls];
+                }
+            }
+        }
+
+        int[][] outputGroups = new int[states][];
+        int[][] outputLengths = new int[states][];
+        for (int state = 0; state < states; state++) {
+            Map<Integer, Integer> output = outputs.get(state);
+            outputGroups[state] = output.keySet().stream().mapToInt(Integer::intValue).toArray();
+            outputLengths[state] = output.values().stream().mapToInt(Integer::intValue).toArray();
+        }
+        return new KeywordAutomaton(groups.size(), charClass, classCount, transitions, outputGroups, outputLengths);
+    }
+
+    public int groupCount() {
+        return groupCount;
+    }
+
+    public void scan(CharSequence text, MatchListener listener) {
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int cls = c < charClass.length ? charClass[c] : 0;
+            state = transitions[state * classCount + cls];
+            int[] groups = outputGroups[state];
+            for (int k = 0; k < groups.length; k++) {
+                listener.onMatch(groups[k], i + 1 - outputLengths[state][k], i + 1);
+            }
+        }
+    }
+
+    /**
+     * Các nhóm có ít nhất một từ khóa xuất hiện trong văn bản
+     */
+    public boolean[] matchedGroups(CharSequence text) {
+        boolean[] matched = new boolean[groupCount];
+        scan(text, (group, start, end) -> matched[group] = true);
+        return matched;
+    }
+}
@@ -0,0 +1,84 @@
+package fit.iuh.edu.fashion.utils;
+
+import fit.iuh.edu.fashion.exception.BusinessException;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Mã hóa / giải mã cursor cho phân trang keyset.
+ * Cursor là vị trí của bản ghi cuối trang trước: (thời điểm, id) hoặc chỉ id, được đóng gói base64url
+ * để client coi là chuỗi mờ và chỉ gửi lại nguyên vẹn.
+ */
+public class PageCursorUtil {
+
+    private static final String VERSION = "1";
+    private static final String SEPARATOR = "|";
+
+    public static final int DEFAULT_SIZE = 20;
+    public static final int MAX_SIZE = 100;
+
+    /**
+     * Bản ghi chưa có thời điểm (dữ liệu cũ) được mã hóa như cursor chỉ có id
+     */
+    public static String encode(LocalDateTime time, Long id) {
+        return pack(VERSION + SEPARATOR + (time != null ? time : "") + SEPARATOR + id);
+    }
+
+    public static String encode(Long id) {
+        return pack(VERSION + SEPARATOR + SEPARATOR + id);
+    }
+
+    /**
+     * Giải mã cursor - trả về null khi không có cursor (trang đầu)
+     */
+    public static Cursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", -1);
+            if (parts.length != 3 || !VERSION.equals(parts[0])) {
+                throw new BusinessException("Cursor không hợp lệ");
+            }
+            LocalDateTime time = parts[1].isEmpty() ? null : LocalDateTime.parse(parts[1]);
+            return new Cursor(time, Long.parseLong(parts[2]));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new BusinessException("Cursor không hợp lệ");
+        }
+    }
+
+    /**
+     * Giải mã cursor dạng (thời điểm, id)
+     */
+    public static Cursor decodeTimed(String token) {
+        Cursor cursor = decode(token);
+        if (cursor != null && cursor.getTime() == null) {
+            throw new BusinessException("Cursor không hợp lệ");
+        }
+        return cursor;
+    }
+
+    /**
+     * Giới hạn kích thước trang trong [1, MAX_SIZE]
+     */
+    public static int clampSize(int size) {
+        return Math.max(1, Math.min(size, MAX_SIZE));
+    }
+
+    private static String pack(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Cursor {
+        private final LocalDateTime time;
+        private final Long id;
+    }
+}
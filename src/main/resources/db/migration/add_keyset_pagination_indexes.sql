@@ -0,0 +1,4 @@
+-- Indexes for keyset (cursor) pagination: ORDER BY <time> DESC, id DESC with seek predicate
+CREATE INDEX IF NOT EXISTS idx_orders_placed_at_id ON orders(placed_at, id);
+CREATE INDEX IF NOT EXISTS idx_payments_created_at_id ON payments(created_at, id);
+CREATE INDEX IF NOT EXISTS idx_audit_logs_created_at_id ON audit_logs(created_at, id);
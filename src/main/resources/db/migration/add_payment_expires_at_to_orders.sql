@@ -0,0 +1,13 @@
+-- Payment deadline of orders paid online (VNPay): unpaid orders past it are cancelled and their stock released
+ALTER TABLE orders ADD COLUMN IF NOT EXISTS payment_expires_at DATETIME(6) NULL AFTER payment_time;
+
+CREATE INDEX IF NOT EXISTS idx_orders_payment_expires_at ON orders(payment_expires_at);
+
+-- VNPay orders still holding stock get a deadline 30 minutes after placement (app.payment.expiry.hold-minutes);
+-- orders abandoned before this migration are released on the first tick after startup
+UPDATE orders
+SET payment_expires_at = DATE_ADD(placed_at, INTERVAL 30 MINUTE)
+WHERE payment_method = 'VNPAY'
+  AND status = 'PENDING'
+  AND payment_status IN ('UNPAID', 'FAILED')
+  AND payment_expires_at IS NULL;
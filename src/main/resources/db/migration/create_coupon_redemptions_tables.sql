@@ -0,0 +1,29 @@
+-- Opt-in striping of coupon usage for high-volume campaigns
+ALTER TABLE coupons ADD COLUMN IF NOT EXISTS redemption_stripes INT NULL;
+
+-- One row per order that used a coupon; cancellation/refund releases it (status RELEASED)
+CREATE TABLE IF NOT EXISTS coupon_redemptions (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    coupon_id BIGINT NOT NULL,
+    order_id BIGINT NOT NULL,
+    customer_user_id BIGINT NOT NULL,
+    stripe INT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'REDEEMED',
+    created_at TIMESTAMP NULL,
+    released_at TIMESTAMP NULL,
+    UNIQUE KEY uk_coupon_redemptions_order (order_id),
+    INDEX idx_coupon_redemptions_coupon_customer (coupon_id, customer_user_id, status),
+    FOREIGN KEY (coupon_id) REFERENCES coupons(id) ON DELETE CASCADE,
+    FOREIGN KEY (order_id) REFERENCES orders(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Pre-allocated usage slots of striped coupons: total used = coupons.used_count + SUM(used)
+CREATE TABLE IF NOT EXISTS coupon_redemption_stripes (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    coupon_id BIGINT NOT NULL,
+    stripe INT NOT NULL,
+    capacity INT NULL,
+    used INT NOT NULL DEFAULT 0,
+    UNIQUE KEY uk_coupon_redemption_stripes (coupon_id, stripe),
+    FOREIGN KEY (coupon_id) REFERENCES coupons(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
@@ -0,0 +1,35 @@
+-- Read model for the customer "my orders" page: one row per order, kept in sync by OrderService
+CREATE TABLE IF NOT EXISTS customer_order_summaries (
+    order_id BIGINT PRIMARY KEY,
+    customer_user_id BIGINT NOT NULL,
+    code VARCHAR(40) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    payment_status VARCHAR(20) NOT NULL,
+    payment_method VARCHAR(20) NOT NULL,
+    grand_total DECIMAL(12,2) NOT NULL,
+    placed_at DATETIME(6) NULL,
+    ship_name VARCHAR(160) NULL,
+    ship_phone VARCHAR(32) NULL,
+    ship_line1 VARCHAR(255) NULL,
+    ship_ward VARCHAR(128) NULL,
+    ship_district VARCHAR(128) NULL,
+    ship_city VARCHAR(128) NULL,
+    item_count INT NOT NULL DEFAULT 0,
+    first_item_name VARCHAR(255) NULL,
+    updated_at DATETIME(6) NULL,
+    INDEX idx_customer_order_summaries_customer (customer_user_id, placed_at, order_id),
+    FOREIGN KEY (order_id) REFERENCES orders(id) ON DELETE CASCADE,
+    FOREIGN KEY (customer_user_id) REFERENCES users(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Backfill existing orders
+INSERT IGNORE INTO customer_order_summaries (order_id, customer_user_id, code, status, payment_status, payment_method,
+                                             grand_total, placed_at, ship_name, ship_phone, ship_line1, ship_ward,
+                                             ship_district, ship_city, item_count, first_item_name, updated_at)
+SELECT o.id, o.customer_user_id, o.code, o.status, o.payment_status, o.payment_method,
+       o.grand_total, o.placed_at, o.ship_name, o.ship_phone, o.ship_line1, o.ship_ward,
+       o.ship_district, o.ship_city,
+       (SELECT COUNT(*) FROM order_items i WHERE i.order_id = o.id),
+       (SELECT i.product_name FROM order_items i WHERE i.order_id = o.id ORDER BY i.id LIMIT 1),
+       NOW(6)
+FROM orders o;
@@ -0,0 +1,10 @@
+-- Variants in hot SKU mode (stock held by the in-memory HotSkuLedger, flushed in batches)
+CREATE TABLE IF NOT EXISTS hot_sku_variants (
+    variant_id BIGINT PRIMARY KEY,
+    admission_limit INT NOT NULL,
+    created_at TIMESTAMP NULL,
+    FOREIGN KEY (variant_id) REFERENCES product_variants(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Startup recovery looks up SALE movements per (order, variant)
+CREATE INDEX IF NOT EXISTS idx_inventory_movements_order_variant ON inventory_movements(related_order_id, variant_id);
@@ -0,0 +1,22 @@
+-- Append-only loyalty points ledger; customer_profiles.loyalty_point is its running balance
+CREATE SEQUENCE IF NOT EXISTS loyalty_point_entries_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS loyalty_point_entries (
+    id BIGINT PRIMARY KEY,
+    customer_user_id BIGINT NOT NULL,
+    order_id BIGINT NULL,
+    type VARCHAR(20) NOT NULL,
+    points INT NOT NULL,
+    created_at TIMESTAMP NULL,
+    UNIQUE KEY uk_loyalty_point_entries_order_type (order_id, type),
+    INDEX idx_loyalty_point_entries_customer (customer_user_id, id),
+    FOREIGN KEY (customer_user_id) REFERENCES users(id) ON DELETE CASCADE,
+    FOREIGN KEY (order_id) REFERENCES orders(id) ON DELETE SET NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Opening entries so that every existing balance equals the sum of its ledger entries
+INSERT INTO loyalty_point_entries (id, customer_user_id, order_id, type, points, created_at)
+SELECT NEXT VALUE FOR loyalty_point_entries_seq, p.user_id, NULL, 'OPENING', p.loyalty_point, NOW()
+FROM customer_profiles p
+WHERE p.loyalty_point <> 0
+  AND NOT EXISTS (SELECT 1 FROM loyalty_point_entries e WHERE e.customer_user_id = p.user_id);
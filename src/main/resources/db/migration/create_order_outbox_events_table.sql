@@ -0,0 +1,15 @@
+-- Transactional outbox for order side effects (COD payment, sale movements, cart cleanup, audit)
+CREATE TABLE IF NOT EXISTS order_outbox_events (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    order_id BIGINT NOT NULL,
+    event_type VARCHAR(30) NOT NULL,
+    payload TEXT,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+    attempts INT NOT NULL DEFAULT 0,
+    last_error TEXT,
+    created_at TIMESTAMP NULL,
+    processed_at TIMESTAMP NULL,
+    INDEX idx_order_outbox_status_id (status, id),
+    FOREIGN KEY (order_id) REFERENCES orders(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
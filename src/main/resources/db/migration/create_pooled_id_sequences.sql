@@ -0,0 +1,30 @@
+-- Pooled id sequences for high-volume tables (Hibernate allocationSize = 50, enables batched INSERTs).
+-- Each sequence starts past the current max id; IdSequenceInitializer re-checks this on every startup.
+CREATE SEQUENCE IF NOT EXISTS order_items_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS inventory_movements_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS payment_transactions_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS audit_logs_seq START WITH 1 INCREMENT BY 50;
+
+SET @restart = (SELECT COALESCE(MAX(id), 0) + 50 FROM order_items);
+SET @sql = CONCAT('ALTER SEQUENCE order_items_seq RESTART WITH ', @restart);
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @restart = (SELECT COALESCE(MAX(id), 0) + 50 FROM inventory_movements);
+SET @sql = CONCAT('ALTER SEQUENCE inventory_movements_seq RESTART WITH ', @restart);
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @restart = (SELECT COALESCE(MAX(id), 0) + 50 FROM payment_transactions);
+SET @sql = CONCAT('ALTER SEQUENCE payment_transactions_seq RESTART WITH ', @restart);
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @restart = (SELECT COALESCE(MAX(id), 0) + 50 FROM audit_logs);
+SET @sql = CONCAT('ALTER SEQUENCE audit_logs_seq RESTART WITH ', @restart);
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
@@ -0,0 +1,25 @@
+-- Create denormalized rating aggregates (maintained incrementally by ProductReviewService)
+CREATE TABLE IF NOT EXISTS product_rating_summaries (
+    product_id BIGINT PRIMARY KEY,
+    rating_sum BIGINT NOT NULL DEFAULT 0,
+    rating_count BIGINT NOT NULL DEFAULT 0,
+    star1_count BIGINT NOT NULL DEFAULT 0,
+    star2_count BIGINT NOT NULL DEFAULT 0,
+    star3_count BIGINT NOT NULL DEFAULT 0,
+    star4_count BIGINT NOT NULL DEFAULT 0,
+    star5_count BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP NULL,
+    FOREIGN KEY (product_id) REFERENCES products(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Backfill from existing approved reviews
+INSERT INTO product_rating_summaries
+    (product_id, rating_sum, rating_count, star1_count, star2_count, star3_count, star4_count, star5_count, updated_at)
+SELECT product_id, SUM(rating), COUNT(*),
+       SUM(CASE WHEN rating = 1 THEN 1 ELSE 0 END), SUM(CASE WHEN rating = 2 THEN 1 ELSE 0 END),
+       SUM(CASE WHEN rating = 3 THEN 1 ELSE 0 END), SUM(CASE WHEN rating = 4 THEN 1 ELSE 0 END),
+       SUM(CASE WHEN rating = 5 THEN 1 ELSE 0 END), NOW()
+FROM product_reviews
+WHERE is_approved = TRUE
+GROUP BY product_id
+ON DUPLICATE KEY UPDATE product_id = product_id;
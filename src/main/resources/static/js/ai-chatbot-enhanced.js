@@ -9,6 +9,7 @@ const voiceBtn = document.getElementById('voiceBtn');
 // ============= CONFIGURATION =============
 const CONFIG = {
     apiEndpoint: '/api/ai/chat',
+    streamEndpoint: '/api/ai/chat/stream',
     chatHistoryKey: 'ai_chat_history',
     darkModeKey: 'darkMode',
     maxHistoryItems: 50,
@@ -21,6 +22,7 @@ let chatHistory = [];
 let recognition = null;
 let isListening = false;
 let currentCart = [];
+let activeStream = null; // AbortController của câu trả lời đang stream
 let userPreferences = {
     size: null,
     style: [],
@@ -138,6 +140,11 @@ async function sendMessage() {
         // Detect intent and choose appropriate endpoint
         const endpoint = detectIntentEndpoint(message);
 
+        if (endpoint === CONFIG.apiEndpoint) {
+            await streamMessage(message);
+            return;
+        }
+
         const response = await fetch(endpoint, {
             method: 'POST',
             headers: {
@@ -156,6 +163,9 @@ async function sendMessage() {
         processAIResponse(data);
 
     } catch (error) {
+        if (error.name === 'AbortError') {
+            return;
+        }
         console.error('Error:', error);
         handleChatError(error);
     } finally {
@@ -163,6 +173,96 @@ async function sendMessage() {
     }
 }
 
+/**
+ * Nhận câu trả lời dạng Server-Sent Events: hiện từng token ngay khi server gửi.
+ * Gửi câu hỏi mới hoặc xóa chat sẽ hủy stream đang chạy (server hủy luôn request tới model).
+ */
+async function streamMessage(message) {
+    cancelStreaming();
+    const controller = new AbortController();
+    activeStream = controller;
+
+    try {
+        const response = await fetch(CONFIG.streamEndpoint, {
+            method: 'POST',
+            headers: {
+                'Content-Type': 'application/json',
+                'Accept': 'text/event-stream'
+            },
+            body: JSON.stringify(message),
+            signal: controller.signal
+        });
+
+        if (!response.ok || !response.body) {
+            throw new Error('Network response was not ok');
+        }
+
+        const messageDiv = createMessageElement('', 'ai');
+        chatMessages.appendChild(messageDiv);
+        const contentElement = messageDiv.querySelector('.message-content');
+
+        const reader = response.body.getReader();
+        const decoder = new TextDecoder();
+        let buffer = '';
+        let text = '';
+
+        while (true) {
+            const { value, done } = await reader.read();
+            if (done) {
+                break;
+            }
+            buffer += decoder.decode(value, { stream: true });
+
+            // Mỗi event kết thúc bằng một dòng trống
+            let boundary;
+            while ((boundary = buffer.indexOf('\n\n')) >= 0) {
+                const event = parseSseEvent(buffer.substring(0, boundary));
+                buffer = buffer.substring(boundary + 2);
+
+                if (event.name === 'token' || event.name === 'error') {
+                    typingIndicator.classList.remove('active');
+                    text += (event.name === 'error' && text ? '\n\n' : '') + JSON.parse(event.data).content;
+                    contentElement.innerHTML = formatMessage(text);
+                    scrollToBottom();
+                }
+            }
+        }
+
+        addMessageActions(messageDiv);
+
+        chatHistory.push({
+            message: text,
+            type: 'ai',
+            timestamp: new Date().toISOString(),
+            products: []
+        });
+        saveChatHistory();
+    } finally {
+        if (activeStream === controller) {
+            activeStream = null;
+        }
+    }
+}
+
+function parseSseEvent(block) {
+    const event = { name: 'message', data: '' };
+    block.split('\n').forEach(line => {
+        if (line.startsWith('event:')) {
+            event.name = line.substring(6).trim();
+        } else if (line.startsWith('data:')) {
+            event.data += line.substring(5);
+        }
+    });
+    return event;
+}
+
+function cancelStreaming() {
+    if (activeStream) {
+        activeStream.abort();
+        activeStream = null;
+    }
+}
+
 function detectIntentEndpoint(message) {
     const lowerMessage = message.toLowerCase();
 
@@ -496,6 +596,7 @@ function saveChatHistory() {
 
 function clearChat() {
     if (confirm('Bạn có chắc muốn xóa toàn bộ lịch sử chat?')) {
+        cancelStreaming();
         chatMessages.innerHTML = '';
         chatHistory = [];
         localStorage.removeItem(CONFIG.chatHistoryKey);
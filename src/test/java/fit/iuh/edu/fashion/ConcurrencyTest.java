@@ -0,0 +1,169 @@
+package fit.iuh.edu.fashion;
+
+import fit.iuh.edu.fashion.models.Product;
+import fit.iuh.edu.fashion.models.ProductVariant;
+import fit.iuh.edu.fashion.repositories.ProductVariantRepository;
+import fit.iuh.edu.fashion.services.HotSkuLedger;
+import fit.iuh.edu.fashion.services.StockReservationService;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Nhiều đơn hàng đồng thời mua cùng các SKU theo thứ tự ngẫu nhiên:
+ * khóa từng dòng theo thứ tự giỏ hàng (cách cũ trong OrderService.createOrder) so với StockReservationService.
+ * Đếm số đơn thất bại do deadlock / hết thời gian chờ khóa và throughput của mỗi cách.
+ */
+@DataJpaTest(properties = "spring.datasource.url=jdbc:h2:mem:concurrency;NON_KEYWORDS=VALUE;LOCK_TIMEOUT=1000")
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(StockReservationService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int ORDERS = 400;
+    private static final int SKUS = 4;
+    private static final int INITIAL_STOCK = 100_000;
+
+    @Autowired
+    private ProductVariantRepository productVariantRepository;
+
+    @Autowired
+    private StockReservationService stockReservationService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    // Không có hot SKU: mọi variant đi theo đường khóa dòng
+    @MockitoBean
+    private HotSkuLedger hotSkuLedger;
+
+    @Test
+    void sortedBatchedReservationDoesNotDeadlock() throws Exception {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        List<Long> variantIds = createVariants(tx);
+        List<List<Long>> carts = randomCarts(variantIds);
+
+        Result legacy = run(tx, carts, cart -> {
+            // Cách cũ: mỗi dòng khóa, trừ, flush rồi đọc lại - theo thứ tự trong giỏ
+            for (Long variantId : cart) {
+                productVariantRepository.findByIdWithLock(variantId).orElseThrow();
+                if (productVariantRepository.decreaseStock(variantId, 1) == 0) {
+                    throw new IllegalStateException("Insufficient stock");
+                }
+                productVariantRepository.flush();
+                productVariantRepository.findById(variantId).orElseThrow();
+            }
+        });
+        assertStockConserved(tx, variantIds, legacy);
+
+        resetStock(tx, variantIds);
+        Result batched = run(tx, carts, cart -> {
+            Map<Long, Integer> quantities = new LinkedHashMap<>();
+            cart.forEach(id -> quantities.merge(id, 1, Integer::sum));
+            stockReservationService.reserve(quantities);
+        });
+        assertStockConserved(tx, variantIds, batched);
+
+        assertEquals(0, batched.lockFailures, "sorted batched reservation must not deadlock");
+        assertEquals(ORDERS, batched.committed);
+    }
+
+    private Result run(TransactionTemplate tx, List<List<Long>> carts, Consumer<List<Long>> placeOrder) throws Exception {
+        AtomicInteger committed = new AtomicInteger();
+        AtomicInteger lockFailures = new AtomicInteger();
+        AtomicInteger unitsReserved = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (List<Long> cart : carts) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                try {
+                    tx.executeWithoutResult(status -> placeOrder.accept(cart));
+                    committed.incrementAndGet();
+                    unitsReserved.addAndGet(cart.size());
+                } catch (ConcurrencyFailureException e) {
+                    lockFailures.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        pool.shutdown();
+        return new Result(committed.get(), lockFailures.get(), unitsReserved.get());
+    }
+
+    private List<Long> createVariants(TransactionTemplate tx) {
+        return tx.execute(status -> {
+            List<Long> ids = new ArrayList<>();
+            for (int i = 0; i < SKUS; i++) {
+                Product product = Product.builder().name("Product " + i).slug("product-" + i).isActive(true).build();
+                ProductVariant variant = ProductVariant.builder()
+                        .product(product)
+                        .sku("SKU-" + i)
+                        .price(new BigDecimal("199000.00"))
+                        .stock(INITIAL_STOCK)
+                        .isActive(true)
+                        .build();
+                entityManager.persist(product);
+                entityManager.persist(variant);
+                ids.add(variant.getId());
+            }
+            return ids;
+        });
+    }
+
+    private void resetStock(TransactionTemplate tx, List<Long> variantIds) {
+        tx.executeWithoutResult(status -> productVariantRepository.findAllById(variantIds)
+                .forEach(v -> v.setStock(INITIAL_STOCK)));
+    }
+
+    private void assertStockConserved(TransactionTemplate tx, List<Long> variantIds, Result result) {
+        int remaining = tx.execute(status -> productVariantRepository.findAllById(variantIds).stream()
+                .mapToInt(ProductVariant::getStock)
+                .sum());
+        assertEquals(SKUS * INITIAL_STOCK - result.unitsReserved, remaining);
+        assertEquals(ORDERS, result.committed + result.lockFailures);
+    }
+
+    // Mỗi giỏ 2-4 SKU khác nhau theo thứ tự ngẫu nhiên
+    private static List<List<Long>> randomCarts(List<Long> variantIds) {
+        Random random = new Random(7);
+        List<List<Long>> carts = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            List<Long> cart = new ArrayList<>(variantIds);
+            Collections.shuffle(cart, random);
+            carts.add(cart.subList(0, 2 + random.nextInt(SKUS - 1)));
+        }
+        return carts;
+    }
+
+    private record Result(int committed, int lockFailures, int unitsReserved) {
+    }
+}
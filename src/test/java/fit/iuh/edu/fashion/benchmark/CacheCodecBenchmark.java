@@ -0,0 +1,212 @@
+package fit.iuh.edu.fashion.benchmark;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import fit.iuh.edu.fashion.cache.BinaryCacheValueCodec;
+import fit.iuh.edu.fashion.dto.CatalogDataDTO;
+import fit.iuh.edu.fashion.dto.ProductCatalogDTO;
+import fit.iuh.edu.fashion.dto.response.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * So sánh serializer JSON default-typing hiện tại với BinaryCacheValueCodec trên các DTO thật được cache.
+ * Chạy: mvn test-compile exec:java -Dexec.mainClass=fit.iuh.edu.fashion.benchmark.CacheCodecBenchmark -Dexec.classpathScope=test
+ * (main in kích thước payload trước rồi chạy JMH)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheCodecBenchmark {
+
+    @Param({"product", "productList", "catalogData"})
+    public String payload;
+
+    @Param({"json", "binary", "binaryCompressed"})
+    public String codec;
+
+    private RedisSerializer<Object> serializer;
+    private Object value;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() {
+        serializer = createSerializer(codec);
+        value = createPayload(payload);
+        encoded = serializer.serialize(value);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(value);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return serializer.deserialize(encoded);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        System.out.printf("%-14s %10s %10s %18s%n", "payload", "json", "binary", "binaryCompressed");
+        for (String payload : List.of("product", "productList", "catalogData")) {
+            Object value = createPayload(payload);
+            System.out.printf("%-14s %10d %10d %18d%n", payload,
+                    createSerializer("json").serialize(value).length,
+                    createSerializer("binary").serialize(value).length,
+                    createSerializer("binaryCompressed").serialize(value).length);
+        }
+
+        new Runner(new OptionsBuilder()
+                .include(CacheCodecBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+    // Cùng cấu hình ObjectMapper với CacheConfig
+    static RedisSerializer<Object> createSerializer(String codec) {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        objectMapper.enable(SerializationFeature.WRITE_DATES_WITH_ZONE_ID);
+        objectMapper.activateDefaultTyping(
+                LaissezFaireSubTypeValidator.instance,
+                ObjectMapper.DefaultTyping.NON_FINAL,
+                JsonTypeInfo.As.PROPERTY
+        );
+        GenericJackson2JsonRedisSerializer json = new GenericJackson2JsonRedisSerializer(objectMapper);
+        List<Class<?>> types = List.of(ProductResponse.class, ProductCatalogDTO.class, CatalogDataDTO.class);
+        return switch (codec) {
+            case "json" -> json;
+            case "binary" -> new BinaryCacheValueCodec(types, json, 0);
+            default -> new BinaryCacheValueCodec(types, json, 1024);
+        };
+    }
+
+    static Object createPayload(String payload) {
+        return switch (payload) {
+            case "product" -> product(1);
+            case "productList" -> {
+                List<ProductCatalogDTO> products = new ArrayList<>();
+                for (long i = 1; i <= 20; i++) {
+                    products.add(catalogProduct(i));
+                }
+                yield products;
+            }
+            default -> catalogData();
+        };
+    }
+
+    private static ProductResponse product(long id) {
+        List<ProductVariantResponse> variants = new ArrayList<>();
+        String[] colors = {"Đen", "Trắng", "Xanh navy"};
+        String[] sizes = {"S", "M", "L", "XL"};
+        long variantId = id * 100;
+        for (int c = 0; c < colors.length; c++) {
+            for (int s = 0; s < sizes.length; s++) {
+                variants.add(ProductVariantResponse.builder()
+                        .id(variantId++)
+                        .sku("AT-" + id + "-" + c + "-" + sizes[s])
+                        .color(ColorResponse.builder().id((long) c + 1).name(colors[c]).hex("#00000" + c).build())
+                        .size(SizeResponse.builder().id((long) s + 1).name(sizes[s]).note("Chuẩn Việt Nam").build())
+                        .price(new BigDecimal("299000.00"))
+                        .compareAtPrice(new BigDecimal("359000.00"))
+                        .stock(20 + s)
+                        .weightGram(250)
+                        .barcode("893" + id + c + s)
+                        .isActive(true)
+                        .build());
+            }
+        }
+        List<ProductImageResponse> images = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            images.add(ProductImageResponse.builder()
+                    .id(id * 10 + i)
+                    .url("https://cdn.fashion.local/products/" + id + "/image-" + i + ".jpg")
+                    .altText("Áo thun basic " + i)
+                    .sortOrder(i)
+                    .build());
+        }
+        return ProductResponse.builder()
+                .id(id)
+                .name("Áo Thun Cotton Basic " + id)
+                .slug("ao-thun-cotton-basic-" + id)
+                .description("Áo thun 100% cotton, form regular, thấm hút mồ hôi tốt, phù hợp mặc hằng ngày.")
+                .material("Cotton")
+                .origin("Việt Nam")
+                .isActive(true)
+                .brand(BrandResponse.builder().id(1L).name("Coolmate").slug("coolmate")
+                        .description("Thương hiệu thời trang nam").createdAt(LocalDateTime.of(2024, 1, 1, 8, 0)).build())
+                .categories(List.of(CategoryResponse.builder().id(1L).name("Áo thun").slug("ao-thun")
+                        .childrenCount(0).createdAt(LocalDateTime.of(2024, 1, 1, 8, 0)).build()))
+                .variants(variants)
+                .images(images)
+                .averageRating(4.6)
+                .totalReviews(128L)
+                .createdAt(LocalDateTime.of(2024, 3, 1, 10, 30))
+                .updatedAt(LocalDateTime.of(2024, 6, 1, 9, 15))
+                .build();
+    }
+
+    private static ProductCatalogDTO catalogProduct(long id) {
+        List<ProductCatalogDTO.VariantInfo> variants = new ArrayList<>();
+        for (String color : List.of("Đen", "Trắng", "Be")) {
+            for (String size : List.of("S", "M", "L")) {
+                variants.add(ProductCatalogDTO.VariantInfo.builder()
+                        .color(color).size(size).price(new BigDecimal("349000.00")).stock(12).available(true).build());
+            }
+        }
+        return ProductCatalogDTO.builder()
+                .id(id)
+                .name("Quần Jean Slim Fit " + id)
+                .description("Quần jean co giãn nhẹ, wash màu tự nhiên.")
+                .brandName("Levi's")
+                .categories(List.of("Quần", "Quần jean"))
+                .variants(variants)
+                .minPrice(new BigDecimal("349000.00"))
+                .maxPrice(new BigDecimal("349000.00"))
+                .material("Denim")
+                .origin("Việt Nam")
+                .build();
+    }
+
+    private static CatalogDataDTO catalogData() {
+        List<CatalogDataDTO.BrandInfo> brands = new ArrayList<>();
+        List<CatalogDataDTO.CategoryInfo> categories = new ArrayList<>();
+        List<CatalogDataDTO.ColorInfo> colors = new ArrayList<>();
+        List<CatalogDataDTO.SizeInfo> sizes = new ArrayList<>();
+        for (long i = 1; i <= 15; i++) {
+            brands.add(CatalogDataDTO.BrandInfo.builder().id(i).name("Brand " + i)
+                    .description("Mô tả thương hiệu " + i).productCount(40 + i).build());
+            categories.add(CatalogDataDTO.CategoryInfo.builder().id(i).name("Danh mục " + i)
+                    .description("Mô tả danh mục " + i).parentId(i > 5 ? i % 5 + 1 : null)
+                    .parentName(i > 5 ? "Danh mục " + (i % 5 + 1) : null).productCount(20 + i).build());
+            colors.add(CatalogDataDTO.ColorInfo.builder().id(i).name("Màu " + i).hex("#1020" + (10 + i)).productCount(i * 3).build());
+        }
+        for (String size : List.of("XS", "S", "M", "L", "XL", "XXL")) {
+            sizes.add(CatalogDataDTO.SizeInfo.builder().id((long) size.length()).name(size).note("Size " + size).productCount(70).build());
+        }
+        return CatalogDataDTO.builder()
+                .brands(brands)
+                .categories(categories)
+                .colors(colors)
+                .sizes(sizes)
+                .totalProducts(620)
+                .activeProducts(580)
+                .build();
+    }
+}
@@ -0,0 +1,124 @@
+package fit.iuh.edu.fashion.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import fit.iuh.edu.fashion.dto.UserIntentDTO;
+import fit.iuh.edu.fashion.models.Brand;
+import fit.iuh.edu.fashion.models.Category;
+import fit.iuh.edu.fashion.repositories.BrandRepository;
+import fit.iuh.edu.fashion.repositories.CategoryRepository;
+import fit.iuh.edu.fashion.services.CatalogDictionary;
+import fit.iuh.edu.fashion.services.UserIntentAnalyzer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Số câu phân tích được mỗi giây: UserIntentAnalyzer cũ (containsAny + regex từng câu) so với bản dùng KeywordAutomaton.
+ * Danh mục / thương hiệu: bản cũ gọi findAll của repository mock mỗi câu, bản mới tra CatalogDictionary nạp một lần.
+ * Chạy: mvn test-compile exec:java -Dexec.mainClass=fit.iuh.edu.fashion.benchmark.IntentAnalyzerBenchmark -Dexec.classpathScope=test
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IntentAnalyzerBenchmark {
+
+    // Câu hỏi thường gặp của chatbot (có dấu, không dấu, lẫn tiếng Anh)
+    static final List<String> MESSAGES = List.of(
+            "Tìm áo thun đen giá dưới 300k",
+            "tim ao thun mau den, gia duoi 300k",
+            "Cho mình xem quần jean nam size 32",
+            "Có váy đầm dự tiệc màu đỏ không?",
+            "Gợi ý giày sneaker trắng cho nữ tầm 1 triệu",
+            "Mình cao 1m70 nặng 65kg thì mặc size nào?",
+            "Cách phối đồ đi làm cho nam công sở",
+            "So sánh áo khoác Adidas và Nike",
+            "Túi xách da màu nâu từ 500k đến 2tr",
+            "Shop có balo đi học giá rẻ không",
+            "Áo sơ mi trắng size M, L cho nam",
+            "quan short the thao nam size xl",
+            "Váy vintage màu xanh cho nữ",
+            "Tư vấn giúp mình outfit đi chơi cuối tuần",
+            "Hiển thị sản phẩm mới nhất",
+            "Áo len cổ lọ màu xám dưới 400 000",
+            "Nên mua giày boot hay sneaker để đi phố?",
+            "show me black hoodie under 500k",
+            "Phụ kiện thắt lưng da nam cao cấp",
+            "Đầm dạ hội màu hồng pastel size S",
+            "Chính sách đổi trả như thế nào?",
+            "Mũ lưỡi trai unisex màu vàng",
+            "quần tây công sở nữ size 28 giá khoảng 450k",
+            "áo khoác gió chống nước, màu cam hoặc tím"
+    );
+
+    static final List<String> CATEGORIES = List.of("Áo thun", "Áo sơ mi", "Áo khoác", "Quần jean", "Quần short",
+            "Váy", "Đầm", "Giày sneaker", "Túi xách", "Balo", "Phụ kiện", "Thắt lưng");
+
+    static final List<String> BRANDS = List.of("Adidas", "Nike", "Puma", "Uniqlo", "Zara", "H&M", "Coolmate",
+            "Routine", "Levi's", "Converse");
+
+    @Param({"legacy", "compiled"})
+    public String analyzer;
+
+    private Function<String, UserIntentDTO> analyze;
+
+    @Setup
+    public void setUp() {
+        // Log info từng câu của analyzer không phải thứ cần đo
+        ((Logger) LoggerFactory.getLogger(UserIntentAnalyzer.class)).setLevel(Level.WARN);
+        ((Logger) LoggerFactory.getLogger(LegacyUserIntentAnalyzer.class)).setLevel(Level.WARN);
+        analyze = "legacy".equals(analyzer)
+                ? new LegacyUserIntentAnalyzer(categoryRepository(), brandRepository())::analyzeIntent
+                : new UserIntentAnalyzer(catalogDictionary())::analyzeIntent;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(24)
+    public void analyzeMessages(Blackhole blackhole) {
+        for (String message : MESSAGES) {
+            blackhole.consume(analyze.apply(message));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(IntentAnalyzerBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+    static CatalogDictionary catalogDictionary() {
+        CatalogDictionary dictionary = new CatalogDictionary(brandRepository(), categoryRepository(), mock(StringRedisTemplate.class));
+        dictionary.refresh();
+        return dictionary;
+    }
+
+    static CategoryRepository categoryRepository() {
+        CategoryRepository repository = mock(CategoryRepository.class);
+        when(repository.findAll()).thenReturn(CATEGORIES.stream()
+                .map(name -> Category.builder().name(name).build())
+                .toList());
+        return repository;
+    }
+
+    static BrandRepository brandRepository() {
+        BrandRepository repository = mock(BrandRepository.class);
+        when(repository.findAll()).thenReturn(BRANDS.stream()
+                .map(name -> Brand.builder().name(name).build())
+                .toList());
+        return repository;
+    }
+}
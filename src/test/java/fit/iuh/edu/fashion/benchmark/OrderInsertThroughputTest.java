@@ -0,0 +1,225 @@
+package fit.iuh.edu.fashion.benchmark;
+
+import fit.iuh.edu.fashion.config.IdSequenceInitializer;
+import fit.iuh.edu.fashion.models.*;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Ghi đơn hàng với tỷ lệ dòng thực tế (1-10 dòng / đơn): mỗi đơn gồm order, order_items, inventory_movements,
+ * một payment_transaction và một audit_log.
+ * - "identity": mỗi entity flush ngay khi persist - đúng hành vi IDENTITY (INSERT lập tức, không batch)
+ * - "pooled batch": id lấy từ sequence pooled, Hibernate gom INSERT theo lô khi commit
+ * So số câu lệnh JDBC (mỗi câu một round trip tới MariaDB) thay vì thời gian chạy trên H2 in-memory.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.jdbc.batch_size=50",
+        "spring.jpa.properties.hibernate.order_inserts=true"
+})
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OrderInsertThroughputTest {
+
+    private static final int ORDERS = 400;
+    // Mỗi bảng một câu INSERT theo lô: orders, order_items, inventory_movements, payment_transactions, audit_logs
+    private static final int TABLES_PER_ORDER = 5;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void pooledIdsBatchOrderInserts() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Fixture fixture = createFixture(tx);
+        List<Integer> lineCounts = orderMix();
+
+        Result identity = run(tx, fixture, lineCounts, "identity-", entity -> entityManager.flush());
+        Result pooled = run(tx, fixture, lineCounts, "pooled-", entity -> { });
+
+        assertEquals(identity.rows, pooled.rows);
+        // Flush từng entity: ít nhất một câu INSERT cho mỗi dòng
+        assertTrue(identity.statements >= identity.rows, "identity statements: " + identity.statements);
+        // Theo lô: một câu mỗi bảng, cộng lượt lấy khối id từ sequence (ít hơn một lượt mỗi đơn)
+        assertTrue(pooled.statementsPerOrder() < TABLES_PER_ORDER + 1,
+                "pooled statements per order: " + pooled.statementsPerOrder());
+        assertTrue(pooled.statementsPerOrder() * 2 < identity.statementsPerOrder(),
+                "pooled batch should need far fewer statements per order");
+    }
+
+    @Test
+    void sequencesAreMovedPastExistingIds() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Fixture fixture = createFixture(tx);
+        // Dòng cũ sinh bằng AUTO_INCREMENT, id vượt xa vị trí sequence
+        jdbcTemplate.update("INSERT INTO audit_logs (id, action, status, created_at) VALUES (100000, 'LEGACY', 'SUCCESS', CURRENT_TIMESTAMP)");
+
+        new IdSequenceInitializer(jdbcTemplate).alignSequences();
+
+        Long id = tx.execute(status -> {
+            AuditLog log = AuditLog.builder().action("CREATE").entityType("Order").status("SUCCESS").build();
+            entityManager.persist(log);
+            return log.getId();
+        });
+        assertTrue(id > 100000, "id " + id + " collides with existing rows");
+        assertNotNull(fixture.variantId);
+    }
+
+    private Result run(TransactionTemplate tx, Fixture fixture, List<Integer> lineCounts, String prefix,
+                       Consumer<Object> afterPersist) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        long rows = 0;
+        for (int i = 0; i < lineCounts.size(); i++) {
+            int lines = lineCounts.get(i);
+            String code = prefix + i;
+            tx.executeWithoutResult(status -> placeOrder(fixture, code, lines, afterPersist));
+            rows += 1 + 2L * lines + 2;
+        }
+        return new Result(rows, statistics.getPrepareStatementCount(), lineCounts.size());
+    }
+
+    private void placeOrder(Fixture fixture, String code, int lines, Consumer<Object> afterPersist) {
+        User customer = entityManager.getReference(User.class, fixture.customerId);
+        Product product = entityManager.getReference(Product.class, fixture.productId);
+        ProductVariant variant = entityManager.getReference(ProductVariant.class, fixture.variantId);
+        BigDecimal price = new BigDecimal("199000.00");
+
+        Order order = Order.builder()
+                .code(code)
+                .customer(customer)
+                .status(Order.OrderStatus.PENDING)
+                .subtotal(price.multiply(BigDecimal.valueOf(lines)))
+                .discountTotal(BigDecimal.ZERO)
+                .shippingFee(BigDecimal.ZERO)
+                .taxTotal(BigDecimal.ZERO)
+                .grandTotal(price.multiply(BigDecimal.valueOf(lines)))
+                .shipName("Buyer")
+                .shipPhone("0900000000")
+                .shipLine1("12 Nguyen Van Bao")
+                .shipCity("Ho Chi Minh")
+                .shipCountry("Vietnam")
+                .paymentMethod(Order.PaymentMethod.VNPAY)
+                .paymentStatus(Order.PaymentStatus.UNPAID)
+                .items(new ArrayList<>())
+                .build();
+        entityManager.persist(order);
+
+        for (int line = 0; line < lines; line++) {
+            OrderItem item = OrderItem.builder()
+                    .order(order)
+                    .product(product)
+                    .variant(variant)
+                    .sku("SKU-BENCH")
+                    .productName("Product bench")
+                    .quantity(1)
+                    .unitPrice(price)
+                    .discountAmount(BigDecimal.ZERO)
+                    .lineTotal(price)
+                    .build();
+            order.getItems().add(item);
+            entityManager.persist(item);
+            afterPersist.accept(item);
+        }
+        for (int line = 0; line < lines; line++) {
+            InventoryMovement movement = InventoryMovement.builder()
+                    .variant(variant)
+                    .quantity(-1)
+                    .reason(InventoryMovement.MovementReason.SALE)
+                    .relatedOrder(order)
+                    .note("Order: " + code)
+                    .createdBy(customer)
+                    .build();
+            entityManager.persist(movement);
+            afterPersist.accept(movement);
+        }
+        PaymentTransaction transaction = PaymentTransaction.builder()
+                .order(order)
+                .txnRef(code)
+                .amount(order.getGrandTotal())
+                .paymentMethod(Order.PaymentMethod.VNPAY)
+                .status(PaymentTransaction.TransactionStatus.PENDING)
+                .transactionType("CREATE")
+                .build();
+        entityManager.persist(transaction);
+        afterPersist.accept(transaction);
+        AuditLog auditLog = AuditLog.builder()
+                .action("CREATE")
+                .entityType("Order")
+                .entityId(order.getId())
+                .newValue("Created order: " + code)
+                .status("SUCCESS")
+                .build();
+        entityManager.persist(auditLog);
+        afterPersist.accept(auditLog);
+    }
+
+    // 40% đơn 1-2 dòng, 40% đơn 3-5 dòng, 20% đơn 6-10 dòng
+    private static List<Integer> orderMix() {
+        Random random = new Random(11);
+        List<Integer> lineCounts = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            int bucket = random.nextInt(10);
+            lineCounts.add(bucket < 4 ? 1 + random.nextInt(2) : bucket < 8 ? 3 + random.nextInt(3) : 6 + random.nextInt(5));
+        }
+        return lineCounts;
+    }
+
+    private Fixture createFixture(TransactionTemplate tx) {
+        return tx.execute(status -> {
+            long suffix = System.nanoTime();
+            User customer = User.builder().email("bench" + suffix + "@example.com").passwordHash("x")
+                    .fullName("Bench").isActive(true).build();
+            Product product = Product.builder().name("Product bench").slug("product-bench-" + suffix).isActive(true).build();
+            ProductVariant variant = ProductVariant.builder()
+                    .product(product)
+                    .sku("SKU-BENCH-" + suffix)
+                    .price(new BigDecimal("199000.00"))
+                    .stock(1_000_000)
+                    .isActive(true)
+                    .build();
+            entityManager.persist(customer);
+            entityManager.persist(product);
+            entityManager.persist(variant);
+            return new Fixture(customer.getId(), product.getId(), variant.getId());
+        });
+    }
+
+    private record Fixture(Long customerId, Long productId, Long variantId) {
+    }
+
+    private record Result(long rows, long statements, int orders) {
+        double statementsPerOrder() {
+            return (double) statements / orders;
+        }
+    }
+}
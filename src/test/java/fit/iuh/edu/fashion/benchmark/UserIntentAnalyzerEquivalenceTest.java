@@ -0,0 +1,82 @@
+package fit.iuh.edu.fashion.benchmark;
+
+import fit.iuh.edu.fashion.dto.UserIntentDTO;
+import fit.iuh.edu.fashion.services.UserIntentAnalyzer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * UserIntentAnalyzer dùng KeywordAutomaton phải cho cùng kết quả với bản cũ trên các câu của benchmark
+ * và các câu biên (số tiền có khoảng trắng / đơn vị, size dính chữ, khoảng trắng đầu câu, ký tự ngoài tiếng Việt).
+ * Khi câu khớp nhiều giá trị, hai bản chọn khác nhau nên loại sản phẩm, phong cách, danh mục, thương hiệu chỉ so có / không:
+ * bản cũ chọn loại sản phẩm / phong cách theo thứ tự duyệt Map.of (đổi theo từng lần chạy JVM), danh mục / thương hiệu
+ * theo thứ tự findAll; bản mới chọn theo thứ tự khai báo và tên dài nhất (CatalogDictionary).
+ */
+class UserIntentAnalyzerEquivalenceTest {
+
+    private static final List<String> EDGE_CASES = List.of(
+            "",
+            "   ",
+            "  áo thun   màu đen\tgiá 200k",
+            "ÁO THUN ĐEN SIZE XXL",
+            "giày 40 41 42 hay 4",
+            "size m/l, xs_s, xxxl; 2xl",
+            "quần giá 1 triệu 5",
+            "quần giá 1tr5 đến 2 trieu",
+            "áo 100 000 hoặc 250 k",
+            "áo 99999999999999999999 đồng",
+            "màu   giá   size   màu",
+            "cỡ co màu mau giá",
+            "váy cô dâu chị gái",
+            "đồ Ωmega ñ 漢字 size 😀 l",
+            "áó thun"
+    );
+
+    @Test
+    void compiledAnalyzerMatchesLegacyAnalyzer() {
+        LegacyUserIntentAnalyzer legacy = new LegacyUserIntentAnalyzer(
+                IntentAnalyzerBenchmark.categoryRepository(), IntentAnalyzerBenchmark.brandRepository());
+        UserIntentAnalyzer compiled = new UserIntentAnalyzer(IntentAnalyzerBenchmark.catalogDictionary());
+
+        List<String> messages = new ArrayList<>(IntentAnalyzerBenchmark.MESSAGES);
+        messages.addAll(EDGE_CASES);
+        for (String message : messages) {
+            UserIntentDTO expected = legacy.analyzeIntent(message);
+            UserIntentDTO actual = compiled.analyzeIntent(message);
+            assertEquals(expected.getProductType() == null, actual.getProductType() == null, message);
+            assertEquals(expected.getCategory() == null, actual.getCategory() == null, message);
+            assertEquals(expected.getBrand() == null, actual.getBrand() == null, message);
+            assertEquals(expected.getStyle() == null, actual.getStyle() == null, message);
+            // searchKeywords có chứa category, brand, style
+            String searchKeywords = actual.getSearchKeywords();
+            for (String[] choice : new String[][]{{actual.getCategory(), expected.getCategory()},
+                    {actual.getBrand(), expected.getBrand()}, {actual.getStyle(), expected.getStyle()}}) {
+                if (choice[0] != null) {
+                    searchKeywords = searchKeywords.replace(choice[0], choice[1]);
+                }
+            }
+            actual.setSearchKeywords(searchKeywords);
+            for (UserIntentDTO intent : List.of(expected, actual)) {
+                intent.setProductType(null);
+                intent.setCategory(null);
+                intent.setBrand(null);
+                intent.setStyle(null);
+            }
+            assertEquals(expected.toString(), actual.toString(), message);
+        }
+    }
+
+    @Test
+    void ambiguousProductTypeAndStyleFollowDeclarationOrder() {
+        UserIntentAnalyzer compiled = new UserIntentAnalyzer(IntentAnalyzerBenchmark.catalogDictionary());
+
+        // "vi" (phụ kiện) nằm trong "vintage"; câu khớp cả Vintage lẫn Dạo phố ("di choi")
+        UserIntentDTO intent = compiled.analyzeIntent("Váy vintage đi chơi");
+        assertEquals("váy", intent.getProductType());
+        assertEquals("Dạo phố", intent.getStyle());
+    }
+}
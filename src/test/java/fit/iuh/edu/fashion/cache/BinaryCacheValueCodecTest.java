@@ -0,0 +1,56 @@
+package fit.iuh.edu.fashion.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fit.iuh.edu.fashion.dto.ProductCatalogDTO;
+import fit.iuh.edu.fashion.dto.response.BrandResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryCacheValueCodecTest {
+
+    private final GenericJackson2JsonRedisSerializer json = new GenericJackson2JsonRedisSerializer(new ObjectMapper());
+    private final BinaryCacheValueCodec codec =
+            new BinaryCacheValueCodec(List.of(BrandResponse.class, ProductCatalogDTO.class), json, 256);
+
+    @Test
+    void roundTripsRegisteredTypesAndLists() {
+        BrandResponse brand = BrandResponse.builder().id(1L).name("Coolmate").slug("coolmate")
+                .createdAt(LocalDateTime.of(2024, 1, 1, 8, 0)).build();
+        assertEquals(brand, codec.deserialize(codec.serialize(brand)));
+
+        List<ProductCatalogDTO> products = new ArrayList<>();
+        for (long i = 1; i <= 20; i++) {
+            products.add(ProductCatalogDTO.builder().id(i).name("Áo thun " + i).brandName("Coolmate")
+                    .categories(List.of("Áo")).minPrice(new BigDecimal("199000.00")).build());
+        }
+        byte[] encoded = codec.serialize(products);
+        assertEquals(products, codec.deserialize(encoded));
+        assertTrue(encoded.length < json.serialize(products).length);
+
+        assertEquals(List.of(), codec.deserialize(codec.serialize(new ArrayList<>())));
+    }
+
+    @Test
+    void unregisteredTypesUseFallbackSerializer() {
+        Map<String, Integer> value = Map.of("a", 1);
+        assertEquals(value, codec.deserialize(codec.serialize(value)));
+    }
+
+    @Test
+    void entriesFromOtherCodecVersionsOrSchemasAreMisses() {
+        assertNull(codec.deserialize(json.serialize(Map.of("legacy", true))));
+
+        // Cùng định dạng nhưng codec không còn đăng ký kiểu đã ghi (DTO đổi cấu trúc / bị bỏ)
+        BinaryCacheValueCodec otherSchema = new BinaryCacheValueCodec(List.of(ProductCatalogDTO.class), json, 256);
+        byte[] encoded = codec.serialize(BrandResponse.builder().id(1L).name("Nike").build());
+        assertNull(otherSchema.deserialize(encoded));
+    }
+}
@@ -0,0 +1,186 @@
+package fit.iuh.edu.fashion.cache;
+
+import fit.iuh.edu.fashion.dto.ProductCatalogDTO;
+import fit.iuh.edu.fashion.dto.response.BrandResponse;
+import fit.iuh.edu.fashion.dto.response.ProductResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Harness đo hit ratio dưới workload trộn đọc / admin sửa sản phẩm:
+ * xóa allEntries (cách cũ) so với xóa theo key phụ thuộc (CacheDependencyTracker).
+ * Đồng thời kiểm tra không có lần đọc nào trả về dữ liệu cũ sau khi sửa.
+ */
+class CacheInvalidationHitRatioTest {
+
+    private static final int PRODUCTS = 500;
+    private static final int BRANDS = 20;
+    private static final int OPERATIONS = 20_000;
+    private static final double WRITE_RATIO = 0.02;
+
+    @Test
+    void targetedInvalidationKeepsHitRatioUnderAdminWrites() {
+        double allEntries = runWorkload(false);
+        double targeted = runWorkload(true);
+
+        assertTrue(targeted > allEntries + 0.2,
+                "targeted=" + targeted + " should be well above allEntries=" + allEntries);
+    }
+
+    private double runWorkload(boolean targeted) {
+        Map<String, Set<String>> redisSets = new HashMap<>();
+        StringRedisTemplate redisTemplate = inMemoryRedis(redisSets);
+
+        ObjectProvider<CacheManager> provider = mock(ObjectProvider.class);
+        CacheDependencyTracker tracker = new CacheDependencyTracker(redisTemplate, provider);
+        CacheManager cacheManager = new TwoLevelCacheManager(
+                new ConcurrentMapCacheManager("products", "productsByBrand", "topProducts"),
+                redisTemplate,
+                Map.of("products", new TwoLevelCacheManager.NearCacheSpec(10_000, Duration.ofMinutes(1))),
+                tracker);
+        when(provider.getObject()).thenReturn(cacheManager);
+
+        Cache products = cacheManager.getCache("products");
+        Cache productsByBrand = cacheManager.getCache("productsByBrand");
+        Cache topProducts = cacheManager.getCache("topProducts");
+
+        // "Database": phiên bản hiện tại của từng sản phẩm
+        int[] versions = new int[PRODUCTS + 1];
+        Random random = new Random(42);
+        long reads = 0;
+        long hits = 0;
+
+        for (int op = 0; op < OPERATIONS; op++) {
+            long productId = skewedProductId(random);
+
+            if (random.nextDouble() < WRITE_RATIO) {
+                versions[(int) productId]++;
+                if (targeted) {
+                    tracker.invalidate(
+                            CacheDependencyTracker.product(productId),
+                            CacheDependencyTracker.brandProducts(brandOf(productId)),
+                            CacheDependencyTracker.CATALOG);
+                } else {
+                    products.clear();
+                    productsByBrand.clear();
+                    topProducts.clear();
+                }
+                continue;
+            }
+
+            reads++;
+            double kind = random.nextDouble();
+            if (kind < 0.8) {
+                ProductResponse cached = products.get("id_" + productId, ProductResponse.class);
+                if (cached != null) {
+                    hits++;
+                    assertEquals(productName(productId, versions), cached.getName(), "stale product read");
+                } else {
+                    products.put("id_" + productId, productResponse(productId, versions));
+                }
+            } else if (kind < 0.95) {
+                long brandId = brandOf(productId);
+                String key = brandId + "_10";
+                if (getList(productsByBrand, key) != null) {
+                    hits++;
+                    assertFresh(getList(productsByBrand, key), versions);
+                } else {
+                    productsByBrand.put(key, catalogList(versions, () -> brandProductIds(brandId)));
+                }
+            } else {
+                // Key dạng chuỗi như RedisCache (evict theo key đã lưu trong set phụ thuộc)
+                if (getList(topProducts, "10") != null) {
+                    hits++;
+                    assertFresh(getList(topProducts, "10"), versions);
+                } else {
+                    topProducts.put("10", catalogList(versions, () -> List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L)));
+                }
+            }
+        }
+        return (double) hits / reads;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<ProductCatalogDTO> getList(Cache cache, Object key) {
+        Cache.ValueWrapper wrapper = cache.get(key);
+        return wrapper != null ? (List<ProductCatalogDTO>) wrapper.get() : null;
+    }
+
+    private static void assertFresh(List<ProductCatalogDTO> list, int[] versions) {
+        for (ProductCatalogDTO dto : list) {
+            assertEquals(productName(dto.getId(), versions), dto.getName(), "stale list read");
+        }
+    }
+
+    // Phân bố lệch: một số ít sản phẩm được đọc rất nhiều
+    private static long skewedProductId(Random random) {
+        double r = random.nextDouble();
+        return 1 + (long) (r * r * r * PRODUCTS) % PRODUCTS;
+    }
+
+    private static long brandOf(long productId) {
+        return productId % BRANDS + 1;
+    }
+
+    private static List<Long> brandProductIds(long brandId) {
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= PRODUCTS && ids.size() < 10; id++) {
+            if (brandOf(id) == brandId) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    private static String productName(long productId, int[] versions) {
+        return "Product " + productId + " v" + versions[(int) productId];
+    }
+
+    private static ProductResponse productResponse(long productId, int[] versions) {
+        return ProductResponse.builder()
+                .id(productId)
+                .name(productName(productId, versions))
+                .brand(BrandResponse.builder().id(brandOf(productId)).build())
+                .build();
+    }
+
+    private static List<ProductCatalogDTO> catalogList(int[] versions, Supplier<List<Long>> ids) {
+        List<ProductCatalogDTO> list = new ArrayList<>();
+        for (Long id : ids.get()) {
+            list.add(ProductCatalogDTO.builder().id(id).name(productName(id, versions)).build());
+        }
+        return list;
+    }
+
+    /**
+     * StringRedisTemplate giả: set operations trên HashMap, pub/sub gửi ngay trong tiến trình (một node)
+     */
+    @SuppressWarnings("unchecked")
+    private static StringRedisTemplate inMemoryRedis(Map<String, Set<String>> sets) {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        SetOperations<String, String> setOperations = mock(SetOperations.class);
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+        when(setOperations.add(anyString(), any())).thenAnswer(invocation -> {
+            String value = invocation.getArgument(1);
+            return sets.computeIfAbsent(invocation.getArgument(0), k -> new HashSet<>()).add(value) ? 1L : 0L;
+        });
+        when(setOperations.members(anyString())).thenAnswer(invocation ->
+                new HashSet<>(sets.getOrDefault(invocation.<String>getArgument(0), Set.of())));
+        when(redisTemplate.delete(anyString())).thenAnswer(invocation -> sets.remove(invocation.<String>getArgument(0)) != null);
+        return redisTemplate;
+    }
+}
@@ -0,0 +1,136 @@
+package fit.iuh.edu.fashion.cache;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.interceptor.SimpleKey;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Kiểm tra chống stampede: nhiều request đồng thời khi cache miss chỉ tạo một lần load,
+ * entry quá hạn refresh được trả ngay trong khi một lần refresh chạy nền.
+ */
+class RefreshAheadCacheTest {
+
+    private static final int CALLERS = 32;
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        RefreshAheadCache cache = new RefreshAheadCache(new ConcurrentMapCacheManager("catalogData"),
+                Runnable::run, Map.of("catalogData", Duration.ofMinutes(4)));
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loaderEntered = new CountDownLatch(1);
+        CountDownLatch releaseLoader = new CountDownLatch(1);
+
+        ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            results.add(callers.submit(() -> cache.get("catalogData", SimpleKey.EMPTY, () -> {
+                loads.incrementAndGet();
+                loaderEntered.countDown();
+                await(releaseLoader);
+                return "catalog v1";
+            })));
+            assertTrue(loaderEntered.await(5, TimeUnit.SECONDS));
+
+            for (int i = 1; i < CALLERS; i++) {
+                results.add(callers.submit(() -> cache.get("catalogData", SimpleKey.EMPTY, () -> {
+                    loads.incrementAndGet();
+                    return "catalog v1";
+                })));
+            }
+            // Chờ các caller vào hàng đợi chung trước khi cho loader chạy xong
+            RefreshAheadCache.RefreshStatistics stats = cache.getStatistics().get("catalogData");
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (stats.getCoalesced() < CALLERS - 1 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            releaseLoader.countDown();
+
+            for (Future<String> result : results) {
+                assertEquals("catalog v1", result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get());
+            assertEquals(1, stats.getLoads());
+            assertEquals(CALLERS - 1, stats.getCoalesced());
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void staleEntryIsServedWhileSingleRefreshRuns() throws Exception {
+        MutableClock clock = new MutableClock();
+        ExecutorService refresher = Executors.newSingleThreadExecutor();
+        RefreshAheadCache cache = new RefreshAheadCache(new ConcurrentMapCacheManager("topProducts"),
+                refresher, Map.of("topProducts", Duration.ofSeconds(90)), clock);
+        try {
+            assertEquals("top v1", cache.get("topProducts", 10, () -> "top v1"));
+
+            clock.advance(Duration.ofSeconds(100));
+            AtomicInteger refreshes = new AtomicInteger();
+            CountDownLatch releaseRefresh = new CountDownLatch(1);
+            for (int i = 0; i < CALLERS; i++) {
+                String value = cache.get("topProducts", 10, () -> {
+                    refreshes.incrementAndGet();
+                    await(releaseRefresh);
+                    return "top v2";
+                });
+                assertEquals("top v1", value);
+            }
+            releaseRefresh.countDown();
+            refresher.shutdown();
+            assertTrue(refresher.awaitTermination(5, TimeUnit.SECONDS));
+
+            assertEquals(1, refreshes.get());
+            assertEquals("top v2", cache.get("topProducts", 10, () -> "unexpected load"));
+            RefreshAheadCache.RefreshStatistics stats = cache.getStatistics().get("topProducts");
+            assertEquals(1, stats.getRefreshes());
+            assertEquals(CALLERS, stats.getStaleServed());
+        } finally {
+            refresher.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class MutableClock extends Clock {
+        private volatile Instant now = Instant.parse("2025-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package fit.iuh.edu.fashion.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Hai "node" dùng chung một L2 (ConcurrentMapCacheManager thay cho Redis),
+ * kênh pub/sub được giả lập bằng cách chuyển message sang mọi node.
+ */
+class TwoLevelCacheManagerTest {
+
+    private final List<TwoLevelCacheManager> nodes = new ArrayList<>();
+    private TwoLevelCacheManager nodeA;
+    private TwoLevelCacheManager nodeB;
+    private StringRedisTemplate redisTemplate;
+
+    @BeforeEach
+    void setUp() {
+        ConcurrentMapCacheManager sharedRemote = new ConcurrentMapCacheManager("brands", "aiResponses");
+        redisTemplate = mock(StringRedisTemplate.class);
+        when(redisTemplate.convertAndSend(anyString(), anyString())).thenAnswer(invocation -> {
+            String message = invocation.getArgument(1);
+            nodes.forEach(node -> node.onInvalidationMessage(message));
+            return (long) nodes.size();
+        });
+
+        Map<String, TwoLevelCacheManager.NearCacheSpec> specs =
+                Map.of("brands", new TwoLevelCacheManager.NearCacheSpec(100, Duration.ofMinutes(1)));
+        nodeA = new TwoLevelCacheManager(sharedRemote, redisTemplate, specs);
+        nodeB = new TwoLevelCacheManager(sharedRemote, redisTemplate, specs);
+        nodes.add(nodeA);
+        nodes.add(nodeB);
+    }
+
+    @Test
+    void readsAreServedFromL1AfterFirstLoad() {
+        Cache brands = nodeA.getCache("brands");
+        brands.put("id_1", "Nike");
+
+        assertEquals("Nike", brands.get("id_1", String.class));
+        assertEquals("Nike", brands.get("id_1", String.class));
+
+        TwoLevelCacheManager.NearCacheStatistics stats = nodeA.getNearCacheStatistics().get("brands");
+        assertEquals(2, stats.getHitCount());
+        assertEquals(0, stats.getMissCount());
+    }
+
+    @Test
+    void writeOnOneNodeDropsStaleL1OnOtherNodes() {
+        nodeA.getCache("brands").put("id_1", "Nike");
+        assertEquals("Nike", nodeB.getCache("brands").get("id_1", String.class));
+
+        nodeA.getCache("brands").put("id_1", "Nike Vietnam");
+        assertEquals("Nike Vietnam", nodeB.getCache("brands").get("id_1", String.class));
+
+        nodeA.getCache("brands").evict("id_1");
+        assertNull(nodeB.getCache("brands").get("id_1"));
+    }
+
+    @Test
+    void clearPropagatesToOtherNodes() {
+        nodeA.getCache("brands").put("all", "list");
+        nodeB.getCache("brands").get("all");
+
+        nodeB.getCache("brands").clear();
+        assertNull(nodeA.getCache("brands").get("all"));
+    }
+
+    @Test
+    void cachesWithoutNearCacheSpecGoStraightToRemote() {
+        Cache aiResponses = nodeA.getCache("aiResponses");
+        assertFalse(aiResponses instanceof TwoLevelCache);
+        assertFalse(nodeA.getNearCacheStatistics().containsKey("aiResponses"));
+    }
+
+    @Test
+    void staleRemoteReadIsNotCopiedIntoL1AfterConcurrentEvict() {
+        Map<String, TwoLevelCacheManager.NearCacheSpec> specs =
+                Map.of("brands", new TwoLevelCacheManager.NearCacheSpec(100, Duration.ofMinutes(1)));
+        List<Runnable> duringRemoteRead = new ArrayList<>();
+        ConcurrentMapCacheManager slowRemote = new ConcurrentMapCacheManager() {
+            @Override
+            protected Cache createConcurrentMapCache(String name) {
+                return new ConcurrentMapCache(name) {
+                    @Override
+                    public ValueWrapper get(Object key) {
+                        ValueWrapper wrapper = super.get(key);
+                        // Node khác ghi/xóa key trong lúc giá trị cũ đang trên đường về
+                        duringRemoteRead.forEach(Runnable::run);
+                        return wrapper;
+                    }
+                };
+            }
+        };
+        TwoLevelCacheManager node = new TwoLevelCacheManager(slowRemote, redisTemplate, specs);
+        nodes.add(node);
+        slowRemote.getCache("brands").put("id_1", "Nike");
+
+        duringRemoteRead.add(() -> node.onInvalidationMessage("E|peer|brands|id_1"));
+        assertEquals("Nike", node.getCache("brands").get("id_1", String.class));
+
+        TwoLevelCache brands = (TwoLevelCache) node.getCache("brands");
+        assertNull(brands.getLocalCache().getIfPresent("id_1"));
+    }
+
+    @Test
+    void l1HandsOutSeparateCopiesWhenCodecIsSet() {
+        Map<String, TwoLevelCacheManager.NearCacheSpec> specs =
+                Map.of("brands", new TwoLevelCacheManager.NearCacheSpec(100, Duration.ofMinutes(1)));
+        TwoLevelCacheManager node = new TwoLevelCacheManager(new ConcurrentMapCacheManager("brands"), redisTemplate,
+                specs, null, new JdkSerializationRedisSerializer());
+        nodes.add(node);
+        Cache brands = node.getCache("brands");
+        brands.put("all", new ArrayList<>(List.of("Nike", "Adidas")));
+
+        @SuppressWarnings("unchecked")
+        List<String> first = brands.get("all", List.class);
+        first.add("Puma");
+
+        assertEquals(List.of("Nike", "Adidas"), brands.get("all", List.class));
+        assertNotSame(first, brands.get("all", List.class));
+    }
+}
@@ -0,0 +1,93 @@
+package fit.iuh.edu.fashion.repositories;
+
+import fit.iuh.edu.fashion.dto.response.CursorPageResponse;
+import fit.iuh.edu.fashion.exception.BusinessException;
+import fit.iuh.edu.fashion.models.AuditLog;
+import fit.iuh.edu.fashion.utils.PageCursorUtil;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Duyệt hết audit_logs bằng cursor phải ra đúng thứ tự (createdAt DESC, id DESC) như phân trang offset,
+ * kể cả khi nhiều bản ghi trùng createdAt.
+ */
+@DataJpaTest
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class KeysetPaginationTest {
+
+    private static final int ROWS = 57;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private AuditLogRepository auditLogRepository;
+
+    @BeforeEach
+    void setUp() {
+        // @PrePersist ghi đè createdAt nên chèn trực tiếp để tạo các bản ghi trùng thời điểm
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 8, 0);
+        for (int i = 0; i < ROWS; i++) {
+            entityManager.createNativeQuery("INSERT INTO audit_logs (id, action, created_at) VALUES (NEXT VALUE FOR audit_logs_seq, ?, ?)")
+                    .setParameter(1, "ACTION_" + i)
+                    .setParameter(2, base.plusMinutes(i / 4))
+                    .executeUpdate();
+        }
+    }
+
+    @Test
+    void cursorWalkMatchesOffsetOrder() {
+        List<Long> expected = auditLogRepository.findAll(Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id")))
+                .stream().map(AuditLog::getId).toList();
+
+        List<Long> walked = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            PageCursorUtil.Cursor position = PageCursorUtil.decodeTimed(cursor);
+            Limit limit = Limit.of(10 + 1);
+            List<AuditLog> rows = position == null
+                    ? auditLogRepository.findLatest(limit)
+                    : auditLogRepository.findBefore(position.getTime(), position.getId(), limit);
+            CursorPageResponse<AuditLog> page = CursorPageResponse.of(rows, 10,
+                    log -> PageCursorUtil.encode(log.getCreatedAt(), log.getId()), Function.identity());
+            page.getContent().forEach(log -> walked.add(log.getId()));
+            cursor = page.getNextCursor();
+            assertEquals(page.isHasNext(), cursor != null);
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(ROWS, expected.size());
+        assertEquals(expected, walked);
+        assertEquals(6, pages);
+    }
+
+    @Test
+    void rejectsTamperedCursor() {
+        assertThrows(BusinessException.class, () -> PageCursorUtil.decodeTimed("not-a-cursor"));
+        assertThrows(BusinessException.class, () -> PageCursorUtil.decodeTimed(PageCursorUtil.encode(5L)));
+        assertNull(PageCursorUtil.decode(null));
+    }
+
+    @Test
+    void undatedRowEncodesIdOnlyCursor() {
+        PageCursorUtil.Cursor position = PageCursorUtil.decode(PageCursorUtil.encode(null, 7L));
+        assertNull(position.getTime());
+        assertEquals(7L, position.getId());
+    }
+}
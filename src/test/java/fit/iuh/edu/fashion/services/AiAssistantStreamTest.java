@@ -0,0 +1,116 @@
+package fit.iuh.edu.fashion.services;
+
+import fit.iuh.edu.fashion.dto.AiChatResponse;
+import fit.iuh.edu.fashion.dto.CatalogDataDTO;
+import fit.iuh.edu.fashion.dto.UserIntentDTO;
+import fit.iuh.edu.fashion.repositories.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Chat streaming: token đi ra theo thứ tự model sinh, stream chạy hết thì câu trả lời đầy đủ nằm trong cache
+ * dưới key của chat() và lần sau không gọi model; hủy giữa chừng thì request tới model bị hủy và không ghi cache.
+ */
+class AiAssistantStreamTest {
+
+    private final ChatClient chatClient = mock(ChatClient.class, RETURNS_DEEP_STUBS);
+    private final CatalogCacheService catalogCacheService = mock(CatalogCacheService.class);
+    private final UserIntentAnalyzer intentAnalyzer = mock(UserIntentAnalyzer.class);
+    private final ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager("aiResponses");
+    private final ExecutorService aiExecutor = Executors.newFixedThreadPool(2);
+    private SemanticResponseCache semanticResponseCache;
+    private AiAssistantService service;
+
+    @BeforeEach
+    void setUp() {
+        semanticResponseCache = new SemanticResponseCache(cacheManager);
+        semanticResponseCache.initIndex();
+        service = new AiAssistantService(chatClient, mock(ProductRepository.class), catalogCacheService,
+                RestClient.builder(), intentAnalyzer, cacheManager, aiExecutor, semanticResponseCache);
+        ReflectionTestUtils.setField(service, "requiredModel", "test-model");
+        ReflectionTestUtils.setField(service, "lmStudioBaseUrl", "http://127.0.0.1:1");
+        service.init();
+        ReflectionTestUtils.setField(service, "lmStudioChecked", true);
+        ReflectionTestUtils.setField(service, "lmStudioAvailable", true);
+
+        CatalogDataDTO catalog = mock(CatalogDataDTO.class);
+        when(catalog.toSystemPrompt()).thenReturn("Catalog");
+        when(catalogCacheService.getCatalogData()).thenReturn(catalog);
+        when(intentAnalyzer.analyzeIntent(anyString())).thenAnswer(invocation -> UserIntentDTO.builder()
+                .originalMessage(invocation.getArgument(0))
+                .intentType(UserIntentDTO.IntentType.GENERAL_CHAT)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        aiExecutor.shutdownNow();
+    }
+
+    @Test
+    void completedStreamIsCachedUnderChatKey() {
+        when(chatClient.prompt().system(anyString()).user(anyString()).stream().content())
+                .thenReturn(Flux.just("Chào ", "bạn, ", "shop mở cửa 8h."));
+
+        List<String> tokens = service.chatStream("Shop mở cửa mấy giờ?").collectList().block(Duration.ofSeconds(5));
+        assertEquals(List.of("Chào ", "bạn, ", "shop mở cửa 8h."), tokens);
+
+        Cache cache = cacheManager.getCache("aiResponses");
+        AiChatResponse cached = cache.get("chat_Shop mở cửa mấy giờ?", AiChatResponse.class);
+        assertNotNull(cached);
+        assertEquals("Chào bạn, shop mở cửa 8h.", cached.getResponse());
+        assertEquals("test-model", cached.getModel());
+
+        // Lần hai: trả nguyên câu trả lời từ cache, không phân tích lại, không gọi model
+        clearInvocations(intentAnalyzer);
+        assertEquals(List.of("Chào bạn, shop mở cửa 8h."),
+                service.chatStream("Shop mở cửa mấy giờ?").collectList().block(Duration.ofSeconds(5)));
+        verifyNoInteractions(intentAnalyzer);
+    }
+
+    @Test
+    void cancelledStreamCancelsModelRequestAndIsNotCached() throws InterruptedException {
+        CountDownLatch firstToken = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        when(chatClient.prompt().system(anyString()).user(anyString()).stream().content())
+                .thenReturn(Flux.concat(Flux.just("Đang "), Flux.<String>never())
+                        .doOnCancel(cancelled::countDown));
+
+        Disposable subscription = service.chatStream("Phối đồ đi tiệc").subscribe(token -> firstToken.countDown());
+        assertTrue(firstToken.await(5, TimeUnit.SECONDS));
+        subscription.dispose();
+
+        assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+        assertNull(cacheManager.getCache("aiResponses").get("chat_Phối đồ đi tiệc"));
+    }
+
+    @Test
+    void failureBeforeFirstTokenBecomesErrorMessage() {
+        when(chatClient.prompt().system(anyString()).user(anyString()).stream().content())
+                .thenReturn(Flux.error(new RuntimeException("Connection refused")));
+
+        List<String> tokens = service.chatStream("Xin chào").collectList().block(Duration.ofSeconds(5));
+        assertEquals(1, tokens.size());
+        assertTrue(tokens.get(0).contains("Không thể kết nối tới LM Studio"));
+        assertNull(cacheManager.getCache("aiResponses").get("chat_Xin chào"));
+    }
+}
@@ -0,0 +1,184 @@
+package fit.iuh.edu.fashion.services;
+
+import fit.iuh.edu.fashion.dto.response.CartItemResponse;
+import fit.iuh.edu.fashion.dto.response.CartResponse;
+import fit.iuh.edu.fashion.models.*;
+import fit.iuh.edu.fashion.repositories.ProductImageRepository;
+import fit.iuh.edu.fashion.repositories.ProductVariantRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+/**
+ * Đếm số câu SQL để render giỏ hàng theo số dòng: tra variant + ảnh cho từng dòng (cách cũ) so với
+ * CartService hiện tại (giỏ sống lấy từ LiveCartStore) - số query phải giữ nguyên khi giỏ lớn dần.
+ */
+@DataJpaTest
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(CartService.class)
+class CartRenderingQueryCountTest {
+
+    private static final int PRODUCTS = 30;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ProductVariantRepository productVariantRepository;
+
+    @Autowired
+    private ProductImageRepository productImageRepository;
+
+    @Autowired
+    private CartService cartService;
+
+    @MockitoBean
+    private LiveCartStore liveCartStore;
+
+    private User customer;
+    private Cart cart;
+    private final List<ProductVariant> variants = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        Brand brand = entityManager.persist(Brand.builder().name("Brand").slug("brand").build());
+        Color color = entityManager.persist(Color.builder().name("Đen").hex("#000000").isActive(true).build());
+        Size size = entityManager.persist(Size.builder().name("M").isActive(true).build());
+        for (int p = 0; p < PRODUCTS; p++) {
+            Product product = entityManager.persist(Product.builder()
+                    .name("Product " + p)
+                    .slug("product-" + p)
+                    .brand(brand)
+                    .isActive(true)
+                    .build());
+            ProductVariant variant = entityManager.persist(ProductVariant.builder()
+                    .product(product)
+                    .sku("SKU-" + p)
+                    .color(color)
+                    .size(size)
+                    .price(new BigDecimal("199000.00"))
+                    .stock(p % 7)
+                    .isActive(true)
+                    .build());
+            variants.add(variant);
+            entityManager.persist(ProductImage.builder()
+                    .product(product)
+                    .url("https://cdn.example/" + p + "/cover.jpg")
+                    .sortOrder(1)
+                    .build());
+            entityManager.persist(ProductImage.builder()
+                    .product(product)
+                    .url("https://cdn.example/" + p + "/front.jpg")
+                    .sortOrder(0)
+                    .build());
+            // Nửa số variant có ảnh riêng
+            if (p % 2 == 0) {
+                entityManager.persist(ProductImage.builder()
+                        .product(product)
+                        .variant(variant)
+                        .url("https://cdn.example/" + p + "/variant.jpg")
+                        .sortOrder(2)
+                        .build());
+            }
+        }
+        customer = entityManager.persist(User.builder()
+                .email("cart@example.com").passwordHash("x").fullName("Buyer").isActive(true).build());
+        cart = entityManager.persist(Cart.builder().customer(customer).build());
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void renderingCostIsFlatInCartSize() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        long previousBatchedQueries = -1;
+        int filled = 0;
+        for (int lines : List.of(5, 15, 30)) {
+            for (; filled < lines; filled++) {
+                entityManager.persist(CartItem.builder()
+                        .cart(entityManager.find(Cart.class, cart.getId()))
+                        .variant(entityManager.find(ProductVariant.class, variants.get(filled).getId()))
+                        .quantity(2)
+                        .build());
+            }
+            entityManager.flush();
+            List<LiveCartStore.Line> liveLines = new ArrayList<>();
+            for (int i = 0; i < lines; i++) {
+                liveLines.add(new LiveCartStore.Line(variants.get(i).getId(), 2, LocalDateTime.of(2026, 1, 1, 8, 0).plusMinutes(i)));
+            }
+            when(liveCartStore.load(customer.getId())).thenReturn(new LiveCartStore.Snapshot(cart.getId(), liveLines));
+
+            entityManager.clear();
+            statistics.clear();
+            List<String> legacyImages = cartItemsOf(cart.getId()).stream().map(this::imageLikePerLinePath).toList();
+            long perLineQueries = statistics.getPrepareStatementCount();
+
+            entityManager.clear();
+            statistics.clear();
+            CartResponse response = cartService.getCart(customer.getId());
+            long batchedQueries = statistics.getPrepareStatementCount();
+
+            assertEquals(lines, response.getItems().size());
+            assertEquals(lines * 2, response.getTotalItems());
+            assertEquals(new BigDecimal("398000.00").multiply(BigDecimal.valueOf(lines)), response.getSubtotal());
+            for (int i = 0; i < lines; i++) {
+                CartItemResponse item = response.getItems().get(i);
+                assertEquals(legacyImages.get(i), item.getImageUrl());
+                assertEquals(variants.get(i).getSku(), item.getVariant().getSku());
+                assertEquals("Đen", item.getColorName());
+                assertEquals(i % 7 == 0, item.getOutOfStock());
+                assertEquals(2 > i % 7, item.getInsufficientStock());
+            }
+
+            // variant của các dòng + ảnh
+            assertTrue(batchedQueries <= 2, "batched queries: " + batchedQueries);
+            assertTrue(perLineQueries > lines * 2, "per-line queries: " + perLineQueries);
+            if (previousBatchedQueries >= 0) {
+                assertEquals(previousBatchedQueries, batchedQueries);
+            }
+            previousBatchedQueries = batchedQueries;
+        }
+    }
+
+    private List<CartItem> cartItemsOf(Long cartId) {
+        return entityManager.getEntityManager()
+                .createQuery("SELECT ci FROM CartItem ci WHERE ci.cart.id = :cartId ORDER BY ci.id", CartItem.class)
+                .setParameter("cartId", cartId)
+                .getResultList();
+    }
+
+    /**
+     * Tương đương CartService.mapToCartItemResponse trước đây: load variant rồi tra ảnh variant, ảnh sản phẩm cho từng dòng
+     */
+    private String imageLikePerLinePath(CartItem item) {
+        ProductVariant variant = productVariantRepository.findById(item.getVariant().getId()).orElseThrow();
+        List<ProductImage> variantImages = productImageRepository.findByVariantId(variant.getId());
+        if (!variantImages.isEmpty()) {
+            return variantImages.get(0).getUrl();
+        }
+        List<ProductImage> productImages = productImageRepository.findByProductIdOrderBySortOrder(variant.getProduct().getId());
+        return productImages.isEmpty() ? null : productImages.get(0).getUrl();
+    }
+}
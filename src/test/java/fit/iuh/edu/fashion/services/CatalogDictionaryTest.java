@@ -0,0 +1,89 @@
+package fit.iuh.edu.fashion.services;
+
+import fit.iuh.edu.fashion.models.Brand;
+import fit.iuh.edu.fashion.models.Category;
+import fit.iuh.edu.fashion.repositories.BrandRepository;
+import fit.iuh.edu.fashion.repositories.CategoryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Từ điển brand / category: tra theo tên dài nhất trên câu đã chuẩn hóa, không đọc DB khi tra,
+ * nạp lại khi admin đổi dữ liệu (và báo node khác) hoặc khi node khác báo.
+ */
+class CatalogDictionaryTest {
+
+    private final BrandRepository brandRepository = mock(BrandRepository.class);
+    private final CategoryRepository categoryRepository = mock(CategoryRepository.class);
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+    private CatalogDictionary dictionary;
+    private UserIntentAnalyzer analyzer;
+
+    @BeforeEach
+    void setUp() {
+        givenBrands("Nike", "Nike Pro", "Levi's");
+        givenCategories("Áo", "Áo thun", "Quần", "Quần short", "Váy");
+        dictionary = new CatalogDictionary(brandRepository, categoryRepository, redisTemplate);
+        dictionary.loadOnStartup();
+        analyzer = new UserIntentAnalyzer(dictionary);
+    }
+
+    @Test
+    void longestNameWinsAndLookupsDoNotTouchRepositories() {
+        assertEquals("Áo thun", analyzer.analyzeIntent("Tìm áo thun Nike Pro màu đen").getCategory());
+        assertEquals("nike pro", analyzer.analyzeIntent("Tìm áo thun Nike Pro màu đen").getBrand());
+        // Không dấu vẫn khớp tên có dấu
+        assertEquals("Quần short", analyzer.analyzeIntent("quan short levi's").getCategory());
+        assertEquals("levi's", analyzer.analyzeIntent("quan short levi's").getBrand());
+        // Cùng độ dài: tên xuất hiện trước trong câu
+        assertEquals("Váy", analyzer.analyzeIntent("váy và áo").getCategory());
+        assertNull(analyzer.analyzeIntent("giày chạy bộ").getCategory());
+
+        verify(brandRepository, times(1)).findAll();
+        verify(categoryRepository, times(1)).findAll();
+    }
+
+    @Test
+    void adminChangeReloadsAndNotifiesOtherNodes() {
+        givenBrands("Nike", "Routine");
+        dictionary.reload();
+
+        assertEquals("routine", dictionary.findBrand("ao so mi routine"));
+        ArgumentCaptor<String> nodeId = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate).convertAndSend(eq(CatalogDictionary.REFRESH_CHANNEL), nodeId.capture());
+
+        // Message của chính node này bị bỏ qua, của node khác thì nạp lại
+        givenCategories("Áo", "Áo khoác");
+        dictionary.onRefreshMessage(nodeId.getValue());
+        assertEquals("Áo", dictionary.findCategory("ao khoac gio"));
+        dictionary.onRefreshMessage("other-node");
+        assertEquals("Áo khoác", dictionary.findCategory("ao khoac gio"));
+    }
+
+    @Test
+    void failedReloadKeepsPreviousDictionary() {
+        when(brandRepository.findAll()).thenThrow(new RuntimeException("Connection refused"));
+        dictionary.refresh();
+
+        assertEquals("nike", dictionary.findBrand("giay nike"));
+    }
+
+    private void givenBrands(String... names) {
+        List<Brand> brands = Arrays.stream(names).map(name -> Brand.builder().name(name).build()).toList();
+        when(brandRepository.findAll()).thenReturn(brands);
+    }
+
+    private void givenCategories(String... names) {
+        List<Category> categories = Arrays.stream(names).map(name -> Category.builder().name(name).build()).toList();
+        when(categoryRepository.findAll()).thenReturn(categories);
+    }
+}
@@ -0,0 +1,305 @@
+package fit.iuh.edu.fashion.services;
+
+import fit.iuh.edu.fashion.models.*;
+import fit.iuh.edu.fashion.repositories.ProductRepository;
+import fit.iuh.edu.fashion.repositories.ProductVariantRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.Mockito.*;
+
+/**
+ * Thống kê catalog build lại từ DB hoặc cập nhật tăng dần phải luôn bằng số đếm tính trực tiếp từ entity
+ * (cách CatalogCacheService đếm trước đây).
+ */
+@DataJpaTest
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CatalogStatisticsServiceTest {
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductVariantRepository productVariantRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate tx;
+    private ProductRepository countingRepository;
+    private CatalogStatisticsService statistics;
+
+    @BeforeEach
+    void setUp() {
+        tx = new TransactionTemplate(transactionManager);
+        // Đếm số lần build (findCatalogStatisticsRows) mà vẫn đọc DB thật
+        countingRepository = mock(ProductRepository.class, delegatesTo(productRepository));
+        statistics = new CatalogStatisticsService(countingRepository, productVariantRepository);
+    }
+
+    @Test
+    void coldBuildMatchesPerEntityCounts() {
+        createCatalog();
+
+        assertCountsMatch(statistics.getCounts());
+        verify(countingRepository, times(1)).findCatalogStatisticsRows();
+    }
+
+    @Test
+    void productVariantAndStockUpdatesAreAppliedIncrementally() {
+        Catalog catalog = createCatalog();
+        statistics.getCounts();
+
+        Product product = tx.execute(status -> {
+            Product created = Product.builder()
+                    .name("Incremental").slug("incremental-" + SEQUENCE.incrementAndGet())
+                    .brand(entityManager.getReference(Brand.class, catalog.brand().getId()))
+                    .categories(new HashSet<>(Set.of(entityManager.getReference(Category.class, catalog.category().getId()))))
+                    .isActive(true)
+                    .build();
+            entityManager.persist(created);
+            statistics.onProductSaved(created);
+            return created;
+        });
+        assertCountsMatch(statistics.getCounts());
+
+        ProductVariant variant = tx.execute(status -> {
+            ProductVariant created = ProductVariant.builder()
+                    .product(entityManager.getReference(Product.class, product.getId()))
+                    .sku("SKU-" + SEQUENCE.incrementAndGet())
+                    .color(entityManager.getReference(Color.class, catalog.newColor().getId()))
+                    .size(entityManager.getReference(Size.class, catalog.size().getId()))
+                    .price(new BigDecimal("250000.00"))
+                    .stock(2)
+                    .isActive(true)
+                    .build();
+            entityManager.persist(created);
+            statistics.onVariantSaved(created);
+            return created;
+        });
+        assertEquals(1, statistics.getCounts().colorCount(catalog.newColor().getId()));
+        assertCountsMatch(statistics.getCounts());
+
+        // Bán hết: color/size không còn đếm sản phẩm này; hủy đơn thì đếm lại
+        sell(variant.getId(), 2);
+        assertEquals(0, statistics.getCounts().colorCount(catalog.newColor().getId()));
+        assertCountsMatch(statistics.getCounts());
+        tx.executeWithoutResult(status -> {
+            productVariantRepository.increaseStock(variant.getId(), 1);
+            statistics.onStockChanged(List.of(variant.getId()));
+        });
+        assertEquals(1, statistics.getCounts().colorCount(catalog.newColor().getId()));
+        assertCountsMatch(statistics.getCounts());
+
+        // Ngừng bán: brand/category bớt một sản phẩm, total giữ nguyên
+        long activeBefore = statistics.getCounts().getActiveProducts();
+        tx.executeWithoutResult(status -> {
+            Product managed = entityManager.find(Product.class, product.getId());
+            managed.setIsActive(false);
+            statistics.onProductSaved(managed);
+        });
+        assertEquals(activeBefore - 1, statistics.getCounts().getActiveProducts());
+        assertCountsMatch(statistics.getCounts());
+
+        // Cập nhật bị rollback không được áp dụng
+        tx.executeWithoutResult(status -> {
+            productVariantRepository.decreaseStock(variant.getId(), 1);
+            statistics.onStockChanged(List.of(variant.getId()));
+            status.setRollbackOnly();
+        });
+        assertCountsMatch(statistics.getCounts());
+
+        verify(countingRepository, times(1)).findCatalogStatisticsRows();
+    }
+
+    @Test
+    void invalidateRebuildsFromDatabaseAfterCommit() {
+        Catalog catalog = createCatalog();
+        statistics.getCounts();
+
+        // Đổi brand ngoài các hook cập nhật (vd. xóa brand): snapshot cũ còn nguyên tới khi commit
+        Brand other = persist(Brand.builder().name("Brand " + SEQUENCE.incrementAndGet())
+                .slug("brand-" + SEQUENCE.incrementAndGet()).isActive(true).build());
+        tx.executeWithoutResult(status -> {
+            entityManager.createNativeQuery("UPDATE products SET brand_id = ? WHERE id = ?")
+                    .setParameter(1, other.getId())
+                    .setParameter(2, catalog.product().getId())
+                    .executeUpdate();
+            statistics.invalidate();
+            assertEquals(0, statistics.getCounts().brandCount(other.getId()));
+        });
+
+        CatalogStatisticsService.CatalogCounts counts = statistics.getCounts();
+        assertEquals(1, counts.brandCount(other.getId()));
+        assertCountsMatch(counts);
+        verify(countingRepository, times(2)).findCatalogStatisticsRows();
+    }
+
+    @Test
+    void stockChangeCommittedDuringRebuildIsNotLost() {
+        Color color = persist(Color.builder().name("Color " + SEQUENCE.incrementAndGet()).isActive(true).build());
+        Product product = createProduct(null, Set.of(), true);
+        Long variantId = createVariant(product, color, null, 1, true).getId();
+
+        AtomicBoolean sold = new AtomicBoolean();
+        doAnswer(invocation -> {
+            List<Object[]> rows = productRepository.findCatalogStatisticsRows();
+            // Đơn hàng commit sau khi build đã đọc DB: dữ liệu build vẫn còn hàng
+            if (sold.compareAndSet(false, true)) {
+                sell(variantId, 1);
+            }
+            return rows;
+        }).when(countingRepository).findCatalogStatisticsRows();
+
+        CatalogStatisticsService.CatalogCounts counts = statistics.getCounts();
+
+        assertEquals(0, counts.colorCount(color.getId()));
+        assertCountsMatch(counts);
+    }
+
+    private void sell(Long variantId, int quantity) {
+        tx.executeWithoutResult(status -> {
+            assertEquals(1, productVariantRepository.decreaseStock(variantId, quantity));
+            statistics.onStockChanged(List.of(variantId));
+        });
+    }
+
+    /**
+     * Số đếm tính trực tiếp từ entity: brand/category đếm sản phẩm đang bán, color/size đếm sản phẩm
+     * có ít nhất một variant đang bán còn hàng
+     */
+    private void assertCountsMatch(CatalogStatisticsService.CatalogCounts actual) {
+        tx.executeWithoutResult(status -> {
+            long total = 0;
+            long active = 0;
+            Map<Long, Long> brands = new HashMap<>();
+            Map<Long, Long> categories = new HashMap<>();
+            Map<Long, Long> colors = new HashMap<>();
+            Map<Long, Long> sizes = new HashMap<>();
+            for (Product product : productRepository.findAll()) {
+                total++;
+                if (product.getIsActive()) {
+                    active++;
+                    if (product.getBrand() != null) {
+                        brands.merge(product.getBrand().getId(), 1L, Long::sum);
+                    }
+                    product.getCategories().forEach(category -> categories.merge(category.getId(), 1L, Long::sum));
+                }
+                Set<Long> colorIds = new HashSet<>();
+                Set<Long> sizeIds = new HashSet<>();
+                for (ProductVariant variant : product.getVariants()) {
+                    if (variant.getIsActive() && variant.getStock() > 0) {
+                        if (variant.getColor() != null) {
+                            colorIds.add(variant.getColor().getId());
+                        }
+                        if (variant.getSize() != null) {
+                            sizeIds.add(variant.getSize().getId());
+                        }
+                    }
+                }
+                colorIds.forEach(id -> colors.merge(id, 1L, Long::sum));
+                sizeIds.forEach(id -> sizes.merge(id, 1L, Long::sum));
+            }
+
+            assertEquals(total, actual.getTotalProducts());
+            assertEquals(active, actual.getActiveProducts());
+            assertEquals(brands, nonZero(actual.getBrandCounts()));
+            assertEquals(categories, nonZero(actual.getCategoryCounts()));
+            assertEquals(colors, nonZero(actual.getColorCounts()));
+            assertEquals(sizes, nonZero(actual.getSizeCounts()));
+        });
+    }
+
+    private static Map<Long, Long> nonZero(Map<Long, Long> counts) {
+        Map<Long, Long> result = new HashMap<>(counts);
+        result.values().removeIf(count -> count == 0);
+        return result;
+    }
+
+    /**
+     * Catalog nhỏ có đủ các trường hợp: sản phẩm ngừng bán, variant ngừng bán, variant hết hàng,
+     * sản phẩm nhiều category, sản phẩm không brand
+     */
+    private Catalog createCatalog() {
+        int n = SEQUENCE.incrementAndGet();
+        Brand brand = persist(Brand.builder().name("Brand " + n).slug("brand-" + n).isActive(true).build());
+        Category category = persist(Category.builder().name("Category " + n).slug("category-" + n).isActive(true).build());
+        Category otherCategory = persist(Category.builder().name("Other " + n).slug("other-" + n).isActive(true).build());
+        Color red = persist(Color.builder().name("Red " + n).isActive(true).build());
+        Color blue = persist(Color.builder().name("Blue " + n).isActive(true).build());
+        Color newColor = persist(Color.builder().name("New " + n).isActive(true).build());
+        Size small = persist(Size.builder().name("S" + n).isActive(true).build());
+        Size large = persist(Size.builder().name("L" + n).isActive(true).build());
+
+        Product shirt = createProduct(brand, Set.of(category, otherCategory), true);
+        createVariant(shirt, red, small, 5, true);
+        createVariant(shirt, red, large, 0, true);
+        createVariant(shirt, blue, large, 3, false);
+
+        Product inactive = createProduct(brand, Set.of(category), false);
+        createVariant(inactive, blue, small, 4, true);
+
+        Product noBrand = createProduct(null, Set.of(otherCategory), true);
+        createVariant(noBrand, blue, large, 1, true);
+        createVariant(noBrand, red, large, 2, true);
+
+        createProduct(brand, Set.of(), true);
+        return new Catalog(shirt, brand, category, newColor, small);
+    }
+
+    private Product createProduct(Brand brand, Set<Category> categories, boolean active) {
+        int n = SEQUENCE.incrementAndGet();
+        return persist(Product.builder()
+                .name("Product " + n)
+                .slug("product-" + n)
+                .brand(brand)
+                .categories(new HashSet<>(categories))
+                .isActive(active)
+                .build());
+    }
+
+    private ProductVariant createVariant(Product product, Color color, Size size, int stock, boolean active) {
+        return persist(ProductVariant.builder()
+                .product(product)
+                .sku("SKU-" + SEQUENCE.incrementAndGet())
+                .color(color)
+                .size(size)
+                .price(new BigDecimal("250000.00"))
+                .stock(stock)
+                .isActive(active)
+                .build());
+    }
+
+    private record Catalog(Product product, Brand brand, Category category, Color newColor, Size size) {
+    }
+
+    private <T> T persist(T entity) {
+        return tx.execute(status -> {
+            entityManager.persist(entity);
+            return entity;
+        });
+    }
+}
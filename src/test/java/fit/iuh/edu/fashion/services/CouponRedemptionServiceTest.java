@@ -0,0 +1,229 @@
+package fit.iuh.edu.fashion.services;
+
+import fit.iuh.edu.fashion.exception.BusinessException;
+import fit.iuh.edu.fashion.models.Coupon;
+import fit.iuh.edu.fashion.models.CouponRedemption;
+import fit.iuh.edu.fashion.models.CustomerProfile;
+import fit.iuh.edu.fashion.models.Order;
+import fit.iuh.edu.fashion.models.User;
+import fit.iuh.edu.fashion.repositories.CouponRedemptionRepository;
+import fit.iuh.edu.fashion.repositories.CouponRedemptionStripeRepository;
+import fit.iuh.edu.fashion.repositories.CouponRepository;
+import fit.iuh.edu.fashion.repositories.CustomerProfileRepository;
+import fit.iuh.edu.fashion.repositories.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Nhiều đơn dùng cùng một mã giảm giá đồng thời: không vượt usage_limit (cả coupon thường và coupon chia stripe),
+ * hủy đơn trả lại lượt đúng một lần.
+ */
+@DataJpaTest
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(CouponRedemptionService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CouponRedemptionServiceTest {
+
+    private static final int THREADS = 12;
+    private static final int ATTEMPTS_PER_THREAD = 10;
+    private static final int USAGE_LIMIT = 40;
+
+    private static final AtomicLong ORDER_IDS = new AtomicLong();
+
+    @Autowired
+    private CouponRedemptionService couponRedemptionService;
+
+    @Autowired
+    private CouponRepository couponRepository;
+
+    @Autowired
+    private CouponRedemptionRepository couponRedemptionRepository;
+
+    @Autowired
+    private CouponRedemptionStripeRepository stripeRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CustomerProfileRepository customerProfileRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void concurrentRedemptionsStopAtUsageLimit() throws Exception {
+        Coupon coupon = createCoupon("FLASH", null, null);
+
+        List<Order> redeemed = redeemConcurrently(coupon);
+
+        assertEquals(USAGE_LIMIT, redeemed.size());
+        assertEquals(USAGE_LIMIT, couponRepository.findById(coupon.getId()).orElseThrow().getUsedCount());
+
+        // Hủy đơn hai lần chỉ trả một lượt, lượt đó dùng lại được
+        release(redeemed.get(0));
+        release(redeemed.get(0));
+        Coupon reloaded = couponRepository.findById(coupon.getId()).orElseThrow();
+        assertEquals(USAGE_LIMIT - 1, reloaded.getUsedCount());
+        assertNotNull(redeem(reloaded, order(99L)));
+        assertThrows(BusinessException.class, () -> redeem(reloaded, order(99L)));
+    }
+
+    @Test
+    void stripedCouponSpreadsUsesWithoutExceedingLimit() throws Exception {
+        Coupon coupon = createCoupon("STRIPED", 4, null);
+        couponRedemptionService.rebalance(coupon.getId());
+        assertEquals(4, stripeRepository.findByCouponId(coupon.getId()).size());
+
+        List<Order> redeemed = redeemConcurrently(coupon);
+
+        assertEquals(USAGE_LIMIT, redeemed.size());
+        Coupon reloaded = couponRepository.findById(coupon.getId()).orElseThrow();
+        // Dòng coupons không bị cập nhật khi checkout
+        assertEquals(0, reloaded.getUsedCount());
+        assertEquals(USAGE_LIMIT, couponRedemptionService.usedCount(reloaded));
+        assertFalse(couponRedemptionService.hasRemainingUses(reloaded));
+        couponRedemptionService.fillTotalUsedCounts(List.of(reloaded));
+        assertEquals(USAGE_LIMIT, reloaded.getTotalUsedCount());
+        assertTrue(couponRedemptionRepository.findAll().stream()
+                .filter(r -> r.getCouponId().equals(coupon.getId()))
+                .allMatch(r -> r.getStripe() != null));
+
+        // Cân bằng lại gộp lượt vào used_count; lượt trả sau đó vẫn về đúng tổng
+        couponRedemptionService.rebalance(coupon.getId());
+        reloaded = couponRepository.findById(coupon.getId()).orElseThrow();
+        assertEquals(USAGE_LIMIT, reloaded.getUsedCount());
+        release(redeemed.get(0));
+        reloaded = couponRepository.findById(coupon.getId()).orElseThrow();
+        assertEquals(USAGE_LIMIT - 1, couponRedemptionService.usedCount(reloaded));
+        assertTrue(couponRedemptionService.hasRemainingUses(reloaded));
+        assertNotNull(redeem(reloaded, order(98L)));
+    }
+
+    @Test
+    void perUserLimitIsEnforced() {
+        Coupon coupon = createCoupon("ONCE", null, 1);
+        Order first = order(7L);
+        redeem(coupon, first);
+        assertThrows(BusinessException.class, () -> redeem(coupon, order(7L)));
+        assertNotNull(redeem(coupon, order(8L)));
+
+        // Đơn đầu bị hủy thì khách được dùng lại
+        release(first);
+        assertNotNull(redeem(coupon, order(7L)));
+    }
+
+    @Test
+    void concurrentOrdersOfOneCustomerRespectPerUserLimit() throws Exception {
+        Coupon coupon = createCoupon("TWICE", 4, 2);
+        couponRedemptionService.rebalance(coupon.getId());
+        User customer = userRepository.save(User.builder()
+                .email("twice@example.com").passwordHash("x").fullName("Customer").isActive(true).build());
+        CustomerProfile profile = new CustomerProfile();
+        profile.setUser(customer);
+        profile.setLoyaltyPoint(0);
+        customerProfileRepository.save(profile);
+
+        AtomicInteger redeemed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService buyers = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(buyers.submit(() -> {
+                start.await();
+                try {
+                    redeem(coupon, order(customer.getId()));
+                    redeemed.incrementAndGet();
+                } catch (BusinessException e) {
+                    // đã dùng hết lượt của khách
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        buyers.shutdown();
+
+        assertEquals(2, redeemed.get());
+        assertEquals(2, couponRedemptionService.usedCount(couponRepository.findById(coupon.getId()).orElseThrow()));
+    }
+
+    private List<Order> redeemConcurrently(Coupon coupon) throws Exception {
+        List<Order> redeemed = new CopyOnWriteArrayList<>();
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService buyers = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            long customerId = t + 1;
+            futures.add(buyers.submit(() -> {
+                for (int i = 0; i < ATTEMPTS_PER_THREAD; i++) {
+                    Order order = order(customerId);
+                    try {
+                        redeem(coupon, order);
+                        redeemed.add(order);
+                    } catch (BusinessException e) {
+                        rejected.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        buyers.shutdown();
+        assertEquals(THREADS * ATTEMPTS_PER_THREAD, redeemed.size() + rejected.get());
+        return redeemed;
+    }
+
+    private CouponRedemption redeem(Coupon coupon, Order order) {
+        return new TransactionTemplate(transactionManager).execute(status -> couponRedemptionService.redeem(coupon, order));
+    }
+
+    private void release(Order order) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> couponRedemptionService.release(order));
+    }
+
+    private Order order(Long customerId) {
+        return Order.builder()
+                .id(ORDER_IDS.incrementAndGet())
+                .customer(User.builder().id(customerId).build())
+                .build();
+    }
+
+    private Coupon createCoupon(String code, Integer stripes, Integer perUserLimit) {
+        return couponRepository.save(Coupon.builder()
+                .code(code)
+                .type(Coupon.CouponType.FIXED)
+                .value(new BigDecimal("50000"))
+                .startAt(LocalDateTime.now().minusDays(1))
+                .endAt(LocalDateTime.now().plusDays(1))
+                .usageLimit(USAGE_LIMIT)
+                .usedCount(0)
+                .perUserLimit(perUserLimit)
+                .isActive(true)
+                .redemptionStripes(stripes)
+                .build());
+    }
+}
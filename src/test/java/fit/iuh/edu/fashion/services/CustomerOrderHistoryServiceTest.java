@@ -0,0 +1,229 @@
+package fit.iuh.edu.fashion.services;
+
+import fit.iuh.edu.fashion.dto.response.OrderSummaryResponse;
+import fit.iuh.edu.fashion.models.Order;
+import fit.iuh.edu.fashion.models.OrderItem;
+import fit.iuh.edu.fashion.models.Product;
+import fit.iuh.edu.fashion.models.ProductVariant;
+import fit.iuh.edu.fashion.models.User;
+import fit.iuh.edu.fashion.repositories.CustomerOrderSummaryRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.Mockito.*;
+
+/**
+ * Lịch sử đơn hàng đọc từ read model: trang đầu là một câu SQL (kèm tổng số đơn), lần sau lấy từ cache,
+ * đổi trạng thái đơn thì bản tóm tắt được cập nhật và cache của khách bị xóa sau commit.
+ */
+@DataJpaTest
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({CustomerOrderHistoryService.class, CustomerOrderHistoryServiceTest.CacheTestConfig.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CustomerOrderHistoryServiceTest {
+
+    private static final int ORDERS = 25;
+
+    @TestConfiguration
+    static class CacheTestConfig {
+        @Bean
+        CacheManager cacheManager() {
+            return new ConcurrentMapCacheManager(CustomerOrderHistoryService.CACHE_NAME);
+        }
+    }
+
+    @Autowired
+    private CustomerOrderHistoryService customerOrderHistoryService;
+
+    @Autowired
+    private CustomerOrderSummaryRepository summaryRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void firstPageIsOneQueryThenServedFromCache() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        User customer = tx.execute(status -> {
+            User user = User.builder().email("history@example.com").passwordHash("x").fullName("Buyer").isActive(true).build();
+            entityManager.persist(user);
+            return user;
+        });
+        ProductVariant variant = tx.execute(status -> {
+            Product product = Product.builder().name("Product history").slug("product-history").isActive(true).build();
+            ProductVariant saved = ProductVariant.builder()
+                    .product(product)
+                    .sku("SKU-history")
+                    .price(new BigDecimal("150000.00"))
+                    .stock(100)
+                    .isActive(true)
+                    .build();
+            entityManager.persist(product);
+            entityManager.persist(saved);
+            return saved;
+        });
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            int index = i;
+            orders.add(tx.execute(status -> {
+                Order order = placeOrder(customer, variant, index);
+                customerOrderHistoryService.orderPlaced(order);
+                return order;
+            }));
+        }
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        statistics.clear();
+        Page<OrderSummaryResponse> page = customerOrderHistoryService.getMyOrders(customer.getId(), 0, 10);
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(ORDERS, page.getTotalElements());
+        assertEquals(3, page.getTotalPages());
+        assertEquals(orders.get(ORDERS - 1).getCode(), page.getContent().get(0).getCode());
+        assertEquals(2, page.getContent().get(0).getItemCount());
+        assertEquals("Áo thun 24", page.getContent().get(0).getFirstItemName());
+
+        statistics.clear();
+        Page<OrderSummaryResponse> cached = customerOrderHistoryService.getMyOrders(customer.getId(), 0, 10);
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(page.getContent(), cached.getContent());
+
+        // Đơn mới nhất được giao xong: bản tóm tắt cập nhật, cache trang đầu bị xóa
+        Order latest = orders.get(ORDERS - 1);
+        tx.executeWithoutResult(status -> {
+            latest.setStatus(Order.OrderStatus.COMPLETED);
+            latest.setPaymentStatus(Order.PaymentStatus.PAID);
+            customerOrderHistoryService.orderUpdated(latest);
+        });
+        page = customerOrderHistoryService.getMyOrders(customer.getId(), 0, 10);
+        assertEquals("COMPLETED", page.getContent().get(0).getStatus());
+        assertEquals("PAID", page.getContent().get(0).getPaymentStatus());
+
+        Page<OrderSummaryResponse> last = customerOrderHistoryService.getMyOrders(customer.getId(), 2, 10);
+        assertEquals(5, last.getNumberOfElements());
+        assertEquals(orders.get(0).getCode(), last.getContent().get(4).getCode());
+        assertEquals(ORDERS, customerOrderHistoryService.getMyOrders(customer.getId(), 7, 10).getTotalElements());
+    }
+
+    @Test
+    void pageReadBeforeConcurrentEvictIsNotLeftInCache() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        User customer = tx.execute(status -> {
+            User user = User.builder().email("history-race@example.com").passwordHash("x").fullName("Buyer").isActive(true).build();
+            entityManager.persist(user);
+            return user;
+        });
+        ProductVariant variant = tx.execute(status -> {
+            Product product = Product.builder().name("Product history race").slug("product-history-race").isActive(true).build();
+            ProductVariant saved = ProductVariant.builder()
+                    .product(product)
+                    .sku("SKU-history-race")
+                    .price(new BigDecimal("150000.00"))
+                    .stock(100)
+                    .isActive(true)
+                    .build();
+            entityManager.persist(product);
+            entityManager.persist(saved);
+            return saved;
+        });
+        Order order = tx.execute(status -> {
+            Order placed = placeOrder(customer, variant, 100);
+            customerOrderHistoryService.orderPlaced(placed);
+            return placed;
+        });
+
+        // Đơn được thanh toán và commit (xóa cache) ngay sau khi trang đầu đã đọc DB, trước khi trang được ghi vào cache
+        CacheManager cacheManager = new ConcurrentMapCacheManager(CustomerOrderHistoryService.CACHE_NAME);
+        CustomerOrderSummaryRepository racingRepository = mock(CustomerOrderSummaryRepository.class, delegatesTo(summaryRepository));
+        CustomerOrderHistoryService service = new CustomerOrderHistoryService(racingRepository, cacheManager);
+        AtomicBoolean paid = new AtomicBoolean();
+        doAnswer(invocation -> {
+            List<Object[]> rows = summaryRepository.findPageWithTotal(invocation.getArgument(0), invocation.getArgument(1));
+            if (paid.compareAndSet(false, true)) {
+                tx.executeWithoutResult(status -> {
+                    order.setPaymentStatus(Order.PaymentStatus.PAID);
+                    service.orderUpdated(order);
+                });
+            }
+            return rows;
+        }).when(racingRepository).findPageWithTotal(eq(customer.getId()), any(Pageable.class));
+
+        Page<OrderSummaryResponse> stale = service.getMyOrders(customer.getId(), 0, 10);
+        assertEquals("UNPAID", stale.getContent().get(0).getPaymentStatus());
+        assertNull(cacheManager.getCache(CustomerOrderHistoryService.CACHE_NAME).get(customer.getId()));
+
+        Page<OrderSummaryResponse> fresh = service.getMyOrders(customer.getId(), 0, 10);
+        assertEquals("PAID", fresh.getContent().get(0).getPaymentStatus());
+        assertNotNull(cacheManager.getCache(CustomerOrderHistoryService.CACHE_NAME).get(customer.getId()));
+    }
+
+    private Order placeOrder(User customer, ProductVariant variant, int index) {
+        Order order = Order.builder()
+                .code("HIST-" + index)
+                .customer(entityManager.getReference(User.class, customer.getId()))
+                .status(Order.OrderStatus.PENDING)
+                .subtotal(new BigDecimal("300000.00"))
+                .discountTotal(BigDecimal.ZERO)
+                .shippingFee(BigDecimal.ZERO)
+                .taxTotal(BigDecimal.ZERO)
+                .grandTotal(new BigDecimal("300000.00"))
+                .shipName("Buyer")
+                .shipPhone("0900000000")
+                .shipLine1("12 Nguyen Van Bao")
+                .shipCity("Ho Chi Minh")
+                .shipCountry("Vietnam")
+                .paymentMethod(Order.PaymentMethod.COD)
+                .paymentStatus(Order.PaymentStatus.UNPAID)
+                .items(new ArrayList<>())
+                .build();
+        entityManager.persist(order);
+        // Thời điểm đặt tăng dần theo index
+        order.setPlacedAt(LocalDateTime.of(2026, 1, 1, 8, 0).plusHours(index));
+        for (String name : List.of("Áo thun " + index, "Quần jean " + index)) {
+            order.getItems().add(OrderItem.builder()
+                    .order(order)
+                    .product(entityManager.getReference(Product.class, variant.getProduct().getId()))
+                    .variant(entityManager.getReference(ProductVariant.class, variant.getId()))
+                    .sku(variant.getSku())
+                    .productName(name)
+                    .quantity(1)
+                    .unitPrice(new BigDecimal("150000.00"))
+                    .discountAmount(BigDecimal.ZERO)
+                    .lineTotal(new BigDecimal("150000.00"))
+                    .build());
+        }
+        return order;
+    }
+}
@@ -0,0 +1,78 @@
+package fit.iuh.edu.fashion.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Hạn chót rải trên nhiều tầng của bánh xe: mỗi key hết hạn đúng một lần, không trước hạn
+ * và trễ không quá một tick; hủy / dời hạn có hiệu lực; hạn vượt tầm bánh xe vẫn đúng giờ.
+ */
+class HierarchicalTimingWheelTest {
+
+    private static final long TICK = 1000;
+
+    @Test
+    void keysExpireWithinOneTickOfTheirDeadline() {
+        long start = 1_700_000_000_123L;
+        HierarchicalTimingWheel<Integer> wheel = new HierarchicalTimingWheel<>(TICK, start);
+        Random random = new Random(18);
+        Map<Integer, Long> deadlines = new HashMap<>();
+        for (int key = 0; key < 20_000; key++) {
+            // Từ vài giây tới 3 giờ: trải qua tầng 0, 1 và 2
+            long deadline = start + 1 + random.nextInt(3 * 3600 * 1000);
+            deadlines.put(key, deadline);
+            wheel.schedule(key, deadline);
+        }
+
+        Map<Integer, Long> expiredAt = new HashMap<>();
+        for (long now = start; now <= start + 3 * 3600 * 1000 + 2 * TICK; now += TICK) {
+            for (Integer key : wheel.advance(now)) {
+                assertNull(expiredAt.put(key, now), "key " + key + " expired twice");
+            }
+        }
+
+        assertEquals(deadlines.size(), expiredAt.size());
+        assertEquals(0, wheel.size());
+        deadlines.forEach((key, deadline) -> {
+            long at = expiredAt.get(key);
+            assertTrue(at >= deadline, "key " + key + " expired early");
+            assertTrue(at < deadline + 2 * TICK, "key " + key + " expired " + (at - deadline) + " ms late");
+        });
+    }
+
+    @Test
+    void cancelAndRescheduleTakeEffect() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK, 0);
+        wheel.schedule("paid", 90_000);
+        wheel.schedule("extended", 90_000);
+        wheel.schedule("late", 5_000_000);
+        assertTrue(wheel.cancel("paid"));
+        wheel.schedule("extended", 600_000);
+
+        assertTrue(wheel.advance(599_000).isEmpty());
+        assertEquals(List.of("extended"), wheel.advance(600_000));
+        assertFalse(wheel.cancel("paid"));
+        assertTrue(wheel.contains("late"));
+        assertEquals(List.of("late"), wheel.advance(5_000_000));
+    }
+
+    @Test
+    void pastAndFarDeadlinesAreHandled() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(1, 0);
+        // Đã quá hạn (nạp lại sau khởi động): hết hạn ở tick kế tiếp
+        wheel.schedule("overdue", -10_000);
+        assertEquals(List.of("overdue"), wheel.advance(1));
+
+        // Vượt tầm bánh xe 64^4 tick: bị kẹp rồi đặt lại, vẫn hết hạn đúng hạn
+        long far = (1L << 24) * 3 + 12_345;
+        wheel.schedule("far", far);
+        assertTrue(wheel.advance(far - 1).isEmpty());
+        assertEquals(List.of("far"), wheel.advance(far));
+    }
+}
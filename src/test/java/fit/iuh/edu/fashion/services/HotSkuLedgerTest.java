@@ -0,0 +1,303 @@
+package fit.iuh.edu.fashion.services;
+
+import fit.iuh.edu.fashion.cache.CacheDependencyTracker;
+import fit.iuh.edu.fashion.dto.response.HotSkuStatusResponse;
+import fit.iuh.edu.fashion.exception.BusinessException;
+import fit.iuh.edu.fashion.models.InventoryMovement;
+import fit.iuh.edu.fashion.models.Order;
+import fit.iuh.edu.fashion.models.Product;
+import fit.iuh.edu.fashion.models.ProductVariant;
+import fit.iuh.edu.fashion.repositories.InventoryMovementRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Flash sale trên một hot SKU: nhiều luồng giữ hàng đồng thời (một phần rollback) trong khi ledger flush nền.
+ * Không được bán vượt tồn kho, và sau đối soát tồn kho DB phải bằng tồn kho ledger.
+ */
+@DataJpaTest
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(HotSkuLedger.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class HotSkuLedgerTest {
+
+    private static final int THREADS = 16;
+    private static final int ATTEMPTS_PER_THREAD = 100;
+
+    @Autowired
+    private HotSkuLedger hotSkuLedger;
+
+    @Autowired
+    private InventoryMovementRepository inventoryMovementRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @MockitoBean
+    private ProductService productService;
+
+    @MockitoBean
+    private AuditService auditService;
+
+    @MockitoBean
+    private CatalogStatisticsService catalogStatisticsService;
+
+    @MockitoBean
+    private ProductFacetIndex productFacetIndex;
+
+    @MockitoBean
+    private CacheDependencyTracker cacheDependencyTracker;
+
+    @Test
+    void flashSaleNeverOversellsAndReconciles() throws Exception {
+        int initialStock = 500;
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Long variantId = createVariant(tx, "flash", initialStock);
+        hotSkuLedger.enable(variantId, 64);
+        Order order = Order.builder().code("ORD-FLASH").build();
+
+        AtomicInteger sold = new AtomicInteger();
+        AtomicInteger rolledBack = new AtomicInteger();
+        AtomicInteger outOfStock = new AtomicInteger();
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread flusher = new Thread(() -> {
+            while (running.get()) {
+                hotSkuLedger.flush();
+            }
+        });
+        flusher.start();
+
+        ExecutorService buyers = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(buyers.submit(() -> {
+                for (int i = 0; i < ATTEMPTS_PER_THREAD; i++) {
+                    boolean abort = ThreadLocalRandom.current().nextInt(10) == 0;
+                    try {
+                        tx.executeWithoutResult(status -> {
+                            hotSkuLedger.reserve(Map.of(variantId, 1));
+                            hotSkuLedger.recordSale(order, null, Map.of(variantId, 1));
+                            if (abort) {
+                                status.setRollbackOnly();
+                            }
+                        });
+                        (abort ? rolledBack : sold).incrementAndGet();
+                    } catch (BusinessException e) {
+                        fail("admission limit is above the number of buyers: " + e.getMessage());
+                    } catch (RuntimeException e) {
+                        outOfStock.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        buyers.shutdown();
+        running.set(false);
+        flusher.join();
+
+        HotSkuStatusResponse status = reconcile(variantId);
+
+        assertEquals(THREADS * ATTEMPTS_PER_THREAD, sold.get() + rolledBack.get() + outOfStock.get());
+        assertTrue(outOfStock.get() > 0, "demand should exceed stock");
+        assertTrue(sold.get() <= initialStock, "oversold: " + sold.get());
+        assertEquals(initialStock - sold.get(), status.getLedgerStock());
+        assertEquals(status.getLedgerStock(), status.getDatabaseStock());
+        assertEquals(0, status.getDrift());
+        assertEquals(0, status.getInFlight());
+    }
+
+    @Test
+    void admissionLimitRejectsExcessConcurrentCheckouts() throws Exception {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Long variantId = createVariant(tx, "admission", 100);
+        hotSkuLedger.enable(variantId, 2);
+        Order order = Order.builder().code("ORD-ADMISSION").build();
+
+        CountDownLatch holding = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService holders = Executors.newFixedThreadPool(2);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            futures.add(holders.submit(() -> tx.executeWithoutResult(status -> {
+                hotSkuLedger.reserve(Map.of(variantId, 1));
+                hotSkuLedger.recordSale(order, null, Map.of(variantId, 1));
+                holding.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            })));
+        }
+        assertTrue(holding.await(10, TimeUnit.SECONDS));
+
+        assertThrows(BusinessException.class,
+                () -> tx.executeWithoutResult(status -> hotSkuLedger.reserve(Map.of(variantId, 1))));
+
+        release.countDown();
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        holders.shutdown();
+        tx.executeWithoutResult(status -> {
+            hotSkuLedger.reserve(Map.of(variantId, 1));
+            hotSkuLedger.recordSale(order, null, Map.of(variantId, 1));
+        });
+
+        HotSkuStatusResponse status = reconcile(variantId);
+        assertEquals(97, status.getDatabaseStock());
+        assertEquals(1, status.getAdmissionRejections());
+    }
+
+    @Test
+    void reconcileDetectsStockWrittenOutsideTheLedger() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Long variantId = createVariant(tx, "drift", 50);
+        hotSkuLedger.enable(variantId, 10);
+
+        jdbcTemplate.update("UPDATE product_variants SET stock = stock + 5 WHERE id = ?", variantId);
+
+        HotSkuStatusResponse first = reconcile(variantId);
+        assertEquals(5, first.getDrift());
+        assertEquals(55, first.getLedgerStock());
+
+        HotSkuStatusResponse second = reconcile(variantId);
+        assertEquals(0, second.getDrift());
+        assertEquals(55, second.getDatabaseStock());
+    }
+
+    @Test
+    void committedSalesAndReturnsAreJournaledOnFlush() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Long variantId = createVariant(tx, "journal", 10);
+        hotSkuLedger.enable(variantId, 10);
+        Order order = Order.builder().code("ORD-HOT-1").status(Order.OrderStatus.CANCELLED).build();
+
+        tx.executeWithoutResult(status -> {
+            hotSkuLedger.reserve(Map.of(variantId, 3));
+            hotSkuLedger.recordSale(order, null, Map.of(variantId, 3));
+        });
+        tx.executeWithoutResult(status -> hotSkuLedger.restore(order, variantId, 3));
+        hotSkuLedger.flush();
+
+        List<InventoryMovement> movements = inventoryMovementRepository.findByVariantId(variantId);
+        assertEquals(List.of(-3, 3), movements.stream().map(InventoryMovement::getQuantity).toList());
+        assertEquals(List.of(InventoryMovement.MovementReason.SALE, InventoryMovement.MovementReason.RETURN),
+                movements.stream().map(InventoryMovement::getReason).toList());
+        assertEquals(10, reconcile(variantId).getDatabaseStock());
+    }
+
+    @Test
+    void uncommittedReservationIsNotFlushed() throws Exception {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Long variantId = createVariant(tx, "inflight", 20);
+        hotSkuLedger.enable(variantId, 10);
+        Order order = Order.builder().code("ORD-HOT-2").build();
+
+        CountDownLatch reserved = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        ExecutorService buyer = Executors.newSingleThreadExecutor();
+        Future<?> future = buyer.submit(() -> tx.executeWithoutResult(status -> {
+            hotSkuLedger.reserve(Map.of(variantId, 4));
+            hotSkuLedger.recordSale(order, null, Map.of(variantId, 4));
+            reserved.countDown();
+            try {
+                commit.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        assertTrue(reserved.await(10, TimeUnit.SECONDS));
+
+        hotSkuLedger.flush();
+        assertEquals(20, databaseStock(variantId));
+        assertTrue(inventoryMovementRepository.findByVariantId(variantId).isEmpty());
+
+        commit.countDown();
+        future.get(10, TimeUnit.SECONDS);
+        buyer.shutdown();
+        hotSkuLedger.flush();
+        assertEquals(16, databaseStock(variantId));
+        assertEquals(1, inventoryMovementRepository.findByVariantId(variantId).size());
+    }
+
+    @Test
+    void flushNeverDrivesDatabaseStockNegative() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Long variantId = createVariant(tx, "oversold", 10);
+        hotSkuLedger.enable(variantId, 10);
+        Order order = Order.builder().code("ORD-HOT-3").build();
+
+        // Node khác đã bán phần lớn tồn kho trên DB
+        jdbcTemplate.update("UPDATE product_variants SET stock = 1 WHERE id = ?", variantId);
+        tx.executeWithoutResult(status -> {
+            hotSkuLedger.reserve(Map.of(variantId, 3));
+            hotSkuLedger.recordSale(order, null, Map.of(variantId, 3));
+        });
+        hotSkuLedger.flush();
+
+        assertEquals(0, databaseStock(variantId));
+        HotSkuStatusResponse status = reconcile(variantId);
+        assertEquals(0, status.getDrift());
+        assertEquals(0, status.getLedgerStock());
+        assertEquals(1, inventoryMovementRepository.findByVariantId(variantId).size());
+    }
+
+    private int databaseStock(Long variantId) {
+        return jdbcTemplate.queryForObject("SELECT stock FROM product_variants WHERE id = ?", Integer.class, variantId);
+    }
+
+    private HotSkuStatusResponse reconcile(Long variantId) {
+        return hotSkuLedger.reconcile().stream()
+                .filter(s -> s.getVariantId().equals(variantId))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private Long createVariant(TransactionTemplate tx, String name, int stock) {
+        return tx.execute(status -> {
+            Product product = Product.builder().name("Product " + name).slug("product-" + name).isActive(true).build();
+            ProductVariant variant = ProductVariant.builder()
+                    .product(product)
+                    .sku("SKU-" + name)
+                    .price(new BigDecimal("99000.00"))
+                    .stock(stock)
+                    .isActive(true)
+                    .build();
+            entityManager.persist(product);
+            entityManager.persist(variant);
+            return variant.getId();
+        });
+    }
+}
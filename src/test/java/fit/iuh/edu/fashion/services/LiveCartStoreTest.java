@@ -0,0 +1,273 @@
+package fit.iuh.edu.fashion.services;
+
+import fit.iuh.edu.fashion.dto.request.CartItemRequest;
+import fit.iuh.edu.fashion.dto.request.OrderItemRequest;
+import fit.iuh.edu.fashion.dto.response.CartResponse;
+import fit.iuh.edu.fashion.models.*;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Giỏ sống trong Redis (bản giả trong bộ nhớ): thêm / sửa / xóa không ghi DB, checkout đọc giỏ sống,
+ * flush gộp mọi thay đổi của một khách thành một lần đồng bộ carts/cart_items.
+ */
+@DataJpaTest
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({LiveCartStore.class, CartService.class, LiveCartStoreTest.RedisTestConfig.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class LiveCartStoreTest {
+
+    private static final Map<String, Map<Object, Object>> HASHES = new ConcurrentHashMap<>();
+    private static final Map<String, Set<String>> SETS = new ConcurrentHashMap<>();
+
+    @TestConfiguration
+    static class RedisTestConfig {
+        @Bean
+        StringRedisTemplate stringRedisTemplate() {
+            return inMemoryRedis(HASHES, SETS);
+        }
+    }
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private LiveCartStore liveCartStore;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void mutationsStayLiveUntilOneCoalescedFlush() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        User customer = createCustomer(tx, "live@example.com");
+        Long[] variants = {createVariant(tx, "a"), createVariant(tx, "b"), createVariant(tx, "c")};
+        Long cartId = tx.execute(status -> {
+            Cart cart = Cart.builder().customer(entityManager.getReference(User.class, customer.getId())).build();
+            entityManager.persist(cart);
+            entityManager.persist(CartItem.builder()
+                    .cart(cart)
+                    .variant(entityManager.getReference(ProductVariant.class, variants[0]))
+                    .quantity(1)
+                    .build());
+            return cart.getId();
+        });
+
+        CartResponse cart = cartService.getCart(customer.getId());
+        assertEquals(cartId, cart.getId());
+        assertEquals(1, cart.getItems().size());
+
+        for (int i = 0; i < 5; i++) {
+            cartService.addToCart(customer.getId(), new CartItemRequest(variants[1], 1));
+        }
+        cartService.updateCartItem(customer.getId(), variants[0], 3);
+        cartService.addToCart(customer.getId(), new CartItemRequest(variants[2], 4));
+        cartService.removeCartItem(customer.getId(), variants[2]);
+        cart = cartService.addToCart(customer.getId(), new CartItemRequest(variants[2], 2));
+        assertEquals(10, cart.getTotalItems());
+        assertThrows(RuntimeException.class,
+                () -> cartService.addToCart(customer.getId(), new CartItemRequest(variants[1], 6)));
+
+        // Chưa ghi DB, checkout vẫn thấy giỏ mới nhất
+        assertEquals(Map.of(variants[0], 1), storedItems(cartId));
+        assertEquals(Map.of(variants[0], 3, variants[1], 5, variants[2], 2), quantities(cartService.getCartItemsForOrder(customer.getId())));
+        assertEquals(1, liveCartStore.pendingFlushCount());
+
+        liveCartStore.flush();
+        assertEquals(Map.of(variants[0], 3, variants[1], 5, variants[2], 2), storedItems(cartId));
+        assertEquals(0, liveCartStore.pendingFlushCount());
+
+        cartService.removeCartItem(customer.getId(), variants[1]);
+        liveCartStore.flush();
+        assertEquals(Map.of(variants[0], 3, variants[2], 2), storedItems(cartId));
+
+        // Hash hết hạn: nạp lại từ bản đã flush
+        HASHES.remove("cart:live:" + customer.getId());
+        assertEquals(Map.of(variants[0], 3, variants[2], 2), quantities(cartService.getCartItemsForOrder(customer.getId())));
+    }
+
+    @Test
+    void cartRowIsCreatedOnFirstFlush() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        User customer = createCustomer(tx, "new@example.com");
+        Long variantId = createVariant(tx, "new");
+
+        CartResponse cart = cartService.addToCart(customer.getId(), new CartItemRequest(variantId, 2));
+        assertNull(cart.getId());
+        liveCartStore.flush();
+
+        Long cartId = jdbcTemplate.queryForObject("SELECT id FROM carts WHERE customer_user_id = ?", Long.class, customer.getId());
+        assertEquals(Map.of(variantId, 2), storedItems(cartId));
+        assertEquals(cartId, cartService.getCart(customer.getId()).getId());
+    }
+
+    @Test
+    void placedOrderKeepsItemsAddedAfterIt() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        User customer = createCustomer(tx, "order@example.com");
+        Long ordered = createVariant(tx, "ordered");
+        Long later = createVariant(tx, "later");
+        LocalDateTime placedAt = LocalDateTime.now().minusMinutes(1);
+        liveCartStore.load(customer.getId());
+        liveCartStore.put(customer.getId(), new LiveCartStore.Line(ordered, 1, placedAt.minusMinutes(5)));
+        liveCartStore.put(customer.getId(), new LiveCartStore.Line(later, 1, placedAt.plusSeconds(30)));
+
+        tx.executeWithoutResult(status -> liveCartStore.removeAddedUntilAfterCommit(customer.getId(), placedAt));
+
+        assertEquals(Map.of(later, 1), quantities(cartService.getCartItemsForOrder(customer.getId())));
+    }
+
+    @Test
+    void deletedVariantIsDroppedOnFlush() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        User customer = createCustomer(tx, "deleted@example.com");
+        Long kept = createVariant(tx, "kept");
+        Long deleted = createVariant(tx, "deleted");
+        cartService.addToCart(customer.getId(), new CartItemRequest(kept, 1));
+        cartService.addToCart(customer.getId(), new CartItemRequest(deleted, 2));
+        jdbcTemplate.update("DELETE FROM product_variants WHERE id = ?", deleted);
+
+        liveCartStore.flush();
+
+        Long cartId = jdbcTemplate.queryForObject("SELECT id FROM carts WHERE customer_user_id = ?", Long.class, customer.getId());
+        assertEquals(Map.of(kept, 1), storedItems(cartId));
+        assertEquals(0, liveCartStore.pendingFlushCount());
+        assertFalse(HASHES.get("cart:live:" + customer.getId()).containsKey(String.valueOf(deleted)));
+    }
+
+    private Map<Long, Integer> storedItems(Long cartId) {
+        Map<Long, Integer> items = new HashMap<>();
+        jdbcTemplate.query("SELECT variant_id, quantity FROM cart_items WHERE cart_id = ?",
+                rs -> {
+                    items.put(rs.getLong(1), rs.getInt(2));
+                }, cartId);
+        return items;
+    }
+
+    private static Map<Long, Integer> quantities(List<OrderItemRequest> items) {
+        Map<Long, Integer> result = new HashMap<>();
+        items.forEach(item -> result.put(item.getVariantId(), item.getQuantity()));
+        return result;
+    }
+
+    private User createCustomer(TransactionTemplate tx, String email) {
+        return tx.execute(status -> {
+            User user = User.builder().email(email).passwordHash("x").fullName("Buyer").isActive(true).build();
+            entityManager.persist(user);
+            return user;
+        });
+    }
+
+    private Long createVariant(TransactionTemplate tx, String name) {
+        return tx.execute(status -> {
+            Product product = Product.builder().name("Product " + name).slug("product-" + name).isActive(true).build();
+            ProductVariant variant = ProductVariant.builder()
+                    .product(product)
+                    .sku("SKU-" + name)
+                    .price(new BigDecimal("150000.00"))
+                    .stock(10)
+                    .isActive(true)
+                    .build();
+            entityManager.persist(product);
+            entityManager.persist(variant);
+            return variant.getId();
+        });
+    }
+
+    /**
+     * StringRedisTemplate giả: hash và set operations trên map trong bộ nhớ (TTL bị bỏ qua)
+     */
+    @SuppressWarnings("unchecked")
+    private static StringRedisTemplate inMemoryRedis(Map<String, Map<Object, Object>> hashes, Map<String, Set<String>> sets) {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        HashOperations<String, Object, Object> hashOperations = mock(HashOperations.class);
+        SetOperations<String, String> setOperations = mock(SetOperations.class);
+        doReturn(hashOperations).when(redisTemplate).opsForHash();
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+        when(redisTemplate.expire(anyString(), any(Duration.class))).thenReturn(true);
+
+        when(hashOperations.entries(anyString())).thenAnswer(invocation ->
+                new LinkedHashMap<>(hashes.getOrDefault(invocation.<String>getArgument(0), Map.of())));
+        doAnswer(invocation -> {
+            hashes.computeIfAbsent(invocation.getArgument(0), k -> new ConcurrentHashMap<>())
+                    .put(invocation.getArgument(1), invocation.getArgument(2));
+            return null;
+        }).when(hashOperations).put(anyString(), any(), any());
+        when(hashOperations.putIfAbsent(anyString(), any(), any())).thenAnswer(invocation ->
+                hashes.computeIfAbsent(invocation.getArgument(0), k -> new ConcurrentHashMap<>())
+                        .putIfAbsent(invocation.getArgument(1), invocation.getArgument(2)) == null);
+        when(hashOperations.delete(anyString(), any(Object[].class))).thenAnswer(invocation -> {
+            Map<Object, Object> hash = hashes.getOrDefault(invocation.<String>getArgument(0), new HashMap<>());
+            long removed = 0;
+            for (Object field : fields(invocation.getArguments())) {
+                if (hash.remove(field) != null) {
+                    removed++;
+                }
+            }
+            return removed;
+        });
+
+        when(setOperations.add(anyString(), any())).thenAnswer(invocation -> {
+            String value = invocation.getArgument(1);
+            return sets.computeIfAbsent(invocation.getArgument(0), k -> ConcurrentHashMap.newKeySet()).add(value) ? 1L : 0L;
+        });
+        when(setOperations.pop(anyString(), anyLong())).thenAnswer(invocation -> {
+            Set<String> set = sets.getOrDefault(invocation.<String>getArgument(0), Set.of());
+            List<String> popped = new ArrayList<>();
+            for (Iterator<String> it = set.iterator(); it.hasNext() && popped.size() < invocation.<Long>getArgument(1); ) {
+                popped.add(it.next());
+                it.remove();
+            }
+            return popped;
+        });
+        when(setOperations.size(anyString())).thenAnswer(invocation ->
+                (long) sets.getOrDefault(invocation.<String>getArgument(0), Set.of()).size());
+        return redisTemplate;
+    }
+
+    private static List<Object> fields(Object[] arguments) {
+        List<Object> fields = new ArrayList<>();
+        for (int i = 1; i < arguments.length; i++) {
+            if (arguments[i] instanceof Object[] array) {
+                fields.addAll(Arrays.asList(array));
+            } else {
+                fields.add(arguments[i]);
+            }
+        }
+        return fields;
+    }
+}
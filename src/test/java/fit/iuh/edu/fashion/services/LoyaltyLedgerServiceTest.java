@@ -0,0 +1,171 @@
+package fit.iuh.edu.fashion.services;
+
+import fit.iuh.edu.fashion.dto.response.LoyaltyReconcileResponse;
+import fit.iuh.edu.fashion.exception.BusinessException;
+import fit.iuh.edu.fashion.models.CustomerProfile;
+import fit.iuh.edu.fashion.models.Order;
+import fit.iuh.edu.fashion.models.User;
+import fit.iuh.edu.fashion.repositories.CustomerProfileRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Sổ điểm tích lũy: nhiều đơn đồng thời của cùng khách hàng không tiêu vượt số dư,
+ * cộng điểm theo lô chỉ một lần cho mỗi đơn, và số dư luôn khớp tổng sổ khi đối soát.
+ */
+@DataJpaTest
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(LoyaltyLedgerService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class LoyaltyLedgerServiceTest {
+
+    private static final AtomicLong ORDER_IDS = new AtomicLong();
+
+    @Autowired
+    private LoyaltyLedgerService loyaltyLedgerService;
+
+    @Autowired
+    private CustomerProfileRepository customerProfileRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void concurrentOrdersCannotSpendTheSamePoints() throws Exception {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        User customer = createCustomer(tx, "spender@example.com");
+        // Số dư ban đầu đi qua sổ điểm: đơn hoàn thành cộng 100 điểm
+        tx.executeWithoutResult(status -> loyaltyLedgerService.creditEarned(List.of(order(customer, 0, 100))));
+        assertEquals(100, loyaltyLedgerService.balance(customer.getId()));
+
+        AtomicInteger spent = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService checkouts = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 24; i++) {
+            futures.add(checkouts.submit(() -> {
+                try {
+                    tx.executeWithoutResult(status -> loyaltyLedgerService.redeem(order(customer, 10, 0), 10));
+                    spent.incrementAndGet();
+                } catch (BusinessException e) {
+                    rejected.incrementAndGet();
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        checkouts.shutdown();
+
+        assertEquals(10, spent.get());
+        assertEquals(14, rejected.get());
+        assertEquals(0, loyaltyLedgerService.balance(customer.getId()));
+        assertTrue(loyaltyLedgerService.reconcile().getMismatches().stream()
+                .noneMatch(m -> m.getCustomerId().equals(customer.getId())));
+    }
+
+    @Test
+    void bulkCreditIsIdempotentAndReversible() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        List<User> customers = List.of(createCustomer(tx, "a@example.com"), createCustomer(tx, "b@example.com"));
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            orders.add(order(customers.get(i % 2), 0, 5 + i));
+        }
+
+        tx.executeWithoutResult(status -> loyaltyLedgerService.creditEarned(orders));
+        // Giao lại cùng lô (ví dụ admin bấm hai lần) không cộng thêm
+        tx.executeWithoutResult(status -> loyaltyLedgerService.creditEarned(orders));
+        int earnedA = 0;
+        for (int i = 0; i < 30; i += 2) {
+            earnedA += 5 + i;
+        }
+        int expectedA = earnedA;
+        assertEquals(expectedA, loyaltyLedgerService.balance(customers.get(0).getId()));
+
+        // Khách đã tiêu gần hết điểm: thu hồi không làm số dư âm, hoàn hai lần chỉ tính một
+        Order spending = order(customers.get(0), expectedA - 3, 0);
+        tx.executeWithoutResult(status -> loyaltyLedgerService.redeem(spending, expectedA - 3));
+        tx.executeWithoutResult(status -> loyaltyLedgerService.reverseEarned(orders.get(28)));
+        assertEquals(0, loyaltyLedgerService.balance(customers.get(0).getId()));
+        tx.executeWithoutResult(status -> loyaltyLedgerService.reverseRedemption(spending));
+        tx.executeWithoutResult(status -> loyaltyLedgerService.reverseRedemption(spending));
+        assertEquals(expectedA - 3, loyaltyLedgerService.balance(customers.get(0).getId()));
+
+        LoyaltyReconcileResponse report = loyaltyLedgerService.reconcile();
+        assertTrue(mismatchedCustomers(report).stream().noneMatch(id -> customers.stream().anyMatch(c -> c.getId().equals(id))),
+                report.getMismatches().toString());
+        assertTrue(report.getEntriesScanned() >= 33);
+
+        // Ghi số dư ngoài sổ thì đối soát phát hiện
+        jdbcTemplate.update("UPDATE customer_profiles SET loyalty_point = loyalty_point + 7 WHERE user_id = ?",
+                customers.get(1).getId());
+        report = loyaltyLedgerService.reconcile();
+        assertTrue(mismatchedCustomers(report).contains(customers.get(1).getId()));
+        assertFalse(mismatchedCustomers(report).contains(customers.get(0).getId()));
+    }
+
+    @Test
+    void savingTheProfileDoesNotOverwriteTheBalance() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        User customer = createCustomer(tx, "profile@example.com");
+        CustomerProfile stale = customerProfileRepository.findById(customer.getId()).orElseThrow();
+        tx.executeWithoutResult(status -> loyaltyLedgerService.creditEarned(List.of(order(customer, 0, 40))));
+
+        stale.setGender(CustomerProfile.Gender.FEMALE);
+        stale.setLoyaltyPoint(0);
+        customerProfileRepository.save(stale);
+
+        assertEquals(40, loyaltyLedgerService.balance(customer.getId()));
+    }
+
+    private List<Long> mismatchedCustomers(LoyaltyReconcileResponse report) {
+        return report.getMismatches().stream().map(LoyaltyReconcileResponse.Mismatch::getCustomerId).toList();
+    }
+
+    private User createCustomer(TransactionTemplate tx, String email) {
+        return tx.execute(status -> {
+            User user = User.builder().email(email).passwordHash("x").fullName("Customer").isActive(true).build();
+            entityManager.persist(user);
+            CustomerProfile profile = new CustomerProfile();
+            profile.setUser(user);
+            profile.setLoyaltyPoint(0);
+            entityManager.persist(profile);
+            return user;
+        });
+    }
+
+    private Order order(User customer, int pointsUsed, int pointsEarned) {
+        return Order.builder()
+                .id(ORDER_IDS.incrementAndGet())
+                .customer(customer)
+                .loyaltyPointsUsed(pointsUsed)
+                .loyaltyPointsEarned(pointsEarned)
+                .build();
+    }
+}
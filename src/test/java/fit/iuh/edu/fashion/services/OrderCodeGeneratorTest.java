@@ -0,0 +1,138 @@
+package fit.iuh.edu.fashion.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Mã đơn hàng: duy nhất khi sinh song song và qua các lần khởi động lại, tăng dần, hợp lệ với ký tự kiểm tra
+ */
+class OrderCodeGeneratorTest {
+
+    private static final ZoneId ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+    private static final int THREADS = 8;
+    private static final int CODES_PER_THREAD = 50_000;
+
+    @Test
+    void concurrentCodesAreUniqueAndOrdered() throws Exception {
+        OrderCodeGenerator generator = new OrderCodeGenerator();
+        generator.init();
+        Set<String> codes = ConcurrentHashMap.newKeySet(THREADS * CODES_PER_THREAD);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                String previous = "";
+                for (int i = 0; i < CODES_PER_THREAD; i++) {
+                    String code = generator.nextCode();
+                    assertTrue(code.compareTo(previous) > 0, code + " after " + previous);
+                    codes.add(code);
+                    previous = code;
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        pool.shutdown();
+
+        assertEquals(THREADS * CODES_PER_THREAD, codes.size());
+        assertTrue(codes.stream().allMatch(OrderCodeGenerator::isValid));
+        assertTrue(codes.stream().allMatch(c -> c.length() == OrderCodeGenerator.CODE_LENGTH && c.matches("[A-Z0-9-]+")));
+    }
+
+    @Test
+    void restartWithinTheSameSecondDoesNotReuseSequence() {
+        AtomicLong clock = new AtomicLong(1_760_000_000L);
+        OrderCodeGenerator before = new OrderCodeGenerator(clock::get, ZONE, 7);
+        clock.addAndGet(30);
+        String last = "";
+        for (int i = 0; i < 100; i++) {
+            last = before.nextCode();
+        }
+
+        // Instance mới cùng node id khởi động trong đúng giây instance cũ vừa cấp mã
+        OrderCodeGenerator after = new OrderCodeGenerator(clock::get, ZONE, 7);
+        String first = after.nextCode();
+        assertTrue(first.compareTo(last) > 0, first + " after " + last);
+    }
+
+    @Test
+    void sequenceOverflowAndClockRollbackNeverRepeat() {
+        AtomicLong clock = new AtomicLong(1_760_000_000L);
+        OrderCodeGenerator generator = new OrderCodeGenerator(clock::get, ZONE, 7);
+
+        String first = generator.nextCode();
+        assertTrue(first.startsWith("ORD-251009"), first);
+        assertEquals("07", first.substring(17, 19));
+
+        String last = first;
+        for (int i = 1; i < OrderCodeGenerator.SEQUENCE_PER_SECOND; i++) {
+            last = generator.nextCode();
+        }
+        assertEquals("ZZZZ", last.substring(19, 23));
+        String borrowed = generator.nextCode();
+        assertTrue(borrowed.compareTo(last) > 0);
+        assertEquals("0000", borrowed.substring(19, 23));
+
+        // Đồng hồ lùi 1 giờ: tiếp tục sau mã cuối cùng thay vì quay lại
+        clock.addAndGet(-3600);
+        String afterRollback = generator.nextCode();
+        assertTrue(afterRollback.compareTo(borrowed) > 0, afterRollback + " after " + borrowed);
+    }
+
+    @Test
+    void checkCharacterCatchesTyposAndMostTranspositions() {
+        OrderCodeGenerator generator = new OrderCodeGenerator(() -> 1_760_000_000L, ZONE, 1295);
+        String code = generator.nextCode();
+        assertTrue(OrderCodeGenerator.isValid(code));
+        assertEquals(24, code.length());
+
+        char[] chars = code.toCharArray();
+        for (int i = 4; i < chars.length; i++) {
+            if (chars[i] == '-') {
+                continue;
+            }
+            char original = chars[i];
+            for (char replacement : "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray()) {
+                if (replacement != original) {
+                    chars[i] = replacement;
+                    assertFalse(OrderCodeGenerator.isValid(new String(chars)), new String(chars));
+                }
+            }
+            chars[i] = original;
+        }
+
+        // Hệ lai MOD 37,36 không bắt được mọi lỗi đảo ký tự, chỉ phần lớn
+        int transpositions = 0;
+        int detected = 0;
+        for (int n = 0; n < 2_000; n++) {
+            char[] next = generator.nextCode().toCharArray();
+            for (int i = 4; i < next.length - 1; i++) {
+                if (next[i] == next[i + 1] || next[i] == '-' || next[i + 1] == '-') {
+                    continue;
+                }
+                char[] swapped = next.clone();
+                swapped[i] = next[i + 1];
+                swapped[i + 1] = next[i];
+                transpositions++;
+                if (!OrderCodeGenerator.isValid(new String(swapped))) {
+                    detected++;
+                }
+            }
+        }
+        assertTrue(detected > transpositions * 0.9, detected + "/" + transpositions);
+        assertFalse(OrderCodeGenerator.isValid("ORD-20251017103000"));
+    }
+}
@@ -0,0 +1,286 @@
+package fit.iuh.edu.fashion.services;
+
+import fit.iuh.edu.fashion.models.*;
+import fit.iuh.edu.fashion.repositories.AuditLogRepository;
+import fit.iuh.edu.fashion.repositories.InventoryMovementRepository;
+import fit.iuh.edu.fashion.repositories.OrderOutboxEventRepository;
+import fit.iuh.edu.fashion.repositories.PaymentRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Outbox đơn hàng: sự kiện chỉ tồn tại khi checkout commit, tác vụ phụ chạy theo lô đúng một lần,
+ * sự kiện hỏng bị cô lập và dừng sau số lần thử tối đa
+ */
+@DataJpaTest
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({OrderOutboxService.class, PaymentService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OrderOutboxServiceTest {
+
+    @Autowired
+    private OrderOutboxService orderOutboxService;
+
+    @Autowired
+    private OrderOutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private InventoryMovementRepository inventoryMovementRepository;
+
+    @Autowired
+    private AuditLogRepository auditLogRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @MockitoBean
+    private ProductService productService;
+
+    @MockitoBean
+    private AuditService auditService;
+
+    @MockitoBean
+    private CustomerOrderHistoryService customerOrderHistoryService;
+
+    @MockitoBean
+    private LiveCartStore liveCartStore;
+
+    // Không chạy dispatcher nền - test gọi dispatch() trực tiếp
+    @MockitoBean(name = "taskExecutor")
+    private Executor taskExecutor;
+
+    private TransactionTemplate tx;
+
+    @BeforeEach
+    void setUp() {
+        tx = new TransactionTemplate(transactionManager);
+        when(auditService.prepareLog(anyString(), anyString(), any(), any(), any())).thenAnswer(invocation ->
+                AuditLog.builder().username("buyer@example.com").ipAddress("10.0.0.1")
+                        .newValue(invocation.getArgument(4)).build());
+        jdbcTemplate.update("DELETE FROM order_outbox_events");
+    }
+
+    @Test
+    void sideEffectsRunOnceAfterCommit() throws Exception {
+        User customer = createCustomer("buyer@example.com");
+        Long variantId = createVariant("outbox");
+        Long cartId = createCart(customer, variantId);
+
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Order order = createOrder(customer, "ORD-OUTBOX-" + i, Order.PaymentMethod.COD);
+            orders.add(order);
+            tx.executeWithoutResult(status -> orderOutboxService.orderPlaced(order, Map.of(variantId, 2), List.of(variantId)));
+        }
+        // Checkout rollback: không để lại sự kiện nào
+        Order rolledBack = createOrder(customer, "ORD-OUTBOX-RB", Order.PaymentMethod.COD);
+        tx.executeWithoutResult(status -> {
+            orderOutboxService.orderPlaced(rolledBack, Map.of(variantId, 1), List.of());
+            status.setRollbackOnly();
+        });
+        assertEquals(3, orderOutboxService.pendingCount());
+
+        // Món thêm vào giỏ sau khi đặt hàng được giữ lại
+        Thread.sleep(5);
+        addCartItem(cartId, createVariant("later"));
+
+        orderOutboxService.dispatch();
+        assertSideEffects(orders, variantId, cartId);
+        verify(productService, times(1)).checkAndUpdateStockStatus(variantId);
+
+        // Xử lý lại (ví dụ instance khác nhặt được sự kiện) không tạo bản ghi trùng
+        jdbcTemplate.update("UPDATE order_outbox_events SET status = 'PENDING'");
+        orderOutboxService.dispatch();
+        assertSideEffects(orders, variantId, cartId);
+        assertTrue(paymentRepository.findByOrderId(rolledBack.getId()).isEmpty());
+    }
+
+    @Test
+    void brokenEventIsIsolatedAndEventuallyFails() {
+        User customer = createCustomer("poison@example.com");
+        Long variantId = createVariant("poison");
+        Order good = createOrder(customer, "ORD-GOOD", Order.PaymentMethod.VNPAY);
+        Order broken = createOrder(customer, "ORD-BROKEN", Order.PaymentMethod.COD);
+        tx.executeWithoutResult(status -> orderOutboxService.orderPlaced(good, Map.of(variantId, 1), List.of()));
+        tx.executeWithoutResult(status -> outboxEventRepository.save(OrderOutboxEvent.builder()
+                .orderId(broken.getId())
+                .eventType(OrderOutboxEvent.EventType.ORDER_PLACED)
+                .payload("{not json")
+                .build()));
+
+        orderOutboxService.dispatch();
+        assertEquals(1, inventoryMovementRepository.findByVariantId(variantId).size());
+        assertTrue(paymentRepository.findByOrderId(good.getId()).isEmpty(), "not a COD order");
+        OrderOutboxEvent event = outboxEventRepository.findAll().stream()
+                .filter(e -> e.getOrderId().equals(broken.getId()))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(OrderOutboxEvent.Status.PENDING, event.getStatus());
+        assertEquals(1, event.getAttempts());
+
+        for (int i = 0; i < 4; i++) {
+            orderOutboxService.dispatch();
+        }
+        event = outboxEventRepository.findById(event.getId()).orElseThrow();
+        assertEquals(OrderOutboxEvent.Status.FAILED, event.getStatus());
+        assertEquals(5, event.getAttempts());
+        assertNotNull(event.getLastError());
+        assertEquals(0, orderOutboxService.pendingCount());
+    }
+
+    @Test
+    void hotSkuSaleOfTheSameOrderDoesNotSuppressOtherLines() {
+        User customer = createCustomer("mixed@example.com");
+        Long hotVariantId = createVariant("mixed-hot");
+        Long variantId = createVariant("mixed");
+        Order order = createOrder(customer, "ORD-MIXED", Order.PaymentMethod.VNPAY);
+        // Ledger hot SKU đã ghi movement SALE cho dòng hot trước khi outbox chạy
+        tx.executeWithoutResult(status -> inventoryMovementRepository.save(InventoryMovement.builder()
+                .variant(entityManager.getReference(ProductVariant.class, hotVariantId))
+                .quantity(-1)
+                .reason(InventoryMovement.MovementReason.SALE)
+                .relatedOrder(entityManager.getReference(Order.class, order.getId()))
+                .build()));
+        tx.executeWithoutResult(status -> orderOutboxService.orderPlaced(order,
+                Map.of(hotVariantId, 1, variantId, 2), List.of()));
+
+        orderOutboxService.dispatch();
+
+        assertEquals(1, inventoryMovementRepository.findByVariantId(hotVariantId).size());
+        List<InventoryMovement> movements = inventoryMovementRepository.findByVariantId(variantId);
+        assertEquals(1, movements.size());
+        assertEquals(-2, movements.get(0).getQuantity());
+    }
+
+    @Test
+    void codOrderPaidBeforeDispatchGetsCompletedPayment() {
+        User customer = createCustomer("paid@example.com");
+        Long variantId = createVariant("paid");
+        Order order = createOrder(customer, "ORD-PAID", Order.PaymentMethod.COD);
+        tx.executeWithoutResult(status -> orderOutboxService.orderPlaced(order, Map.of(variantId, 1), List.of()));
+        jdbcTemplate.update("UPDATE orders SET payment_status = 'PAID' WHERE id = ?", order.getId());
+
+        orderOutboxService.dispatch();
+
+        List<Payment> payments = paymentRepository.findByOrderId(order.getId());
+        assertEquals(1, payments.size());
+        assertEquals(Payment.PaymentStatus.COMPLETED, payments.get(0).getStatus());
+        assertNotNull(payments.get(0).getCompletedAt());
+    }
+
+    private void assertSideEffects(List<Order> orders, Long variantId, Long cartId) {
+        assertEquals(0, orderOutboxService.pendingCount());
+        for (Order order : orders) {
+            assertEquals(1, paymentRepository.findByOrderId(order.getId()).size());
+            assertEquals(1, auditLogRepository.findByEntityTypeAndEntityIdOrderByCreatedAtDesc("Order", order.getId()).size());
+        }
+        List<InventoryMovement> movements = inventoryMovementRepository.findByVariantId(variantId);
+        assertEquals(3, movements.size());
+        assertTrue(movements.stream().allMatch(m -> m.getQuantity() == -2
+                && m.getReason() == InventoryMovement.MovementReason.SALE));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cart_items WHERE cart_id = ?", Integer.class, cartId));
+        AuditLog audit = auditLogRepository.findByEntityTypeAndEntityIdOrderByCreatedAtDesc("Order", orders.get(0).getId()).get(0);
+        assertEquals("10.0.0.1", audit.getIpAddress());
+        assertEquals(orders.get(0).getCustomer().getId(), audit.getUserId());
+    }
+
+    private User createCustomer(String email) {
+        return tx.execute(status -> {
+            User user = User.builder().email(email).passwordHash("x").fullName("Buyer").isActive(true).build();
+            entityManager.persist(user);
+            return user;
+        });
+    }
+
+    private Long createVariant(String name) {
+        return tx.execute(status -> {
+            Product product = Product.builder().name("Product " + name).slug("product-" + name).isActive(true).build();
+            ProductVariant variant = ProductVariant.builder()
+                    .product(product)
+                    .sku("SKU-" + name)
+                    .price(new BigDecimal("150000.00"))
+                    .stock(10)
+                    .isActive(true)
+                    .build();
+            entityManager.persist(product);
+            entityManager.persist(variant);
+            return variant.getId();
+        });
+    }
+
+    private Long createCart(User customer, Long variantId) {
+        Long cartId = tx.execute(status -> {
+            Cart cart = Cart.builder().customer(entityManager.getReference(User.class, customer.getId())).build();
+            entityManager.persist(cart);
+            return cart.getId();
+        });
+        addCartItem(cartId, variantId);
+        return cartId;
+    }
+
+    private void addCartItem(Long cartId, Long variantId) {
+        tx.executeWithoutResult(status -> entityManager.persist(CartItem.builder()
+                .cart(entityManager.getReference(Cart.class, cartId))
+                .variant(entityManager.getReference(ProductVariant.class, variantId))
+                .quantity(1)
+                .build()));
+    }
+
+    private Order createOrder(User customer, String code, Order.PaymentMethod paymentMethod) {
+        return tx.execute(status -> {
+            Order order = Order.builder()
+                    .code(code)
+                    .customer(entityManager.getReference(User.class, customer.getId()))
+                    .status(Order.OrderStatus.PENDING)
+                    .subtotal(new BigDecimal("300000.00"))
+                    .discountTotal(BigDecimal.ZERO)
+                    .shippingFee(BigDecimal.ZERO)
+                    .taxTotal(BigDecimal.ZERO)
+                    .grandTotal(new BigDecimal("300000.00"))
+                    .shipName("Buyer")
+                    .shipPhone("0900000000")
+                    .shipLine1("1 Nguyen Van Bao")
+                    .shipCity("Ho Chi Minh")
+                    .shipCountry("Vietnam")
+                    .paymentMethod(paymentMethod)
+                    .paymentStatus(Order.PaymentStatus.UNPAID)
+                    .build();
+            entityManager.persist(order);
+            order.setCustomer(customer);
+            return order;
+        });
+    }
+}
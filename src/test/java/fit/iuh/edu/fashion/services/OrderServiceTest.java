@@ -0,0 +1,164 @@
+package fit.iuh.edu.fashion.services;
+
+import fit.iuh.edu.fashion.cache.CacheDependencyTracker;
+import fit.iuh.edu.fashion.dto.request.OrderItemRequest;
+import fit.iuh.edu.fashion.dto.request.OrderRequest;
+import fit.iuh.edu.fashion.models.*;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Đặt hàng trừ tồn kho bằng UPDATE trực tiếp: sau commit thống kê catalog, facet "còn hàng"
+ * và cache tồn kho của variant phải được cập nhật (các hook được gọi trong transaction của đơn).
+ */
+@DataJpaTest
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({OrderService.class, StockReservationService.class, OrderCodeGenerator.class,
+        CatalogStatisticsService.class, ProductFacetIndex.class, ProductSearchIndex.class,
+        CacheDependencyTracker.class, OrderServiceTest.CacheTestConfig.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OrderServiceTest {
+
+    @TestConfiguration
+    static class CacheTestConfig {
+        @Bean
+        CacheManager cacheManager() {
+            return new ConcurrentMapCacheManager("products");
+        }
+    }
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private CatalogStatisticsService catalogStatisticsService;
+
+    @Autowired
+    private ProductFacetIndex productFacetIndex;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockitoBean
+    private StringRedisTemplate redisTemplate;
+
+    @MockitoBean
+    private AuditService auditService;
+
+    @MockitoBean
+    private ProductService productService;
+
+    @MockitoBean
+    private PaymentService paymentService;
+
+    @MockitoBean
+    private HotSkuLedger hotSkuLedger;
+
+    @MockitoBean
+    private OrderOutboxService orderOutboxService;
+
+    @MockitoBean
+    private CouponRedemptionService couponRedemptionService;
+
+    @MockitoBean
+    private LoyaltyLedgerService loyaltyLedgerService;
+
+    @MockitoBean
+    private PaymentExpiryScheduler paymentExpiryScheduler;
+
+    @MockitoBean
+    private CustomerOrderHistoryService customerOrderHistoryService;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void placedOrderUpdatesStatisticsFacetsAndStockCache() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        User customer = tx.execute(status -> {
+            User user = User.builder().email("order-hooks@example.com").passwordHash("x").fullName("Buyer").isActive(true).build();
+            entityManager.persist(user);
+            return user;
+        });
+        Color color = persist(tx, Color.builder().name("Order hooks color").isActive(true).build());
+        ProductVariant variant = tx.execute(status -> {
+            Product product = Product.builder().name("Order hooks product").slug("order-hooks-product")
+                    .categories(new HashSet<>()).isActive(true).build();
+            entityManager.persist(product);
+            ProductVariant saved = ProductVariant.builder()
+                    .product(product)
+                    .sku("SKU-ORDER-HOOKS")
+                    .color(color)
+                    .price(new BigDecimal("300000.00"))
+                    .stock(2)
+                    .isActive(true)
+                    .build();
+            entityManager.persist(saved);
+            return saved;
+        });
+        Long variantId = variant.getId();
+
+        // Tag "variant:{id}" trỏ tới entry tồn kho trong cache "products"
+        SetOperations<String, String> setOperations = mock(SetOperations.class);
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+        when(setOperations.members("cache:deps:" + CacheDependencyTracker.variant(variantId)))
+                .thenReturn(Set.of("products|stock_" + variantId));
+        Cache stockCache = cacheManager.getCache("products");
+        stockCache.put("stock_" + variantId, 2);
+
+        ProductFacetIndex.FacetQuery inStock = ProductFacetIndex.FacetQuery.builder()
+                .colorIds(List.of(color.getId())).inStock(true).build();
+        assertEquals(1, catalogStatisticsService.getCounts().colorCount(color.getId()));
+        assertEquals(List.of(variant.getProduct().getId()), productFacetIndex.search(inStock, 0, 10).getProductIds());
+
+        OrderRequest request = new OrderRequest();
+        request.setItems(List.of(new OrderItemRequest(variantId, 2)));
+        request.setShipName("Buyer");
+        request.setShipPhone("0900000000");
+        request.setShipLine1("1 Nguyen Van Bao");
+        request.setShipCity("Ho Chi Minh");
+        request.setPaymentMethod("COD");
+        orderService.createOrder(customer.getId(), request);
+
+        assertEquals(0, catalogStatisticsService.getCounts().colorCount(color.getId()));
+        assertEquals(List.of(), productFacetIndex.search(inStock, 0, 10).getProductIds());
+        assertNull(stockCache.get("stock_" + variantId));
+    }
+
+    private <T> T persist(TransactionTemplate tx, T entity) {
+        return tx.execute(status -> {
+            entityManager.persist(entity);
+            return entity;
+        });
+    }
+}
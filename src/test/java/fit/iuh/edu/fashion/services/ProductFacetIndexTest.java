@@ -0,0 +1,243 @@
+package fit.iuh.edu.fashion.services;
+
+import fit.iuh.edu.fashion.models.*;
+import fit.iuh.edu.fashion.repositories.ProductRepository;
+import fit.iuh.edu.fashion.repositories.ProductVariantRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.Mockito.*;
+
+/**
+ * Bộ lọc facet: OR trong một facet, AND giữa các facet, số đếm mỗi facet bỏ qua lựa chọn của chính nó.
+ * Mọi truy vấn kèm từ khóa riêng của test để chỉ xét sản phẩm do test tạo.
+ */
+@DataJpaTest
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProductFacetIndexTest {
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductVariantRepository productVariantRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate tx;
+    private ProductRepository countingRepository;
+    private ProductFacetIndex index;
+    private String marker;
+
+    private Brand brandA;
+    private Brand brandB;
+    private Category categoryX;
+    private Category categoryY;
+    private Color red;
+    private Color blue;
+    private Size small;
+    private Size large;
+
+    // P1: A, X, red/S 150k còn 5
+    // P2: A, Y, blue/L 600k hết hàng + red/L 300k còn 2
+    // P3: B, X+Y, blue/S 2.5tr còn 1
+    // P4: B, X, ngừng bán
+    // P5: A, X, chỉ có variant ngừng bán
+    private Product p1;
+    private Product p2;
+    private Product p3;
+    private Product p5;
+    private ProductVariant p1Red;
+
+    @BeforeEach
+    void setUp() {
+        tx = new TransactionTemplate(transactionManager);
+        countingRepository = mock(ProductRepository.class, delegatesTo(productRepository));
+        index = new ProductFacetIndex(countingRepository, productVariantRepository, new ProductSearchIndex(productRepository));
+        marker = "fk" + System.nanoTime() + "x" + SEQUENCE.incrementAndGet();
+
+        int n = SEQUENCE.incrementAndGet();
+        brandA = persist(Brand.builder().name("Brand A " + n).slug("brand-a-" + n).isActive(true).build());
+        brandB = persist(Brand.builder().name("Brand B " + n).slug("brand-b-" + n).isActive(true).build());
+        categoryX = persist(Category.builder().name("Category X " + n).slug("category-x-" + n).isActive(true).build());
+        categoryY = persist(Category.builder().name("Category Y " + n).slug("category-y-" + n).isActive(true).build());
+        red = persist(Color.builder().name("Red " + n).isActive(true).build());
+        blue = persist(Color.builder().name("Blue " + n).isActive(true).build());
+        small = persist(Size.builder().name("S" + n).isActive(true).build());
+        large = persist(Size.builder().name("L" + n).isActive(true).build());
+
+        p1 = createProduct(brandA, Set.of(categoryX), true);
+        p1Red = createVariant(p1, red, small, "150000", 5, true);
+
+        p2 = createProduct(brandA, Set.of(categoryY), true);
+        createVariant(p2, blue, large, "600000", 0, true);
+        createVariant(p2, red, large, "300000", 2, true);
+
+        p3 = createProduct(brandB, Set.of(categoryX, categoryY), true);
+        createVariant(p3, blue, small, "2500000", 1, true);
+
+        Product p4 = createProduct(brandB, Set.of(categoryX), false);
+        createVariant(p4, red, small, "150000", 3, true);
+
+        p5 = createProduct(brandA, Set.of(categoryX), true);
+        createVariant(p5, red, small, "100000", 3, false);
+    }
+
+    @Test
+    void valuesOfOneFacetAreOred() {
+        assertEquals(Set.of(p1.getId(), p2.getId(), p3.getId(), p5.getId()),
+                ids(query().brandIds(List.of(brandA.getId(), brandB.getId()))));
+        assertEquals(Set.of(p1.getId(), p2.getId(), p3.getId()),
+                ids(query().colorIds(List.of(red.getId(), blue.getId()))));
+        assertEquals(Set.of(p1.getId(), p3.getId()),
+                ids(query().priceBuckets(List.of("0-200000", "2000000+"))));
+    }
+
+    @Test
+    void facetsAreAndedTogether() {
+        assertEquals(Set.of(p1.getId(), p2.getId()),
+                ids(query().brandIds(List.of(brandA.getId())).colorIds(List.of(red.getId()))));
+        assertEquals(Set.of(p1.getId()),
+                ids(query().brandIds(List.of(brandA.getId())).colorIds(List.of(red.getId())).sizeIds(List.of(small.getId()))));
+        assertEquals(Set.of(p3.getId()),
+                ids(query().categoryIds(List.of(categoryX.getId())).brandIds(List.of(brandB.getId()))));
+        assertEquals(Set.of(p1.getId(), p2.getId()),
+                ids(query().brandIds(List.of(brandA.getId())).inStock(true)));
+        assertEquals(Set.of(),
+                ids(query().brandIds(List.of(brandB.getId())).priceBuckets(List.of("0-200000"))));
+    }
+
+    @Test
+    void facetCountsIgnoreOwnSelection() {
+        ProductFacetIndex.FacetResult result = index.search(query().brandIds(List.of(brandA.getId())).build(), 0, 10);
+        Map<String, Map<String, Long>> facets = result.getFacets();
+
+        assertEquals(3, result.getTotal());
+        // Brand đếm trên mọi sản phẩm khớp từ khóa (bỏ qua chính lựa chọn brand), sản phẩm ngừng bán không tính
+        assertEquals(Map.of(key(brandA.getId()), 3L, key(brandB.getId()), 1L), facets.get(ProductFacetIndex.FACET_BRAND));
+        assertEquals(Map.of(key(categoryX.getId()), 2L, key(categoryY.getId()), 1L), facets.get(ProductFacetIndex.FACET_CATEGORY));
+        assertEquals(Map.of(key(red.getId()), 2L, key(blue.getId()), 1L), facets.get(ProductFacetIndex.FACET_COLOR));
+        assertEquals(Map.of(key(small.getId()), 1L, key(large.getId()), 1L), facets.get(ProductFacetIndex.FACET_SIZE));
+        assertEquals(Map.of("true", 2L), facets.get(ProductFacetIndex.FACET_STOCK));
+        assertEquals(List.of(1L, 1L, 1L, 0L, 0L), new ArrayList<>(facets.get(ProductFacetIndex.FACET_PRICE).values()));
+
+        ProductFacetIndex.FacetResult colored = index.search(
+                query().brandIds(List.of(brandA.getId())).colorIds(List.of(blue.getId())).build(), 0, 10);
+        assertEquals(Map.of(key(brandA.getId()), 1L, key(brandB.getId()), 1L), colored.getFacets().get(ProductFacetIndex.FACET_BRAND));
+        assertEquals(Map.of(key(red.getId()), 2L, key(blue.getId()), 1L), colored.getFacets().get(ProductFacetIndex.FACET_COLOR));
+    }
+
+    @Test
+    void pageIsSlicedFromMatches() {
+        ProductFacetIndex.FacetQuery all = query().build();
+        Set<Long> seen = new HashSet<>();
+        for (int offset = 0; offset < 4; offset++) {
+            ProductFacetIndex.FacetResult page = index.search(all, offset, 1);
+            assertEquals(4, page.getTotal());
+            assertEquals(1, page.getProductIds().size());
+            seen.addAll(page.getProductIds());
+        }
+        assertEquals(Set.of(p1.getId(), p2.getId(), p3.getId(), p5.getId()), seen);
+        assertEquals(List.of(), index.search(all, 4, 1).getProductIds());
+    }
+
+    @Test
+    void invalidPriceBucketIsRejected() {
+        assertThrows(RuntimeException.class, () -> index.search(query().priceBuckets(List.of("1-2")).build(), 0, 10));
+    }
+
+    @Test
+    void stockAndProductChangesUpdateBitmapsWithoutRebuild() {
+        assertEquals(Set.of(p1.getId(), p2.getId()), ids(query().brandIds(List.of(brandA.getId())).inStock(true)));
+
+        tx.executeWithoutResult(status -> {
+            assertEquals(1, productVariantRepository.decreaseStock(p1Red.getId(), 5));
+            index.onStockChanged(List.of(p1Red.getId()));
+        });
+        assertEquals(Set.of(p2.getId()), ids(query().brandIds(List.of(brandA.getId())).inStock(true)));
+
+        tx.executeWithoutResult(status -> {
+            Product managed = entityManager.find(Product.class, p2.getId());
+            managed.setBrand(entityManager.getReference(Brand.class, brandB.getId()));
+            index.onProductSaved(managed);
+        });
+        assertEquals(Set.of(p2.getId(), p3.getId()), ids(query().brandIds(List.of(brandB.getId()))));
+
+        tx.executeWithoutResult(status -> {
+            ProductVariant managed = productVariantRepository.findById(p1Red.getId()).orElseThrow();
+            managed.setStock(4);
+            managed.setColor(entityManager.getReference(Color.class, blue.getId()));
+            index.onVariantSaved(managed);
+        });
+        assertEquals(Set.of(p1.getId(), p2.getId(), p3.getId()), ids(query().colorIds(List.of(blue.getId())).inStock(true)));
+
+        verify(countingRepository, times(1)).findCatalogStatisticsRows();
+    }
+
+    private ProductFacetIndex.FacetQuery.FacetQueryBuilder query() {
+        return ProductFacetIndex.FacetQuery.builder().keyword(marker);
+    }
+
+    private Set<Long> ids(ProductFacetIndex.FacetQuery.FacetQueryBuilder query) {
+        ProductFacetIndex.FacetResult result = index.search(query.build(), 0, 100);
+        assertEquals(result.getProductIds().size(), result.getTotal());
+        return new HashSet<>(result.getProductIds());
+    }
+
+    private static String key(Long id) {
+        return String.valueOf(id);
+    }
+
+    private Product createProduct(Brand brand, Set<Category> categories, boolean active) {
+        int n = SEQUENCE.incrementAndGet();
+        return persist(Product.builder()
+                .name("Product " + n + " " + marker)
+                .slug("product-" + n)
+                .brand(brand)
+                .categories(new HashSet<>(categories))
+                .isActive(active)
+                .build());
+    }
+
+    private ProductVariant createVariant(Product product, Color color, Size size, String price, int stock, boolean active) {
+        return persist(ProductVariant.builder()
+                .product(product)
+                .sku("SKU-" + SEQUENCE.incrementAndGet())
+                .color(color)
+                .size(size)
+                .price(new BigDecimal(price))
+                .stock(stock)
+                .isActive(active)
+                .build());
+    }
+
+    private <T> T persist(T entity) {
+        return tx.execute(status -> {
+            entityManager.persist(entity);
+            return entity;
+        });
+    }
+}
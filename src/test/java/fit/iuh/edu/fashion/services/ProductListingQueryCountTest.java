@@ -0,0 +1,164 @@
+package fit.iuh.edu.fashion.services;
+
+import fit.iuh.edu.fashion.dto.response.*;
+import fit.iuh.edu.fashion.models.*;
+import fit.iuh.edu.fashion.repositories.ProductRepository;
+import fit.iuh.edu.fashion.repositories.ProductReviewRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Đếm số câu SQL để render một trang sản phẩm: map từng entity (cách cũ) so với ProductListingService.
+ */
+@DataJpaTest
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ProductListingService.class, ProductRatingService.class})
+class ProductListingQueryCountTest {
+
+    private static final int PRODUCTS = 60;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductReviewRepository productReviewRepository;
+
+    @Autowired
+    private ProductListingService productListingService;
+
+    @BeforeEach
+    void setUp() {
+        Brand[] brands = new Brand[3];
+        for (int i = 0; i < brands.length; i++) {
+            brands[i] = entityManager.persist(Brand.builder().name("Brand " + i).slug("brand-" + i).build());
+        }
+        Category parent = entityManager.persist(Category.builder().name("Áo").slug("ao").build());
+        Category child = entityManager.persist(Category.builder().name("Áo thun").slug("ao-thun").parent(parent).build());
+        Color[] colors = new Color[3];
+        Size[] sizes = new Size[3];
+        for (int i = 0; i < 3; i++) {
+            colors[i] = entityManager.persist(Color.builder().name("Color " + i).hex("#00000" + i).isActive(true).build());
+            sizes[i] = entityManager.persist(Size.builder().name("S" + i).isActive(true).build());
+        }
+
+        for (int p = 0; p < PRODUCTS; p++) {
+            Product product = entityManager.persist(Product.builder()
+                    .name("Product " + p)
+                    .slug("product-" + p)
+                    .brand(brands[p % brands.length])
+                    .categories(Set.of(parent, child))
+                    .isActive(true)
+                    .build());
+            for (int v = 0; v < 3; v++) {
+                ProductVariant variant = entityManager.persist(ProductVariant.builder()
+                        .product(product)
+                        .sku("SKU-" + p + "-" + v)
+                        .color(colors[v])
+                        .size(sizes[v])
+                        .price(new BigDecimal("199000.00"))
+                        .stock(10)
+                        .isActive(true)
+                        .build());
+                entityManager.persist(ProductImage.builder()
+                        .product(product)
+                        .variant(variant)
+                        .url("https://cdn.example/" + p + "/" + v + ".jpg")
+                        .sortOrder(v)
+                        .build());
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void listingPathUsesConstantQueriesPerPage() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        long previousListingQueries = -1;
+        for (int pageSize : List.of(10, 20, 40)) {
+            PageRequest pageable = PageRequest.of(0, pageSize, Sort.by("id"));
+
+            entityManager.clear();
+            statistics.clear();
+            List<ProductResponse> legacy = productRepository.findAll(pageable).map(this::mapLikeEntityPath).getContent();
+            long entityQueries = statistics.getPrepareStatementCount();
+
+            entityManager.clear();
+            statistics.clear();
+            Page<ProductResponse> listing = productListingService.loadPage(productRepository.findPageIds(pageable));
+            long listingQueries = statistics.getPrepareStatementCount();
+
+            assertEquals(PRODUCTS, listing.getTotalElements());
+            assertEquals(legacy.size(), listing.getContent().size());
+            for (int i = 0; i < legacy.size(); i++) {
+                ProductResponse expected = legacy.get(i);
+                ProductResponse actual = listing.getContent().get(i);
+                assertEquals(expected.getId(), actual.getId());
+                assertEquals(expected.getBrand().getName(), actual.getBrand().getName());
+                assertEquals(expected.getCategories().size(), actual.getCategories().size());
+                assertEquals(expected.getVariants().size(), actual.getVariants().size());
+                assertEquals(expected.getImages().size(), actual.getImages().size());
+                assertNotNull(actual.getVariants().get(0).getColor().getName());
+            }
+
+            // id page + count + products/categories/variants/images/ratings
+            assertTrue(listingQueries <= 7, "listing queries: " + listingQueries);
+            assertTrue(entityQueries > pageSize, "entity queries: " + entityQueries);
+            if (previousListingQueries >= 0) {
+                assertEquals(previousListingQueries, listingQueries);
+            }
+            previousListingQueries = listingQueries;
+        }
+    }
+
+    /**
+     * Tương đương ProductService.mapToProductResponse trước đây: đi qua từng association của entity
+     * và hai query điểm đánh giá cho mỗi sản phẩm
+     */
+    private ProductResponse mapLikeEntityPath(Product product) {
+        productReviewRepository.getAverageRatingByProductId(product.getId());
+        productReviewRepository.countByProductIdAndIsApprovedTrue(product.getId());
+        return ProductResponse.builder()
+                .id(product.getId())
+                .brand(BrandResponse.builder().name(product.getBrand().getName()).build())
+                .categories(product.getCategories().stream()
+                        .map(c -> CategoryResponse.builder().id(c.getId()).build())
+                        .toList())
+                .variants(product.getVariants().stream()
+                        .map(v -> ProductVariantResponse.builder()
+                                .id(v.getId())
+                                .color(ColorResponse.builder().name(v.getColor().getName()).build())
+                                .build())
+                        .toList())
+                .images(product.getImages().stream()
+                        .map(i -> ProductImageResponse.builder().id(i.getId()).build())
+                        .toList())
+                .build();
+    }
+}
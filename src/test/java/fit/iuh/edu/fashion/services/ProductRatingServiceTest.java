@@ -0,0 +1,172 @@
+package fit.iuh.edu.fashion.services;
+
+import fit.iuh.edu.fashion.cache.CacheDependencyTracker;
+import fit.iuh.edu.fashion.dto.request.ProductReviewRequest;
+import fit.iuh.edu.fashion.models.Product;
+import fit.iuh.edu.fashion.models.User;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Bảng tổng hợp điểm đánh giá sau mỗi lần thêm/sửa/duyệt/xóa review phải bằng AVG/COUNT tính lại
+ * trên các review đã duyệt. applyDelta dùng ON DUPLICATE KEY UPDATE nên H2 chạy ở chế độ MariaDB.
+ */
+@DataJpaTest(properties = "spring.datasource.url=jdbc:h2:mem:ratings;MODE=MariaDB;NON_KEYWORDS=VALUE;LOCK_TIMEOUT=5000")
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ProductReviewService.class, ProductRatingService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProductRatingServiceTest {
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    @Autowired
+    private ProductReviewService productReviewService;
+
+    @Autowired
+    private ProductRatingService productRatingService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockitoBean
+    private CacheDependencyTracker cacheDependencyTracker;
+
+    @Test
+    void summaryFollowsAddUpdateApproveAndDelete() {
+        Long productId = createProduct().getId();
+        Long alice = createUser().getId();
+        Long bob = createUser().getId();
+        Long carol = createUser().getId();
+        assertSummaryMatches(productId);
+
+        Long aliceReview = productReviewService.addReview(productId, request(5), alice).getId();
+        assertSummaryMatches(productId);
+        Long bobReview = productReviewService.addReview(productId, request(2), bob).getId();
+        assertSummaryMatches(productId);
+        Long carolReview = productReviewService.addReview(productId, request(4), carol).getId();
+        assertSummaryMatches(productId);
+        assertEquals(3, productRatingService.getSummary(productId).getTotalReviews());
+
+        productReviewService.updateReview(bobReview, request(3), bob);
+        assertSummaryMatches(productId);
+
+        // Ẩn review: không còn được tính; sửa điểm lúc đang ẩn cũng không được tính
+        productReviewService.setApproval(aliceReview, false);
+        assertSummaryMatches(productId);
+        productReviewService.updateReview(aliceReview, request(1), alice);
+        assertSummaryMatches(productId);
+        assertEquals(2, productRatingService.getSummary(productId).getTotalReviews());
+
+        // Duyệt lại: tính theo điểm mới; duyệt lần nữa không đổi gì
+        productReviewService.setApproval(aliceReview, true);
+        assertSummaryMatches(productId);
+        productReviewService.setApproval(aliceReview, true);
+        assertSummaryMatches(productId);
+
+        productReviewService.deleteReview(carolReview, carol);
+        assertSummaryMatches(productId);
+        productReviewService.setApproval(bobReview, false);
+        productReviewService.deleteReview(bobReview, bob);
+        assertSummaryMatches(productId);
+        assertEquals(1, productRatingService.getSummary(productId).getTotalReviews());
+
+        productReviewService.deleteReview(aliceReview, alice);
+        assertSummaryMatches(productId);
+        assertEquals(0.0, productRatingService.getSummary(productId).getAverageRating());
+    }
+
+    @Test
+    void rebuildMatchesIncrementalSummary() {
+        Long first = createProduct().getId();
+        Long second = createProduct().getId();
+        Long alice = createUser().getId();
+        Long bob = createUser().getId();
+        productReviewService.addReview(first, request(5), alice);
+        Long hidden = productReviewService.addReview(first, request(1), bob).getId();
+        productReviewService.setApproval(hidden, false);
+        productReviewService.addReview(second, request(3), alice);
+
+        Map<Long, ProductRatingService.RatingSummary> before = Map.of(
+                first, productRatingService.getSummary(first), second, productRatingService.getSummary(second));
+        productRatingService.rebuild();
+
+        for (Map.Entry<Long, ProductRatingService.RatingSummary> entry : before.entrySet()) {
+            ProductRatingService.RatingSummary rebuilt = productRatingService.getSummary(entry.getKey());
+            assertEquals(entry.getValue().getTotalReviews(), rebuilt.getTotalReviews());
+            assertEquals(entry.getValue().getAverageRating(), rebuilt.getAverageRating(), 1e-9);
+            assertEquals(entry.getValue().getDistribution(), rebuilt.getDistribution());
+            assertSummaryMatches(entry.getKey());
+        }
+    }
+
+    /**
+     * So tổng hợp với AVG/COUNT và phân bố số sao tính trực tiếp trên product_reviews đã duyệt
+     */
+    private void assertSummaryMatches(Long productId) {
+        Map<String, Object> expected = jdbcTemplate.queryForMap(
+                "SELECT COUNT(*) AS total, AVG(CAST(rating AS DOUBLE)) AS average FROM product_reviews " +
+                        "WHERE product_id = ? AND is_approved = TRUE", productId);
+        Map<Integer, Long> distribution = new LinkedHashMap<>();
+        for (int star = 1; star <= 5; star++) {
+            distribution.put(star, jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM product_reviews WHERE product_id = ? AND is_approved = TRUE AND rating = ?",
+                    Long.class, productId, star));
+        }
+
+        ProductRatingService.RatingSummary summary = productRatingService.getSummary(productId);
+        long total = ((Number) expected.get("total")).longValue();
+        assertEquals(total, summary.getTotalReviews());
+        double average = expected.get("average") != null ? ((Number) expected.get("average")).doubleValue() : 0.0;
+        assertEquals(average, summary.getAverageRating(), 1e-9);
+        assertEquals(distribution, summary.getDistribution());
+        assertEquals(summary.getTotalReviews(), productRatingService.getSummaries(List.of(productId))
+                .getOrDefault(productId, summary).getTotalReviews());
+    }
+
+    private static ProductReviewRequest request(int rating) {
+        return new ProductReviewRequest(rating, "Review " + rating, "Rated " + rating + " stars after a week of wear");
+    }
+
+    private Product createProduct() {
+        int n = SEQUENCE.incrementAndGet();
+        return persist(Product.builder().name("Rated product " + n).slug("rated-product-" + n).isActive(true).build());
+    }
+
+    private User createUser() {
+        int n = SEQUENCE.incrementAndGet();
+        return persist(User.builder().email("reviewer" + n + "@example.com").passwordHash("x")
+                .fullName("Reviewer " + n).isActive(true).build());
+    }
+
+    private <T> T persist(T entity) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            entityManager.persist(entity);
+            return entity;
+        });
+    }
+}
@@ -0,0 +1,222 @@
+package fit.iuh.edu.fashion.services;
+
+import fit.iuh.edu.fashion.models.Brand;
+import fit.iuh.edu.fashion.models.Category;
+import fit.iuh.edu.fashion.models.Product;
+import fit.iuh.edu.fashion.repositories.ProductRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.Mockito.*;
+
+/**
+ * Chỉ mục tìm kiếm: bỏ dấu, phải khớp mọi từ, khớp tiền tố điểm thấp hơn, xếp hạng theo field,
+ * cập nhật tăng dần khi lưu sản phẩm / đổi tên brand mà không build lại.
+ * Mỗi test dùng một từ đánh dấu riêng để không lẫn với sản phẩm của test khác trong cùng DB.
+ */
+@DataJpaTest
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProductSearchIndexTest {
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate tx;
+    private ProductRepository countingRepository;
+    private ProductSearchIndex index;
+    private String marker;
+
+    @BeforeEach
+    void setUp() {
+        tx = new TransactionTemplate(transactionManager);
+        countingRepository = mock(ProductRepository.class, delegatesTo(productRepository));
+        index = new ProductSearchIndex(countingRepository);
+        marker = "mk" + System.nanoTime() + "x" + SEQUENCE.incrementAndGet();
+    }
+
+    @Test
+    void keywordsAreFoldedToMatchWithoutDiacritics() {
+        Product product = createProduct("Áo Thun Đen " + marker, null, null, true);
+
+        assertEquals(List.of(product.getId()), search("ao thun den"));
+        assertEquals(List.of(product.getId()), search("ÁO THUN ĐEN"));
+        assertEquals(List.of(product.getId()), search("Ao Thun Den"));
+    }
+
+    @Test
+    void everyKeywordMustMatch() {
+        Product shirt = createProduct("Áo thun " + marker, null, null, true);
+        createProduct("Quần jean " + marker, null, null, true);
+
+        assertEquals(List.of(shirt.getId()), search("ao"));
+        assertEquals(List.of(), search("ao jean"));
+        assertEquals(2, index.search(marker, 0, 10).getTotal());
+    }
+
+    @Test
+    void exactTermRanksAbovePrefixMatch() {
+        Product exact = createProduct("Thun " + marker, null, null, true);
+        Product prefix = createProduct("Thunder " + marker, null, null, true);
+
+        assertEquals(List.of(exact.getId(), prefix.getId()), search("thun"));
+        assertEquals(List.of(prefix.getId()), search("thunde"));
+        // Tiền tố một ký tự không mở rộng
+        assertEquals(List.of(), search("t"));
+    }
+
+    @Test
+    void nameMatchRanksAboveBrandCategoryAndDescription() {
+        // Tên brand/category không chứa từ đánh dấu để chỉ field chứa "denim" quyết định thứ hạng
+        int n = SEQUENCE.incrementAndGet();
+        Brand brand = persist(Brand.builder().name("Denim Co " + n).slug("brand-" + marker).isActive(true).build());
+        Category category = persist(Category.builder().name("Denim wear " + n).slug("category-" + marker).isActive(true).build());
+
+        Product inDescription = createProduct("Plain " + marker, null, null, true, "quần denim xanh");
+        Product inCategory = createProduct("Basic " + marker, null, category, true);
+        Product inBrand = createProduct("Simple " + marker, brand, null, true);
+        Product inName = createProduct("Denim " + marker, null, null, true);
+
+        assertEquals(List.of(inName.getId(), inBrand.getId(), inCategory.getId(), inDescription.getId()), search("denim"));
+    }
+
+    @Test
+    void savedProductIsReindexedWithoutRebuild() {
+        Product product = createProduct("Áo khoác " + marker, null, null, true);
+        assertEquals(List.of(product.getId()), search("khoac"));
+
+        tx.executeWithoutResult(status -> {
+            Product managed = entityManager.find(Product.class, product.getId());
+            managed.setName("Áo len " + marker);
+            index.onProductSaved(managed);
+        });
+        assertEquals(List.of(), search("khoac"));
+        assertEquals(List.of(product.getId()), search("ao len"));
+
+        Product created = tx.execute(status -> {
+            Product saved = Product.builder().name("Áo len cổ lọ " + marker).slug("product-" + SEQUENCE.incrementAndGet())
+                    .categories(new HashSet<>()).isActive(true).build();
+            entityManager.persist(saved);
+            index.onProductSaved(saved);
+            return saved;
+        });
+        assertEquals(Set.of(product.getId(), created.getId()), Set.copyOf(search("len")));
+
+        // Transaction rollback: chỉ mục giữ nguyên
+        tx.executeWithoutResult(status -> {
+            Product managed = entityManager.find(Product.class, created.getId());
+            managed.setName("Đổi tên " + marker);
+            index.onProductSaved(managed);
+            status.setRollbackOnly();
+        });
+        assertEquals(List.of(), search("doi ten"));
+
+        verify(countingRepository, times(1)).findSearchIndexRows();
+    }
+
+    @Test
+    void softDeletedProductIsNoLongerFound() {
+        Product kept = createProduct("Váy hoa " + marker, null, null, true);
+        Product removed = createProduct("Váy dài " + marker, null, null, true);
+        assertEquals(2, index.search("vay " + marker, 0, 10).getTotal());
+
+        tx.executeWithoutResult(status -> {
+            Product managed = entityManager.find(Product.class, removed.getId());
+            managed.setIsActive(false);
+            index.onProductSaved(managed);
+        });
+
+        ProductSearchIndex.SearchResult result = index.search("vay " + marker, 0, 10);
+        assertEquals(List.of(kept.getId()), result.getProductIds());
+        assertEquals(1, result.getTotal());
+    }
+
+    @Test
+    void productsAreReindexedAfterBrandRename() {
+        Brand brand = persist(Brand.builder().name("Oldbrand").slug("brand-" + marker).isActive(true).build());
+        Product product = createProduct("Giày " + marker, brand, null, true);
+        assertEquals(List.of(product.getId()), search("oldbrand"));
+
+        tx.executeWithoutResult(status -> {
+            Brand managed = entityManager.find(Brand.class, brand.getId());
+            managed.setName("Newbrand");
+            entityManager.flush();
+            index.reindexProducts(productRepository.findIdsByBrandId(brand.getId()));
+        });
+
+        assertEquals(List.of(), search("oldbrand"));
+        assertEquals(List.of(product.getId()), search("newbrand"));
+        verify(countingRepository, times(1)).findSearchIndexRows();
+    }
+
+    @Test
+    void pageIsSlicedFromRankedHits() {
+        Product first = createProduct("Mũ " + marker, null, null, true);
+        Product second = createProduct("Mũ " + marker, null, null, true);
+        Product third = createProduct("Mũ " + marker, null, null, true);
+
+        // Cùng điểm: id lớn hơn (mới hơn) đứng trước
+        ProductSearchIndex.SearchResult result = index.search("mu " + marker, 1, 1);
+        assertEquals(List.of(second.getId()), result.getProductIds());
+        assertEquals(3, result.getTotal());
+        assertEquals(List.of(third.getId(), second.getId(), first.getId()), search("mu"));
+    }
+
+    /**
+     * Tìm với từ đánh dấu của test, trả về id theo thứ tự xếp hạng
+     */
+    private List<Long> search(String keyword) {
+        return index.search(keyword + " " + marker, 0, 100).getProductIds();
+    }
+
+    private Product createProduct(String name, Brand brand, Category category, boolean active) {
+        return createProduct(name, brand, category, active, null);
+    }
+
+    private Product createProduct(String name, Brand brand, Category category, boolean active, String description) {
+        Set<Category> categories = new HashSet<>();
+        if (category != null) {
+            categories.add(category);
+        }
+        return persist(Product.builder()
+                .name(name)
+                .slug("product-" + SEQUENCE.incrementAndGet())
+                .description(description)
+                .brand(brand)
+                .categories(categories)
+                .isActive(active)
+                .build());
+    }
+
+    private <T> T persist(T entity) {
+        return tx.execute(status -> {
+            entityManager.persist(entity);
+            return entity;
+        });
+    }
+}
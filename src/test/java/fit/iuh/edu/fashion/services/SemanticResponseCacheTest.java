@@ -0,0 +1,119 @@
+package fit.iuh.edu.fashion.services;
+
+import fit.iuh.edu.fashion.dto.CatalogDataDTO;
+import fit.iuh.edu.fashion.repositories.BrandRepository;
+import fit.iuh.edu.fashion.repositories.CategoryRepository;
+import fit.iuh.edu.fashion.repositories.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestClient;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Cache câu trả lời AI theo nghĩa qua AiAssistantService.chat (không qua cache nguyên văn "chat_"):
+ * câu tìm sản phẩm viết khác nhưng cùng intent chỉ gọi model một lần, câu hỏi tự do gần giống dùng lại
+ * câu trả lời trước, câu khác nghĩa vẫn gọi model; hit rate của hai tầng được đếm riêng.
+ */
+class SemanticResponseCacheTest {
+
+    private final ChatClient chatClient = mock(ChatClient.class, RETURNS_DEEP_STUBS);
+    private final CatalogCacheService catalogCacheService = mock(CatalogCacheService.class);
+    private final ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager("aiResponses");
+    private final ExecutorService aiExecutor = Executors.newSingleThreadExecutor();
+    private final AtomicInteger modelCalls = new AtomicInteger();
+    private SemanticResponseCache semanticResponseCache;
+    private AiAssistantService service;
+
+    @BeforeEach
+    void setUp() {
+        UserIntentAnalyzer intentAnalyzer = new UserIntentAnalyzer(new CatalogDictionary(
+                mock(BrandRepository.class), mock(CategoryRepository.class), mock(StringRedisTemplate.class)));
+        semanticResponseCache = new SemanticResponseCache(cacheManager);
+        semanticResponseCache.initIndex();
+        service = new AiAssistantService(chatClient, mock(ProductRepository.class), catalogCacheService,
+                RestClient.builder(), intentAnalyzer, cacheManager, aiExecutor, semanticResponseCache);
+        ReflectionTestUtils.setField(service, "requiredModel", "test-model");
+        ReflectionTestUtils.setField(service, "lmStudioBaseUrl", "http://127.0.0.1:1");
+        service.init();
+        ReflectionTestUtils.setField(service, "lmStudioChecked", true);
+        ReflectionTestUtils.setField(service, "lmStudioAvailable", true);
+
+        CatalogDataDTO catalog = mock(CatalogDataDTO.class);
+        when(catalog.toSystemPrompt()).thenReturn("Catalog");
+        when(catalogCacheService.getCatalogData()).thenReturn(catalog);
+        when(chatClient.prompt().system(anyString()).user(anyString()).call().content())
+                .thenAnswer(invocation -> "Trả lời #" + modelCalls.incrementAndGet());
+    }
+
+    @AfterEach
+    void tearDown() {
+        aiExecutor.shutdownNow();
+    }
+
+    @Test
+    void sameIntentWithDifferentWordingCallsModelOnce() {
+        String first = service.chat("Tìm áo thun đen giá dưới 300k").getResponse();
+        assertEquals(first, service.chat("tim ao thun mau DEN, gia duoi 300k").getResponse());
+        assertEquals(1, modelCalls.get());
+
+        // Màu khác: intent khác
+        assertNotEquals(first, service.chat("Tìm áo thun trắng giá dưới 300k").getResponse());
+        assertEquals(2, modelCalls.get());
+
+        SemanticResponseCache.Statistics intent = statistics().get("intent");
+        assertEquals(1, intent.getHitCount());
+        assertEquals(2, intent.getMissCount());
+        assertEquals(1.0 / 3, intent.getHitRate(), 1e-9);
+        assertEquals(0, statistics().get("similar").getHitCount() + statistics().get("similar").getMissCount());
+    }
+
+    @Test
+    void freeTextQuestionsMatchBySimilarity() {
+        String answer = service.chat("Cách phối đồ đi tiệc cưới thế nào?").getResponse();
+        assertEquals(answer, service.chat("Cách phối đồ đi tiệc cưới như thế nào?").getResponse());
+        assertEquals(1, modelCalls.get());
+
+        // Cùng khuôn câu nhưng hỏi dịp khác: dưới ngưỡng
+        assertNotEquals(answer, service.chat("Cách phối đồ đi tiệc tối thế nào?").getResponse());
+        // System prompt khác (không dấu không khớp "phối đồ" -> prompt catalog): không dùng câu trả lời của prompt tư vấn
+        assertNotEquals(answer, service.chat("cach phoi do di tiec cuoi the nao").getResponse());
+        assertEquals(3, modelCalls.get());
+
+        SemanticResponseCache.Statistics similar = statistics().get("similar");
+        assertEquals(1, similar.getHitCount());
+        assertEquals(3, similar.getMissCount());
+        assertEquals(3, similar.getSize());
+    }
+
+    @Test
+    void failedGenerationIsNotCached() {
+        when(chatClient.prompt().system(anyString()).user(anyString()).call().content())
+                .thenThrow(new RuntimeException("Connection refused"))
+                .thenAnswer(invocation -> "Trả lời #" + modelCalls.incrementAndGet());
+        // Stub lại gọi qua chuỗi mock một lần
+        modelCalls.set(0);
+
+        assertEquals("error", service.chat("Cách phối đồ đi làm mùa hè?").getModel());
+        assertEquals("Trả lời #1", service.chat("Cách phối đồ đi làm mùa hè?").getResponse());
+    }
+
+    private Map<String, SemanticResponseCache.Statistics> statistics() {
+        List<SemanticResponseCache.Statistics> statistics = semanticResponseCache.getStatistics();
+        return statistics.stream().collect(Collectors.toMap(SemanticResponseCache.Statistics::getTier, s -> s));
+    }
+}